@@ -1,10 +1,13 @@
 package com.distribuidos.appserver.controller;
 
 import com.distribuidos.appserver.service.DatabaseCommunicationService;
+import com.distribuidos.appserver.service.RebalancingService;
 import com.distribuidos.appserver.service.StorageNodeCommunicationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -25,6 +28,9 @@ public class AdminController {
     @Autowired
     private StorageNodeCommunicationService nodeService;
     
+    @Autowired
+    private RebalancingService rebalancingService;
+    
     /**
      * Verifica el estado general del sistema.
      */
@@ -69,6 +75,7 @@ public class AdminController {
         
         try {
             nodeService.discoverNodes();
+            rebalancingService.syncMembership();
             Map<String, Object> result = nodeService.getNodesStatistics();
             result.put("action", "NODE_DISCOVERY_COMPLETED");
             
@@ -126,4 +133,48 @@ public class AdminController {
             return ResponseEntity.status(500).body(error);
         }
     }
+    
+    /**
+     * Obtiene el estado y progreso del rebalanceo de réplicas.
+     */
+    @GetMapping("/rebalance/status")
+    public ResponseEntity<Map<String, Object>> getRebalanceStatus() {
+        System.out.println("⚖️ Admin: Consultando estado del rebalanceo");
+        return ResponseEntity.ok(rebalancingService.getStatus());
+    }
+    
+    /**
+     * Fuerza una ejecución del rebalanceo.
+     */
+    @PostMapping("/rebalance")
+    public ResponseEntity<Map<String, Object>> triggerRebalance() {
+        System.out.println("⚖️ Admin: Solicitando rebalanceo manual");
+        
+        boolean started = rebalancingService.requestRebalance("Solicitud manual");
+        Map<String, Object> result = rebalancingService.getStatus();
+        result.put("action", started ? "REBALANCE_STARTED" : "REBALANCE_QUEUED");
+        return ResponseEntity.accepted().body(result);
+    }
+    
+    /**
+     * Retira un nodo y migra sus réplicas al resto del anillo.
+     */
+    @PostMapping("/nodes/{nodeName}/decommission")
+    public ResponseEntity<Map<String, Object>> decommissionNode(@PathVariable String nodeName) {
+        System.out.println("➖ Admin: Retirando nodo " + nodeName);
+        
+        try {
+            rebalancingService.decommissionNode(nodeName);
+            Map<String, Object> result = rebalancingService.getStatus();
+            result.put("action", "NODE_DECOMMISSION_STARTED");
+            return ResponseEntity.accepted().body(result);
+            
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ Admin: " + e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            error.put("action", "NODE_DECOMMISSION_FAILED");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
 }
\ No newline at end of file
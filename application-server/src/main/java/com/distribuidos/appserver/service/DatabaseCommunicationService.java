@@ -1,17 +1,37 @@
 package com.distribuidos.appserver.service;
 
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.ChangeSubscription;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseCursor;
 import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabasePool;
 import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.DatabaseTransaction;
+import com.distribuidos.shared.tcp.ReplicatedDatabasePool;
+import com.distribuidos.shared.tcp.ShardedDatabasePool;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.*;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Servicio para comunicación TCP con el servidor de base de datos.
  * Maneja todas las operaciones de persistencia del sistema.
+ * Las conexiones son persistentes y se reutilizan desde un pool.
+ * Si hay réplicas de lectura configuradas (database.tcp.replicas), las
+ * lecturas se reparten entre ellas y las escrituras van al primario.
+ * Con fragmentos configurados (database.tcp.shards) los metadatos se
+ * reparten entre varios servidores por propietario.
+ * Se suscribe al flujo de cambios del primario (o de cada fragmento) para
+ * que las cachés locales de metadatos se mantengan coherentes.
  */
 @Service
 public class DatabaseCommunicationService {
@@ -25,23 +45,189 @@ public class DatabaseCommunicationService {
     @Value("${database.tcp.timeout}")
     private int timeout;
     
+    @Value("${database.tcp.binary-protocol:true}")
+    private boolean binaryProtocolEnabled;
+    
+    @Value("${database.pool.max-connections:10}")
+    private int maxConnections;
+    
+    @Value("${database.pool.min-idle:1}")
+    private int minIdle;
+    
+    @Value("${database.pool.borrow-timeout-ms:5000}")
+    private long borrowTimeoutMs;
+    
+    @Value("${database.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+    
+    @Value("${database.pool.max-lifetime-ms:1800000}")
+    private long maxLifetimeMs;
+    
+    @Value("${database.pool.validation-interval-ms:30000}")
+    private long validationIntervalMs;
+    
+    // Réplicas de lectura, "host:puerto" separados por comas
+    @Value("${database.tcp.replicas:}")
+    private String replicaAddresses;
+    
+    @Value("${database.replicas.read-your-writes-ms:1000}")
+    private long readYourWritesMs;
+    
+    // Fragmentos de metadatos en orden de índice, "host:puerto" separados por comas
+    @Value("${database.tcp.shards:}")
+    private String shardAddresses;
+    
+    @Value("${database.changes.enabled:true}")
+    private boolean changeStreamEnabled;
+    
+    private DatabasePool connectionPool;
+    private final List<ChangeSubscription> changeSubscriptions = new ArrayList<>();
+    private final List<ChangeSubscription.Listener> changeListeners = new CopyOnWriteArrayList<>();
+    
+    // Reparte los cambios de todas las suscripciones entre los listeners registrados
+    private final ChangeSubscription.Listener changeDispatcher = new ChangeSubscription.Listener() {
+        @Override
+        public void onEvents(List<ChangeEvent> events) {
+            for (ChangeSubscription.Listener listener : changeListeners) {
+                listener.onEvents(events);
+            }
+        }
+        
+        @Override
+        public void onReset() {
+            for (ChangeSubscription.Listener listener : changeListeners) {
+                listener.onReset();
+            }
+        }
+    };
+    
+    @PostConstruct
+    public void initialize() {
+        List<DatabaseConnectionPool> shards = createPools(shardAddresses);
+        if (!shards.isEmpty()) {
+            connectionPool = new ShardedDatabasePool(shards);
+            System.out.println("🔗 Pool de conexiones con BD fragmentada en " + shards.size() + " servidores: " +
+                             shardAddresses + " (máximo " + maxConnections + " por servidor)");
+            subscribeToChanges(shardAddresses);
+            return;
+        }
+        List<DatabaseConnectionPool> replicas = createPools(replicaAddresses);
+        connectionPool = new ReplicatedDatabasePool(createPool(databaseHost, databasePort), replicas, readYourWritesMs);
+        System.out.println("🔗 Pool de conexiones con BD: " + databaseHost + ":" + databasePort +
+                         " (máximo " + maxConnections + ")" +
+                         (replicas.isEmpty() ? "" : ", réplicas de lectura: " + replicaAddresses));
+        subscribeToChanges(databaseHost + ":" + databasePort);
+    }
+    
+    /**
+     * Abre una suscripción a los cambios de cada servidor, "host:puerto" separados por comas
+     */
+    private void subscribeToChanges(String addresses) {
+        if (!changeStreamEnabled) {
+            return;
+        }
+        for (String address : addresses.split(",")) {
+            if (address.isBlank()) {
+                continue;
+            }
+            String[] hostPort = address.trim().split(":");
+            ChangeSubscription subscription = new ChangeSubscription(hostPort[0], Integer.parseInt(hostPort[1]),
+                                                                     timeout, binaryProtocolEnabled, changeDispatcher);
+            subscription.start();
+            changeSubscriptions.add(subscription);
+        }
+        System.out.println("📡 Suscrito al flujo de cambios de BD: " + addresses);
+    }
+    
+    /**
+     * Registra un listener de los cambios confirmados en la base de datos
+     */
+    public void addChangeListener(ChangeSubscription.Listener listener) {
+        changeListeners.add(listener);
+    }
+    
+    /**
+     * Si se están recibiendo los cambios de todos los servidores de base de datos
+     */
+    public boolean isChangeStreamLive() {
+        if (changeSubscriptions.isEmpty()) {
+            return false;
+        }
+        for (ChangeSubscription subscription : changeSubscriptions) {
+            if (!subscription.isLive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private List<DatabaseConnectionPool> createPools(String addresses) {
+        List<DatabaseConnectionPool> pools = new ArrayList<>();
+        for (String address : addresses.split(",")) {
+            if (address.isBlank()) {
+                continue;
+            }
+            String[] hostPort = address.trim().split(":");
+            pools.add(createPool(hostPort[0], Integer.parseInt(hostPort[1])));
+        }
+        return pools;
+    }
+    
+    private DatabaseConnectionPool createPool(String host, int port) {
+        return new DatabaseConnectionPool(host, port, new DatabaseConnectionPool.Config()
+            .maxConnections(maxConnections)
+            .minIdle(minIdle)
+            .borrowTimeoutMs(borrowTimeoutMs)
+            .idleTimeoutMs(idleTimeoutMs)
+            .maxLifetimeMs(maxLifetimeMs)
+            .validationIntervalMs(validationIntervalMs)
+            .connectTimeoutMs(timeout)
+            .requestTimeoutMs(timeout)
+            .preferBinary(binaryProtocolEnabled));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        for (ChangeSubscription subscription : changeSubscriptions) {
+            subscription.close();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+    
+    /**
+     * Abre en este hilo la sesión del usuario: tras una escritura suya, sus
+     * lecturas van al primario durante database.replicas.read-your-writes-ms;
+     * las del resto de usuarios siguen yendo a las réplicas
+     */
+    public ReplicatedDatabasePool.Session openSession(String userId) {
+        return ReplicatedDatabasePool.openSession(userId);
+    }
+    
     /**
      * Envía un mensaje al servidor de base de datos y obtiene la respuesta.
      */
     public DatabaseResponse sendMessage(DatabaseMessage message) {
+        return send(message, false);
+    }
+    
+    /**
+     * Como sendMessage, pero las lecturas no van a las réplicas: para quien
+     * guarda el resultado y no puede aceptar un estado atrasado. Cada
+     * fragmento es ya un primario.
+     */
+    public DatabaseResponse sendToPrimary(DatabaseMessage message) {
+        return send(message, true);
+    }
+    
+    private DatabaseResponse send(DatabaseMessage message, boolean primaryOnly) {
         System.out.println("📡 Enviando mensaje TCP a BD: " + message.getOperation());
         
-        try (Socket socket = new Socket(databaseHost, databasePort)) {
-            socket.setSoTimeout(timeout);
-            
-            // Enviar mensaje
-            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-            out.writeObject(message);
-            out.flush();
-            
-            // Recibir respuesta
-            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-            DatabaseResponse response = (DatabaseResponse) in.readObject();
+        try {
+            DatabaseResponse response = primaryOnly && connectionPool instanceof ReplicatedDatabasePool
+                ? ((ReplicatedDatabasePool) connectionPool).sendToPrimary(message)
+                : connectionPool.send(message);
             
             System.out.println("✅ Respuesta TCP recibida: " + 
                              (response.isSuccess() ? "SUCCESS" : "ERROR"));
@@ -52,15 +238,43 @@ public class DatabaseCommunicationService {
             
             return response;
             
-        } catch (SocketTimeoutException e) {
-            System.err.println("⏰ Timeout en comunicación TCP con BD");
+        } catch (TimeoutException e) {
+            System.err.println("⏰ Timeout en comunicación TCP con BD: " + e.getMessage());
             return DatabaseResponse.error("Timeout en comunicación con base de datos");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DatabaseResponse.error("Comunicación con base de datos interrumpida");
         } catch (Exception e) {
             System.err.println("❌ Error en comunicación TCP: " + e.getMessage());
             return DatabaseResponse.error("Error de comunicación: " + e.getMessage());
         }
     }
     
+    /**
+     * Abre una transacción en el primario o en el fragmento del propietario.
+     * Debe cerrarse siempre; si no se confirmó, close() la deshace.
+     */
+    public DatabaseTransaction beginTransaction(User owner)
+            throws IOException, TimeoutException, InterruptedException {
+        System.out.println("📡 Iniciando transacción en BD (propietario: " + owner.getUsername() + ")");
+        return connectionPool.begin(owner);
+    }
+    
+    /**
+     * Recorre todas las filas de una entidad página a página, sin cargar el
+     * listado completo en memoria.
+     */
+    public DatabaseCursor openCursor(String entity, int pageSize) {
+        return openCursor(entity, null, null, pageSize);
+    }
+    
+    /**
+     * Recorre página a página el resultado de una consulta que incluya la columna ID.
+     */
+    public DatabaseCursor openCursor(String entity, String query, Object[] parameters, int pageSize) {
+        return new DatabaseCursor(connectionPool::sendAsync, entity, query, parameters, pageSize, timeout);
+    }
+    
     /**
      * Verifica la conectividad con el servidor de base de datos.
      */
@@ -68,7 +282,7 @@ public class DatabaseCommunicationService {
         System.out.println("🔍 Probando conexión TCP con BD...");
         
         DatabaseMessage pingMessage = new DatabaseMessage();
-        pingMessage.setOperation("PING");
+        pingMessage.setOperation(DatabaseMessage.PING);
         
         DatabaseResponse response = sendMessage(pingMessage);
         boolean connected = response.isSuccess();
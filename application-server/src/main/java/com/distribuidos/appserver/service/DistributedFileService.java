@@ -1,10 +1,15 @@
 package com.distribuidos.appserver.service;
 
+import com.distribuidos.shared.dto.ResolvedFile;
 import com.distribuidos.shared.model.File;
 import com.distribuidos.shared.model.User;
 import com.distribuidos.shared.rmi.StorageNodeInterface;
+import com.distribuidos.shared.tcp.ChangeEvent;
 import com.distribuidos.shared.tcp.DatabaseMessage;
 import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.DatabaseTransaction;
+import com.distribuidos.shared.tcp.ReplicatedDatabasePool;
+import com.distribuidos.shared.util.ChecksumUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -26,95 +31,158 @@ public class DistributedFileService {
     @Autowired
     private StorageNodeCommunicationService nodeService;
     
+    @Autowired
+    private RebalancingService rebalancingService;
+    
+    @Autowired
+    private FilePlacementRegistry placementRegistry;
+    
+    @Autowired
+    private MetadataCache metadataCache;
+    
     @Value("${replication.factor}")
     private int replicationFactor;
     
     /**
      * Almacena un archivo en el sistema distribuido.
+     *
+     * Primero reserva el id del archivo, que necesitan el anillo de hashing
+     * y los nodos, y copia el contenido en los nodos sin nada abierto en la
+     * base de datos. Después registra la entrada y sus réplicas en una
+     * transacción corta: si algo falla no queda un archivo sin réplicas en
+     * la base de datos, y las copias ya hechas se borran.
      */
     public boolean storeFile(String fileName, byte[] content, String ownerId) {
-        System.out.println("📁 Almacenando archivo: " + fileName + " (propietario: " + ownerId + ")");
-        
-        try {
-            // 1. Crear entrada en base de datos
-            File file = new File();
-            file.setName(fileName);
-            file.setFileSize((long) content.length); // Usar setFileSize en lugar de setSize
-            // file.setOwner() -- Para simplificar, usaremos solo el ownerId en el query
-            file.setCreatedAt(LocalDateTime.now()); // Usar LocalDateTime.now()
-            file.setUpdatedAt(LocalDateTime.now());
-            
-            DatabaseMessage dbMessage = new DatabaseMessage();
-            dbMessage.setOperation("CREATE_FILE");
-            dbMessage.setData(file);
-            
-            DatabaseResponse dbResponse = databaseService.sendMessage(dbMessage);
-            if (!dbResponse.isSuccess()) {
-                System.err.println("❌ Error creando entrada en BD: " + dbResponse.getErrorMessage());
-                return false;
-            }
-            
-            file = (File) dbResponse.getData();
-            System.out.println("✅ Entrada en BD creada con ID: " + file.getId());
-            
-            // 2. Seleccionar nodos para replicación
-            List<StorageNodeInterface> healthyNodes = nodeService.getHealthyNodes();
-            if (healthyNodes.size() < replicationFactor) {
-                System.err.println("❌ Nodos insuficientes para replicación. Disponibles: " + 
-                                 healthyNodes.size() + ", Requeridos: " + replicationFactor);
-                return false;
-            }
-            
-            // Seleccionar nodos aleatoriamente
-            Collections.shuffle(healthyNodes);
-            List<StorageNodeInterface> selectedNodes = healthyNodes.subList(0, replicationFactor);
+        try (ReplicatedDatabasePool.Session session = databaseService.openSession(ownerId)) {
+            System.out.println("📁 Almacenando archivo: " + fileName + " (propietario: " + ownerId + ")");
             
-            // 3. Almacenar en nodos seleccionados
-            List<String> successfulNodes = new ArrayList<>();
-            for (StorageNodeInterface node : selectedNodes) {
-                try {
-                    String nodeId = "Node-" + successfulNodes.size(); // Generar ID temporalmente
-                    System.out.println("📤 Enviando archivo a nodo: " + nodeId);
-                    
-                    // Usar la firma correcta del método storeFile
-                    String localPath = node.storeFile(file.getId(), file.getName(), content, "checksum-placeholder");
-                    if (localPath != null && !localPath.isEmpty()) {
-                        successfulNodes.add(nodeId);
-                        System.out.println("✅ Archivo almacenado en nodo: " + nodeId);
-                    } else {
-                        System.err.println("❌ Error almacenando en nodo: " + nodeId);
+            Map<String, String> replicaPaths = new LinkedHashMap<>();
+            File file = null;
+            boolean registered = false;
+            try {
+                // El checksum lo usa el rebalanceo al copiar réplicas
+                String checksum = ChecksumUtils.calculateSHA256(content);
+                file = new File();
+                file.setName(fileName);
+                file.setChecksum(checksum);
+                file.setFileSize((long) content.length); // Usar setFileSize en lugar de setSize
+                // El servidor de BD resuelve el propietario por nombre de usuario
+                User owner = new User();
+                owner.setUsername(ownerId);
+                file.setOwner(owner);
+                file.setCreatedAt(LocalDateTime.now()); // Usar LocalDateTime.now()
+                file.setUpdatedAt(LocalDateTime.now());
+                
+                // 1. Reservar el id del archivo sin crear todavía su entrada
+                DatabaseResponse reserveResponse = databaseService.sendMessage(
+                    new DatabaseMessage(DatabaseMessage.RESERVE_FILE_ID, DatabaseMessage.FILE, owner));
+                if (!reserveResponse.isSuccess()) {
+                    System.err.println("❌ Error reservando id en BD: " + reserveResponse.getErrorMessage());
+                    return false;
+                }
+                file.setId(((Number) reserveResponse.getData()).longValue());
+                System.out.println("✅ ID reservado en BD: " + file.getId());
+                
+                // 2. Seleccionar nodos para replicación según el anillo de hashing consistente
+                List<String> selectedNodes = rebalancingService.selectNodes(file.getId(), replicationFactor);
+                if (selectedNodes.size() < replicationFactor) {
+                    System.err.println("❌ Nodos insuficientes para replicación. Disponibles: " + 
+                                     selectedNodes.size() + ", Requeridos: " + replicationFactor);
+                    return false;
+                }
+                
+                // 3. Almacenar en nodos seleccionados
+                for (String nodeId : selectedNodes) {
+                    try {
+                        Optional<StorageNodeInterface> nodeOpt = nodeService.getNode(nodeId);
+                        if (!nodeOpt.isPresent()) {
+                            System.err.println("❌ Nodo no disponible: " + nodeId);
+                            continue;
+                        }
+                        System.out.println("📤 Enviando archivo a nodo: " + nodeId);
+                        
+                        String localPath = nodeOpt.get().storeFile(file.getId(), file.getName(), content, checksum);
+                        if (localPath != null && !localPath.isEmpty()) {
+                            replicaPaths.put(nodeId, localPath);
+                            System.out.println("✅ Archivo almacenado en nodo: " + nodeId);
+                        } else {
+                            System.err.println("❌ Error almacenando en nodo: " + nodeId);
+                        }
+                    } catch (RemoteException e) {
+                        System.err.println("❌ Error de comunicación con nodo: " + e.getMessage());
                     }
-                } catch (RemoteException e) {
-                    System.err.println("❌ Error de comunicación con nodo: " + e.getMessage());
                 }
-            }
-            
-            // 4. Actualizar réplicas en base de datos
-            if (successfulNodes.size() > 0) {
-                DatabaseMessage replicaMessage = new DatabaseMessage();
-                replicaMessage.setOperation("UPDATE_FILE_REPLICAS");
-                Map<String, Object> replicaData = new HashMap<>();
-                replicaData.put("fileId", file.getId());
-                replicaData.put("nodeIds", successfulNodes);
-                replicaMessage.setData(replicaData);
+                if (replicaPaths.isEmpty()) {
+                    System.err.println("❌ No se pudo almacenar en ningún nodo");
+                    return false;
+                }
                 
-                DatabaseResponse replicaResponse = databaseService.sendMessage(replicaMessage);
-                if (replicaResponse.isSuccess()) {
-                    System.out.println("✅ Información de réplicas actualizada. Nodos: " + successfulNodes);
-                    return true;
-                } else {
-                    System.err.println("⚠️ Archivo almacenado pero error actualizando réplicas");
-                    return true; // El archivo se almacenó, aunque falle la actualización de réplicas
+                // 4. Crear la entrada con el id reservado y registrar réplicas en una sola transacción
+                try (DatabaseTransaction transaction = databaseService.beginTransaction(owner)) {
+                    DatabaseMessage dbMessage = new DatabaseMessage();
+                    dbMessage.setOperation(DatabaseMessage.CREATE_FILE);
+                    dbMessage.setData(file);
+                    
+                    DatabaseResponse dbResponse = transaction.send(dbMessage);
+                    if (!dbResponse.isSuccess()) {
+                        System.err.println("❌ Error creando entrada en BD: " + dbResponse.getErrorMessage());
+                        return false;
+                    }
+                    
+                    DatabaseMessage replicaMessage = new DatabaseMessage();
+                    replicaMessage.setOperation(DatabaseMessage.UPDATE_FILE_REPLICAS);
+                    Map<String, Object> replicaData = new HashMap<>();
+                    replicaData.put("fileId", file.getId());
+                    replicaData.put("replicas", replicaPaths);
+                    replicaMessage.setData(replicaData);
+                    
+                    DatabaseResponse replicaResponse = transaction.send(replicaMessage);
+                    if (!replicaResponse.isSuccess()) {
+                        System.err.println("❌ Error registrando réplicas: " + replicaResponse.getErrorMessage());
+                        return false;
+                    }
+                    DatabaseResponse commitResponse = transaction.commit();
+                    if (!commitResponse.isSuccess()) {
+                        System.err.println("❌ Error confirmando el archivo en BD: " + commitResponse.getErrorMessage());
+                        return false;
+                    }
+                    registered = true;
                 }
-            } else {
-                System.err.println("❌ No se pudo almacenar en ningún nodo");
+                
+                metadataCache.invalidate(DatabaseMessage.FILE, file.getId(), ChangeEvent.INSERT);
+                placementRegistry.register(file.getId(), file.getName(), checksum, content.length, replicaPaths);
+                System.out.println("✅ Archivo y réplicas registrados en BD con ID: " + file.getId() +
+                                 ". Nodos: " + replicaPaths.keySet());
+                return true;
+                
+            } catch (Exception e) {
+                System.err.println("❌ Error general almacenando archivo: " + e.getMessage());
+                e.printStackTrace();
                 return false;
+            } finally {
+                if (!registered) {
+                    discardCopies(file, replicaPaths);
+                }
             }
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error general almacenando archivo: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        }
+    }
+    
+    /**
+     * Borra las copias de un archivo cuya entrada en BD se deshizo
+     */
+    private void discardCopies(File file, Map<String, String> replicaPaths) {
+        for (Map.Entry<String, String> replica : replicaPaths.entrySet()) {
+            try {
+                Optional<StorageNodeInterface> node = nodeService.getNode(replica.getKey());
+                if (node.isPresent() && node.get().deleteFile(file.getId(), replica.getValue())) {
+                    System.out.println("🗑️ Copia descartada en nodo: " + replica.getKey());
+                    continue;
+                }
+            } catch (RemoteException e) {
+                System.err.println("❌ Error de comunicación con nodo: " + e.getMessage());
+            }
+            System.err.println("⚠️ No se pudo descartar la copia del archivo " + file.getId() +
+                             " en nodo: " + replica.getKey());
         }
     }
     
@@ -122,74 +190,57 @@ public class DistributedFileService {
      * Recupera un archivo del sistema distribuido.
      */
     public byte[] retrieveFile(String fileName, String userId) {
-        System.out.println("📥 Recuperando archivo: " + fileName + " (usuario: " + userId + ")");
-        
-        try {
-            // 1. Buscar archivo en base de datos
-            DatabaseMessage dbMessage = new DatabaseMessage();
-            dbMessage.setOperation("GET_FILE_BY_NAME");
-            Map<String, Object> fileQuery = new HashMap<>();
-            fileQuery.put("fileName", fileName);
-            fileQuery.put("userId", userId);
-            dbMessage.setData(fileQuery);
-            
-            DatabaseResponse dbResponse = databaseService.sendMessage(dbMessage);
-            if (!dbResponse.isSuccess()) {
-                System.err.println("❌ Archivo no encontrado en BD: " + fileName);
-                return null;
-            }
-            
-            File file = (File) dbResponse.getData();
-            System.out.println("✅ Archivo encontrado en BD con ID: " + file.getId());
-            
-            // 2. Obtener nodos con réplicas
-            DatabaseMessage replicaMessage = new DatabaseMessage();
-            replicaMessage.setOperation("GET_FILE_REPLICAS");
-            replicaMessage.setData(file.getId());
-            
-            DatabaseResponse replicaResponse = databaseService.sendMessage(replicaMessage);
-            if (!replicaResponse.isSuccess()) {
-                System.err.println("❌ No se encontraron réplicas para archivo: " + fileName);
-                return null;
-            }
-            
-            @SuppressWarnings("unchecked")
-            List<String> replicaNodes = (List<String>) replicaResponse.getData();
-            System.out.println("📍 Réplicas encontradas en nodos: " + replicaNodes);
+        try (ReplicatedDatabasePool.Session session = databaseService.openSession(userId)) {
+            System.out.println("📥 Recuperando archivo: " + fileName + " (usuario: " + userId + ")");
             
-            // 3. Intentar recuperar de nodos disponibles
-            for (String nodeId : replicaNodes) {
-                try {
-                    Optional<StorageNodeInterface> nodeOpt = nodeService.getNode("StorageNode" + nodeId);
-                    if (nodeOpt.isPresent()) {
-                        StorageNodeInterface node = nodeOpt.get();
-                        System.out.println("📤 Solicitando archivo a nodo: " + nodeId);
-                        
-                        // Usar la firma correcta del método retrieveFile (necesitamos la ruta local)
-                        // Por ahora usar una ruta placeholder - esto debería obtenerse de la BD
-                        String localPath = "/storage/" + file.getId() + "_" + file.getName();
-                        byte[] content = node.retrieveFile(file.getId(), localPath);
-                        if (content != null) {
-                            System.out.println("✅ Archivo recuperado exitosamente desde nodo: " + nodeId);
-                            return content;
+            try {
+                // 1. Resolver archivo y réplicas en una sola consulta
+                ResolvedFile resolved = resolveFile(fileName, userId);
+                if (resolved == null) {
+                    System.err.println("❌ Archivo no encontrado en BD: " + fileName);
+                    return null;
+                }
+                
+                File file = resolved.getFile();
+                System.out.println("✅ Archivo encontrado en BD con ID: " + file.getId());
+                if (resolved.getReplicas().isEmpty()) {
+                    System.err.println("❌ No se encontraron réplicas para archivo: " + fileName);
+                    return null;
+                }
+                System.out.println("📍 Réplicas encontradas en nodos: " + resolved.getReplicas());
+                
+                // 2. Intentar recuperar de nodos disponibles
+                for (ResolvedFile.ReplicaLocation replica : resolved.getReplicas()) {
+                    String nodeId = replica.getNodeId();
+                    try {
+                        Optional<StorageNodeInterface> nodeOpt = nodeService.getNode(nodeId);
+                        if (nodeOpt.isPresent()) {
+                            StorageNodeInterface node = nodeOpt.get();
+                            System.out.println("📤 Solicitando archivo a nodo: " + nodeId);
+                            
+                            byte[] content = node.retrieveFile(file.getId(), localPathOf(replica, file));
+                            if (content != null) {
+                                System.out.println("✅ Archivo recuperado exitosamente desde nodo: " + nodeId);
+                                return content;
+                            } else {
+                                System.out.println("⚠️ Archivo no encontrado en nodo: " + nodeId);
+                            }
                         } else {
-                            System.out.println("⚠️ Archivo no encontrado en nodo: " + nodeId);
+                            System.out.println("❌ Nodo no disponible: " + nodeId);
                         }
-                    } else {
-                        System.out.println("❌ Nodo no disponible: " + nodeId);
+                    } catch (RemoteException e) {
+                        System.err.println("❌ Error comunicándose con nodo " + nodeId + ": " + e.getMessage());
                     }
-                } catch (RemoteException e) {
-                    System.err.println("❌ Error comunicándose con nodo " + nodeId + ": " + e.getMessage());
                 }
+                
+                System.err.println("❌ No se pudo recuperar el archivo de ningún nodo");
+                return null;
+                
+            } catch (Exception e) {
+                System.err.println("❌ Error general recuperando archivo: " + e.getMessage());
+                e.printStackTrace();
+                return null;
             }
-            
-            System.err.println("❌ No se pudo recuperar el archivo de ningún nodo");
-            return null;
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error general recuperando archivo: " + e.getMessage());
-            e.printStackTrace();
-            return null;
         }
     }
     
@@ -197,21 +248,23 @@ public class DistributedFileService {
      * Lista archivos del usuario.
      */
     public List<File> listUserFiles(String userId) {
-        System.out.println("📋 Listando archivos del usuario: " + userId);
-        
-        DatabaseMessage dbMessage = new DatabaseMessage();
-        dbMessage.setOperation("LIST_USER_FILES");
-        dbMessage.setData(userId);
-        
-        DatabaseResponse dbResponse = databaseService.sendMessage(dbMessage);
-        if (dbResponse.isSuccess()) {
-            @SuppressWarnings("unchecked")
-            List<File> files = (List<File>) dbResponse.getData();
-            System.out.println("✅ " + files.size() + " archivos encontrados para usuario: " + userId);
-            return files;
-        } else {
-            System.err.println("❌ Error listando archivos: " + dbResponse.getErrorMessage());
-            return new ArrayList<>();
+        try (ReplicatedDatabasePool.Session session = databaseService.openSession(userId)) {
+            System.out.println("📋 Listando archivos del usuario: " + userId);
+            
+            DatabaseMessage dbMessage = new DatabaseMessage();
+            dbMessage.setOperation(DatabaseMessage.LIST_USER_FILES);
+            dbMessage.setData(userId);
+            
+            DatabaseResponse dbResponse = databaseService.sendMessage(dbMessage);
+            if (dbResponse.isSuccess()) {
+                @SuppressWarnings("unchecked")
+                List<File> files = (List<File>) dbResponse.getData();
+                System.out.println("✅ " + files.size() + " archivos encontrados para usuario: " + userId);
+                return files;
+            } else {
+                System.err.println("❌ Error listando archivos: " + dbResponse.getErrorMessage());
+                return new ArrayList<>();
+            }
         }
     }
     
@@ -219,44 +272,27 @@ public class DistributedFileService {
      * Elimina un archivo del sistema distribuido.
      */
     public boolean deleteFile(String fileName, String userId) {
-        System.out.println("🗑️ Eliminando archivo: " + fileName + " (usuario: " + userId + ")");
-        
-        try {
-            // 1. Buscar archivo en base de datos
-            DatabaseMessage dbMessage = new DatabaseMessage();
-            dbMessage.setOperation("GET_FILE_BY_NAME");
-            Map<String, Object> fileQuery = new HashMap<>();
-            fileQuery.put("fileName", fileName);
-            fileQuery.put("userId", userId);
-            dbMessage.setData(fileQuery);
-            
-            DatabaseResponse dbResponse = databaseService.sendMessage(dbMessage);
-            if (!dbResponse.isSuccess()) {
-                System.err.println("❌ Archivo no encontrado: " + fileName);
-                return false;
-            }
-            
-            File file = (File) dbResponse.getData();
+        try (ReplicatedDatabasePool.Session session = databaseService.openSession(userId)) {
+            System.out.println("🗑️ Eliminando archivo: " + fileName + " (usuario: " + userId + ")");
             
-            // 2. Obtener nodos con réplicas
-            DatabaseMessage replicaMessage = new DatabaseMessage();
-            replicaMessage.setOperation("GET_FILE_REPLICAS");
-            replicaMessage.setData(file.getId());
-            
-            DatabaseResponse replicaResponse = databaseService.sendMessage(replicaMessage);
-            if (replicaResponse.isSuccess()) {
-                @SuppressWarnings("unchecked")
-                List<String> replicaNodes = (List<String>) replicaResponse.getData();
+            try {
+                // 1. Resolver archivo y réplicas en una sola consulta
+                ResolvedFile resolved = resolveFile(fileName, userId);
+                if (resolved == null) {
+                    System.err.println("❌ Archivo no encontrado: " + fileName);
+                    return false;
+                }
+                
+                File file = resolved.getFile();
                 
-                // 3. Eliminar de nodos
-                for (String nodeId : replicaNodes) {
+                // 2. Eliminar de nodos
+                for (ResolvedFile.ReplicaLocation replica : resolved.getReplicas()) {
+                    String nodeId = replica.getNodeId();
                     try {
-                        Optional<StorageNodeInterface> nodeOpt = nodeService.getNode("StorageNode" + nodeId);
+                        Optional<StorageNodeInterface> nodeOpt = nodeService.getNode(nodeId);
                         if (nodeOpt.isPresent()) {
                             StorageNodeInterface node = nodeOpt.get();
-                            // Usar la firma correcta del método deleteFile
-                            String localPath = "/storage/" + file.getId() + "_" + file.getName();
-                            boolean deleted = node.deleteFile(file.getId(), localPath);
+                            boolean deleted = node.deleteFile(file.getId(), localPathOf(replica, file));
                             System.out.println((deleted ? "✅" : "❌") + 
                                              " Eliminación en nodo " + nodeId + ": " + 
                                              (deleted ? "SUCCESS" : "FAILED"));
@@ -265,26 +301,62 @@ public class DistributedFileService {
                         System.err.println("❌ Error eliminando de nodo " + nodeId + ": " + e.getMessage());
                     }
                 }
-            }
-            
-            // 4. Eliminar de base de datos
-            DatabaseMessage deleteMessage = new DatabaseMessage();
-            deleteMessage.setOperation("DELETE_FILE");
-            deleteMessage.setData(file.getId());
-            
-            DatabaseResponse deleteResponse = databaseService.sendMessage(deleteMessage);
-            if (deleteResponse.isSuccess()) {
-                System.out.println("✅ Archivo eliminado completamente: " + fileName);
-                return true;
-            } else {
-                System.err.println("❌ Error eliminando de BD: " + deleteResponse.getErrorMessage());
+                
+                placementRegistry.remove(file.getId());
+                
+                // 3. Eliminar de base de datos
+                DatabaseMessage deleteMessage = new DatabaseMessage();
+                deleteMessage.setOperation(DatabaseMessage.DELETE_FILE);
+                deleteMessage.setData(file.getId());
+                
+                DatabaseResponse deleteResponse = databaseService.sendMessage(deleteMessage);
+                metadataCache.invalidate(DatabaseMessage.FILE, file.getId(), ChangeEvent.DELETE);
+                if (deleteResponse.isSuccess()) {
+                    System.out.println("✅ Archivo eliminado completamente: " + fileName);
+                    return true;
+                } else {
+                    System.err.println("❌ Error eliminando de BD: " + deleteResponse.getErrorMessage());
+                    return false;
+                }
+                
+            } catch (Exception e) {
+                System.err.println("❌ Error general eliminando archivo: " + e.getMessage());
+                e.printStackTrace();
                 return false;
             }
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error general eliminando archivo: " + e.getMessage());
-            e.printStackTrace();
-            return false;
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Archivo y ubicación de sus réplicas, desde la caché de metadatos o con
+     * RESOLVE_FILE; null si no existe
+     */
+    private ResolvedFile resolveFile(String fileName, String userId) {
+        return metadataCache.resolve(fileName, userId,
+                                     fromPrimary -> loadResolvedFile(fileName, userId, fromPrimary));
+    }
+    
+    private ResolvedFile loadResolvedFile(String fileName, String userId, boolean fromPrimary) {
+        DatabaseMessage dbMessage = new DatabaseMessage();
+        dbMessage.setOperation(DatabaseMessage.RESOLVE_FILE);
+        Map<String, Object> fileQuery = new HashMap<>();
+        fileQuery.put("fileName", fileName);
+        fileQuery.put("userId", userId);
+        dbMessage.setData(fileQuery);
+        
+        DatabaseResponse dbResponse = fromPrimary
+            ? databaseService.sendToPrimary(dbMessage)
+            : databaseService.sendMessage(dbMessage);
+        return dbResponse.isSuccess() ? (ResolvedFile) dbResponse.getData() : null;
+    }
+    
+    /**
+     * Ruta local registrada de la réplica; las réplicas antiguas sin ruta usan la convención del nodo
+     */
+    private static String localPathOf(ResolvedFile.ReplicaLocation replica, File file) {
+        if (replica.getLocalPath() != null && !replica.getLocalPath().isEmpty()) {
+            return replica.getLocalPath();
+        }
+        return "/storage/" + file.getId() + "_" + file.getName();
+    }
+}
@@ -0,0 +1,107 @@
+package com.distribuidos.appserver.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catálogo en memoria de la colocación actual de cada archivo.
+ * Lo alimenta DistributedFileService y lo consulta el rebalanceador, que
+ * antes de cada ejecución lo recarga desde la tabla file_replicas: la base
+ * de datos es la fuente de verdad y el catálogo se pierde al reiniciar.
+ */
+@Component
+public class FilePlacementRegistry {
+
+    /**
+     * Ubicación actual de un archivo en los nodos.
+     */
+    public static class Placement {
+        private final Long fileId;
+        private final String fileName;
+        private final String checksum;
+        private final long size;
+        // Nodo -> ruta local de la réplica en ese nodo
+        private final Map<String, String> replicas;
+
+        public Placement(Long fileId, String fileName, String checksum, long size, Map<String, String> replicas) {
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.checksum = checksum;
+            this.size = size;
+            this.replicas = Collections.synchronizedMap(new LinkedHashMap<>(replicas));
+        }
+
+        public Long getFileId() { return fileId; }
+        public String getFileName() { return fileName; }
+        public String getChecksum() { return checksum; }
+        public long getSize() { return size; }
+
+        public Set<String> getNodes() {
+            synchronized (replicas) {
+                return Collections.unmodifiableSet(new LinkedHashSet<>(replicas.keySet()));
+            }
+        }
+
+        /**
+         * Réplicas actuales con su ruta local, en orden de registro
+         */
+        public Map<String, String> getReplicas() {
+            synchronized (replicas) {
+                return new LinkedHashMap<>(replicas);
+            }
+        }
+    }
+
+    private final Map<Long, Placement> placements = new ConcurrentHashMap<>();
+
+    /**
+     * Registra (o reemplaza) la colocación de un archivo.
+     */
+    public void register(Long fileId, String fileName, String checksum, long size, Map<String, String> replicas) {
+        placements.put(fileId, new Placement(fileId, fileName, checksum, size, replicas));
+    }
+
+    /**
+     * Reemplaza todo el catálogo, p. ej. con lo leído de la base de datos.
+     */
+    public void replaceAll(Collection<Placement> loaded) {
+        Map<Long, Placement> byId = new HashMap<>();
+        for (Placement placement : loaded) {
+            byId.put(placement.getFileId(), placement);
+        }
+        placements.keySet().retainAll(byId.keySet());
+        placements.putAll(byId);
+    }
+
+    public Optional<Placement> get(Long fileId) {
+        return Optional.ofNullable(placements.get(fileId));
+    }
+
+    public Collection<Placement> getAll() {
+        return new ArrayList<>(placements.values());
+    }
+
+    public void addReplica(Long fileId, String nodeName, String localPath) {
+        Placement placement = placements.get(fileId);
+        if (placement != null) {
+            placement.replicas.put(nodeName, localPath);
+        }
+    }
+
+    public void removeReplica(Long fileId, String nodeName) {
+        Placement placement = placements.get(fileId);
+        if (placement != null) {
+            placement.replicas.remove(nodeName);
+        }
+    }
+
+    public void remove(Long fileId) {
+        placements.remove(fileId);
+    }
+
+    public int size() {
+        return placements.size();
+    }
+}
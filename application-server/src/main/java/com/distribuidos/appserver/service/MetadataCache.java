@@ -0,0 +1,147 @@
+package com.distribuidos.appserver.service;
+
+import com.distribuidos.shared.dto.ResolvedFile;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.ChangeSubscription;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché local de archivos resueltos (RESOLVE_FILE) que se mantiene
+ * coherente con el servidor de base de datos gracias a su flujo de cambios.
+ *
+ * Solo se usa mientras la suscripción a los cambios está activa. Cada
+ * evento elimina las entradas del archivo que cambió; los cambios que no
+ * se pueden asociar a un archivo (un archivo nuevo puede ocultar a otro con
+ * el mismo nombre, borrados de usuarios o nodos, SQL libre) y la pérdida de
+ * eventos vacían la caché. Una carga durante la que llega un cambio no se
+ * guarda, porque pudo leer el estado anterior.
+ *
+ * Las cargas que se van a guardar se leen del primario: una réplica puede
+ * ir por detrás del evento que invalidó la entrada, y esa copia atrasada
+ * quedaría en la caché hasta el siguiente cambio del archivo. Al llegar a
+ * max-entries se descarta la entrada usada hace más tiempo.
+ */
+@Service
+public class MetadataCache implements ChangeSubscription.Listener {
+
+    /**
+     * Carga un archivo resuelto; con fromPrimary no puede leer de una réplica
+     */
+    @FunctionalInterface
+    public interface Loader {
+        ResolvedFile load(boolean fromPrimary);
+    }
+
+    @Autowired
+    private DatabaseCommunicationService databaseService;
+
+    @Value("${metadata.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // En orden de acceso; solo se usa dentro de synchronized (this)
+    private final Map<String, ResolvedFile> resolvedFiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ResolvedFile> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void initialize() {
+        databaseService.addChangeListener(this);
+    }
+
+    /**
+     * Archivo resuelto desde la caché o, si no está, con loader
+     */
+    public ResolvedFile resolve(String fileName, String userId, Loader loader) {
+        if (!databaseService.isChangeStreamLive()) {
+            return loader.load(false);
+        }
+        String key = userId + '\0' + fileName;
+        ResolvedFile cached;
+        long loadedAt;
+        synchronized (this) {
+            cached = resolvedFiles.get(key);
+            loadedAt = generation.get();
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        ResolvedFile loaded = loader.load(true);
+        if (loaded != null) {
+            synchronized (this) {
+                if (generation.get() == loadedAt && databaseService.isChangeStreamLive()) {
+                    resolvedFiles.put(key, loaded);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void onEvents(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            invalidate(event.getEntity(), event.getId(), event.getOperation());
+        }
+    }
+
+    @Override
+    public void onReset() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            resolvedFiles.clear();
+        }
+    }
+
+    /**
+     * Aplica un cambio; también para las escrituras propias, sin esperar a su evento
+     */
+    public void invalidate(String entity, Long id, String operation) {
+        if (DatabaseMessage.PERMISSION.equals(entity)) {
+            return;
+        }
+        boolean insert = ChangeEvent.INSERT.equals(operation);
+        // Un usuario, directorio o nodo nuevo no cambia ningún archivo ya resuelto
+        if (insert && (DatabaseMessage.USER.equals(entity) || DatabaseMessage.DIRECTORY.equals(entity)
+                       || DatabaseMessage.NODE.equals(entity))) {
+            return;
+        }
+        boolean sameFile = id != null && !insert
+            && (DatabaseMessage.FILE.equals(entity) || DatabaseMessage.FILE_REPLICA.equals(entity));
+        synchronized (this) {
+            generation.incrementAndGet();
+            if (sameFile) {
+                resolvedFiles.values().removeIf(resolved -> id.equals(resolved.getFile().getId()));
+            } else {
+                resolvedFiles.clear();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return resolvedFiles.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,107 @@
+package com.distribuidos.appserver.service;
+
+import com.distribuidos.shared.rmi.ApplicationServerInterface;
+import com.distribuidos.shared.rmi.NodeHeartbeatPublisher;
+import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.TunedRMIClientSocketFactory;
+import com.distribuidos.shared.rmi.TunedRMIServerSocketFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+
+/**
+ * Punto de entrada RMI del servidor de aplicación para los nodos.
+ * Recibe registros y heartbeats empujados por los nodos y los vuelca en la
+ * tabla de membresía de {@link StorageNodeCommunicationService}.
+ */
+@Service
+public class NodeRegistrationService implements ApplicationServerInterface {
+
+    @Autowired
+    private StorageNodeCommunicationService nodeService;
+
+    @Autowired
+    private RebalancingService rebalancingService;
+
+    @Value("${app.rmi.port:" + NodeHeartbeatPublisher.DEFAULT_APPLICATION_SERVER_PORT + "}")
+    private int rmiPort;
+
+    private Registry registry;
+
+    @PostConstruct
+    public void initialize() {
+        try {
+            UnicastRemoteObject.exportObject(this, 0,
+                new TunedRMIClientSocketFactory(), new TunedRMIServerSocketFactory());
+            registry = LocateRegistry.createRegistry(rmiPort);
+            registry.rebind(NodeHeartbeatPublisher.APPLICATION_SERVER_NAME, this);
+            System.out.println("📡 Registro de nodos disponible en rmi://localhost:" + rmiPort + "/" +
+                             NodeHeartbeatPublisher.APPLICATION_SERVER_NAME);
+        } catch (RemoteException e) {
+            // Sin registro empujado el servidor sigue funcionando con descubrimiento por sondeo
+            System.err.println("⚠️ No se pudo publicar el registro de nodos en puerto " + rmiPort + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+            if (registry != null) {
+                UnicastRemoteObject.unexportObject(registry, true);
+            }
+        } catch (NoSuchObjectException e) {
+            // Ya no estaba exportado
+        }
+    }
+
+    @Override
+    public boolean registerNode(String nodeId, String hostname, Integer port,
+                                String storagePath, Long totalCapacity) throws RemoteException {
+        if (nodeId == null || hostname == null || port == null) {
+            return false;
+        }
+        boolean registered = nodeService.registerNode(nodeId, hostname, port, totalCapacity);
+        if (registered) {
+            try {
+                // Incorporar el nodo al anillo sin esperar al siguiente ciclo de monitoreo
+                rebalancingService.syncMembership();
+            } catch (Exception e) {
+                System.err.println("❌ Error sincronizando membresía tras registro: " + e.getMessage());
+            }
+        }
+        return registered;
+    }
+
+    @Override
+    public boolean unregisterNode(String nodeId) throws RemoteException {
+        return nodeService.unregisterNode(nodeId);
+    }
+
+    @Override
+    public boolean updateNodeHeartbeat(String nodeId, NodeInfo nodeInfo) throws RemoteException {
+        return nodeService.recordHeartbeat(nodeId, nodeInfo);
+    }
+
+    @Override
+    public List<NodeInfo> getActiveNodes() throws RemoteException {
+        return nodeService.getActiveNodeInfos();
+    }
+
+    @Override
+    public boolean notifyFileOperation(Long fileId, String nodeId, String operation,
+                                       boolean success, String message) throws RemoteException {
+        System.out.println((success ? "✅ " : "❌ ") + operation + " de archivo " + fileId +
+                         " en " + nodeId + (message != null ? ": " + message : ""));
+        return true;
+    }
+}
@@ -0,0 +1,452 @@
+package com.distribuidos.appserver.service;
+
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.DatabaseCursor;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.util.ChecksumUtils;
+import com.distribuidos.shared.util.ConsistentHashRing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio de colocación y rebalanceo de réplicas.
+ *
+ * La colocación objetivo se calcula con un anillo de hashing consistente cuyos
+ * nodos virtuales se ponderan por la capacidad total de cada nodo. Cuando un
+ * nodo se agrega o se retira, solo se mueven los archivos cuya lista de
+ * preferencia cambió, a una tasa limitada para no saturar los nodos.
+ *
+ * Cada ejecución parte de las réplicas registradas en la base de datos, así
+ * que también rebalancea los archivos guardados antes de un reinicio. La
+ * nueva colocación de un archivo se guarda en la base de datos antes de
+ * borrar las réplicas sobrantes, para que las lecturas y borrados nunca
+ * apunten a una copia eliminada.
+ */
+@Service
+public class RebalancingService {
+
+    public enum State { IDLE, RUNNING, COMPLETED, FAILED }
+
+    @Autowired
+    private StorageNodeCommunicationService nodeService;
+
+    @Autowired
+    private FilePlacementRegistry placementRegistry;
+
+    @Autowired
+    private DatabaseCommunicationService databaseService;
+
+    @Autowired
+    private MetadataCache metadataCache;
+
+    @Value("${replication.factor}")
+    private int replicationFactor;
+
+    @Value("${rebalance.max-moves-per-second:5}")
+    private int maxMovesPerSecond;
+
+    @Value("${rebalance.check-interval-seconds:30}")
+    private int checkIntervalSeconds;
+
+    private static final int PLACEMENT_PAGE_SIZE = 500;
+
+    // Réplicas con su archivo y nodo, paginadas por el ID de la réplica
+    private static final String PLACEMENT_QUERY =
+        "SELECT r.id AS id, r.file_id AS file_id, f.name AS file_name, f.checksum AS checksum, " +
+        "f.file_size AS file_size, n.node_id AS node_name, r.local_path AS local_path " +
+        "FROM file_replicas r JOIN files f ON f.id = r.file_id JOIN nodes n ON n.id = r.node_id";
+
+    private final ConsistentHashRing ring = new ConsistentHashRing();
+    private final Set<String> decommissionedNodes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebalanceExecutor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService membershipMonitor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean rerunRequested = false;
+
+    // Progreso de la última ejecución
+    private volatile State state = State.IDLE;
+    private volatile String lastReason;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private final AtomicInteger filesToMigrate = new AtomicInteger();
+    private final AtomicInteger plannedMoves = new AtomicInteger();
+    private final AtomicInteger completedMoves = new AtomicInteger();
+    private final AtomicInteger failedMoves = new AtomicInteger();
+    private final AtomicInteger removedReplicas = new AtomicInteger();
+    private final AtomicLong bytesMoved = new AtomicLong();
+
+    /**
+     * Movimiento pendiente para un archivo: réplicas a crear y réplicas a retirar.
+     */
+    static class Migration {
+        final FilePlacementRegistry.Placement placement;
+        final List<String> additions;
+        final List<String> removals;
+
+        Migration(FilePlacementRegistry.Placement placement, List<String> additions, List<String> removals) {
+            this.placement = placement;
+            this.additions = additions;
+            this.removals = removals;
+        }
+    }
+
+    @PostConstruct
+    public void initialize() {
+        membershipMonitor.scheduleAtFixedRate(this::syncMembershipSafely,
+            checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+        System.out.println("⚖️ Rebalanceo habilitado (máx. " + maxMovesPerSecond + " movimientos/s)");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        membershipMonitor.shutdownNow();
+        rebalanceExecutor.shutdownNow();
+    }
+
+    /**
+     * Selecciona los nodos destino de un archivo nuevo según el anillo.
+     * Los nodos no saludables de la lista de preferencia se saltan.
+     */
+    public List<String> selectNodes(Long fileId, int count) {
+        List<String> healthyNodes = nodeService.getHealthyNodeNames();
+        registerNewNodes(healthyNodes);
+
+        List<String> selected = new ArrayList<>();
+        for (String nodeName : ring.getPreferenceList(String.valueOf(fileId), ring.size())) {
+            if (selected.size() >= count) {
+                break;
+            }
+            if (healthyNodes.contains(nodeName)) {
+                selected.add(nodeName);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Compara los nodos saludables con el anillo y rebalancea si hay nodos nuevos.
+     */
+    public void syncMembership() {
+        registerNewNodes(nodeService.getHealthyNodeNames());
+    }
+
+    private void syncMembershipSafely() {
+        try {
+            syncMembership();
+        } catch (Exception e) {
+            System.err.println("❌ Error sincronizando membresía del anillo: " + e.getMessage());
+        }
+    }
+
+    private synchronized void registerNewNodes(List<String> healthyNodes) {
+        List<String> added = new ArrayList<>();
+        for (String nodeName : healthyNodes) {
+            if (!ring.containsNode(nodeName) && !decommissionedNodes.contains(nodeName)) {
+                long capacity = nodeService.getNodeCapacity(nodeName)
+                    .filter(c -> c > 0)
+                    .orElse(ConsistentHashRing.DEFAULT_WEIGHT_UNIT);
+                ring.addNode(nodeName, capacity);
+                added.add(nodeName);
+            }
+        }
+
+        if (!added.isEmpty()) {
+            System.out.println("➕ Nodos agregados al anillo: " + added);
+            requestRebalance("Nodos agregados: " + added);
+        }
+    }
+
+    /**
+     * Retira un nodo del anillo y migra sus réplicas a los nuevos responsables.
+     * El nodo sigue sirviendo como origen de datos hasta terminar la migración.
+     */
+    public synchronized void decommissionNode(String nodeName) {
+        if (!ring.containsNode(nodeName)) {
+            throw new IllegalArgumentException("Nodo no pertenece al anillo: " + nodeName);
+        }
+        decommissionedNodes.add(nodeName);
+        ring.removeNode(nodeName);
+        System.out.println("➖ Nodo retirado del anillo: " + nodeName);
+        requestRebalance("Retiro de nodo: " + nodeName);
+    }
+
+    /**
+     * Solicita una ejecución del rebalanceo. Si ya hay una en curso,
+     * se repite al terminar con la membresía actualizada.
+     *
+     * @return true si se inició una nueva ejecución
+     */
+    public boolean requestRebalance(String reason) {
+        if (!running.compareAndSet(false, true)) {
+            rerunRequested = true;
+            lastReason = reason;
+            return false;
+        }
+        rebalanceExecutor.submit(() -> runRebalance(reason));
+        return true;
+    }
+
+    private void runRebalance(String reason) {
+        try {
+            do {
+                rerunRequested = false;
+                executePlan(reason);
+                reason = lastReason;
+            } while (rerunRequested);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void executePlan(String reason) {
+        lastReason = reason;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        completedMoves.set(0);
+        failedMoves.set(0);
+        removedReplicas.set(0);
+        bytesMoved.set(0);
+        state = State.RUNNING;
+
+        try {
+            List<Migration> plan = computePlan();
+            filesToMigrate.set(plan.size());
+            plannedMoves.set(plan.stream().mapToInt(m -> m.additions.size()).sum());
+            System.out.println("⚖️ Rebalanceo iniciado (" + reason + "): " + plan.size() +
+                             " archivos, " + plannedMoves.get() + " movimientos");
+
+            long moveIntervalMillis = 1000L / Math.max(1, maxMovesPerSecond);
+            for (Migration migration : plan) {
+                executeMigration(migration, moveIntervalMillis);
+            }
+
+            state = failedMoves.get() == 0 ? State.COMPLETED : State.FAILED;
+            System.out.println("✅ Rebalanceo finalizado: " + completedMoves.get() + "/" + plannedMoves.get() +
+                             " movimientos, " + failedMoves.get() + " fallidos");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = State.FAILED;
+        } catch (Exception e) {
+            System.err.println("❌ Error durante el rebalanceo: " + e.getMessage());
+            state = State.FAILED;
+        } finally {
+            finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Recarga la colocación desde la base de datos y calcula el plan
+     */
+    private List<Migration> computePlan() {
+        placementRegistry.replaceAll(loadPlacements());
+        return planMigrations(placementRegistry.getAll(), ring, replicationFactor);
+    }
+
+    /**
+     * Lee todas las réplicas registradas en la base de datos, agrupadas por archivo
+     */
+    private Collection<FilePlacementRegistry.Placement> loadPlacements() {
+        Map<Long, Map<String, Object>> files = new LinkedHashMap<>();
+        Map<Long, Map<String, String>> replicas = new HashMap<>();
+        DatabaseCursor cursor = databaseService.openCursor(DatabaseMessage.FILE_REPLICA, PLACEMENT_QUERY,
+                                                           null, PLACEMENT_PAGE_SIZE);
+        while (cursor.hasNext()) {
+            Map<String, Object> row = cursor.next();
+            Long fileId = ((Number) row.get("FILE_ID")).longValue();
+            files.putIfAbsent(fileId, row);
+            Object localPath = row.get("LOCAL_PATH");
+            replicas.computeIfAbsent(fileId, k -> new LinkedHashMap<>())
+                .put((String) row.get("NODE_NAME"), localPath != null ? localPath.toString() : "");
+        }
+
+        List<FilePlacementRegistry.Placement> placements = new ArrayList<>(files.size());
+        for (Map.Entry<Long, Map<String, Object>> file : files.entrySet()) {
+            Map<String, Object> row = file.getValue();
+            Object size = row.get("FILE_SIZE");
+            placements.add(new FilePlacementRegistry.Placement(file.getKey(), (String) row.get("FILE_NAME"),
+                (String) row.get("CHECKSUM"), size instanceof Number ? ((Number) size).longValue() : 0L,
+                replicas.get(file.getKey())));
+        }
+        return placements;
+    }
+
+    /**
+     * Calcula el conjunto mínimo de movimientos: solo archivos cuya lista
+     * de preferencia difiere de sus réplicas actuales.
+     */
+    static List<Migration> planMigrations(Collection<FilePlacementRegistry.Placement> placements,
+                                          ConsistentHashRing ring, int replicationFactor) {
+        List<Migration> plan = new ArrayList<>();
+        int targetReplicas = Math.min(replicationFactor, ring.size());
+
+        for (FilePlacementRegistry.Placement placement : placements) {
+            List<String> target = ring.getPreferenceList(String.valueOf(placement.getFileId()), targetReplicas);
+            Set<String> current = placement.getNodes();
+
+            List<String> additions = new ArrayList<>();
+            for (String nodeName : target) {
+                if (!current.contains(nodeName)) {
+                    additions.add(nodeName);
+                }
+            }
+            List<String> removals = new ArrayList<>();
+            for (String nodeName : current) {
+                if (!target.contains(nodeName)) {
+                    removals.add(nodeName);
+                }
+            }
+
+            if (!additions.isEmpty() || !removals.isEmpty()) {
+                plan.add(new Migration(placement, additions, removals));
+            }
+        }
+        return plan;
+    }
+
+    private void executeMigration(Migration migration, long moveIntervalMillis) throws InterruptedException {
+        FilePlacementRegistry.Placement placement = migration.placement;
+        Long fileId = placement.getFileId();
+        byte[] content = null;
+        String checksum = placement.getChecksum();
+        Map<String, String> previous = placement.getReplicas();
+        Map<String, String> copied = new LinkedHashMap<>();
+        boolean allCopied = true;
+
+        for (String destination : migration.additions) {
+            try {
+                if (content == null) {
+                    content = readFromAnyReplica(placement);
+                    if (checksum == null) {
+                        checksum = ChecksumUtils.calculateSHA256(content);
+                    }
+                }
+                StorageNodeInterface node = nodeService.getNode(destination)
+                    .orElseThrow(() -> new IllegalStateException("Nodo destino no disponible: " + destination));
+                String localPath = node.storeFile(fileId, placement.getFileName(), content, checksum);
+
+                copied.put(destination, localPath != null ? localPath : "");
+                completedMoves.incrementAndGet();
+                bytesMoved.addAndGet(content.length);
+                System.out.println("📦 Archivo " + fileId + " copiado a " + destination);
+            } catch (Exception e) {
+                allCopied = false;
+                failedMoves.incrementAndGet();
+                System.err.println("❌ Error moviendo archivo " + fileId + " a " + destination + ": " + e.getMessage());
+            }
+            Thread.sleep(moveIntervalMillis);
+        }
+
+        // Las réplicas sobrantes se retiran solo cuando todas las nuevas quedaron escritas
+        List<String> removals = allCopied ? migration.removals : Collections.emptyList();
+        if (copied.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+
+        // Registrar la nueva colocación antes de borrar nada: si falla, las
+        // copias nuevas quedan como sobrantes y las antiguas siguen válidas
+        Map<String, String> replicas = new LinkedHashMap<>(previous);
+        replicas.keySet().removeAll(removals);
+        replicas.putAll(copied);
+        if (!persistReplicas(fileId, replicas)) {
+            failedMoves.incrementAndGet();
+            return;
+        }
+        for (Map.Entry<String, String> replica : copied.entrySet()) {
+            placementRegistry.addReplica(fileId, replica.getKey(), replica.getValue());
+        }
+
+        for (String source : removals) {
+            placementRegistry.removeReplica(fileId, source);
+            try {
+                Optional<StorageNodeInterface> node = nodeService.getNode(source);
+                if (node.isPresent()) {
+                    node.get().deleteFile(fileId, previous.get(source));
+                }
+                removedReplicas.incrementAndGet();
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudo retirar réplica de " + fileId + " en " + source + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reemplaza las réplicas del archivo en la base de datos
+     */
+    private boolean persistReplicas(Long fileId, Map<String, String> replicas) {
+        DatabaseMessage message = new DatabaseMessage();
+        message.setOperation(DatabaseMessage.UPDATE_FILE_REPLICAS);
+        Map<String, Object> data = new HashMap<>();
+        data.put("fileId", fileId);
+        data.put("replicas", replicas);
+        message.setData(data);
+
+        DatabaseResponse response = databaseService.sendMessage(message);
+        metadataCache.invalidate(DatabaseMessage.FILE_REPLICA, fileId, ChangeEvent.UPDATE);
+        if (!response.isSuccess()) {
+            System.err.println("❌ No se pudo registrar la nueva colocación de " + fileId + ": " +
+                             response.getErrorMessage() + "; se conservan las réplicas anteriores");
+            return false;
+        }
+        return true;
+    }
+
+    private byte[] readFromAnyReplica(FilePlacementRegistry.Placement placement) throws Exception {
+        for (String source : placement.getNodes()) {
+            Optional<StorageNodeInterface> node = nodeService.getNode(source);
+            if (node.isPresent()) {
+                try {
+                    byte[] content = node.get().retrieveFile(placement.getFileId(), null);
+                    if (content != null) {
+                        return content;
+                    }
+                } catch (Exception e) {
+                    System.out.println("⚠️ Réplica de " + placement.getFileId() + " no legible en " + source);
+                }
+            }
+        }
+        throw new IllegalStateException("Ninguna réplica disponible para archivo " + placement.getFileId());
+    }
+
+    /**
+     * Obtiene el estado y progreso del rebalanceo.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        int planned = plannedMoves.get();
+        int done = completedMoves.get() + failedMoves.get();
+
+        status.put("state", state.name());
+        status.put("reason", lastReason);
+        status.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        status.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        status.put("filesToMigrate", filesToMigrate.get());
+        status.put("plannedMoves", planned);
+        status.put("completedMoves", completedMoves.get());
+        status.put("failedMoves", failedMoves.get());
+        status.put("removedReplicas", removedReplicas.get());
+        status.put("bytesMoved", bytesMoved.get());
+        status.put("progressPercent", planned == 0 ? 100.0 : done * 100.0 / planned);
+        status.put("maxMovesPerSecond", maxMovesPerSecond);
+        status.put("ringNodes", ring.getNodes());
+        status.put("decommissionedNodes", new ArrayList<>(decommissionedNodes));
+        status.put("trackedFiles", placementRegistry.size());
+        return status;
+    }
+}
@@ -1,20 +1,25 @@
 package com.distribuidos.appserver.service;
 
+import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.RemoteStubCache;
 import com.distribuidos.shared.rmi.StorageNodeInterface;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.rmi.NoSuchObjectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servicio para comunicación RMI con nodos de almacenamiento.
  * Maneja el registro, descobrimiento y comunicación con los nodos.
+ * 
+ * Los nodos empujan su registro y heartbeats periódicos; la tabla de membresía
+ * guarda entradas inmutables que se reemplazan atómicamente, de modo que las
+ * consultas de nodos saludables no bloquean ni hacen RPC.
  */
 @Service
 public class StorageNodeCommunicationService {
@@ -28,89 +33,203 @@ public class StorageNodeCommunicationService {
     @Value("${storage.nodes.host}")
     private String nodesHost;
     
-    private final Map<String, StorageNodeInterface> availableNodes = new ConcurrentHashMap<>();
-    private final Map<String, Boolean> nodeHealthStatus = new ConcurrentHashMap<>();
+    @Value("${storage.nodes.heartbeat-timeout-ms:30000}")
+    private long heartbeatTimeoutMs = 30000;
+    
+    private final Map<String, NodeMembership> members = new ConcurrentHashMap<>();
+    private final RemoteStubCache stubCache = RemoteStubCache.getDefault();
+    
+    /**
+     * Entrada inmutable de la tabla de membresía
+     */
+    private static final class NodeMembership {
+        final StorageNodeInterface stub;
+        final NodeInfo info;
+        final boolean healthy;
+        final long lastHeartbeatMillis;
+        
+        NodeMembership(StorageNodeInterface stub, NodeInfo info, boolean healthy, long lastHeartbeatMillis) {
+            this.stub = stub;
+            this.info = info;
+            this.healthy = healthy;
+            this.lastHeartbeatMillis = lastHeartbeatMillis;
+        }
+        
+        NodeMembership withHeartbeat(NodeInfo newInfo) {
+            return new NodeMembership(stub, newInfo != null ? newInfo : info, true, System.currentTimeMillis());
+        }
+        
+        NodeMembership withHealth(boolean isHealthy) {
+            return new NodeMembership(stub, info, isHealthy, isHealthy ? System.currentTimeMillis() : lastHeartbeatMillis);
+        }
+    }
     
     @PostConstruct
     public void initialize() {
         System.out.println("🔧 Inicializando comunicación RMI con nodos...");
         System.out.println("📊 Nodos esperados: " + expectedNodesCount);
         System.out.println("🌐 Host: " + nodesHost + ", Puerto base: " + basePort);
+        System.out.println("💓 Expiración de heartbeat: " + heartbeatTimeoutMs + " ms");
+    }
+    
+    /**
+     * Registra un nodo que se anunció por sí mismo. El stub se busca una sola
+     * vez aquí; los heartbeats posteriores solo actualizan la entrada.
+     */
+    public boolean registerNode(String nodeName, String hostname, int port, Long totalCapacity) {
+        try {
+            StorageNodeInterface stub = stubCache.lookup(hostname, port, nodeName, StorageNodeInterface.class);
+            NodeMembership previous = members.get(nodeName);
+            if (previous != null && !previous.stub.equals(stub)) {
+                // El nodo se reinició con un stub nuevo
+                stubCache.invalidate(hostname, port, nodeName);
+                stub = stubCache.lookup(hostname, port, nodeName, StorageNodeInterface.class);
+            }
+            
+            NodeInfo info = new NodeInfo();
+            info.setServiceName(nodeName);
+            info.setHostname(hostname);
+            info.setPort(port);
+            info.setTotalCapacity(totalCapacity);
+            members.put(nodeName, new NodeMembership(stub, info, true, System.currentTimeMillis()));
+            
+            System.out.println("📝 Nodo registrado: " + nodeName + " (" + hostname + ":" + port + ")");
+            return true;
+        } catch (RemoteException | NotBoundException e) {
+            System.out.println("❌ No se pudo registrar el nodo " + nodeName + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Actualiza la entrada de un nodo con su último heartbeat.
+     * 
+     * @return false si el nodo no está registrado y debe registrarse de nuevo
+     */
+    public boolean recordHeartbeat(String nodeName, NodeInfo nodeInfo) {
+        NodeMembership previous = members.get(nodeName);
+        NodeMembership updated = members.computeIfPresent(nodeName, (name, member) -> member.withHeartbeat(nodeInfo));
+        if (updated == null) {
+            return false;
+        }
+        if (previous != null && !isAlive(previous)) {
+            System.out.println("💚 Nodo recuperado: " + nodeName);
+        }
+        return true;
+    }
+    
+    /**
+     * Elimina un nodo de la tabla de membresía.
+     */
+    public boolean unregisterNode(String nodeName) {
+        boolean removed = members.remove(nodeName) != null;
+        if (removed) {
+            System.out.println("👋 Nodo desregistrado: " + nodeName);
+        }
+        return removed;
+    }
+    
+    /**
+     * Información más reciente de los nodos vivos.
+     */
+    public List<NodeInfo> getActiveNodeInfos() {
+        List<NodeInfo> infos = new ArrayList<>();
+        for (NodeMembership member : members.values()) {
+            if (isAlive(member)) {
+                infos.add(member.info);
+            }
+        }
+        return infos;
+    }
+    
+    private boolean isAlive(NodeMembership member) {
+        return member.healthy && System.currentTimeMillis() - member.lastHeartbeatMillis <= heartbeatTimeoutMs;
     }
     
     /**
      * Descubre y registra nodos de almacenamiento disponibles.
+     * Alternativa por sondeo al registro empujado por los nodos.
      */
     public void discoverNodes() {
         System.out.println("🔍 Buscando nodos de almacenamiento disponibles...");
         
-        availableNodes.clear();
-        nodeHealthStatus.clear();
-        
         for (int i = 1; i <= expectedNodesCount; i++) {
             String nodeName = "StorageNode" + i;
             int nodePort = basePort + i - 1;
             
             try {
-                Registry registry = LocateRegistry.getRegistry(nodesHost, nodePort);
-                StorageNodeInterface node = (StorageNodeInterface) registry.lookup(nodeName);
+                StorageNodeInterface node = stubCache.lookup(nodesHost, nodePort, nodeName, StorageNodeInterface.class);
                 
                 // Probar conexión
-                boolean isHealthy = node.heartbeat(); // Usar heartbeat en lugar de isHealthy
+                boolean isHealthy;
+                try {
+                    isHealthy = node.heartbeat();
+                } catch (NoSuchObjectException e) {
+                    // El nodo se reinició: el stub en caché ya no es válido
+                    stubCache.invalidate(nodesHost, nodePort, nodeName);
+                    node = stubCache.lookup(nodesHost, nodePort, nodeName, StorageNodeInterface.class);
+                    isHealthy = node.heartbeat();
+                }
                 String nodeId = "Node-" + i; // Generar ID del nodo localmente
                 
-                availableNodes.put(nodeName, node);
-                nodeHealthStatus.put(nodeName, isHealthy);
+                members.put(nodeName, new NodeMembership(node, node.getNodeInfo(), isHealthy, System.currentTimeMillis()));
                 
                 System.out.println("✅ Nodo encontrado: " + nodeName + " (" + nodeId + ") - " + 
                                  (isHealthy ? "HEALTHY" : "UNHEALTHY"));
                 
             } catch (RemoteException | NotBoundException e) {
                 System.out.println("❌ Nodo no disponible: " + nodeName + " (puerto " + nodePort + ")");
-                nodeHealthStatus.put(nodeName, false);
+                members.computeIfPresent(nodeName, (name, member) -> member.withHealth(false));
             }
         }
         
-        int healthyNodes = (int) nodeHealthStatus.values().stream().mapToLong(h -> h ? 1 : 0).sum();
-        System.out.println("📈 Nodos saludables: " + healthyNodes + "/" + expectedNodesCount);
+        System.out.println("📈 Nodos saludables: " + getHealthyNodeNames().size() + "/" + expectedNodesCount);
     }
     
     /**
      * Obtiene una lista de nodos saludables disponibles.
+     * Se resuelve con la tabla de membresía, sin llamadas remotas.
      */
     public List<StorageNodeInterface> getHealthyNodes() {
         List<StorageNodeInterface> healthyNodes = new ArrayList<>();
-        
-        for (Map.Entry<String, StorageNodeInterface> entry : availableNodes.entrySet()) {
-            String nodeName = entry.getKey();
-            StorageNodeInterface node = entry.getValue();
-            
-            if (nodeHealthStatus.getOrDefault(nodeName, false)) {
-                try {
-                    // Verificar que el nodo siga saludable
-                    if (node.heartbeat()) { // Usar heartbeat en lugar de isHealthy
-                        healthyNodes.add(node);
-                    } else {
-                        nodeHealthStatus.put(nodeName, false);
-                        System.out.println("⚠️ Nodo se volvió no saludable: " + nodeName);
-                    }
-                } catch (RemoteException e) {
-                    nodeHealthStatus.put(nodeName, false);
-                    System.out.println("❌ Error de comunicación con nodo: " + nodeName);
-                }
+        for (NodeMembership member : members.values()) {
+            if (isAlive(member)) {
+                healthyNodes.add(member.stub);
             }
         }
-        
         return healthyNodes;
     }
     
+    /**
+     * Obtiene los nombres de los nodos saludables.
+     */
+    public List<String> getHealthyNodeNames() {
+        List<String> healthyNames = new ArrayList<>();
+        for (Map.Entry<String, NodeMembership> entry : members.entrySet()) {
+            if (isAlive(entry.getValue())) {
+                healthyNames.add(entry.getKey());
+            }
+        }
+        
+        Collections.sort(healthyNames);
+        return healthyNames;
+    }
+    
+    /**
+     * Obtiene la capacidad total reportada por un nodo en su último heartbeat.
+     */
+    public Optional<Long> getNodeCapacity(String nodeName) {
+        NodeMembership member = members.get(nodeName);
+        return member != null && member.info != null ? Optional.ofNullable(member.info.getTotalCapacity()) : Optional.empty();
+    }
+    
     /**
      * Obtiene un nodo específico por nombre.
      */
     public Optional<StorageNodeInterface> getNode(String nodeName) {
-        StorageNodeInterface node = availableNodes.get(nodeName);
-        if (node != null && nodeHealthStatus.getOrDefault(nodeName, false)) {
-            return Optional.of(node);
+        NodeMembership member = members.get(nodeName);
+        if (member != null && isAlive(member)) {
+            return Optional.of(member.stub);
         }
         return Optional.empty();
     }
@@ -119,11 +238,20 @@ public class StorageNodeCommunicationService {
      * Obtiene estadísticas de los nodos.
      */
     public Map<String, Object> getNodesStatistics() {
+        Map<String, Boolean> nodeStatus = new HashMap<>();
+        Map<String, Long> heartbeatAges = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, NodeMembership> entry : members.entrySet()) {
+            nodeStatus.put(entry.getKey(), isAlive(entry.getValue()));
+            heartbeatAges.put(entry.getKey(), now - entry.getValue().lastHeartbeatMillis);
+        }
+        
         Map<String, Object> stats = new HashMap<>();
         stats.put("expectedNodes", expectedNodesCount);
-        stats.put("discoveredNodes", availableNodes.size());
-        stats.put("healthyNodes", nodeHealthStatus.values().stream().mapToLong(h -> h ? 1 : 0).sum());
-        stats.put("nodeStatus", new HashMap<>(nodeHealthStatus));
+        stats.put("discoveredNodes", members.size());
+        stats.put("healthyNodes", nodeStatus.values().stream().filter(h -> h).count());
+        stats.put("nodeStatus", nodeStatus);
+        stats.put("heartbeatAgeMs", heartbeatAges);
         
         return stats;
     }
@@ -134,18 +262,20 @@ public class StorageNodeCommunicationService {
     public void checkNodesHealth() {
         System.out.println("🏥 Verificando salud de nodos...");
         
-        for (Map.Entry<String, StorageNodeInterface> entry : availableNodes.entrySet()) {
+        for (Map.Entry<String, NodeMembership> entry : members.entrySet()) {
             String nodeName = entry.getKey();
-            StorageNodeInterface node = entry.getValue();
+            StorageNodeInterface node = entry.getValue().stub;
             
+            boolean isHealthy;
             try {
-                boolean isHealthy = node.heartbeat(); // Usar heartbeat en lugar de isHealthy
-                nodeHealthStatus.put(nodeName, isHealthy);
+                isHealthy = node.heartbeat(); // Usar heartbeat en lugar de isHealthy
                 System.out.println("📊 " + nodeName + ": " + (isHealthy ? "HEALTHY" : "UNHEALTHY"));
             } catch (RemoteException e) {
-                nodeHealthStatus.put(nodeName, false);
+                isHealthy = false;
                 System.out.println("❌ " + nodeName + ": UNREACHABLE");
             }
+            final boolean healthy = isHealthy;
+            members.computeIfPresent(nodeName, (name, member) -> member.withHealth(healthy));
         }
     }
-}
\ No newline at end of file
+}
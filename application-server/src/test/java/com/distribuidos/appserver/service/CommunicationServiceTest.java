@@ -4,7 +4,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.CompletableFuture;
@@ -171,4 +179,44 @@ public class CommunicationServiceTest {
             throw e;
         }
     }
+    
+    @Test
+    @DisplayName("Prueba de membresía por registro y heartbeats empujados")
+    void testPushedMembership() throws Exception {
+        System.out.println("\n📋 Ejecutando: Prueba de membresía por heartbeats");
+        
+        int registryPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            registryPort = socket.getLocalPort();
+        }
+        Registry registry = LocateRegistry.createRegistry(registryPort);
+        StorageNodeInterface node = Mockito.mock(StorageNodeInterface.class);
+        registry.rebind("StorageNode1", UnicastRemoteObject.exportObject(node, 0));
+        
+        try {
+            // Un heartbeat de un nodo desconocido pide volver a registrarse
+            assertFalse(storageService.recordHeartbeat("StorageNode1", new NodeInfo()));
+            
+            assertTrue(storageService.registerNode("StorageNode1", "localhost", registryPort, 1024L));
+            NodeInfo info = new NodeInfo();
+            info.setTotalCapacity(2048L);
+            assertTrue(storageService.recordHeartbeat("StorageNode1", info));
+            
+            // Las consultas se resuelven con la tabla, sin llamar al nodo
+            assertEquals(1, storageService.getHealthyNodeNames().size());
+            assertTrue(storageService.getNode("StorageNode1").isPresent());
+            assertEquals(2048L, storageService.getNodeCapacity("StorageNode1").orElse(0L));
+            Mockito.verifyNoInteractions(node);
+            
+            // Sin heartbeats recientes el nodo deja de considerarse saludable
+            ReflectionTestUtils.setField(storageService, "heartbeatTimeoutMs", -1L);
+            assertTrue(storageService.getHealthyNodes().isEmpty());
+            assertTrue(storageService.unregisterNode("StorageNode1"));
+            
+            System.out.println("✅ Registro, heartbeat y expiración validados");
+        } finally {
+            UnicastRemoteObject.unexportObject(node, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.distribuidos.appserver.service;
+
+import com.distribuidos.shared.dto.ResolvedFile;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la caché de archivos resueltos
+ */
+public class MetadataCacheTest {
+
+    private DatabaseCommunicationService databaseService;
+    private MetadataCache cache;
+    private final List<Boolean> loads = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        databaseService = Mockito.mock(DatabaseCommunicationService.class);
+        Mockito.when(databaseService.isChangeStreamLive()).thenReturn(true);
+        cache = new MetadataCache();
+        ReflectionTestUtils.setField(cache, "databaseService", databaseService);
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+    }
+
+    private ResolvedFile resolve(String fileName, long fileId) {
+        return cache.resolve(fileName, "1", fromPrimary -> {
+            loads.add(fromPrimary);
+            File file = new File();
+            file.setId(fileId);
+            file.setName(fileName);
+            return new ResolvedFile(file);
+        });
+    }
+
+    @Test
+    @DisplayName("Las cargas que se guardan se leen del primario")
+    void testCachedLoadsComeFromPrimary() {
+        resolve("a.txt", 1L);
+        resolve("a.txt", 1L);
+
+        assertEquals(List.of(true), loads);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("Sin flujo de cambios no se guarda nada y se puede leer de una réplica")
+    void testWithoutChangeStreamLoadsFromAnyServer() {
+        Mockito.when(databaseService.isChangeStreamLive()).thenReturn(false);
+
+        resolve("a.txt", 1L);
+        resolve("a.txt", 1L);
+
+        assertEquals(List.of(false, false), loads);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Al llenarse descarta la entrada usada hace más tiempo")
+    void testEvictsLeastRecentlyUsed() {
+        resolve("a.txt", 1L);
+        resolve("b.txt", 2L);
+        resolve("a.txt", 1L);
+        resolve("c.txt", 3L);
+        loads.clear();
+
+        resolve("a.txt", 1L);
+        resolve("c.txt", 3L);
+        assertTrue(loads.isEmpty(), "a.txt y c.txt siguen en la caché");
+
+        resolve("b.txt", 2L);
+        assertEquals(List.of(true), loads);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("Un cambio del archivo elimina solo sus entradas")
+    void testInvalidateRemovesOnlyChangedFile() {
+        resolve("a.txt", 1L);
+        resolve("b.txt", 2L);
+
+        cache.invalidate(DatabaseMessage.FILE, 1L, ChangeEvent.UPDATE);
+
+        assertEquals(1, cache.size());
+        loads.clear();
+        resolve("b.txt", 2L);
+        assertTrue(loads.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Una carga durante la que llega un cambio no se guarda")
+    void testLoadRacingWithChangeIsNotCached() {
+        cache.resolve("a.txt", "1", fromPrimary -> {
+            cache.invalidate(DatabaseMessage.FILE, 1L, ChangeEvent.UPDATE);
+            File file = new File();
+            file.setId(1L);
+            return new ResolvedFile(file);
+        });
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.distribuidos.appserver.service;
+
+import com.distribuidos.shared.util.ConsistentHashRing;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del plan de movimientos del rebalanceo
+ */
+public class RebalancingServiceTest {
+
+    private static final long UNIT = ConsistentHashRing.DEFAULT_WEIGHT_UNIT;
+    private static final int FILES = 2000;
+
+    @Test
+    @DisplayName("Sin cambios de membresía no hay movimientos")
+    void testBalancedPlacementNeedsNoMoves() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3");
+
+        List<RebalancingService.Migration> plan =
+            RebalancingService.planMigrations(placedOn(ring, 2), ring, 2);
+
+        assertTrue(plan.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Un nodo nuevo solo recibe los archivos cuya preferencia cambió")
+    void testAddedNodeMovesOnlyAffectedFiles() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3");
+        List<FilePlacementRegistry.Placement> placements = placedOn(ring, 2);
+
+        ring.addNode("node-4", UNIT);
+        List<RebalancingService.Migration> plan = RebalancingService.planMigrations(placements, ring, 2);
+
+        assertFalse(plan.isEmpty());
+        assertTrue(plan.size() < FILES * 0.6, "Solo una parte de los archivos se mueve: " + plan.size());
+        for (RebalancingService.Migration migration : plan) {
+            assertEquals(Collections.singletonList("node-4"), migration.additions);
+            assertEquals(1, migration.removals.size(), "Cada copia nueva reemplaza una sobrante");
+            assertTrue(migration.placement.getNodes().containsAll(migration.removals));
+        }
+    }
+
+    @Test
+    @DisplayName("Retirar un nodo mueve exactamente sus réplicas")
+    void testDecommissionMovesItsReplicas() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3", "node-4");
+        List<FilePlacementRegistry.Placement> placements = placedOn(ring, 2);
+        long onNode2 = placements.stream().filter(p -> p.getNodes().contains("node-2")).count();
+
+        ring.removeNode("node-2");
+        List<RebalancingService.Migration> plan = RebalancingService.planMigrations(placements, ring, 2);
+
+        assertEquals(onNode2, plan.size());
+        for (RebalancingService.Migration migration : plan) {
+            assertEquals(Collections.singletonList("node-2"), migration.removals);
+            assertEquals(1, migration.additions.size());
+            assertFalse(migration.additions.contains("node-2"));
+        }
+    }
+
+    @Test
+    @DisplayName("Un archivo con menos réplicas que el factor recibe las que faltan")
+    void testUnderReplicatedFileGetsMissingReplica() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3");
+        List<String> target = ring.getPreferenceList("42", 2);
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put(target.get(0), "/storage/42_a.txt");
+
+        List<RebalancingService.Migration> plan = RebalancingService.planMigrations(
+            Collections.singletonList(new FilePlacementRegistry.Placement(42L, "a.txt", "abc", 1, replicas)), ring, 2);
+
+        assertEquals(1, plan.size());
+        assertEquals(Collections.singletonList(target.get(1)), plan.get(0).additions);
+        assertTrue(plan.get(0).removals.isEmpty());
+    }
+
+    @Test
+    @DisplayName("El factor de replicación se limita a los nodos del anillo")
+    void testReplicationFactorCappedByRing() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2");
+
+        List<RebalancingService.Migration> plan =
+            RebalancingService.planMigrations(placedOn(ring, 2), ring, 3);
+
+        assertTrue(plan.isEmpty());
+    }
+
+    private static ConsistentHashRing ringOf(String... nodes) {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        for (String node : nodes) {
+            ring.addNode(node, UNIT);
+        }
+        return ring;
+    }
+
+    /**
+     * Archivos colocados según la preferencia actual del anillo
+     */
+    private static List<FilePlacementRegistry.Placement> placedOn(ConsistentHashRing ring, int replicas) {
+        List<FilePlacementRegistry.Placement> placements = new ArrayList<>();
+        for (long fileId = 1; fileId <= FILES; fileId++) {
+            Map<String, String> locations = new LinkedHashMap<>();
+            for (String node : ring.getPreferenceList(String.valueOf(fileId), replicas)) {
+                locations.put(node, "/storage/" + fileId + "_f.txt");
+            }
+            placements.add(new FilePlacementRegistry.Placement(fileId, "f.txt", "abc", 1, locations));
+        }
+        return placements;
+    }
+}
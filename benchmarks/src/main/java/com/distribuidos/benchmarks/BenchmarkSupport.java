@@ -0,0 +1,75 @@
+package com.distribuidos.benchmarks;
+
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Utilidades comunes de los benchmarks: cabeceras, comprobación de
+ * respuestas, medición de memoria y CPU y limpieza de directorios temporales.
+ *
+ * Los benchmarks son programas con main que se ejecutan a mano, por ejemplo:
+ * mvn -q -pl benchmarks exec:java -Dexec.mainClass=com.distribuidos.benchmarks.database.CursorBenchmark
+ */
+public final class BenchmarkSupport {
+
+    public static final String SEPARATOR = "=".repeat(72);
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Devuelve la respuesta si tuvo éxito o lanza su error
+     */
+    public static DatabaseResponse check(DatabaseResponse response) {
+        if (!response.isSuccess()) {
+            throw new IllegalStateException(response.getErrorMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Bytes reservados hasta ahora por el hilo actual, o 0 si la JVM no lo mide
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Memoria de heap ocupada tras forzar varias recolecciones
+     */
+    public static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Tiempo de CPU del proceso en nanosegundos, o -1 si la JVM no lo mide
+     */
+    public static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
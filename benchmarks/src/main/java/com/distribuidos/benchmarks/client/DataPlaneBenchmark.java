@@ -0,0 +1,260 @@
+package com.distribuidos.benchmarks.client;
+
+import com.distribuidos.shared.dataplane.DataPlaneClient;
+import com.distribuidos.shared.dataplane.DataPlaneFileStore;
+import com.distribuidos.shared.dataplane.DataPlaneServer;
+import com.distribuidos.shared.rmi.BatchItemResult;
+import com.distribuidos.shared.rmi.BatchStoreItem;
+import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.deleteRecursively;
+import static com.distribuidos.benchmarks.BenchmarkSupport.processCpuTime;
+
+/**
+ * MÓDULO DE TESTING REMOVIBLE
+ *
+ * Benchmark del plano de datos NIO frente al paso de byte[] por RMI.
+ * Levanta en el mismo proceso un nodo RMI mínimo y un servidor del plano de
+ * datos sobre el mismo directorio, y mide throughput y CPU de proceso por GB
+ * transferido (incluye ambos extremos, ya que comparten proceso).
+ *
+ * Uso: DataPlaneBenchmark [tamañoMB] [iteraciones]
+ */
+public class DataPlaneBenchmark {
+
+
+    public static void main(String[] args) throws Exception {
+        int fileSizeMb = args.length >= 1 ? Integer.parseInt(args[0]) : 32;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 16;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK PLANO DE DATOS NIO vs RMI");
+        System.out.println("📦 Tamaño de archivo: " + fileSizeMb + " MB, iteraciones: " + iterations);
+        System.out.println(SEPARATOR);
+
+        Path workDir = Files.createTempDirectory("dataplane-bench");
+        BenchmarkStore store = new BenchmarkStore(workDir);
+        BenchmarkNode rmiNode = new BenchmarkNode(store);
+        StorageNodeInterface rmiStub = (StorageNodeInterface) UnicastRemoteObject.toStub(rmiNode);
+        DataPlaneServer server = new DataPlaneServer(0, store);
+        server.start();
+        DataPlaneClient client = new DataPlaneClient("localhost", server.getPort());
+
+        byte[] payload = new byte[fileSizeMb * 1024 * 1024];
+        new Random(42).nextBytes(payload);
+        Path sourceFile = workDir.resolve("source.bin");
+        Files.write(sourceFile, payload);
+        Path targetFile = workDir.resolve("target.bin");
+
+        try {
+            // Calentamiento de JIT y caché de página
+            for (int i = 0; i < 2; i++) {
+                rmiStub.storeFile(1L, "warmup.bin", payload, null);
+                rmiStub.retrieveFile(1L, null);
+                client.storeFile(2L, "warmup.bin", payload, null);
+                client.retrieveFile(2L);
+            }
+
+            long totalBytes = (long) payload.length * iterations;
+            report("RMI byte[] escritura", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    rmiStub.storeFile(10L + i, "bench.bin", payload, null);
+                }
+            }));
+            report("RMI byte[] lectura", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    rmiStub.retrieveFile(10L + i, null);
+                }
+            }));
+            report("NIO byte[] escritura", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    client.storeFile(100L + i, "bench.bin", payload, null);
+                }
+            }));
+            report("NIO byte[] lectura", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    client.retrieveFile(100L + i);
+                }
+            }));
+            report("NIO archivo escritura (transferTo)", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    client.storeFile(200L + i, "bench.bin", sourceFile, null);
+                }
+            }));
+            report("NIO archivo lectura (directo)", totalBytes, measure(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    client.retrieveFile(200L + i, targetFile);
+                }
+            }));
+        } finally {
+            client.close();
+            server.close();
+            UnicastRemoteObject.unexportObject(rmiNode, true);
+            deleteRecursively(workDir);
+        }
+
+        System.out.println(SEPARATOR);
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        void run() throws Exception;
+    }
+
+    private static long[] measure(Workload workload) throws Exception {
+        System.gc();
+        long cpuStart = processCpuTime();
+        long start = System.nanoTime();
+        workload.run();
+        return new long[]{System.nanoTime() - start, processCpuTime() - cpuStart};
+    }
+
+    private static void report(String name, long bytes, long[] result) {
+        double seconds = result[0] / 1e9;
+        double gigabytes = bytes / (1024.0 * 1024 * 1024);
+        double throughput = bytes / (1024.0 * 1024) / seconds;
+        String cpuPerGb = result[1] >= 0 ? String.format("%.2f s", result[1] / 1e9 / gigabytes) : "n/d";
+        System.out.printf("📊 %-36s %9.1f MB/s   CPU/GB: %s%n", name, throughput, cpuPerGb);
+    }
+
+    /**
+     * Almacén en disco compartido por ambos caminos
+     */
+    private static class BenchmarkStore implements DataPlaneFileStore {
+        private final Path dataDir;
+
+        BenchmarkStore(Path workDir) throws IOException {
+            this.dataDir = Files.createDirectories(workDir.resolve("data"));
+        }
+
+        Path pathFor(Long fileId) {
+            return dataDir.resolve(fileId + ".bin");
+        }
+
+        @Override
+        public Path locateFile(Long fileId) throws IOException {
+            Path path = pathFor(fileId);
+            if (!Files.exists(path)) {
+                throw new IOException("Archivo no encontrado: " + fileId);
+            }
+            return path;
+        }
+
+        @Override
+        public Path createTempFile(Long fileId) throws IOException {
+            return Files.createTempFile(dataDir, fileId + "_", ".part");
+        }
+
+        @Override
+        public String commitFile(Long fileId, String fileName, Path tempFile, long size, String checksum)
+                throws IOException {
+            return Files.move(tempFile, pathFor(fileId), StandardCopyOption.REPLACE_EXISTING).toString();
+        }
+    }
+
+    /**
+     * Nodo RMI mínimo que transfiere byte[] sobre el mismo almacén
+     */
+    private static class BenchmarkNode extends UnicastRemoteObject implements StorageNodeInterface {
+        private static final long serialVersionUID = 1L;
+        private final transient BenchmarkStore store;
+
+        BenchmarkNode(BenchmarkStore store) throws RemoteException {
+            super(0);
+            this.store = store;
+        }
+
+        @Override
+        public String storeFile(Long fileId, String fileName, byte[] fileData, String checksum) throws RemoteException {
+            try {
+                return Files.write(store.pathFor(fileId), fileData).toString();
+            } catch (IOException e) {
+                throw new RemoteException("Error escribiendo archivo", e);
+            }
+        }
+
+        @Override
+        public byte[] retrieveFile(Long fileId, String localPath) throws RemoteException {
+            try {
+                return Files.readAllBytes(store.locateFile(fileId));
+            } catch (IOException e) {
+                throw new RemoteException("Error leyendo archivo", e);
+            }
+        }
+
+        @Override
+        public boolean deleteFile(Long fileId, String localPath) throws RemoteException {
+            return store.pathFor(fileId).toFile().delete();
+        }
+
+        @Override
+        public boolean verifyFile(Long fileId, String localPath, String expectedChecksum) throws RemoteException {
+            return Files.exists(store.pathFor(fileId));
+        }
+
+        @Override
+        public NodeInfo getNodeInfo() throws RemoteException {
+            return new NodeInfo();
+        }
+
+        @Override
+        public boolean heartbeat() throws RemoteException {
+            return true;
+        }
+
+        @Override
+        public Long[] getStoredFiles() throws RemoteException {
+            return new Long[0];
+        }
+
+        @Override
+        public List<BatchItemResult<String>> storeFiles(List<BatchStoreItem> items) throws RemoteException {
+            List<BatchItemResult<String>> results = new ArrayList<>();
+            for (BatchStoreItem item : items) {
+                results.add(BatchItemResult.success(item.getFileId(),
+                    storeFile(item.getFileId(), item.getFileName(), item.getFileData(), item.getChecksum())));
+            }
+            return results;
+        }
+
+        @Override
+        public List<BatchItemResult<byte[]>> retrieveFiles(List<Long> fileIds) throws RemoteException {
+            List<BatchItemResult<byte[]>> results = new ArrayList<>();
+            for (Long fileId : fileIds) {
+                results.add(BatchItemResult.success(fileId, retrieveFile(fileId, null)));
+            }
+            return results;
+        }
+
+        @Override
+        public List<BatchItemResult<Boolean>> deleteFiles(List<Long> fileIds) throws RemoteException {
+            List<BatchItemResult<Boolean>> results = new ArrayList<>();
+            for (Long fileId : fileIds) {
+                results.add(BatchItemResult.success(fileId, deleteFile(fileId, null)));
+            }
+            return results;
+        }
+
+        @Override
+        public List<BatchItemResult<Boolean>> verifyFiles(Map<Long, String> expectedChecksums) throws RemoteException {
+            List<BatchItemResult<Boolean>> results = new ArrayList<>();
+            for (Long fileId : expectedChecksums.keySet()) {
+                results.add(BatchItemResult.success(fileId, verifyFile(fileId, null, null)));
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.distribuidos.benchmarks.client;
+
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+
+/**
+ * MÓDULO DE TESTING REMOVIBLE
+ *
+ * Benchmark del pool fijo de hilos de plataforma (10 hilos, como los pools del
+ * sistema) frente a un hilo virtual por tarea, sobre llamadas bloqueantes de
+ * socket contra un servidor local que responde con latencia fija (simula un
+ * nodo RMI o la base de datos). La latencia medida incluye la espera en cola.
+ *
+ * Uso: ExecutorModeBenchmark [peticiones] [latenciaMs]
+ * Los hilos virtuales requieren ejecutar con Java 21+.
+ */
+public class ExecutorModeBenchmark {
+
+    private static final int PLATFORM_POOL_SIZE = 10;
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+        int latencyMs = args.length >= 2 ? Integer.parseInt(args[1]) : 10;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK HILOS DE PLATAFORMA vs HILOS VIRTUALES");
+        System.out.println("📦 Peticiones: " + requests + ", latencia simulada: " + latencyMs + " ms");
+        System.out.println(SEPARATOR);
+
+        DelayedEchoServer server = new DelayedEchoServer(latencyMs);
+        Thread serverThread = new Thread(server, "delayed-echo");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        try {
+            // Calentamiento
+            run(Executors.newFixedThreadPool(PLATFORM_POOL_SIZE), server.getPort(), 200);
+
+            report("Plataforma (pool de " + PLATFORM_POOL_SIZE + ")", requests,
+                   run(Executors.newFixedThreadPool(PLATFORM_POOL_SIZE), server.getPort(), requests));
+
+            if (ExecutorFactory.isVirtualThreadsSupported()) {
+                run(ExecutorFactory.newVirtualThreadPerTaskExecutor("bench"), server.getPort(), 200);
+                report("Virtual (hilo por tarea)", requests,
+                       run(ExecutorFactory.newVirtualThreadPerTaskExecutor("bench"), server.getPort(), requests));
+            } else {
+                System.out.println("⚠️ Hilos virtuales no disponibles en Java " +
+                                 System.getProperty("java.specification.version") + " (requiere 21+)");
+            }
+        } finally {
+            server.close();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    /**
+     * Envía todas las peticiones de golpe y devuelve {duración total, latencias ordenadas...}
+     */
+    private static long[] run(ExecutorService executor, int port, int requests) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            long submitted = System.nanoTime();
+            futures.add(executor.submit(() -> {
+                try (Socket socket = new Socket("localhost", port)) {
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = socket.getInputStream();
+                    out.write(1);
+                    out.flush();
+                    if (in.read() < 0) {
+                        throw new IOException("Conexión cerrada sin respuesta");
+                    }
+                }
+                return System.nanoTime() - submitted;
+            }));
+        }
+
+        long[] result = new long[requests + 1];
+        for (int i = 0; i < requests; i++) {
+            result[i + 1] = futures.get(i).get();
+        }
+        result[0] = System.nanoTime() - start;
+        executor.shutdown();
+        Arrays.sort(result, 1, result.length);
+        return result;
+    }
+
+    private static void report(String name, int requests, long[] result) {
+        double seconds = result[0] / 1e9;
+        long p50 = result[1 + requests / 2];
+        long p99 = result[1 + (int) (requests * 0.99)];
+        System.out.printf("📊 %-28s %8.0f ops/s   p50: %8.1f ms   p99: %8.1f ms%n",
+                          name, requests / seconds, p50 / 1e6, p99 / 1e6);
+    }
+
+    /**
+     * Servidor NIO de un solo hilo que responde cada byte tras una demora fija,
+     * de modo que no limita la concurrencia de los clientes
+     */
+    private static class DelayedEchoServer implements Runnable {
+        private final long delayNanos;
+        private final Selector selector;
+        private final ServerSocketChannel serverChannel;
+        private final PriorityQueue<long[]> dueTimes = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        private final List<SocketChannel> pending = new ArrayList<>();
+        private volatile boolean running = true;
+
+        DelayedEchoServer(int delayMs) throws IOException {
+            this.delayNanos = delayMs * 1_000_000L;
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(0), 4096);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+
+        int getPort() throws IOException {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            try {
+                while (running) {
+                    long wait = dueTimes.isEmpty() ? 0 : Math.max(1, (dueTimes.peek()[0] - System.nanoTime()) / 1_000_000);
+                    selector.select(wait);
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isAcceptable()) {
+                            SocketChannel client;
+                            while ((client = serverChannel.accept()) != null) {
+                                client.configureBlocking(false);
+                                client.register(selector, SelectionKey.OP_READ);
+                            }
+                        } else if (key.isReadable()) {
+                            SocketChannel client = (SocketChannel) key.channel();
+                            buffer.clear();
+                            if (client.read(buffer) != 0) {
+                                key.cancel();
+                                pending.add(client);
+                                dueTimes.add(new long[]{System.nanoTime() + delayNanos, pending.size() - 1});
+                            }
+                        }
+                    }
+
+                    // Responder las peticiones cuya demora ya venció
+                    while (!dueTimes.isEmpty() && dueTimes.peek()[0] <= System.nanoTime()) {
+                        SocketChannel client = pending.set((int) dueTimes.poll()[1], null);
+                        try {
+                            client.write(ByteBuffer.wrap(new byte[]{1}));
+                        } finally {
+                            client.close();
+                        }
+                    }
+                    if (dueTimes.isEmpty()) {
+                        pending.clear();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("❌ Error en servidor de eco: " + e.getMessage());
+                }
+            }
+        }
+
+        void close() throws IOException {
+            running = false;
+            selector.wakeup();
+            serverChannel.close();
+        }
+    }
+}
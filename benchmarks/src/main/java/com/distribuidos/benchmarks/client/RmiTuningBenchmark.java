@@ -0,0 +1,129 @@
+package com.distribuidos.benchmarks.client;
+
+import com.distribuidos.shared.rmi.RemoteStubCache;
+import com.distribuidos.shared.rmi.TunedRMIClientSocketFactory;
+import com.distribuidos.shared.rmi.TunedRMIServerSocketFactory;
+
+import java.net.ServerSocket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+
+/**
+ * MÓDULO DE TESTING REMOVIBLE
+ *
+ * Benchmark de latencia de RPC pequeñas por RMI comparando:
+ * - fábricas por defecto con búsqueda en el registry en cada llamada
+ *   (comportamiento anterior tras cualquier error),
+ * - fábricas por defecto con stub reutilizado,
+ * - fábricas ajustadas con la caché compartida de stubs.
+ *
+ * Uso: RmiTuningBenchmark [llamadas]
+ */
+public class RmiTuningBenchmark {
+
+
+    /**
+     * Servicio remoto mínimo para medir el costo de ida y vuelta
+     */
+    public interface Echo extends Remote {
+        byte[] echo(byte[] payload) throws RemoteException;
+    }
+
+    private static class EchoImpl implements Echo {
+        @Override
+        public byte[] echo(byte[] payload) {
+            return payload;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length >= 1 ? Integer.parseInt(args[0]) : 5000;
+        byte[] payload = new byte[64];
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK DE FÁBRICAS DE SOCKETS RMI");
+        System.out.println("📦 Llamadas por escenario: " + calls + ", payload: " + payload.length + " bytes");
+        System.out.println(SEPARATOR);
+
+        int registryPort = freePort();
+        Registry registry = LocateRegistry.createRegistry(registryPort);
+
+        EchoImpl defaultImpl = new EchoImpl();
+        EchoImpl tunedImpl = new EchoImpl();
+        registry.rebind("EchoDefault", UnicastRemoteObject.exportObject(defaultImpl, 0));
+        registry.rebind("EchoTuned", UnicastRemoteObject.exportObject(tunedImpl, 0,
+            new TunedRMIClientSocketFactory(), new TunedRMIServerSocketFactory()));
+
+        try {
+            // Búsqueda en cada llamada
+            long[] lookupPerCall = measure(calls, () -> {
+                Echo stub = (Echo) LocateRegistry.getRegistry("localhost", registryPort).lookup("EchoDefault");
+                stub.echo(payload);
+            });
+            report("Default + lookup por llamada", lookupPerCall);
+
+            // Stub reutilizado con fábricas por defecto
+            Echo defaultStub = (Echo) registry.lookup("EchoDefault");
+            report("Default + stub reutilizado", measure(calls, () -> defaultStub.echo(payload)));
+
+            // Fábricas ajustadas + caché compartida
+            RemoteStubCache cache = new RemoteStubCache(RemoteStubCache.DEFAULT_REFRESH_INTERVAL_SECONDS);
+            long socketsBefore = TunedRMIClientSocketFactory.getSocketsCreated();
+            long[] tuned = measure(calls, () ->
+                cache.lookup("localhost", registryPort, "EchoTuned", Echo.class).echo(payload));
+            report("Ajustado + caché de stubs", tuned);
+
+            System.out.println(SEPARATOR);
+            System.out.println("🔌 Sockets abiertos (ajustado): " +
+                             (TunedRMIClientSocketFactory.getSocketsCreated() - socketsBefore));
+            System.out.println("🔎 Búsquedas en registry (caché): " + cache.getLookupCount() +
+                             " de " + (calls + calls / 10) + " llamadas");
+            cache.shutdown();
+        } finally {
+            UnicastRemoteObject.unexportObject(defaultImpl, true);
+            UnicastRemoteObject.unexportObject(tunedImpl, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    /**
+     * Ejecuta un calentamiento del 10% y devuelve las latencias en nanosegundos
+     */
+    private static long[] measure(int calls, Call call) throws Exception {
+        for (int i = 0; i < calls / 10; i++) {
+            call.run();
+        }
+        long[] latencies = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            call.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void report(String name, long[] sortedLatencies) {
+        long p50 = sortedLatencies[sortedLatencies.length / 2];
+        long p99 = sortedLatencies[(int) (sortedLatencies.length * 0.99)];
+        System.out.printf("📊 %-32s p50: %7.1f µs   p99: %7.1f µs%n", name, p50 / 1000.0, p99 / 1000.0);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
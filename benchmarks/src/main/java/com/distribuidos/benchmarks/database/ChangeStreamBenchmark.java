@@ -0,0 +1,247 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.ChangeSubscription;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark del flujo de cambios (SUBSCRIBE) con 0, 1 y 4 suscriptores.
+ *
+ * Varios hilos crean archivos mientras los suscriptores reciben los eventos.
+ * Mide el rendimiento de escritura, el tiempo desde que se envía cada
+ * escritura hasta que su evento llega a un suscriptor, y comprueba que cada
+ * suscriptor recibe todos los eventos con versiones consecutivas. La
+ * reanudación de una suscripción cortada la prueba ChangeStreamIntegrationTest.
+ *
+ * Uso: ChangeStreamBenchmark [segundos por prueba] [hilos]
+ */
+public class ChangeStreamBenchmark {
+
+    private static final int USERS = 16;
+    private static final int TIMEOUT_MS = 30_000;
+
+    /**
+     * Suscriptor que cuenta los eventos y las discontinuidades de versión
+     */
+    private static final class Counter implements ChangeSubscription.Listener {
+        final Map<Long, Long> receivedAt;
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong gaps = new AtomicLong();
+        volatile long lastVersion = -1;
+
+        Counter(Map<Long, Long> receivedAt) {
+            this.receivedAt = receivedAt;
+        }
+
+        @Override
+        public void onEvents(List<ChangeEvent> batch) {
+            long now = System.nanoTime();
+            for (ChangeEvent event : batch) {
+                if (lastVersion >= 0 && event.getVersion() != lastVersion + 1) {
+                    gaps.incrementAndGet();
+                }
+                lastVersion = event.getVersion();
+                if (receivedAt != null && DatabaseMessage.FILE.equals(event.getEntity())) {
+                    receivedAt.putIfAbsent(event.getId(), now);
+                }
+            }
+            events.addAndGet(batch.size());
+        }
+
+        @Override
+        public void onReset() {
+            lastVersion = -1;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length >= 1 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : 8;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK FLUJO DE CAMBIOS: 0 vs 1 vs 4 SUSCRIPTORES");
+        System.out.println("📦 " + seconds + " s por prueba, " + threads + " hilos, " +
+                           Runtime.getRuntime().availableProcessors() + " CPU");
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        DatabaseConnectionPool pool = new DatabaseConnectionPool("localhost", server.getPort(),
+            new DatabaseConnectionPool.Config().maxConnections(8).requestTimeoutMs(TIMEOUT_MS));
+        try {
+            long[] owners = createUsers(pool);
+            run(server, pool, owners, 0, Math.max(1, seconds / 2), threads, false);
+            double base = 0;
+            for (int subscribers : new int[]{0, 1, 4}) {
+                double rate = run(server, pool, owners, subscribers, seconds, threads, true);
+                if (subscribers == 0) {
+                    base = rate;
+                } else {
+                    System.out.printf("   %.2fx respecto a sin suscriptores%n", rate / base);
+                }
+            }
+        } finally {
+            pool.close();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static long[] createUsers(DatabaseConnectionPool pool) throws Exception {
+        long[] owners = new long[USERS];
+        for (int u = 0; u < USERS; u++) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("username", "changes_bench_" + u);
+            user.put("password", "x");
+            user.put("email", "changes_bench_" + u + "@bench");
+            owners[u] = (Long) check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER,
+                                                                   user))).getData();
+        }
+        return owners;
+    }
+
+    private static double run(DatabaseServer server, DatabaseConnectionPool pool, long[] owners, int subscribers,
+                              int seconds, int threads, boolean report) throws Exception {
+        Map<Long, Long> sentAt = new ConcurrentHashMap<>();
+        Map<Long, Long> receivedAt = new ConcurrentHashMap<>();
+        List<Counter> counters = new ArrayList<>();
+        List<ChangeSubscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            // La latencia se mide con el primer suscriptor
+            Counter counter = new Counter(i == 0 ? receivedAt : null);
+            ChangeSubscription subscription = new ChangeSubscription("localhost", server.getPort(), TIMEOUT_MS,
+                                                                     true, counter);
+            subscription.start();
+            counters.add(counter);
+            subscriptions.add(subscription);
+        }
+        try {
+            for (ChangeSubscription subscription : subscriptions) {
+                awaitLive(subscription);
+            }
+
+            AtomicLong written = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            long end = System.nanoTime() + seconds * 1_000_000_000L;
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers[t] = new Thread(() -> {
+                    long sequence = 0;
+                    while (System.nanoTime() < end) {
+                        try {
+                            long start = System.nanoTime();
+                            Long id = (Long) check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE,
+                                DatabaseMessage.FILE, fileRow(owners, thread, sequence++)))).getData();
+                            sentAt.put(id, start);
+                            written.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (errors.get() > 0) {
+                throw new IllegalStateException(errors.get() + " escrituras fallidas");
+            }
+
+            double rate = written.get() / (double) seconds;
+            if (!report) {
+                return rate;
+            }
+            StringBuilder line = new StringBuilder(String.format("📊 %d suscriptores: %9.0f escrituras/s", subscribers,
+                                                                 rate));
+            if (!counters.isEmpty()) {
+                awaitEvents(counters, written.get());
+                long gaps = 0;
+                for (Counter counter : counters) {
+                    gaps += counter.gaps.get();
+                }
+                if (gaps > 0) {
+                    throw new IllegalStateException(gaps + " saltos de versión en los eventos recibidos");
+                }
+                line.append(String.format("   evento tras la escritura: p50 %.2f ms, p99 %.2f ms",
+                                          percentile(sentAt, receivedAt, 0.50), percentile(sentAt, receivedAt, 0.99)));
+            }
+            System.out.println(line);
+            if (!counters.isEmpty()) {
+                System.out.printf("✅ %d eventos por suscriptor, en orden y sin saltos%n", written.get());
+            }
+            return rate;
+        } finally {
+            for (ChangeSubscription subscription : subscriptions) {
+                subscription.close();
+            }
+        }
+    }
+
+    private static Map<String, Object> fileRow(long[] owners, int thread, long i) {
+        String name = "changes_" + thread + "_" + i + "_" + System.nanoTime() + ".dat";
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", name);
+        file.put("file_path", "/bench/" + name);
+        file.put("file_size", 1024L * (i % 4096));
+        file.put("owner_id", owners[(int) ((thread * 31 + i) % owners.length)]);
+        return file;
+    }
+
+    private static void awaitLive(ChangeSubscription subscription) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!subscription.isLive()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("La suscripción no se estableció");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitEvents(List<Counter> counters, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        for (Counter counter : counters) {
+            while (counter.events.get() < expected) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Un suscriptor recibió " + counter.events.get() + " de " +
+                                                    expected + " eventos");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Milisegundos desde el envío de la escritura hasta la llegada de su evento
+     */
+    private static double percentile(Map<Long, Long> sentAt, Map<Long, Long> receivedAt, double percentile) {
+        long[] latencies = new long[sentAt.size()];
+        int count = 0;
+        for (Map.Entry<Long, Long> entry : sentAt.entrySet()) {
+            Long received = receivedAt.get(entry.getKey());
+            if (received != null) {
+                latencies[count++] = received - entry.getValue();
+            }
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) (count * percentile))] / 1e6;
+    }
+}
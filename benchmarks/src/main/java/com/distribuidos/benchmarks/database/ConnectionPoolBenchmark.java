@@ -0,0 +1,112 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.FrameCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+
+/**
+ * Benchmark de latencia por petición: un socket nuevo por mensaje (como hacía
+ * DatabaseCommunicationService) frente a conexiones persistentes del pool.
+ *
+ * Uso: ConnectionPoolBenchmark [peticionesPorHilo] [hilos]
+ */
+public class ConnectionPoolBenchmark {
+
+
+    private interface Sender {
+        DatabaseResponse send(DatabaseMessage message) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : 8;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK SOCKET POR PETICIÓN vs POOL DE CONEXIONES PERSISTENTES");
+        System.out.println("📦 Peticiones por hilo: " + requests + ", hilos: " + threads);
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        int port = server.getPort();
+        DatabaseConnectionPool pool = new DatabaseConnectionPool("localhost", port,
+            new DatabaseConnectionPool.Config().maxConnections(threads));
+
+        Sender socketPerRequest = message -> {
+            try (Socket socket = new Socket("localhost", port)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                FrameCodec.writeFrame(out, message);
+                return (DatabaseResponse) FrameCodec.readFrame(in);
+            }
+        };
+
+        try {
+            for (int round = 0; round < 2; round++) {
+                // La primera ronda sirve de calentamiento
+                boolean report = round == 1;
+                run("Socket por petición", socketPerRequest, 1, requests, report);
+                run("Pool persistente", pool::send, 1, requests, report);
+                run("Socket por petición", socketPerRequest, threads, requests, report);
+                run("Pool persistente", pool::send, threads, requests, report);
+            }
+            System.out.println("🔗 Conexiones abiertas por el pool: " + pool.getOpenConnections());
+        } finally {
+            pool.close();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void run(String name, Sender sender, int threads, int requests, boolean report) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                long[] latencies = new long[requests];
+                for (int i = 0; i < requests; i++) {
+                    long requestStart = System.nanoTime();
+                    DatabaseResponse response = sender.send(new DatabaseMessage(DatabaseMessage.PING, ""));
+                    latencies[i] = System.nanoTime() - requestStart;
+                    if (!response.isSuccess()) {
+                        throw new IllegalStateException(response.getErrorMessage());
+                    }
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[threads * requests];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            offset += latencies.length;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+
+        if (report) {
+            Arrays.sort(all);
+            System.out.printf("📊 %-20s %2d hilos  %8.0f ops/s   p50: %7.1f µs   p99: %7.1f µs%n",
+                              name, threads, all.length / seconds,
+                              all[all.length / 2] / 1000.0, all[(int) (all.length * 0.99)] / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.client.DatabaseClient;
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+
+/**
+ * Benchmark de escalado de conexiones del servidor de base de datos.
+ *
+ * Para cada nivel abre N conexiones persistentes ociosas y mide latencia y
+ * throughput de un grupo fijo de clientes activos. Con el servidor anterior
+ * (un hilo por conexión, pool de 10) los clientes activos quedaban bloqueados
+ * en cuanto había 10 conexiones ociosas.
+ *
+ * Uso: ConnectionScalingBenchmark [nivel1,nivel2,...] [clientesActivos] [peticionesPorCliente]
+ */
+public class ConnectionScalingBenchmark {
+
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = args.length >= 1
+            ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray()
+            : new int[]{10, 100, 1000, 4000};
+        int activeClients = args.length >= 2 ? Integer.parseInt(args[1]) : 8;
+        int requestsPerClient = args.length >= 3 ? Integer.parseInt(args[2]) : 500;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK DE ESCALADO DE CONEXIONES - SERVIDOR DE BASE DE DATOS");
+        System.out.println("👥 Clientes activos: " + activeClients + ", peticiones por cliente: " + requestsPerClient);
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        List<Socket> idleConnections = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(activeClients);
+
+        try {
+            for (int level : levels) {
+                while (idleConnections.size() < level) {
+                    idleConnections.add(new Socket("localhost", server.getPort()));
+                }
+                runActiveClients(server.getPort(), clients, activeClients, requestsPerClient, level, server);
+            }
+        } finally {
+            for (Socket socket : idleConnections) {
+                socket.close();
+            }
+            clients.shutdownNow();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void runActiveClients(int port, ExecutorService clients, int activeClients,
+                                         int requestsPerClient, int idleLevel, DatabaseServer server) throws Exception {
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int c = 0; c < activeClients; c++) {
+            futures.add(clients.submit(() -> {
+                DatabaseClient client = new DatabaseClient();
+                if (!client.connect("localhost", port)) {
+                    throw new IllegalStateException("No se pudo conectar");
+                }
+                long[] latencies = new long[requestsPerClient];
+                try {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        long requestStart = System.nanoTime();
+                        DatabaseResponse response = client.sendMessage(new DatabaseMessage(DatabaseMessage.PING, ""));
+                        latencies[i] = System.nanoTime() - requestStart;
+                        if (!response.isSuccess()) {
+                            throw new IllegalStateException(response.getErrorMessage());
+                        }
+                    }
+                } finally {
+                    client.disconnect();
+                }
+                return latencies;
+            }));
+        }
+
+        long[] all = new long[activeClients * requestsPerClient];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+            offset += latencies.length;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(all);
+
+        System.out.printf("📊 %5d ociosas (%5d abiertas en servidor)  %8.0f ops/s   p50: %6.1f µs   p99: %7.1f µs%n",
+                          idleLevel, server.getOpenConnections(), all.length / seconds,
+                          all[all.length / 2] / 1000.0, all[(int) (all.length * 0.99)] / 1000.0);
+    }
+}
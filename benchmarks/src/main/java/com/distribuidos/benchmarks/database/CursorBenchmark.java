@@ -0,0 +1,115 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.client.DatabaseClient;
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.DatabaseCursor;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.usedHeapAfterGc;
+
+/**
+ * Benchmark de listados grandes: FIND_ALL (todo el listado en una respuesta)
+ * frente a un cursor con paginación por clave. Mide el tiempo total y la
+ * memoria retenida en el cliente mientras se recorre el listado.
+ *
+ * El servidor corre en el mismo proceso, por lo que la memoria medida incluye
+ * también la que retiene el servidor al construir la respuesta.
+ *
+ * Uso: CursorBenchmark [filas] [tamañoPágina]
+ */
+public class CursorBenchmark {
+
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length >= 1 ? Integer.parseInt(args[0]) : 200_000;
+        int pageSize = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK FIND_ALL vs CURSOR CON PAGINACIÓN POR CLAVE");
+        System.out.println("📦 Filas: " + rows + ", tamaño de página: " + pageSize);
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        populate(rows);
+        DatabaseClient client = new DatabaseClient();
+        if (!client.connect("localhost", server.getPort())) {
+            throw new IllegalStateException("No se pudo conectar");
+        }
+
+        try {
+            long baseline = usedHeapAfterGc();
+
+            long start = System.nanoTime();
+            DatabaseResponse all = client.sendMessage(new DatabaseMessage(DatabaseMessage.FIND_ALL, DatabaseMessage.FILE));
+            if (!all.isSuccess()) {
+                throw new IllegalStateException(all.getErrorMessage());
+            }
+            List<?> listing = (List<?>) all.getData();
+            long allMillis = (System.nanoTime() - start) / 1_000_000;
+            long allRetained = usedHeapAfterGc() - baseline;
+            System.out.printf("📊 FIND_ALL   %7d filas  %6d ms   memoria retenida: %7.1f MB%n",
+                              listing.size(), allMillis, allRetained / 1e6);
+            listing = null;
+            all = null;
+
+            baseline = usedHeapAfterGc();
+            start = System.nanoTime();
+            DatabaseCursor cursor = client.openCursor(DatabaseMessage.FILE, pageSize);
+            long count = 0;
+            long lastId = 0;
+            long peakRetained = 0;
+            while (cursor.hasNext()) {
+                Map<String, Object> row = cursor.next();
+                long id = ((Number) row.get("ID")).longValue();
+                if (id <= lastId) {
+                    throw new IllegalStateException("Orden incorrecto en el cursor");
+                }
+                lastId = id;
+                count++;
+                if (count % (rows / 4) == 0) {
+                    peakRetained = Math.max(peakRetained, usedHeapAfterGc() - baseline);
+                }
+            }
+            long cursorMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("📊 Cursor     %7d filas  %6d ms   memoria retenida: %7.1f MB  (%d páginas)%n",
+                              count, cursorMillis, peakRetained / 1e6, cursor.getPagesRead());
+        } finally {
+            client.disconnect();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void populate(int rows) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement user = conn.prepareStatement(
+                    "INSERT INTO users (username, password, email) VALUES ('bench', 'x', 'bench@local')")) {
+                user.executeUpdate();
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO files (name, file_path, file_size, owner_id) " +
+                    "VALUES (?, ?, ?, (SELECT id FROM users WHERE username = 'bench'))")) {
+                for (int i = 0; i < rows; i++) {
+                    insert.setString(1, "documento_" + i + ".pdf");
+                    insert.setString(2, "/bench/documento_" + i + ".pdf");
+                    insert.setLong(3, 1024L * (i % 4096));
+                    insert.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.DatabaseService;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+import static com.distribuidos.benchmarks.BenchmarkSupport.deleteRecursively;
+
+/**
+ * Benchmark de H2 en memoria frente a H2 en archivo (MVStore):
+ * - rendimiento de escritura sostenido con un SAVE por fila y con BATCH,
+ *   en memoria y en archivo con distintos retrasos de escritura;
+ * - tiempo de apertura de un catálogo grande ya existente en disco.
+ *
+ * La base de datos en archivo se crea en un directorio temporal.
+ *
+ * Uso: DurableStorageBenchmark [filas escritura] [archivos catálogo]
+ */
+public class DurableStorageBenchmark {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length >= 1 ? Integer.parseInt(args[0]) : 20_000;
+        int catalog = args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK H2 EN MEMORIA vs H2 EN ARCHIVO");
+        System.out.println("📦 Filas por prueba de escritura: " + rows + ", archivos en el catálogo: " + catalog);
+        System.out.println(SEPARATOR);
+
+        Path dir = Files.createTempDirectory("h2bench");
+        try {
+            System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+            writeThroughput("calentamiento", rows / 4);
+            writeThroughput("memoria", rows);
+
+            System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_FILE);
+            for (int delay : new int[]{0, 500}) {
+                System.setProperty("db.path", dir.resolve("write" + delay).resolve("db").toString());
+                System.setProperty("db.write.delay.ms", String.valueOf(delay));
+                writeThroughput("archivo, WRITE_DELAY=" + delay, rows);
+            }
+
+            System.setProperty("db.path", dir.resolve("catalog").resolve("db").toString());
+            System.clearProperty("db.write.delay.ms");
+            openCatalog(dir.resolve("catalog"), catalog);
+        } finally {
+            System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+            System.clearProperty("db.path");
+            deleteRecursively(dir);
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void writeThroughput(String label, int rows) throws Exception {
+        DatabaseConfig.initialize();
+        try {
+            DatabaseService service = new DatabaseService();
+            long ownerId = (Long) check(service.save("USER", user(label))).getData();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < rows; i++) {
+                check(service.save("FILE", fileRow(label + "_single", i, ownerId)));
+            }
+            report(label + ", 1 por fila", rows, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int from = 0; from < rows; from += BATCH_SIZE) {
+                List<DatabaseMessage> operations = new ArrayList<>(BATCH_SIZE);
+                for (int i = from; i < Math.min(rows, from + BATCH_SIZE); i++) {
+                    operations.add(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                       fileRow(label + "_batch", i, ownerId)));
+                }
+                check(service.batch(operations));
+            }
+            report(label + ", BATCH " + BATCH_SIZE, rows, System.nanoTime() - start);
+        } finally {
+            DatabaseConfig.shutdown();
+        }
+    }
+
+    /**
+     * Crea el catálogo, cierra la base de datos y mide cuánto tarda en volver a abrirse
+     */
+    private static void openCatalog(Path dir, int files) throws Exception {
+        DatabaseConfig.initialize();
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            populate(conn, files);
+        }
+        System.out.printf("📥 Catálogo cargado en %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        DatabaseConfig.shutdown();
+        System.out.printf("💾 Cierre (con compactación) en %d ms, %d MB en disco%n",
+                          (System.nanoTime() - start) / 1_000_000, directorySize(dir) / (1024 * 1024));
+
+        start = System.nanoTime();
+        DatabaseConfig.initialize();
+        long opened = System.nanoTime() - start;
+        try {
+            DatabaseService service = new DatabaseService();
+            start = System.nanoTime();
+            check(service.findById("FILE", (long) files / 2));
+            long firstLookup = System.nanoTime() - start;
+            start = System.nanoTime();
+            DatabaseResponse count = check(service.executeQuery("SELECT COUNT(*) FROM files", null));
+            long counted = System.nanoTime() - start;
+
+            System.out.printf("🚀 Apertura del catálogo: %d ms%n", opened / 1_000_000);
+            System.out.printf("🔎 Primera búsqueda por id: %.1f ms, COUNT(*) = %s en %d ms%n",
+                              firstLookup / 1e6, ((List<?>) count.getData()).get(0), counted / 1_000_000);
+        } finally {
+            DatabaseConfig.shutdown();
+        }
+    }
+
+    private static void populate(Connection conn, int files) throws SQLException {
+        long ownerId;
+        try (PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO users (username, password, email) VALUES ('catalog', 'x', 'catalog@bench')",
+                 PreparedStatement.RETURN_GENERATED_KEYS)) {
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+                ownerId = keys.getLong(1);
+            }
+        }
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO files (name, file_path, file_size, checksum, owner_id) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= files; i++) {
+                insert.setString(1, "catalog_" + i + ".dat");
+                insert.setString(2, "/catalog/catalog_" + i + ".dat");
+                insert.setLong(3, 1024L * (i % 4096));
+                insert.setString(4, String.format("%016x", i * 0x9E3779B97F4A7C15L));
+                insert.setLong(5, ownerId);
+                insert.addBatch();
+                if (i % 10_000 == 0 || i == files) {
+                    insert.executeBatch();
+                    conn.commit();
+                }
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static Map<String, Object> user(String label) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        String name = "bench_" + label.replaceAll("\\W", "");
+        values.put("username", name);
+        values.put("password", "x");
+        values.put("email", name + "@bench");
+        return values;
+    }
+
+    private static Map<String, Object> fileRow(String prefix, int i, long ownerId) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("name", prefix + "_" + i + ".pdf");
+        values.put("file_path", "/bench/" + prefix + "_" + i + ".pdf");
+        values.put("file_size", 1024L * (i % 4096));
+        values.put("owner_id", ownerId);
+        return values;
+    }
+
+    private static void report(String name, int rows, long nanos) {
+        System.out.printf("📊 %-34s %8d ms   %9.0f filas/s%n", name, nanos / 1_000_000, rows * 1e9 / nanos);
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+}
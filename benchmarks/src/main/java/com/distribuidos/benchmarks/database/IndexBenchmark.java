@@ -0,0 +1,201 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.config.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+
+/**
+ * Benchmark de las búsquedas de metadatos del servidor de aplicación con el
+ * esquema inicial (solo claves primarias y foráneas) y tras aplicar la
+ * migración de índices.
+ *
+ * Usa su propia base de datos H2 en memoria para no tocar la del servidor.
+ *
+ * Uso: IndexBenchmark [archivos] [búsquedas]
+ */
+public class IndexBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:indexbench;DB_CLOSE_DELAY=-1";
+    private static final int USERS = 1_000;
+    private static final int NODES = 8;
+    private static final int INSERT_BATCH = 10_000;
+
+    private static final String[] QUERIES = {
+        // Como RESOLVE_FILE
+        "SELECT f.id, r.local_path FROM users u JOIN files f ON f.owner_id = u.id " +
+        "LEFT JOIN file_replicas r ON r.file_id = f.id WHERE f.name = ? AND u.username = ?",
+        "SELECT id FROM files WHERE checksum = ?",
+        "SELECT id FROM file_replicas WHERE file_id = ? AND status = 'ACTIVE'",
+        "SELECT id FROM file_replicas WHERE node_id = ? AND status = 'FAILED' LIMIT 100",
+        "SELECT permission_type FROM permissions WHERE user_id = ? AND file_id = ?"
+    };
+
+    private static final String[] NAMES = {
+        "archivo por propietario y nombre",
+        "archivo por checksum",
+        "réplicas activas de un archivo",
+        "réplicas fallidas de un nodo",
+        "permiso de usuario sobre archivo"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length >= 1 ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = args.length >= 2 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK ÍNDICES DE METADATOS: ESQUEMA INICIAL vs MIGRADO");
+        System.out.println("📦 Archivos: " + files + ", búsquedas por consulta: " + lookups);
+        System.out.println(SEPARATOR);
+
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            SchemaMigrator.migrate(conn, 1);
+            long start = System.nanoTime();
+            populate(conn, files);
+            System.out.printf("📥 Datos cargados en %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+            double[] before = measureAll(conn, files, lookups);
+
+            start = System.nanoTime();
+            int version = SchemaMigrator.migrate(conn);
+            System.out.printf("🔧 Migración a la versión %d en %d ms%n", version, (System.nanoTime() - start) / 1_000_000);
+
+            double[] after = measureAll(conn, files, lookups);
+
+            System.out.println(SEPARATOR);
+            System.out.printf("%-36s %12s %12s %9s%n", "consulta", "sin índice", "con índice", "mejora");
+            for (int q = 0; q < QUERIES.length; q++) {
+                System.out.printf("📊 %-33s %9.1f µs %9.1f µs %8.0fx%n", NAMES[q], before[q], after[q],
+                                  before[q] / after[q]);
+            }
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void populate(Connection conn, int files) throws SQLException {
+        Random random = new Random(42);
+        conn.setAutoCommit(false);
+        try (PreparedStatement user = conn.prepareStatement(
+                 "INSERT INTO users (id, username, password, email) VALUES (?, ?, 'x', ?)");
+             PreparedStatement node = conn.prepareStatement(
+                 "INSERT INTO nodes (id, node_id, hostname, port, storage_path, status) " +
+                 "VALUES (?, ?, 'localhost', 0, '/', 'ONLINE')");
+             PreparedStatement file = conn.prepareStatement(
+                 "INSERT INTO files (id, name, file_path, file_size, checksum, owner_id) VALUES (?, ?, ?, ?, ?, ?)");
+             PreparedStatement replica = conn.prepareStatement(
+                 "INSERT INTO file_replicas (file_id, node_id, local_path, status) VALUES (?, ?, ?, ?)");
+             PreparedStatement permission = conn.prepareStatement(
+                 "INSERT INTO permissions (user_id, file_id, permission_type, granted_by) VALUES (?, ?, 'READ', ?)")) {
+            for (int u = 1; u <= USERS; u++) {
+                user.setLong(1, u);
+                user.setString(2, "user" + u);
+                user.setString(3, "user" + u + "@bench");
+                user.addBatch();
+            }
+            user.executeBatch();
+            for (int n = 1; n <= NODES; n++) {
+                node.setLong(1, n);
+                node.setString(2, "node" + n);
+                node.addBatch();
+            }
+            node.executeBatch();
+
+            for (int f = 1; f <= files; f++) {
+                long owner = ownerOf(f);
+                file.setLong(1, f);
+                file.setString(2, "file" + f + ".dat");
+                file.setString(3, "/user" + owner + "/file" + f + ".dat");
+                file.setLong(4, random.nextInt(1 << 20));
+                file.setString(5, checksumOf(f));
+                file.setLong(6, owner);
+                file.addBatch();
+
+                for (int r = 0; r < 2; r++) {
+                    replica.setLong(1, f);
+                    replica.setLong(2, (f + r) % NODES + 1);
+                    replica.setString(3, "/storage/" + f);
+                    replica.setString(4, random.nextInt(1000) == 0 ? "FAILED" : "ACTIVE");
+                    replica.addBatch();
+                }
+                if (f % 10 == 0) {
+                    permission.setLong(1, (f / 10) % USERS + 1);
+                    permission.setLong(2, f);
+                    permission.setLong(3, owner);
+                    permission.addBatch();
+                }
+                if (f % INSERT_BATCH == 0 || f == files) {
+                    file.executeBatch();
+                    replica.executeBatch();
+                    permission.executeBatch();
+                    conn.commit();
+                }
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    private static double[] measureAll(Connection conn, int files, int lookups) throws SQLException {
+        double[] micros = new double[QUERIES.length];
+        for (int q = 0; q < QUERIES.length; q++) {
+            try (PreparedStatement stmt = conn.prepareStatement(QUERIES[q])) {
+                // Calentamiento
+                lookup(stmt, q, files, new Random(1), Math.max(1, lookups / 10));
+                Random random = new Random(7);
+                long start = System.nanoTime();
+                lookup(stmt, q, files, random, lookups);
+                micros[q] = (System.nanoTime() - start) / 1_000.0 / lookups;
+            }
+        }
+        return micros;
+    }
+
+    private static void lookup(PreparedStatement stmt, int query, int files, Random random, int count)
+            throws SQLException {
+        for (int i = 0; i < count; i++) {
+            int f = random.nextInt(files) + 1;
+            switch (query) {
+                case 0:
+                    stmt.setString(1, "file" + f + ".dat");
+                    stmt.setString(2, "user" + ownerOf(f));
+                    break;
+                case 1:
+                    stmt.setString(1, checksumOf(f));
+                    break;
+                case 2:
+                    stmt.setLong(1, f);
+                    break;
+                case 3:
+                    stmt.setLong(1, f % NODES + 1);
+                    break;
+                default:
+                    stmt.setLong(1, random.nextInt(USERS) + 1);
+                    stmt.setLong(2, f);
+                    break;
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rs.getObject(1);
+                }
+            }
+        }
+    }
+
+    private static long ownerOf(int file) {
+        return file % USERS + 1;
+    }
+
+    private static String checksumOf(int file) {
+        return String.format("%016x", file * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,117 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.client.DatabaseClient;
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark de inserción masiva de metadatos de archivos: un SAVE (una
+ * petición y un commit) por fila frente a operaciones BATCH de distintos tamaños.
+ *
+ * Uso: InsertThroughputBenchmark [filas]
+ */
+public class InsertThroughputBenchmark {
+
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length >= 1 ? Integer.parseInt(args[0]) : 20_000;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK INSERCIÓN: PETICIONES INDIVIDUALES vs BATCH");
+        System.out.println("📦 Filas por prueba: " + rows);
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        long ownerId = createOwner();
+        DatabaseClient client = new DatabaseClient();
+        if (!client.connect("localhost", server.getPort())) {
+            throw new IllegalStateException("No se pudo conectar");
+        }
+
+        try {
+            // Calentamiento
+            insertOneByOne(client, ownerId, "warmup", 2_000);
+            insertBatched(client, ownerId, "warmup", 2_000, 500);
+
+            long start = System.nanoTime();
+            insertOneByOne(client, ownerId, "single", rows);
+            report("1 petición por fila", rows, System.nanoTime() - start);
+
+            for (int batchSize : new int[]{100, 1_000, 5_000}) {
+                start = System.nanoTime();
+                insertBatched(client, ownerId, "batch" + batchSize, rows, batchSize);
+                report("BATCH de " + batchSize, rows, System.nanoTime() - start);
+            }
+        } finally {
+            client.disconnect();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void insertOneByOne(DatabaseClient client, long ownerId, String prefix, int rows)
+            throws Exception {
+        for (int i = 0; i < rows; i++) {
+            check(client.sendMessage(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                         fileRow(prefix, i, ownerId))));
+        }
+    }
+
+    private static void insertBatched(DatabaseClient client, long ownerId, String prefix, int rows, int batchSize)
+            throws Exception {
+        for (int from = 0; from < rows; from += batchSize) {
+            int to = Math.min(rows, from + batchSize);
+            List<DatabaseMessage> operations = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                operations.add(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                   fileRow(prefix, i, ownerId)));
+            }
+            DatabaseResponse response = check(client.sendMessage(
+                new DatabaseMessage(DatabaseMessage.BATCH, null, operations)));
+            if (((List<?>) response.getData()).size() != operations.size()) {
+                throw new IllegalStateException("Resultados del lote incompletos");
+            }
+        }
+    }
+
+    private static Map<String, Object> fileRow(String prefix, int i, long ownerId) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("name", prefix + "_" + i + ".pdf");
+        values.put("file_path", "/bench/" + prefix + "_" + i + ".pdf");
+        values.put("file_size", 1024L * (i % 4096));
+        values.put("owner_id", ownerId);
+        return values;
+    }
+
+    private static void report(String name, int rows, long nanos) {
+        System.out.printf("📊 %-22s %8d ms   %9.0f filas/s%n", name, nanos / 1_000_000, rows * 1e9 / nanos);
+    }
+
+    private static long createOwner() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO users (username, password, email) VALUES ('bench', 'x', 'bench@local')",
+                 PreparedStatement.RETURN_GENERATED_KEYS)) {
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.client.DatabaseClient;
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark de pipelining sobre una sola conexión: peticiones en serie
+ * (esperar cada respuesta antes de enviar la siguiente) frente a una ventana
+ * de peticiones en vuelo que el servidor ejecuta en paralelo.
+ *
+ * Uso: PipeliningBenchmark [peticiones] [ventana1,ventana2,...]
+ */
+public class PipeliningBenchmark {
+
+    private static final String QUERY =
+        "SELECT COUNT(*) AS TOTAL FROM information_schema.columns WHERE table_schema = ?";
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length >= 1 ? Integer.parseInt(args[0]) : 5000;
+        String[] windows = (args.length >= 2 ? args[1] : "1,8,32,64").split(",");
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK DE PIPELINING - UNA CONEXIÓN AL SERVIDOR DE BASE DE DATOS");
+        System.out.println("📦 Peticiones por ronda: " + requests);
+        System.out.println(SEPARATOR);
+
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        DatabaseClient client = new DatabaseClient();
+        if (!client.connect("localhost", server.getPort())) {
+            throw new IllegalStateException("No se pudo conectar");
+        }
+
+        try {
+            // Calentamiento
+            run(client, 1000, 16);
+
+            for (String window : windows) {
+                int size = Integer.parseInt(window.trim());
+                long start = System.nanoTime();
+                int outOfOrder = run(client, requests, size);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("📊 ventana %3d   %8.0f ops/s   respuestas fuera de orden: %d%n",
+                                  size, requests / seconds, outOfOrder);
+            }
+        } finally {
+            client.disconnect();
+            server.stop();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    /**
+     * Mantiene hasta {@code window} peticiones en vuelo y devuelve cuántas
+     * respuestas llegaron antes que la de una petición anterior
+     */
+    private static int run(DatabaseClient client, int requests, int window) throws Exception {
+        Deque<CompletableFuture<DatabaseResponse>> inFlight = new ArrayDeque<>();
+        long[] lastCompleted = {0};
+        int[] outOfOrder = {0};
+
+        for (int i = 0; i < requests; i++) {
+            if (inFlight.size() >= window) {
+                check(inFlight.poll().get());
+            }
+            DatabaseMessage message = new DatabaseMessage(DatabaseMessage.EXECUTE_QUERY, "");
+            message.setQuery(QUERY);
+            message.setParameters(new Object[]{"PUBLIC"});
+            inFlight.add(client.sendAsync(message).whenComplete((response, error) -> {
+                if (response == null) {
+                    return;
+                }
+                synchronized (lastCompleted) {
+                    if (response.getRequestId() < lastCompleted[0]) {
+                        outOfOrder[0]++;
+                    }
+                    lastCompleted[0] = Math.max(lastCompleted[0], response.getRequestId());
+                }
+            }));
+        }
+        while (!inFlight.isEmpty()) {
+            check(inFlight.poll().get());
+        }
+        synchronized (lastCompleted) {
+            return outOfOrder[0];
+        }
+    }
+}
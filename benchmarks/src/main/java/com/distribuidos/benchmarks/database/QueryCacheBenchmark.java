@@ -0,0 +1,120 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.DatabaseService;
+import com.distribuidos.database.service.FileMetadataService;
+import com.distribuidos.database.service.QueryResultCache;
+import com.distribuidos.database.service.StatementCache;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark de la caché de resultados de consultas: lecturas repetidas de
+ * metadatos (FIND_BY_ID, FIND_ALL y RESOLVE_FILE) con la caché activa frente
+ * a una caché sin capacidad, y lecturas intercaladas con escrituras.
+ *
+ * Uso: QueryCacheBenchmark [lecturas]
+ */
+public class QueryCacheBenchmark {
+
+    private static final int FILES = 200;
+
+    @FunctionalInterface
+    private interface Operation {
+        DatabaseResponse run(int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int reads = args.length >= 1 ? Integer.parseInt(args[0]) : 200_000;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK CACHÉ DE CONSULTAS: SIN CACHÉ vs CON CACHÉ");
+        System.out.println("📦 Lecturas por prueba: " + reads);
+        System.out.println(SEPARATOR);
+
+        DatabaseConfig.initialize();
+        DatabaseService uncached = new DatabaseService(new StatementCache(64), new QueryResultCache(0, 0));
+        DatabaseService cached = new DatabaseService();
+        FileMetadataService uncachedFiles = new FileMetadataService(uncached.getStatementCache(),
+                                                                    uncached.getResultCache(),
+                                                                    uncached.getChangeStream());
+        FileMetadataService cachedFiles = new FileMetadataService(cached.getStatementCache(),
+                                                                  cached.getResultCache(),
+                                                                  cached.getChangeStream());
+        long[] fileIds = createFiles(cached, cachedFiles);
+
+        for (DatabaseService service : new DatabaseService[]{uncached, cached}) {
+            String label = service == cached ? "con caché" : "sin caché";
+            FileMetadataService files = service == cached ? cachedFiles : uncachedFiles;
+            run("FIND_BY_ID " + label, reads, i -> service.findById("FILE", fileIds[i % FILES]));
+            run("FIND_ALL users " + label, reads / 10, i -> service.findAll("USER"));
+            run("RESOLVE_FILE " + label, reads, i -> files.resolveFile(fileQuery(i % FILES)));
+        }
+
+        // Una escritura cada 10 lecturas: cada UPDATE invalida solo su fila
+        Map<String, Object> size = new HashMap<>();
+        run("FIND_BY_ID + 10% UPDATE", reads, i -> {
+            if (i % 10 == 0) {
+                size.put("file_size", (long) i);
+                return cached.update("FILE", fileIds[i % FILES], size);
+            }
+            return cached.findById("FILE", fileIds[i % FILES]);
+        });
+        System.out.println("📈 " + cached.getResultCache());
+        System.out.println(SEPARATOR);
+    }
+
+    private static long[] createFiles(DatabaseService service, FileMetadataService files) {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", "cachebench");
+        user.put("password", "x");
+        user.put("email", "cachebench@local");
+        User owner = new User();
+        owner.setId((Long) check(service.save("USER", user)).getData());
+
+        long[] ids = new long[FILES];
+        for (int i = 0; i < FILES; i++) {
+            File file = new File();
+            file.setName("cache_" + i + ".pdf");
+            file.setFilePath("/cachebench/cache_" + i + ".pdf");
+            file.setFileSize(1024L * i);
+            file.setOwner(owner);
+            ids[i] = (Long) check(service.save("FILE", file)).getData();
+
+            Map<String, Object> replicas = new HashMap<>();
+            replicas.put("fileId", ids[i]);
+            replicas.put("nodeIds", List.of("node1", "node2"));
+            check(files.updateFileReplicas(replicas));
+        }
+        return ids;
+    }
+
+    private static Map<String, Object> fileQuery(int i) {
+        Map<String, Object> query = new HashMap<>();
+        query.put("fileName", "cache_" + i + ".pdf");
+        query.put("userId", "cachebench");
+        return query;
+    }
+
+    private static void run(String name, int operations, Operation operation) {
+        // Calentamiento
+        for (int i = 0; i < Math.min(operations, 5_000); i++) {
+            check(operation.run(i));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            check(operation.run(i));
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("📊 %-28s %8d ms   %10.0f ops/s%n", name, nanos / 1_000_000, operations * 1e9 / nanos);
+    }
+}
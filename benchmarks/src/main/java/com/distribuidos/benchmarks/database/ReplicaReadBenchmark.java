@@ -0,0 +1,242 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.ReplicatedDatabasePool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark de lecturas de metadatos con 0, 1 y 2 réplicas de lectura.
+ *
+ * Arranca el primario y cada réplica en su propio proceso (la configuración
+ * de la base de datos es estática por JVM), carga archivos en el primario y
+ * lanza lecturas concurrentes (búsquedas de archivos de un propietario, que
+ * no usan la caché de resultados) a través de ReplicatedDatabasePool.
+ * Después comprueba que una escritura llega a las réplicas y mide cuánto
+ * tarda. El rendimiento solo puede crecer con las réplicas si cada proceso
+ * dispone de sus propios núcleos.
+ *
+ * Uso: ReplicaReadBenchmark [archivos] [segundos por prueba] [hilos]
+ */
+public class ReplicaReadBenchmark {
+
+    private static final int BASE_PORT = 19_101;
+    private static final int USERS = 100;
+    private static final int BATCH_SIZE = 1_000;
+    private static final String READ_QUERY =
+        "SELECT id, name, file_size FROM files WHERE owner_id = ? ORDER BY file_size DESC LIMIT 20";
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length >= 1 ? Integer.parseInt(args[0]) : 50_000;
+        int seconds = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length >= 3 ? Integer.parseInt(args[2]) : 16;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK RÉPLICAS DE LECTURA: 0 vs 1 vs 2 RÉPLICAS");
+        System.out.println("📦 Archivos: " + files + ", " + seconds + " s por prueba, " + threads +
+                           " hilos, " + Runtime.getRuntime().availableProcessors() + " CPU");
+        System.out.println(SEPARATOR);
+
+        List<Process> processes = new ArrayList<>();
+        try {
+            processes.add(startServer(BASE_PORT, DatabaseServer.ROLE_PRIMARY));
+            DatabaseConnectionPool primary = pool(BASE_PORT);
+            long[] owners = populate(primary, files);
+
+            for (int i = 1; i <= 2; i++) {
+                processes.add(startServer(BASE_PORT + i, DatabaseServer.ROLE_REPLICA));
+            }
+            List<DatabaseConnectionPool> replicas = new ArrayList<>();
+            for (int i = 1; i <= 2; i++) {
+                DatabaseConnectionPool replica = pool(BASE_PORT + i);
+                long start = System.currentTimeMillis();
+                awaitFresh(replica, owners[0]);
+                System.out.printf("📥 Réplica %d al día en %d ms%n", i, System.currentTimeMillis() - start);
+                replicas.add(replica);
+            }
+
+            run("calentamiento", primary, replicas.subList(0, 0), owners, Math.max(1, seconds / 2), threads);
+            double base = 0;
+            for (int count = 0; count <= 2; count++) {
+                double rate = run(count + " réplicas", primary, replicas.subList(0, count), owners, seconds, threads);
+                if (count == 0) {
+                    base = rate;
+                } else {
+                    System.out.printf("   %.2fx respecto a solo el primario%n", rate / base);
+                }
+            }
+
+            measureLag(primary, replicas, owners[0]);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static Process startServer(int port, String role) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Ddb.role=" + role);
+        command.add("-Ddb.primary=localhost:" + BASE_PORT);
+        command.add(DatabaseServer.class.getName());
+        command.add(String.valueOf(port));
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(File.createTempFile("replica-bench-" + role + "-", ".log"))
+            .start();
+
+        DatabaseConnectionPool probe = pool(port);
+        try {
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (true) {
+                try {
+                    if (probe.send(new DatabaseMessage(DatabaseMessage.PING, null)).isSuccess()) {
+                        return process;
+                    }
+                } catch (Exception e) {
+                    if (System.currentTimeMillis() > deadline || !process.isAlive()) {
+                        throw new IllegalStateException("El servidor " + role + " en el puerto " + port + " no arrancó", e);
+                    }
+                    Thread.sleep(100);
+                }
+            }
+        } finally {
+            probe.close();
+        }
+    }
+
+    private static DatabaseConnectionPool pool(int port) {
+        return new DatabaseConnectionPool("localhost", port, new DatabaseConnectionPool.Config()
+            .maxConnections(8)
+            .requestTimeoutMs(30_000));
+    }
+
+    private static long[] populate(DatabaseConnectionPool primary, int files) throws Exception {
+        long start = System.currentTimeMillis();
+        long[] owners = new long[USERS];
+        for (int u = 0; u < USERS; u++) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("username", "replica_bench_" + u);
+            user.put("password", "x");
+            user.put("email", "replica_bench_" + u + "@bench");
+            owners[u] = (Long) check(primary.send(new DatabaseMessage(DatabaseMessage.SAVE,
+                                                                      DatabaseMessage.USER, user))).getData();
+        }
+        for (int from = 0; from < files; from += BATCH_SIZE) {
+            List<DatabaseMessage> operations = new ArrayList<>(BATCH_SIZE);
+            for (int i = from; i < Math.min(files, from + BATCH_SIZE); i++) {
+                Map<String, Object> file = new LinkedHashMap<>();
+                file.put("name", "file_" + i + ".dat");
+                file.put("file_path", "/bench/file_" + i + ".dat");
+                file.put("file_size", 1024L * (i % 4096));
+                file.put("owner_id", owners[i % USERS]);
+                operations.add(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, file));
+            }
+            check(primary.send(new DatabaseMessage(DatabaseMessage.BATCH, null, operations)));
+        }
+        System.out.printf("📥 %d archivos cargados en el primario en %d ms%n", files,
+                          System.currentTimeMillis() - start);
+        return owners;
+    }
+
+    private static DatabaseMessage readMessage(long owner) {
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.FIND_BY_CRITERIA, DatabaseMessage.FILE);
+        message.setQuery(READ_QUERY);
+        message.setParameters(new Object[]{owner});
+        return message;
+    }
+
+    /**
+     * Espera a que la réplica atienda lecturas (copia inicial terminada y desfase acotado)
+     */
+    private static void awaitFresh(DatabaseConnectionPool replica, long owner) throws Exception {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (replica.send(readMessage(owner)).isReplicaUnavailable()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("La réplica no se puso al día");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static double run(String name, DatabaseConnectionPool primary, List<DatabaseConnectionPool> replicas,
+                              long[] owners, int seconds, int threads) throws Exception {
+        // readYourWritesMs = 0: esta prueba solo lee
+        ReplicatedDatabasePool pool = new ReplicatedDatabasePool(primary, replicas, 0);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    try {
+                        if (pool.send(readMessage(owners[random.nextInt(owners.length)])).isSuccess()) {
+                            reads.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double rate = reads.get() / (double) seconds;
+        System.out.printf("📊 %-14s %9.0f lecturas/s  (réplicas %d, primario %d, reintentos %d, errores %d)%n",
+                          name, rate, pool.getReplicaReads(), pool.getPrimaryReads(), pool.getFallbacks(),
+                          errors.get());
+        return rate;
+    }
+
+    /**
+     * Tiempo hasta que una escritura en el primario se ve en cada réplica
+     */
+    private static void measureLag(DatabaseConnectionPool primary, List<DatabaseConnectionPool> replicas,
+                                   long owner) throws Exception {
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", "lag_probe.dat");
+        file.put("file_path", "/bench/lag_probe.dat");
+        file.put("file_size", 1L);
+        file.put("owner_id", owner);
+        long id = (Long) check(primary.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                                file))).getData();
+        long start = System.nanoTime();
+        for (int i = 0; i < replicas.size(); i++) {
+            while (true) {
+                DatabaseResponse response = replicas.get(i).send(
+                    new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, id));
+                if (response.isSuccess() && response.getData() != null) {
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            System.out.printf("⏱️ Escritura visible en la réplica %d tras %.1f ms%n", i + 1,
+                              (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.DatabaseService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.allocatedBytes;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark del mapeo de filas de DatabaseService: el mapeo anterior (HashMap
+ * por fila, metadatos leídos en cada fila, sentencia preparada en cada
+ * consulta) frente a RowMapper + caché de sentencias.
+ *
+ * Uso: RowMappingBenchmark [filas] [iteraciones]
+ */
+public class RowMappingBenchmark {
+
+
+    private interface Query {
+        int run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length >= 1 ? Integer.parseInt(args[0]) : 10_000;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 50;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK MAPEO DE FILAS Y CACHÉ DE SENTENCIAS");
+        System.out.println("📦 Filas en files: " + rows + ", iteraciones: " + iterations);
+        System.out.println(SEPARATOR);
+
+        DatabaseConfig.initialize();
+        populate(rows);
+        DatabaseService service = new DatabaseService();
+
+        try {
+            measure("findAll anterior", iterations, rows, () -> legacyQuery("SELECT * FROM files", null).size());
+            measure("findAll RowMapper", iterations, rows,
+                    () -> ((List<?>) check(service.findAll("FILE")).getData()).size());
+
+            int lookups = iterations * 200;
+            measure("findById anterior", lookups, 1,
+                    () -> legacyQuery("SELECT * FROM files WHERE id = ?", (long) (lookups % rows) + 1).size());
+            measure("findById con caché", lookups, 1, () -> {
+                check(service.findById("FILE", (long) (lookups % rows) + 1));
+                return 1;
+            });
+            System.out.printf("🗂️ Caché de sentencias: %d aciertos, %d fallos%n",
+                              service.getStatementCache().getHits(), service.getStatementCache().getMisses());
+        } finally {
+            DatabaseConfig.shutdown();
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void measure(String name, int iterations, int rowsPerQuery, Query query) throws Exception {
+        for (int i = 0; i < Math.max(5, iterations / 10); i++) {
+            query.run();
+        }
+        long alloc = allocatedBytes();
+        long start = System.nanoTime();
+        long rows = 0;
+        for (int i = 0; i < iterations; i++) {
+            rows += query.run();
+        }
+        long nanos = System.nanoTime() - start;
+        alloc = allocatedBytes() - alloc;
+        if (rows != (long) iterations * rowsPerQuery) {
+            throw new IllegalStateException("Filas inesperadas: " + rows);
+        }
+        System.out.printf("📊 %-22s %9.1f µs/consulta   %7.0f bytes asignados/fila%n",
+                          name, nanos / 1000.0 / iterations, (double) alloc / rows);
+    }
+
+    /**
+     * Mapeo anterior de DatabaseService, conservado como referencia
+     */
+    private static List<Map<String, Object>> legacyQuery(String sql, Object parameter) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (parameter != null) {
+                stmt.setObject(1, parameter);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Map<String, Object>> results = new ArrayList<>();
+                while (rs.next()) {
+                    Map<String, Object> map = new HashMap<>();
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        map.put(metaData.getColumnName(i), rs.getObject(i));
+                    }
+                    results.add(map);
+                }
+                return results;
+            }
+        }
+    }
+
+    private static void populate(int rows) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            try (PreparedStatement user = conn.prepareStatement(
+                    "INSERT INTO users (username, password, email) VALUES ('bench', 'x', 'bench@local')")) {
+                user.executeUpdate();
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO files (name, original_name, file_path, file_size, mime_type, checksum, owner_id) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, (SELECT id FROM users WHERE username = 'bench'))")) {
+                for (int i = 0; i < rows; i++) {
+                    insert.setString(1, "documento_" + i + ".pdf");
+                    insert.setString(2, "documento_" + i + ".pdf");
+                    insert.setString(3, "/bench/documento_" + i + ".pdf");
+                    insert.setLong(4, 1024L * (i % 4096));
+                    insert.setString(5, "application/pdf");
+                    insert.setString(6, i % 5 == 0 ? null : Long.toHexString(i * 0x9E3779B97F4A7C15L));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+}
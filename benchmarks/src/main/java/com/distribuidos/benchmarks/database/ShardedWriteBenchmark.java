@@ -0,0 +1,264 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.dto.ResolvedFile;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseCursor;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.RowSet;
+import com.distribuidos.shared.tcp.ShardedDatabasePool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+
+/**
+ * Benchmark de escritura de metadatos con 1, 2 y 4 fragmentos.
+ *
+ * Cada fragmento es un servidor de base de datos en su propio proceso
+ * (db.shard.index / db.shard.count). Varios hilos crean archivos de usuarios
+ * repartidos entre los fragmentos, con un SAVE por archivo y con BATCH, a
+ * través de ShardedDatabasePool. Al terminar cada prueba comprueba que los
+ * ids son únicos, que la paginación combinada devuelve todos los archivos
+ * una vez y que RESOLVE_FILE y las réplicas funcionan en cualquier fragmento.
+ * El rendimiento solo puede crecer con los fragmentos si cada proceso
+ * dispone de sus propios núcleos.
+ *
+ * Uso: ShardedWriteBenchmark [segundos por prueba] [hilos]
+ */
+public class ShardedWriteBenchmark {
+
+    private static final int BASE_PORT = 19_301;
+    private static final int USERS = 64;
+    private static final int BATCH_SIZE = 200;
+
+    @FunctionalInterface
+    private interface Writer {
+        long write(int thread, long sequence) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length >= 1 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : 16;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK METADATOS FRAGMENTADOS: 1 vs 2 vs 4 FRAGMENTOS");
+        System.out.println("📦 " + seconds + " s por prueba, " + threads + " hilos, " +
+                           Runtime.getRuntime().availableProcessors() + " CPU");
+        System.out.println(SEPARATOR);
+
+        double[] base = null;
+        for (int shardCount : new int[]{1, 2, 4}) {
+            double[] rates = run(shardCount, seconds, threads);
+            if (base == null) {
+                base = rates;
+            } else {
+                System.out.printf("   %.2fx (SAVE) y %.2fx (BATCH) respecto a un fragmento%n",
+                                  rates[0] / base[0], rates[1] / base[1]);
+            }
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static double[] run(int shardCount, int seconds, int threads) throws Exception {
+        List<Process> processes = new ArrayList<>();
+        List<DatabaseConnectionPool> pools = new ArrayList<>();
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                processes.add(startShard(i, shardCount));
+                pools.add(pool(BASE_PORT + i));
+            }
+            ShardedDatabasePool sharded = new ShardedDatabasePool(pools);
+            for (DatabaseConnectionPool pool : pools) {
+                awaitStarted(pool);
+            }
+
+            long[] owners = new long[USERS];
+            String[] usernames = new String[USERS];
+            for (int u = 0; u < USERS; u++) {
+                usernames[u] = "shard_bench_" + u;
+                Map<String, Object> user = new LinkedHashMap<>();
+                user.put("username", usernames[u]);
+                user.put("password", "x");
+                user.put("email", usernames[u] + "@bench");
+                owners[u] = (Long) check(sharded.send(new DatabaseMessage(DatabaseMessage.SAVE,
+                                                                          DatabaseMessage.USER, user))).getData();
+            }
+
+            // Calentamiento de los servidores y del cliente
+            measure(threads, Math.max(1, seconds / 2), (t, i) -> saveFile(sharded, owners, "warm", t, i));
+            double saves = measure(threads, seconds, (t, i) -> saveFile(sharded, owners, "save", t, i));
+            double batched = measure(threads, seconds, (t, i) -> saveBatch(sharded, owners, t, i));
+            System.out.printf("📊 %d fragmento(s): SAVE %9.0f archivos/s   BATCH %d %9.0f archivos/s%n",
+                              shardCount, saves, BATCH_SIZE, batched);
+
+            verify(sharded, usernames, owners);
+            return new double[]{saves, batched};
+        } finally {
+            for (DatabaseConnectionPool pool : pools) {
+                pool.close();
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+        }
+    }
+
+    private static long saveFile(ShardedDatabasePool pool, long[] owners, String prefix, int thread, long i)
+            throws Exception {
+        check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                            fileRow(prefix, owners, thread, i))));
+        return 1;
+    }
+
+    private static long saveBatch(ShardedDatabasePool pool, long[] owners, int thread, long i) throws Exception {
+        List<DatabaseMessage> operations = new ArrayList<>(BATCH_SIZE);
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            operations.add(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                               fileRow("batch", owners, thread, i * BATCH_SIZE + j)));
+        }
+        check(pool.send(new DatabaseMessage(DatabaseMessage.BATCH, null, operations)));
+        return BATCH_SIZE;
+    }
+
+    private static Map<String, Object> fileRow(String prefix, long[] owners, int thread, long i) {
+        String name = prefix + "_" + thread + "_" + i + ".dat";
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", name);
+        file.put("file_path", "/bench/" + name);
+        file.put("file_size", 1024L * (i % 4096));
+        file.put("owner_id", owners[(int) ((thread * 31 + i) % owners.length)]);
+        return file;
+    }
+
+    /**
+     * Archivos escritos por segundo entre todos los hilos
+     */
+    private static double measure(int threads, int seconds, Writer writer) throws Exception {
+        AtomicLong written = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                long sequence = 0;
+                while (System.nanoTime() < end) {
+                    try {
+                        written.addAndGet(writer.write(thread, sequence++));
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (errors.get() > 0) {
+            throw new IllegalStateException(errors.get() + " escrituras fallidas");
+        }
+        return written.get() / (double) seconds;
+    }
+
+    /**
+     * Comprueba ids únicos, la paginación combinada, RESOLVE_FILE y la tabla de nodos
+     */
+    private static void verify(ShardedDatabasePool pool, String[] usernames, long[] owners) throws Exception {
+        DatabaseMessage count = new DatabaseMessage(DatabaseMessage.EXECUTE_QUERY, null);
+        count.setQuery("SELECT COUNT(*) FROM files");
+        long expected = 0;
+        for (Map<String, Object> row : (RowSet) check(pool.send(count)).getData()) {
+            expected += ((Number) row.values().iterator().next()).longValue();
+        }
+
+        Set<Long> ids = new HashSet<>();
+        long previous = 0;
+        DatabaseCursor cursor = new DatabaseCursor(pool::sendAsync, DatabaseMessage.FILE, null, null, 5000, 30_000);
+        while (cursor.hasNext()) {
+            long id = ((Number) cursor.next().get("ID")).longValue();
+            if (!ids.add(id) || id <= previous) {
+                throw new IllegalStateException("Paginación combinada desordenada o con duplicados en el id " + id);
+            }
+            previous = id;
+        }
+        if (ids.size() != expected) {
+            throw new IllegalStateException("La paginación combinada devolvió " + ids.size() + " de " + expected);
+        }
+
+        int last = usernames.length - 1;
+        Map<String, Object> replicas = new LinkedHashMap<>();
+        Map<String, Object> locations = new LinkedHashMap<>();
+        locations.put("node-a", "/storage/a");
+        locations.put("node-b", "/storage/b");
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", "verify.dat");
+        file.put("file_path", "/verify/" + usernames[last]);
+        file.put("owner_id", owners[last]);
+        long fileId = (Long) check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                                 file))).getData();
+        replicas.put("fileId", fileId);
+        replicas.put("replicas", locations);
+        check(pool.send(new DatabaseMessage(DatabaseMessage.UPDATE_FILE_REPLICAS, null, replicas)));
+
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("fileName", "verify.dat");
+        query.put("userId", usernames[last]);
+        ResolvedFile resolved = (ResolvedFile) check(pool.send(
+            new DatabaseMessage(DatabaseMessage.RESOLVE_FILE, null, query))).getData();
+        if (resolved.getReplicas().size() != 2) {
+            throw new IllegalStateException("RESOLVE_FILE devolvió " + resolved.getReplicas().size() + " réplicas");
+        }
+        System.out.printf("✅ %d archivos con ids únicos, paginación combinada y RESOLVE_FILE correctos%n", expected);
+    }
+
+    private static Process startShard(int index, int count) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-D" + DatabaseConfig.SHARD_INDEX_PROPERTY + "=" + index);
+        command.add("-D" + DatabaseConfig.SHARD_COUNT_PROPERTY + "=" + count);
+        command.add(DatabaseServer.class.getName());
+        command.add(String.valueOf(BASE_PORT + index));
+        return new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(File.createTempFile("shard-bench-" + index + "-", ".log"))
+            .start();
+    }
+
+    private static void awaitStarted(DatabaseConnectionPool pool) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            try {
+                if (pool.send(new DatabaseMessage(DatabaseMessage.PING, null)).isSuccess()) {
+                    return;
+                }
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("El fragmento no arrancó", e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static DatabaseConnectionPool pool(int port) {
+        return new DatabaseConnectionPool("localhost", port, new DatabaseConnectionPool.Config()
+            .maxConnections(8)
+            .requestTimeoutMs(30_000));
+    }
+}
@@ -0,0 +1,171 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.DatabaseTransaction;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.check;
+import static com.distribuidos.benchmarks.BenchmarkSupport.deleteRecursively;
+
+/**
+ * Benchmark de las transacciones de varias peticiones (BEGIN/COMMIT).
+ *
+ * Registra archivos como lo hace el servidor de aplicación, con
+ * CREATE_FILE y UPDATE_FILE_REPLICAS: cada operación con su propio commit
+ * o las dos en una transacción con un único commit. Se mide con H2 en
+ * memoria y en archivo sin retraso de escritura, donde cada commit se
+ * escribe en disco. El comportamiento de las transacciones (visibilidad,
+ * ROLLBACK, cierre de la conexión e inactividad) lo prueba
+ * TransactionIntegrationTest.
+ *
+ * Uso: TransactionBenchmark [segundos por prueba] [hilos]
+ */
+public class TransactionBenchmark {
+
+    private static final int TIMEOUT_MS = 30_000;
+    private static final String OWNER = "tx_bench";
+    private static final String[] NODES = {"node-1", "node-2", "node-3"};
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length >= 1 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK TRANSACCIONES: UN COMMIT POR OPERACIÓN vs BEGIN/COMMIT");
+        System.out.println("📦 " + seconds + " s por prueba, 1 y " + threads + " hilos, " +
+                           Runtime.getRuntime().availableProcessors() + " CPU");
+        System.out.println(SEPARATOR);
+
+        Path dir = Files.createTempDirectory("txbench");
+        try {
+            System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+            run("memoria", seconds, threads);
+
+            System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_FILE);
+            System.setProperty("db.path", dir.resolve("db").toString());
+            System.setProperty("db.write.delay.ms", "0");
+            run("archivo, WRITE_DELAY=0", seconds, threads);
+        } finally {
+            System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+            System.clearProperty("db.path");
+            System.clearProperty("db.write.delay.ms");
+            deleteRecursively(dir);
+        }
+        System.out.println(SEPARATOR);
+    }
+
+    private static void run(String label, int seconds, int threads) throws Exception {
+        DatabaseServer server = new DatabaseServer(0);
+        server.start();
+        DatabaseConnectionPool pool = new DatabaseConnectionPool("localhost", server.getPort(),
+            new DatabaseConnectionPool.Config().maxConnections(threads).requestTimeoutMs(TIMEOUT_MS));
+        try {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("username", OWNER);
+            user.put("password", "x");
+            user.put("email", OWNER + "@bench");
+            check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user)));
+
+            System.out.println("🗄️ H2 en " + label);
+            measure(pool, 1, Math.max(1, seconds / 2), false, false);
+            for (int workers : new int[]{1, threads}) {
+                double separate = measure(pool, workers, seconds, false, true);
+                double single = measure(pool, workers, seconds, true, true);
+                System.out.printf("   %.2fx con una transacción (%d hilos)%n", single / separate, workers);
+            }
+        } finally {
+            pool.close();
+            server.stop();
+        }
+    }
+
+    /**
+     * Archivos registrados por segundo (CREATE_FILE + UPDATE_FILE_REPLICAS)
+     */
+    private static double measure(DatabaseConnectionPool pool, int threads, int seconds, boolean transaction,
+                                  boolean report) throws Exception {
+        AtomicLong stored = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                long sequence = 0;
+                while (System.nanoTime() < end) {
+                    String name = "tx_" + thread + "_" + sequence++ + "_" + System.nanoTime() + ".dat";
+                    try {
+                        if (transaction) {
+                            try (DatabaseTransaction tx = pool.begin()) {
+                                storeFile(tx::send, name);
+                                check(tx.commit());
+                            }
+                        } else {
+                            storeFile(pool::send, name);
+                        }
+                        stored.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (errors.get() > 0) {
+            throw new IllegalStateException(errors.get() + " archivos no se pudieron registrar");
+        }
+        double rate = stored.get() / (double) seconds;
+        if (report) {
+            System.out.printf("📊 %-28s %d hilos: %8.0f archivos/s%n",
+                              transaction ? "BEGIN/COMMIT" : "un commit por operación", threads, rate);
+        }
+        return rate;
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+        DatabaseResponse send(DatabaseMessage message) throws Exception;
+    }
+
+    private static long storeFile(Sender sender, String name) throws Exception {
+        File file = new File();
+        file.setName(name);
+        file.setFileSize(1024L);
+        User owner = new User();
+        owner.setUsername(OWNER);
+        file.setOwner(owner);
+        DatabaseMessage create = new DatabaseMessage();
+        create.setOperation(DatabaseMessage.CREATE_FILE);
+        create.setData(file);
+        long fileId = ((File) check(sender.send(create)).getData()).getId();
+
+        Map<String, String> replicas = new LinkedHashMap<>();
+        for (String node : NODES) {
+            replicas.put(node, "/storage/" + node + "/" + fileId);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("fileId", fileId);
+        data.put("replicas", replicas);
+        DatabaseMessage update = new DatabaseMessage();
+        update.setOperation(DatabaseMessage.UPDATE_FILE_REPLICAS);
+        update.setData(data);
+        check(sender.send(update));
+        return fileId;
+    }
+}
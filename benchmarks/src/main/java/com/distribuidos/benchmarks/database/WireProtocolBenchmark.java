@@ -0,0 +1,120 @@
+package com.distribuidos.benchmarks.database;
+
+import com.distribuidos.shared.tcp.BinaryWireCodec;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.FrameCodec;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.distribuidos.benchmarks.BenchmarkSupport.SEPARATOR;
+import static com.distribuidos.benchmarks.BenchmarkSupport.allocatedBytes;
+
+/**
+ * Benchmark de Java serialization frente al protocolo binario para respuestas
+ * con muchas filas, con la forma de la tabla files (8 columnas, algunas nulas).
+ * Mide bytes en la red, tiempo de codificación/decodificación y memoria
+ * asignada por operación.
+ *
+ * Uso: WireProtocolBenchmark [filas] [iteraciones]
+ */
+public class WireProtocolBenchmark {
+
+
+    private interface Codec {
+        byte[] encode(DatabaseResponse response) throws Exception;
+
+        DatabaseResponse decode(byte[] payload) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length >= 1 ? Integer.parseInt(args[0]) : 10_000;
+        int iterations = args.length >= 2 ? Integer.parseInt(args[1]) : 30;
+
+        System.out.println(SEPARATOR);
+        System.out.println("🏁 BENCHMARK PROTOCOLO DE RED - JAVA SERIALIZATION vs BINARIO");
+        System.out.println("📦 Filas por respuesta: " + rows + ", iteraciones: " + iterations);
+        System.out.println(SEPARATOR);
+
+        DatabaseResponse response = DatabaseResponse.success(buildRows(rows));
+
+        Codec java = new Codec() {
+            public byte[] encode(DatabaseResponse r) throws Exception {
+                return FrameCodec.serialize(r);
+            }
+
+            public DatabaseResponse decode(byte[] payload) throws Exception {
+                return (DatabaseResponse) FrameCodec.deserialize(payload);
+            }
+        };
+        Codec binary = new Codec() {
+            public byte[] encode(DatabaseResponse r) {
+                return BinaryWireCodec.encodeResponse(r);
+            }
+
+            public DatabaseResponse decode(byte[] payload) throws Exception {
+                return BinaryWireCodec.decodeResponse(payload);
+            }
+        };
+
+        measure("Java serialization", java, response, iterations);
+        measure("Binario v" + BinaryWireCodec.VERSION, binary, response, iterations);
+        System.out.println(SEPARATOR);
+    }
+
+    private static void measure(String name, Codec codec, DatabaseResponse response, int iterations) throws Exception {
+        // Calentamiento
+        for (int i = 0; i < 5; i++) {
+            codec.decode(codec.encode(response));
+        }
+
+        byte[] payload = null;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        long encodeAlloc = 0;
+        long decodeAlloc = 0;
+        for (int i = 0; i < iterations; i++) {
+            long alloc = allocatedBytes();
+            long start = System.nanoTime();
+            payload = codec.encode(response);
+            encodeNanos += System.nanoTime() - start;
+            encodeAlloc += allocatedBytes() - alloc;
+
+            alloc = allocatedBytes();
+            start = System.nanoTime();
+            DatabaseResponse decoded = codec.decode(payload);
+            decodeNanos += System.nanoTime() - start;
+            decodeAlloc += allocatedBytes() - alloc;
+
+            if (((List<?>) decoded.getData()).size() != ((List<?>) response.getData()).size()) {
+                throw new IllegalStateException("Filas perdidas al decodificar");
+            }
+        }
+
+        System.out.printf("📊 %-20s %10d bytes   encode: %6.2f ms (%6.1f MB)   decode: %6.2f ms (%6.1f MB)%n",
+                          name, payload.length,
+                          encodeNanos / 1e6 / iterations, encodeAlloc / 1e6 / iterations,
+                          decodeNanos / 1e6 / iterations, decodeAlloc / 1e6 / iterations);
+    }
+
+    private static List<Map<String, Object>> buildRows(int count) {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("ID", (long) i + 1);
+            row.put("FILENAME", "documento_" + i + ".pdf");
+            row.put("FILE_PATH", "/usuarios/" + (i % 50) + "/documentos/documento_" + i + ".pdf");
+            row.put("FILE_SIZE", 1024L * (i % 4096));
+            row.put("OWNER_ID", (long) (i % 50) + 1);
+            row.put("DIRECTORY_ID", i % 3 == 0 ? null : (long) (i % 200));
+            row.put("CHECKSUM", i % 5 == 0 ? null : Long.toHexString(i * 0x9E3779B97F4A7C15L));
+            row.put("CREATED_AT", new Timestamp(now - i * 1000L));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -421,6 +421,23 @@ public class ClientBackendMain {
             System.out.println("   • Operaciones fallidas: " + stats.getFailedOperations());
             System.out.println("   • Tasa de éxito: " + String.format("%.2f%%", stats.getSuccessRate()));
             
+            // Hinted handoff
+            System.out.println();
+            System.out.println("📌 HINTED HANDOFF:");
+            System.out.println("   • Hints pendientes: " + stats.getPendingHintedHandoffs());
+            System.out.println("   • Hints entregados: " + stats.getReplayedHintedHandoffs());
+            if (stats.getPendingHintsByNode() != null) {
+                stats.getPendingHintsByNode().forEach((nodeId, count) ->
+                    System.out.println("   • " + nodeId + ": " + count + " pendientes"));
+            }
+            
+            // Read repair
+            System.out.println();
+            System.out.println("🩹 READ REPAIR:");
+            System.out.println("   • Reparaciones iniciadas: " + stats.getReadRepairsTriggered());
+            System.out.println("   • Reparaciones completadas: " + stats.getReadRepairsCompleted());
+            System.out.println("   • Reparaciones fallidas: " + stats.getReadRepairsFailed());
+            
             // Estadísticas por nodo
             if (stats.getNodeStatistics() != null && !stats.getNodeStatistics().isEmpty()) {
                 System.out.println();
@@ -27,6 +27,12 @@ public class SystemStatistics implements Serializable {
     private long failedOperations;
     private double successRate;
     private String systemHealth;
+    private int pendingHintedHandoffs;
+    private Map<String, Integer> pendingHintsByNode;
+    private long replayedHintedHandoffs;
+    private long readRepairsTriggered;
+    private long readRepairsCompleted;
+    private long readRepairsFailed;
     
     // Clase interna para estadísticas de nodo
     public static class NodeStatistics implements Serializable {
@@ -150,6 +156,24 @@ public class SystemStatistics implements Serializable {
     public String getSystemHealth() { return systemHealth; }
     public void setSystemHealth(String systemHealth) { this.systemHealth = systemHealth; }
     
+    public int getPendingHintedHandoffs() { return pendingHintedHandoffs; }
+    public void setPendingHintedHandoffs(int pendingHintedHandoffs) { this.pendingHintedHandoffs = pendingHintedHandoffs; }
+    
+    public Map<String, Integer> getPendingHintsByNode() { return pendingHintsByNode; }
+    public void setPendingHintsByNode(Map<String, Integer> pendingHintsByNode) { this.pendingHintsByNode = pendingHintsByNode; }
+    
+    public long getReplayedHintedHandoffs() { return replayedHintedHandoffs; }
+    public void setReplayedHintedHandoffs(long replayedHintedHandoffs) { this.replayedHintedHandoffs = replayedHintedHandoffs; }
+    
+    public long getReadRepairsTriggered() { return readRepairsTriggered; }
+    public void setReadRepairsTriggered(long readRepairsTriggered) { this.readRepairsTriggered = readRepairsTriggered; }
+    
+    public long getReadRepairsCompleted() { return readRepairsCompleted; }
+    public void setReadRepairsCompleted(long readRepairsCompleted) { this.readRepairsCompleted = readRepairsCompleted; }
+    
+    public long getReadRepairsFailed() { return readRepairsFailed; }
+    public void setReadRepairsFailed(long readRepairsFailed) { this.readRepairsFailed = readRepairsFailed; }
+    
     /**
      * Calcula estadísticas derivadas
      */
@@ -219,6 +243,7 @@ public class SystemStatistics implements Serializable {
         sb.append(", utilization=").append(String.format("%.2f", storageUtilizationPercentage)).append("%");
         sb.append(", successRate=").append(String.format("%.2f", successRate)).append("%");
         sb.append(", health=").append(systemHealth);
+        sb.append(", pendingHints=").append(pendingHintedHandoffs);
         sb.append(", timestamp=").append(generationTimestamp);
         sb.append('}');
         return sb.toString();
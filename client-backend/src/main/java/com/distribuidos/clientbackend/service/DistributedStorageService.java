@@ -1,20 +1,29 @@
 package com.distribuidos.clientbackend.service;
 
 import com.distribuidos.shared.rmi.StorageNodeInterface;
+import com.distribuidos.shared.rmi.BatchItemResult;
+import com.distribuidos.shared.rmi.BatchStoreItem;
 import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.RemoteStubCache;
 import com.distribuidos.clientbackend.model.DistributedFileResult;
 import com.distribuidos.clientbackend.model.FileIntegrityReport;
 import com.distribuidos.clientbackend.model.SystemStatistics;
+import com.distribuidos.shared.dataplane.DataPlaneClient;
+import com.distribuidos.shared.dataplane.DataPlaneProtocol;
+import com.distribuidos.shared.util.ConsistentHashRing;
+import com.distribuidos.shared.util.ExecutorFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.rmi.Naming;
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Servicio principal para gestión de almacenamiento distribuido
@@ -26,21 +35,50 @@ public class DistributedStorageService {
     
     // Configuración de nodos
     private final Map<String, NodeConfig> storageNodes;
-    private final Map<String, StorageNodeInterface> activeConnections;
+    private final RemoteStubCache stubCache;
+    private final Map<String, DataPlaneClient> dataPlaneClients;
     private final ExecutorService executorService;
     private final ScheduledExecutorService scheduledExecutor;
+    private final HintedHandoffService hintedHandoffService;
+    // Conexiones a los nodos en lugar de RMI y plano de datos, o null
+    private final HintedHandoffService.NodeConnector nodeConnector;
+    
+    // Anillo de colocación ponderado por capacidad de cada nodo
+    private final ConsistentHashRing placementRing;
     
     // Estadísticas
     private long totalOperations = 0;
     private long successfulOperations = 0;
     private long failedOperations = 0;
+    private final AtomicLong readRepairsTriggered = new AtomicLong();
+    private final AtomicLong readRepairsCompleted = new AtomicLong();
+    private final AtomicLong readRepairsFailed = new AtomicLong();
     
     // Registro de nombres de archivos
     private final Map<Long, String> fileNamesRegistry = new ConcurrentHashMap<>();
     
+    // Registro de checksums vigentes por archivo
+    private final Map<Long, String> fileChecksumRegistry = new ConcurrentHashMap<>();
+    
+    // Registro de nodos que deben mantener réplica de cada archivo
+    private final Map<Long, Set<String>> fileReplicaRegistry = new ConcurrentHashMap<>();
+    
+    // Políticas de quórum por clase de almacenamiento
+    private final Map<String, QuorumPolicy> storageClasses = new ConcurrentHashMap<>();
+    private volatile QuorumPolicy defaultQuorumPolicy = QuorumPolicy.STANDARD;
+    
     // Configuración
-    private static final int DEFAULT_REPLICATION_FACTOR = 2;
     private static final int HEALTH_CHECK_INTERVAL_SECONDS = 30;
+    private final boolean dataPlaneEnabled =
+        Boolean.parseBoolean(System.getProperty("storage.dataplane.enabled", "true"));
+    // Fracción de lecturas que verifican las réplicas esperadas que no se consultaron
+    static final double DEFAULT_READ_REPAIR_VERIFY_RATE = 0.1;
+    private volatile double readRepairVerifyRate = Double.parseDouble(
+        System.getProperty("storage.readrepair.verify.rate", String.valueOf(DEFAULT_READ_REPAIR_VERIFY_RATE)));
+    // Bytes máximos de datos por llamada RMI de un lote; un archivo mayor va solo
+    static final long DEFAULT_MAX_BATCH_BYTES = 16L * 1024 * 1024;
+    private final long maxBatchBytes =
+        Long.getLong("storage.batch.max.bytes", DEFAULT_MAX_BATCH_BYTES);
     
     /**
      * Configuración de nodo de almacenamiento
@@ -51,13 +89,19 @@ public class DistributedStorageService {
         public final int port;
         public final String serviceName;
         public final String rmiUrl;
+        public final int dataPort;
         
         public NodeConfig(String nodeId, String hostname, int port, String serviceName) {
+            this(nodeId, hostname, port, serviceName, port + DataPlaneProtocol.DEFAULT_PORT_OFFSET);
+        }
+        
+        public NodeConfig(String nodeId, String hostname, int port, String serviceName, int dataPort) {
             this.nodeId = nodeId;
             this.hostname = hostname;
             this.port = port;
             this.serviceName = serviceName;
             this.rmiUrl = "rmi://" + hostname + ":" + port + "/" + serviceName;
+            this.dataPort = dataPort;
         }
     }
     
@@ -65,16 +109,30 @@ public class DistributedStorageService {
      * Constructor
      */
     public DistributedStorageService() {
+        this(null);
+    }
+    
+    /**
+     * @param nodeConnector conexiones a los nodos en lugar de RMI y plano de
+     *                      datos (pruebas), o null
+     */
+    DistributedStorageService(HintedHandoffService.NodeConnector nodeConnector) {
+        this.nodeConnector = nodeConnector;
         this.storageNodes = new ConcurrentHashMap<>();
-        this.activeConnections = new ConcurrentHashMap<>();
-        this.executorService = Executors.newFixedThreadPool(10);
+        this.stubCache = RemoteStubCache.getDefault();
+        this.dataPlaneClients = new ConcurrentHashMap<>();
+        // Llamadas RMI y de plano de datos bloqueantes: hilos virtuales si executor.mode=virtual
+        this.executorService = ExecutorFactory.newBlockingExecutor("dss-io", 10);
         this.scheduledExecutor = Executors.newScheduledThreadPool(2);
+        this.hintedHandoffService = new HintedHandoffService();
+        this.placementRing = new ConsistentHashRing();
         
         initializeStorageNodes();
+        initializeStorageClasses();
         startHealthCheckMonitoring();
         
-        logger.info("🚀 DistributedStorageService inicializado con {} nodos configurados", 
-                   storageNodes.size());
+        logger.info("🚀 DistributedStorageService inicializado con {} nodos configurados (ejecutor: {})", 
+                   storageNodes.size(), ExecutorFactory.getEffectiveMode());
     }
     
     /**
@@ -89,9 +147,23 @@ public class DistributedStorageService {
         storageNodes.put("storage-node-3", 
             new NodeConfig("storage-node-3", "localhost", 1101, "StorageNode3"));
         
+        // Peso inicial uniforme; se ajusta con la capacidad reportada en cada heartbeat
+        for (String nodeId : storageNodes.keySet()) {
+            placementRing.addNode(nodeId, ConsistentHashRing.DEFAULT_WEIGHT_UNIT);
+        }
+        
         logger.info("📋 Configurados {} nodos de almacenamiento", storageNodes.size());
     }
     
+    /**
+     * Registra las clases de almacenamiento predefinidas
+     */
+    private void initializeStorageClasses() {
+        for (QuorumPolicy policy : new QuorumPolicy[]{QuorumPolicy.STANDARD, QuorumPolicy.FAST, QuorumPolicy.STRONG}) {
+            storageClasses.put(policy.getName(), policy);
+        }
+    }
+    
     /**
      * Inicia el monitoreo de salud de nodos
      */
@@ -116,6 +188,12 @@ public class DistributedStorageService {
                     
                     if (isHealthy) {
                         logger.debug("💚 Nodo {} saludable", nodeConfig.nodeId);
+                        updatePlacementWeight(nodeConfig.nodeId, node);
+                        
+                        // Entregar réplicas pendientes ahora que el nodo volvió, en el hilo del handoff
+                        if (hintedHandoffService.hasHints(nodeConfig.nodeId)) {
+                            hintedHandoffService.replayHints(nodeConfig.nodeId, this::getNodeConnection);
+                        }
                     } else {
                         logger.warn("💛 Nodo {} respondió heartbeat pero con problemas", nodeConfig.nodeId);
                     }
@@ -124,7 +202,7 @@ public class DistributedStorageService {
                     
                 } catch (Exception e) {
                     logger.warn("❤️‍🩹 Nodo {} no disponible: {}", nodeConfig.nodeId, e.getMessage());
-                    activeConnections.remove(nodeConfig.nodeId);
+                    invalidateConnection(nodeConfig.nodeId, e);
                     return false;
                 }
             }, executorService);
@@ -132,30 +210,96 @@ public class DistributedStorageService {
     }
     
     /**
-     * Obtiene o crea una conexión a un nodo específico
+     * Actualiza el peso del nodo en el anillo según su capacidad total
      */
-    private StorageNodeInterface getNodeConnection(String nodeId) throws Exception {
-        StorageNodeInterface connection = activeConnections.get(nodeId);
-        
-        if (connection == null) {
-            NodeConfig config = storageNodes.get(nodeId);
-            if (config == null) {
-                throw new IllegalArgumentException("Nodo no configurado: " + nodeId);
+    private void updatePlacementWeight(String nodeId, StorageNodeInterface node) {
+        try {
+            NodeInfo info = node.getNodeInfo();
+            if (info != null && info.getTotalCapacity() != null && info.getTotalCapacity() > 0) {
+                placementRing.addNode(nodeId, info.getTotalCapacity());
             }
-            
-            logger.debug("🔌 Conectando a nodo: {}", config.rmiUrl);
-            connection = (StorageNodeInterface) Naming.lookup(config.rmiUrl);
-            
-            // Verificar conexión con heartbeat
-            if (connection.heartbeat()) {
-                activeConnections.put(nodeId, connection);
-                logger.info("✅ Conexión establecida con nodo: {}", nodeId);
-            } else {
-                throw new Exception("Nodo no responde a heartbeat: " + nodeId);
+        } catch (Exception e) {
+            logger.debug("No se pudo obtener capacidad de {}: {}", nodeId, e.getMessage());
+        }
+    }
+    
+    /**
+     * Escribe una réplica por el plano de datos NIO; si el nodo no lo expone,
+     * usa RMI como respaldo.
+     */
+    private String writeReplica(String nodeId, Long fileId, String fileName, byte[] fileData,
+                                String checksum) throws Exception {
+        DataPlaneClient dataPlane = getDataPlaneClient(nodeId);
+        if (dataPlane != null) {
+            try {
+                return dataPlane.storeFile(fileId, fileName, fileData, checksum);
+            } catch (DataPlaneClient.DataPlaneException e) {
+                throw e;
+            } catch (IOException e) {
+                logger.debug("Plano de datos de {} no disponible, usando RMI: {}", nodeId, e.getMessage());
+            }
+        }
+        return getNodeConnection(nodeId).storeFile(fileId, fileName, fileData, checksum);
+    }
+    
+    /**
+     * Lee una réplica por el plano de datos NIO con respaldo en RMI
+     */
+    private byte[] readReplica(String nodeId, Long fileId) throws Exception {
+        DataPlaneClient dataPlane = getDataPlaneClient(nodeId);
+        if (dataPlane != null) {
+            try {
+                return dataPlane.retrieveFile(fileId);
+            } catch (DataPlaneClient.DataPlaneException e) {
+                throw e;
+            } catch (IOException e) {
+                logger.debug("Plano de datos de {} no disponible, usando RMI: {}", nodeId, e.getMessage());
             }
         }
+        return getNodeConnection(nodeId).retrieveFile(fileId, null);
+    }
+    
+    private DataPlaneClient getDataPlaneClient(String nodeId) {
+        if (!dataPlaneEnabled || nodeConnector != null) {
+            return null;
+        }
+        NodeConfig config = storageNodes.get(nodeId);
+        if (config == null) {
+            return null;
+        }
+        return dataPlaneClients.computeIfAbsent(nodeId, id -> new DataPlaneClient(config.hostname, config.dataPort));
+    }
+    
+    /**
+     * Obtiene el stub de un nodo desde la caché compartida de stubs
+     */
+    private StorageNodeInterface getNodeConnection(String nodeId) throws Exception {
+        NodeConfig config = storageNodes.get(nodeId);
+        if (config == null) {
+            throw new IllegalArgumentException("Nodo no configurado: " + nodeId);
+        }
+        if (nodeConnector != null) {
+            return nodeConnector.connect(nodeId);
+        }
         
-        return connection;
+        return stubCache.lookup(config.hostname, config.port, config.serviceName, StorageNodeInterface.class);
+    }
+    
+    /**
+     * Descarta el stub de un nodo solo si dejó de existir en el servidor
+     * (nodo reiniciado). Los errores de red transitorios conservan el stub.
+     */
+    private void invalidateConnection(String nodeId, Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof NoSuchObjectException) {
+                NodeConfig config = storageNodes.get(nodeId);
+                if (config != null) {
+                    stubCache.invalidate(config.hostname, config.port, config.serviceName);
+                    logger.info("🔄 Stub de {} descartado, se resolverá de nuevo", nodeId);
+                }
+                return;
+            }
+        }
     }
     
     /**
@@ -169,6 +313,21 @@ public class DistributedStorageService {
      * Almacena un archivo con ID específico
      */
     public DistributedFileResult storeFile(Long fileId, String fileName, byte[] fileData) {
+        return storeFile(fileId, fileName, fileData, defaultQuorumPolicy);
+    }
+    
+    /**
+     * Almacena un archivo usando la política de quórum de una clase de almacenamiento
+     */
+    public DistributedFileResult storeFile(Long fileId, String fileName, byte[] fileData, String storageClass) {
+        return storeFile(fileId, fileName, fileData, resolveStorageClass(storageClass));
+    }
+    
+    /**
+     * Almacena un archivo con una política de quórum específica.
+     * Retorna en cuanto W réplicas confirman; el resto termina en segundo plano.
+     */
+    public DistributedFileResult storeFile(Long fileId, String fileName, byte[] fileData, QuorumPolicy policy) {
         // Validaciones de entrada
         if (fileName == null || fileName.trim().isEmpty()) {
             failedOperations++;
@@ -180,8 +339,8 @@ public class DistributedStorageService {
             return new DistributedFileResult(null, fileName, false, "Datos de archivo inválidos");
         }
         
-        logger.info("📥 Iniciando almacenamiento de archivo: {} (ID: {}, Size: {} bytes)", 
-                   fileName, fileId, fileData.length);
+        logger.info("📥 Iniciando almacenamiento de archivo: {} (ID: {}, Size: {} bytes, Quórum: {})", 
+                   fileName, fileId, fileData.length, policy);
         
         // Registrar el nombre del archivo para futuras recuperaciones
         fileNamesRegistry.put(fileId, fileName);
@@ -191,9 +350,10 @@ public class DistributedStorageService {
         try {
             // Calcular checksum
             String checksum = calculateChecksum(fileData);
+            fileChecksumRegistry.put(fileId, checksum);
             
             // Seleccionar nodos para replicación
-            List<String> selectedNodes = selectNodesForReplication(DEFAULT_REPLICATION_FACTOR);
+            List<String> selectedNodes = selectNodesForReplication(fileId, policy.getReplicationFactor());
             
             if (selectedNodes.isEmpty()) {
                 String error = "No hay nodos disponibles para almacenamiento";
@@ -202,47 +362,89 @@ public class DistributedStorageService {
                 return DistributedFileResult.failure(fileId, fileName, error);
             }
             
+            fileReplicaRegistry.put(fileId, ConcurrentHashMap.newKeySet());
+            fileReplicaRegistry.get(fileId).addAll(selectedNodes);
+            
+            int writeQuorum = Math.min(policy.getWriteQuorum(), selectedNodes.size());
+            
             // Almacenar en paralelo en nodos seleccionados
             List<CompletableFuture<String>> storageFutures = new ArrayList<>();
             Map<String, String> nodeLocations = new ConcurrentHashMap<>();
+            Map<String, String> handoffHolders = new ConcurrentHashMap<>();
+            WriteQuorum quorum = new WriteQuorum(selectedNodes, writeQuorum);
             
             for (String nodeId : selectedNodes) {
                 CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
                     try {
-                        StorageNodeInterface node = getNodeConnection(nodeId);
-                        String localPath = node.storeFile(fileId, fileName, fileData, checksum);
+                        String localPath = writeReplica(nodeId, fileId, fileName, fileData, checksum);
                         nodeLocations.put(nodeId, localPath);
                         logger.info("✅ Archivo almacenado en {}: {}", nodeId, localPath);
-                        return localPath;
+                        quorum.stored(nodeId);
+                        return nodeId;
                     } catch (Exception e) {
                         logger.error("❌ Error almacenando en {}: {}", nodeId, e.getMessage());
-                        throw new RuntimeException("Error en nodo " + nodeId, e);
+                        invalidateConnection(nodeId, e);
+                        
+                        // Hinted handoff: otro nodo saludable custodia la réplica
+                        String holder = handOffReplica(nodeId, selectedNodes, fileId, fileName, fileData, checksum);
+                        handoffHolders.put(nodeId, holder != null ? holder : "");
+                        // Quórum "sloppy": la copia del custodio también confirma, una vez por nodo
+                        if (holder != null) {
+                            quorum.handedOff(holder);
+                        } else {
+                            quorum.failed();
+                        }
+                        return holder;
                     }
                 }, executorService);
                 
                 storageFutures.add(future);
             }
             
-            // Esperar resultados con timeout
+            // Las réplicas restantes terminan en segundo plano y registran sus hints
+            CompletableFuture.allOf(storageFutures.toArray(new CompletableFuture[0]))
+                .whenComplete((ignored, error) -> 
+                    registerHints(fileId, fileName, checksum, selectedNodes, nodeLocations, handoffHolders));
+            
+            // Esperar el quórum con timeout
             try {
-                CompletableFuture.allOf(storageFutures.toArray(new CompletableFuture[0]))
-                    .get(30, TimeUnit.SECONDS);
+                quorum.future().get(30, TimeUnit.SECONDS);
+                
+                // Solo las réplicas seleccionadas que guardaron su copia: las de los
+                // custodios son temporales y se borran al reproducir el hint
+                List<String> storedNodes = quorum.getStoredReplicas();
+                Map<String, String> storedLocations = new LinkedHashMap<>();
+                for (String nodeId : storedNodes) {
+                    storedLocations.put(nodeId, nodeLocations.get(nodeId));
+                }
                 
                 // Crear resultado exitoso
-                DistributedFileResult result = DistributedFileResult.success(fileId, fileName, 
-                    "Archivo almacenado exitosamente en " + selectedNodes.size() + " nodos");
-                result.setReplicatedNodes(selectedNodes);
-                result.setNodeLocations(nodeLocations);
+                String message = "Archivo almacenado exitosamente en " + quorum.getCopyCount() + " nodos";
+                if (writeQuorum < selectedNodes.size()) {
+                    message += " (quórum " + writeQuorum + "/" + selectedNodes.size() + ")";
+                }
+                if (!handoffHolders.isEmpty()) {
+                    message += " (" + handoffHolders.size() + " réplicas pendientes por hinted handoff)";
+                }
+                DistributedFileResult result = DistributedFileResult.success(fileId, fileName, message);
+                result.setReplicatedNodes(storedNodes);
+                result.setNodeLocations(storedLocations);
                 result.setFileSizeBytes(fileData.length);
                 result.setChecksum(checksum);
                 result.setReplicationFactor(selectedNodes.size());
-                result.setPrimaryNode(selectedNodes.get(0));
+                result.setPrimaryNode(storedNodes.isEmpty() ? null : storedNodes.get(0));
                 
                 successfulOperations++;
-                logger.info("🎉 Almacenamiento exitoso de archivo: {} en {} nodos", fileName, selectedNodes.size());
+                logger.info("🎉 Almacenamiento exitoso de archivo: {} ({} confirmaciones de {})", 
+                           fileName, quorum.getCopyCount(), selectedNodes.size());
                 
                 return result;
                 
+            } catch (ExecutionException e) {
+                String error = "No se alcanzó el quórum de escritura: " + e.getCause().getMessage();
+                logger.error("❌ {}", error);
+                failedOperations++;
+                return DistributedFileResult.failure(fileId, fileName, error);
             } catch (TimeoutException e) {
                 String error = "Timeout en almacenamiento después de 30 segundos";
                 logger.error("⏰ {}", error);
@@ -258,17 +460,60 @@ public class DistributedStorageService {
         }
     }
     
+    /**
+     * Registra los hints de las réplicas entregadas por hinted handoff.
+     * Sin custodio libre, una réplica exitosa actúa como fuente del hint.
+     */
+    private void registerHints(Long fileId, String fileName, String checksum, List<String> selectedNodes,
+                               Map<String, String> nodeLocations, Map<String, String> handoffHolders) {
+        String replicaSource = null;
+        for (String nodeId : selectedNodes) {
+            if (nodeLocations.containsKey(nodeId)) {
+                replicaSource = nodeId;
+                break;
+            }
+        }
+        
+        for (Map.Entry<String, String> handoff : handoffHolders.entrySet()) {
+            String holder = handoff.getValue();
+            boolean holderIsReplica = holder.isEmpty();
+            if (holderIsReplica) {
+                if (replicaSource == null) {
+                    logger.error("❌ Réplica de {} para {} perdida: ningún nodo la custodia", fileId, handoff.getKey());
+                    continue;
+                }
+                holder = replicaSource;
+            }
+            hintedHandoffService.recordHint(new HintedHandoffService.Hint(
+                fileId, fileName, checksum, handoff.getKey(), holder, holderIsReplica));
+        }
+    }
+    
     /**
      * Recupera un archivo del sistema distribuido
      */
     public DistributedFileResult retrieveFile(Long fileId) {
+        return retrieveFile(fileId, defaultQuorumPolicy);
+    }
+    
+    /**
+     * Recupera un archivo usando la política de quórum de una clase de almacenamiento
+     */
+    public DistributedFileResult retrieveFile(Long fileId, String storageClass) {
+        return retrieveFile(fileId, resolveStorageClass(storageClass));
+    }
+    
+    /**
+     * Recupera un archivo consultando R réplicas y eligiendo la versión vigente
+     */
+    public DistributedFileResult retrieveFile(Long fileId, QuorumPolicy policy) {
         // Validación de entrada
         if (fileId == null || fileId <= 0) {
             failedOperations++;
             return new DistributedFileResult(fileId, "unknown", false, "ID de archivo inválido");
         }
         
-        logger.info("📤 Iniciando recuperación de archivo con ID: {}", fileId);
+        logger.info("📤 Iniciando recuperación de archivo con ID: {} (Quórum: {})", fileId, policy);
         
         totalOperations++;
         
@@ -283,40 +528,65 @@ public class DistributedStorageService {
                 return DistributedFileResult.failure(fileId, "unknown", error);
             }
             
-            // Intentar recuperación desde cada nodo hasta encontrar el archivo
-            for (String nodeId : availableNodes) {
-                try {
-                    StorageNodeInterface node = getNodeConnection(nodeId);
-                    byte[] fileData = node.retrieveFile(fileId, null);
-                    
-                    if (fileData != null && fileData.length > 0) {
-                        // Obtener el nombre del archivo desde el nodo remoto
-                        String fileName = extractFileNameFromNode(node, fileId);
-                        if (fileName == null || fileName.isEmpty()) {
-                            fileName = "recovered-file-" + fileId;
-                        }
-                        
-                        DistributedFileResult result = DistributedFileResult.success(fileId, fileName, 
-                            "Archivo recuperado exitosamente desde " + nodeId);
-                        result.setFileSizeBytes(fileData.length);
-                        result.setPrimaryNode(nodeId);
-                        
-                        successfulOperations++;
-                        logger.info("🎉 Archivo recuperado exitosamente desde nodo: {}", nodeId);
-                        
-                        return result;
-                    }
-                    
-                } catch (Exception e) {
-                    logger.warn("⚠️ Error recuperando desde {}: {}", nodeId, e.getMessage());
-                    // Continuar con el siguiente nodo
+            Map<String, byte[]> replicaData = readFromReplicas(fileId, availableNodes, policy.getReadQuorum());
+            
+            if (replicaData.isEmpty()) {
+                String error = "Archivo no encontrado en ningún nodo disponible";
+                logger.error("🔍 {}", error);
+                failedOperations++;
+                return DistributedFileResult.failure(fileId, "unknown", error);
+            }
+            
+            // Elegir la versión vigente: la registrada al escribir o la de una mayoría estricta
+            Map<String, String> replicaChecksums = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> entry : replicaData.entrySet()) {
+                replicaChecksums.put(entry.getKey(), calculateChecksum(entry.getValue()));
+            }
+            Set<String> expectedReplicas = fileReplicaRegistry.get(fileId);
+            int replicaCount = expectedReplicas != null ? expectedReplicas.size() : policy.getReplicationFactor();
+            String repairChecksum = repairChecksum(fileChecksumRegistry.get(fileId), replicaChecksums, replicaCount);
+            // Sin versión fiable se sirve la más frecuente, pero no se repara con ella
+            String expectedChecksum = repairChecksum != null ? repairChecksum : mostCommonChecksum(replicaChecksums);
+            
+            List<String> agreeingNodes = new ArrayList<>();
+            for (Map.Entry<String, String> entry : replicaChecksums.entrySet()) {
+                if (entry.getValue().equals(expectedChecksum)) {
+                    agreeingNodes.add(entry.getKey());
                 }
             }
             
-            String error = "Archivo no encontrado en ningún nodo disponible";
-            logger.error("🔍 {}", error);
-            failedOperations++;
-            return DistributedFileResult.failure(fileId, "unknown", error);
+            String sourceNode = agreeingNodes.get(0);
+            byte[] fileData = replicaData.get(sourceNode);
+            
+            // Obtener el nombre del archivo desde el nodo remoto
+            String fileName = extractFileNameFromNode(getNodeConnection(sourceNode), fileId);
+            if (fileName == null || fileName.isEmpty()) {
+                fileName = "recovered-file-" + fileId;
+            }
+            
+            DistributedFileResult result = DistributedFileResult.success(fileId, fileName, 
+                "Archivo recuperado exitosamente desde " + sourceNode);
+            result.setFileSizeBytes(fileData.length);
+            result.setPrimaryNode(sourceNode);
+            result.setChecksum(expectedChecksum);
+            result.setReplicatedNodes(agreeingNodes);
+            
+            if (agreeingNodes.size() < replicaChecksums.size()) {
+                logger.warn("⚠️ Réplicas divergentes para {}: {}", fileId, replicaChecksums);
+            }
+            
+            // Read repair fuera del camino crítico de la lectura
+            if (repairChecksum != null) {
+                scheduleReadRepair(fileId, fileName, fileData, repairChecksum, replicaChecksums);
+            } else if (agreeingNodes.size() < replicaChecksums.size()) {
+                logger.warn("⚠️ Sin checksum registrado ni mayoría para {}: las réplicas no se reparan", fileId);
+            }
+            
+            successfulOperations++;
+            logger.info("🎉 Archivo recuperado exitosamente desde nodo: {} ({} réplicas consultadas)", 
+                       sourceNode, replicaData.size());
+            
+            return result;
             
         } catch (Exception e) {
             String error = "Error general en recuperación: " + e.getMessage();
@@ -326,6 +596,168 @@ public class DistributedStorageService {
         }
     }
     
+    /**
+     * Lee el archivo de hasta R réplicas en paralelo. Si alguna falla se
+     * consultan los siguientes nodos candidatos hasta completar R o agotarlos.
+     */
+    private Map<String, byte[]> readFromReplicas(Long fileId, List<String> candidates, int readQuorum) {
+        Map<String, byte[]> replicaData = new LinkedHashMap<>();
+        Iterator<String> pending = candidates.iterator();
+        
+        while (replicaData.size() < readQuorum && pending.hasNext()) {
+            Map<String, CompletableFuture<byte[]>> wave = new LinkedHashMap<>();
+            while (wave.size() < readQuorum - replicaData.size() && pending.hasNext()) {
+                String nodeId = pending.next();
+                wave.put(nodeId, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return readReplica(nodeId, fileId);
+                    } catch (Exception e) {
+                        logger.warn("⚠️ Error recuperando desde {}: {}", nodeId, e.getMessage());
+                        return null;
+                    }
+                }, executorService));
+            }
+            
+            for (Map.Entry<String, CompletableFuture<byte[]>> entry : wave.entrySet()) {
+                try {
+                    byte[] data = entry.getValue().get(30, TimeUnit.SECONDS);
+                    if (data != null && data.length > 0) {
+                        replicaData.put(entry.getKey(), data);
+                    }
+                } catch (Exception e) {
+                    logger.warn("⚠️ Réplica {} no respondió a tiempo: {}", entry.getKey(), e.getMessage());
+                }
+            }
+        }
+        
+        return replicaData;
+    }
+    
+    /**
+     * Programa la reparación asíncrona de réplicas obsoletas, corruptas o ausentes.
+     * Las réplicas leídas con checksum distinto se reescriben directamente; las
+     * réplicas esperadas que no se consultaron se verifican antes de reescribir,
+     * pero solo en una fracción de las lecturas (storage.readrepair.verify.rate)
+     * para no multiplicar el tráfico de cada lectura.
+     */
+    private void scheduleReadRepair(Long fileId, String fileName, byte[] fileData, String expectedChecksum,
+                                    Map<String, String> replicaChecksums) {
+        List<String> staleNodes = new ArrayList<>();
+        for (Map.Entry<String, String> entry : replicaChecksums.entrySet()) {
+            if (!entry.getValue().equals(expectedChecksum)) {
+                staleNodes.add(entry.getKey());
+            }
+        }
+        
+        List<String> uncheckedNodes = new ArrayList<>();
+        if (ThreadLocalRandom.current().nextDouble() < readRepairVerifyRate) {
+            for (String nodeId : fileReplicaRegistry.getOrDefault(fileId, Collections.emptySet())) {
+                if (!replicaChecksums.containsKey(nodeId)) {
+                    uncheckedNodes.add(nodeId);
+                }
+            }
+        }
+        
+        if (staleNodes.isEmpty() && uncheckedNodes.isEmpty()) {
+            return;
+        }
+        
+        CompletableFuture.runAsync(() -> {
+            for (String nodeId : uncheckedNodes) {
+                try {
+                    if (!getNodeConnection(nodeId).verifyFile(fileId, null, expectedChecksum)) {
+                        staleNodes.add(nodeId);
+                    }
+                } catch (Exception e) {
+                    // Nodo caído: el hinted handoff o el próximo read repair se encargarán
+                    logger.debug("Read repair omitido en {}: {}", nodeId, e.getMessage());
+                }
+            }
+            
+            for (String nodeId : staleNodes) {
+                readRepairsTriggered.incrementAndGet();
+                try {
+                    writeReplica(nodeId, fileId, fileName, fileData, expectedChecksum);
+                    readRepairsCompleted.incrementAndGet();
+                    logger.info("🩹 Read repair de archivo {} completado en {}", fileId, nodeId);
+                } catch (Exception e) {
+                    readRepairsFailed.incrementAndGet();
+                    logger.warn("⚠️ Read repair de archivo {} falló en {}: {}", fileId, nodeId, e.getMessage());
+                }
+            }
+        }, executorService);
+    }
+    
+    /**
+     * Checksum contra el que se puede reparar: el registrado al escribir si
+     * alguna réplica leída lo tiene o, si no, el de una mayoría estricta de
+     * las réplicas del archivo. Un empate no indica qué versión es la nueva y
+     * reparar con cualquiera podría sobrescribirla con la antigua: null.
+     *
+     * @param replicaCount réplicas que debe tener el archivo
+     */
+    static String repairChecksum(String recordedChecksum, Map<String, String> replicaChecksums, int replicaCount) {
+        if (recordedChecksum != null && replicaChecksums.containsValue(recordedChecksum)) {
+            return recordedChecksum;
+        }
+        Map<String, Integer> checksumCount = new HashMap<>();
+        for (String checksum : replicaChecksums.values()) {
+            checksumCount.merge(checksum, 1, Integer::sum);
+        }
+        int total = Math.max(replicaCount, replicaChecksums.size());
+        for (Map.Entry<String, Integer> entry : checksumCount.entrySet()) {
+            if (entry.getValue() * 2 > total) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+    
+    void setReadRepairVerifyRate(double rate) {
+        this.readRepairVerifyRate = rate;
+    }
+    
+    /**
+     * Obtiene el checksum más frecuente entre las réplicas
+     */
+    private String mostCommonChecksum(Map<String, String> nodeChecksums) {
+        Map<String, Integer> checksumCount = new HashMap<>();
+        for (String checksum : nodeChecksums.values()) {
+            checksumCount.put(checksum, checksumCount.getOrDefault(checksum, 0) + 1);
+        }
+        
+        return checksumCount.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse("");
+    }
+    
+    /**
+     * Registra una clase de almacenamiento con su política de quórum
+     */
+    public void registerStorageClass(String storageClass, QuorumPolicy policy) {
+        storageClasses.put(storageClass.toUpperCase(), policy);
+        logger.info("🗂️ Clase de almacenamiento {} registrada: {}", storageClass, policy);
+    }
+    
+    /**
+     * Cambia la política usada por las operaciones sin clase explícita
+     */
+    public void setDefaultQuorumPolicy(QuorumPolicy policy) {
+        this.defaultQuorumPolicy = policy;
+    }
+    
+    private QuorumPolicy resolveStorageClass(String storageClass) {
+        if (storageClass == null) {
+            return defaultQuorumPolicy;
+        }
+        QuorumPolicy policy = storageClasses.get(storageClass.toUpperCase());
+        if (policy == null) {
+            throw new IllegalArgumentException("Clase de almacenamiento desconocida: " + storageClass);
+        }
+        return policy;
+    }
+    
     /**
      * Elimina un archivo del sistema distribuido
      */
@@ -388,6 +820,10 @@ public class DistributedStorageService {
                         "Archivo eliminado de " + successfulDeletions.size() + " nodos");
                     result.setReplicatedNodes(successfulDeletions);
                     
+                    // Evitar que un read repair posterior resucite el archivo
+                    fileReplicaRegistry.remove(fileId);
+                    fileChecksumRegistry.remove(fileId);
+                    
                     successfulOperations++;
                     logger.info("🎉 Eliminación exitosa de archivo de {} nodos", successfulDeletions.size());
                     
@@ -414,6 +850,411 @@ public class DistributedStorageService {
         }
     }
     
+    /**
+     * Llamada por lotes contra un nodo
+     */
+    @FunctionalInterface
+    private interface NodeBatchCall<I, R> {
+        R call(StorageNodeInterface node, I items) throws Exception;
+    }
+    
+    /**
+     * Ejecuta en paralelo una llamada por nodo con los elementos agrupados
+     * 
+     * @return Resultado por nodo; los nodos que fallaron no aparecen
+     */
+    private <I, R> Map<String, R> executePerNode(Map<String, I> workByNode, NodeBatchCall<I, R> batchCall) {
+        Map<String, R> results = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        
+        for (Map.Entry<String, I> work : workByNode.entrySet()) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    R result = batchCall.call(getNodeConnection(work.getKey()), work.getValue());
+                    results.put(work.getKey(), result);
+                } catch (Exception e) {
+                    logger.warn("⚠️ Lote fallido en {}: {}", work.getKey(), e.getMessage());
+                    invalidateConnection(work.getKey(), e);
+                }
+            }, executorService));
+        }
+        
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.error("⏰ Timeout en operación por lotes después de 60 segundos");
+        } catch (Exception e) {
+            logger.error("💥 Error en operación por lotes: {}", e.getMessage());
+        }
+        return results;
+    }
+    
+    /**
+     * Nodos que deben tener réplica de un archivo, o todos los disponibles si no se conoce
+     */
+    private List<String> replicaNodesFor(Long fileId, List<String> availableNodes) {
+        Set<String> replicas = fileReplicaRegistry.get(fileId);
+        if (replicas == null || replicas.isEmpty()) {
+            return availableNodes;
+        }
+        List<String> nodes = new ArrayList<>();
+        for (String nodeId : replicas) {
+            if (availableNodes.contains(nodeId)) {
+                nodes.add(nodeId);
+            }
+        }
+        return nodes;
+    }
+    
+    /**
+     * Divide los elementos de un lote en trozos cuyos datos no superan
+     * maxBytes, conservando el orden. Un elemento mayor que el límite
+     * ocupa un trozo él solo.
+     */
+    static List<List<BatchStoreItem>> chunkBySize(List<BatchStoreItem> items, long maxBytes) {
+        List<List<BatchStoreItem>> chunks = new ArrayList<>();
+        List<BatchStoreItem> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (BatchStoreItem item : items) {
+            long size = item.getFileData().length;
+            if (!current.isEmpty() && currentBytes + size > maxBytes) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(item);
+            currentBytes += size;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+    
+    /**
+     * Envía a un nodo sus elementos en trozos acotados en bytes. Si un trozo
+     * falla se conserva lo confirmado por los anteriores y los siguientes no
+     * se envían; solo se propaga el error si no se confirmó ningún trozo.
+     */
+    private List<BatchItemResult<String>> storeChunks(StorageNodeInterface node,
+                                                      List<List<BatchStoreItem>> chunks) throws Exception {
+        List<BatchItemResult<String>> results = new ArrayList<>();
+        for (List<BatchStoreItem> chunk : chunks) {
+            try {
+                results.addAll(node.storeFiles(chunk));
+            } catch (Exception e) {
+                if (results.isEmpty()) {
+                    throw e;
+                }
+                logger.warn("⚠️ Trozo de lote fallido tras {} réplicas confirmadas: {}",
+                            results.size(), e.getMessage());
+                break;
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Almacena varios archivos con la política por defecto, agrupando las
+     * réplicas por nodo. Cada nodo recibe sus réplicas en llamadas de como
+     * máximo storage.batch.max.bytes de datos. La disponibilidad de los
+     * nodos se consulta una sola vez por lote; las réplicas dirigidas a
+     * nodos caídos o que fallaron se entregan a un custodio y se registran
+     * como hints, igual que en {@link #storeFile(Long, String, byte[], QuorumPolicy)}.
+     * 
+     * @return Resultado por archivo, en el orden de iteración del mapa,
+     *         incluidos los archivos con datos inválidos
+     */
+    public List<DistributedFileResult> storeFiles(Map<String, byte[]> files) {
+        QuorumPolicy policy = defaultQuorumPolicy;
+        Map<String, List<BatchStoreItem>> itemsByNode = new HashMap<>();
+        Map<Long, String> fileNames = new LinkedHashMap<>();
+        Map<Long, Long> fileSizes = new HashMap<>();
+        // Posición de cada archivo en el resultado, en el orden del mapa
+        DistributedFileResult[] results = new DistributedFileResult[files.size()];
+        Map<Long, Integer> positions = new HashMap<>();
+        int position = 0;
+        Map<Long, BatchStoreItem> itemsByFile = new HashMap<>();
+        Map<Long, List<String>> selectedByFile = new HashMap<>();
+        
+        logger.info("📥 Almacenamiento por lotes de {} archivos (Quórum: {})", files.size(), policy);
+        List<String> availableNodes = getAvailableNodes();
+        
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            totalOperations++;
+            int slot = position++;
+            if (file.getKey() == null || file.getValue() == null || file.getValue().length == 0) {
+                failedOperations++;
+                results[slot] = DistributedFileResult.failure(null, file.getKey(), "Datos de archivo inválidos");
+                continue;
+            }
+            
+            Long fileId = generateFileId();
+            while (fileNames.containsKey(fileId)) {
+                fileId = generateFileId();
+            }
+            String checksum = calculateChecksum(file.getValue());
+            fileNamesRegistry.put(fileId, file.getKey());
+            fileChecksumRegistry.put(fileId, checksum);
+            fileNames.put(fileId, file.getKey());
+            fileSizes.put(fileId, (long) file.getValue().length);
+            positions.put(fileId, slot);
+            
+            List<String> selectedNodes = selectNodesForReplication(fileId, policy.getReplicationFactor(),
+                                                                   availableNodes);
+            fileReplicaRegistry.put(fileId, ConcurrentHashMap.newKeySet());
+            fileReplicaRegistry.get(fileId).addAll(selectedNodes);
+            selectedByFile.put(fileId, selectedNodes);
+            
+            BatchStoreItem item = new BatchStoreItem(fileId, file.getKey(), file.getValue(), checksum);
+            itemsByFile.put(fileId, item);
+            for (String nodeId : selectedNodes) {
+                // Los nodos caídos no reciben la llamada: su réplica va directo al custodio
+                if (availableNodes.contains(nodeId)) {
+                    itemsByNode.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        
+        Map<Long, Map<String, String>> locationsByFile = storeBatchPerNode(itemsByNode);
+        
+        // Réplicas sin confirmar: se entregan a un custodio, agrupadas por custodio
+        Map<Long, Map<String, String>> holdersByFile = new HashMap<>();
+        Map<String, List<BatchStoreItem>> handoffsByHolder = new HashMap<>();
+        for (Map.Entry<Long, List<String>> selection : selectedByFile.entrySet()) {
+            Long fileId = selection.getKey();
+            Map<String, String> locations = locationsByFile.getOrDefault(fileId, Collections.emptyMap());
+            String holder = handoffHolderFor(selection.getValue(), availableNodes);
+            for (String nodeId : selection.getValue()) {
+                if (!locations.containsKey(nodeId)) {
+                    holdersByFile.computeIfAbsent(fileId, k -> new HashMap<>()).put(nodeId, holder != null ? holder : "");
+                }
+            }
+            if (holder != null && holdersByFile.containsKey(fileId)) {
+                handoffsByHolder.computeIfAbsent(holder, k -> new ArrayList<>()).add(itemsByFile.get(fileId));
+            }
+        }
+        Map<Long, Map<String, String>> handoffsByFile = storeBatchPerNode(handoffsByHolder);
+        
+        for (Map.Entry<Long, String> file : fileNames.entrySet()) {
+            Long fileId = file.getKey();
+            Map<String, String> locations = locationsByFile.getOrDefault(fileId, Collections.emptyMap());
+            Map<String, String> handoffHolders = holdersByFile.getOrDefault(fileId, Collections.emptyMap());
+            Set<String> storedHolders = handoffsByFile.getOrDefault(fileId, Collections.emptyMap()).keySet();
+            // Un custodio que no confirmó deja la réplica a cargo de una réplica exitosa
+            handoffHolders.replaceAll((nodeId, holder) -> storedHolders.contains(holder) ? holder : "");
+            if (!handoffHolders.isEmpty()) {
+                BatchStoreItem item = itemsByFile.get(fileId);
+                registerHints(fileId, file.getValue(), item.getChecksum(), selectedByFile.get(fileId),
+                              locations, handoffHolders);
+            }
+            
+            // Quórum "sloppy": la copia del custodio también confirma, una vez por nodo
+            int copies = locations.size() + storedHolders.size();
+            int writeQuorum = Math.min(policy.getWriteQuorum(), fileReplicaRegistry.get(fileId).size());
+            
+            DistributedFileResult result;
+            if (writeQuorum > 0 && copies >= writeQuorum) {
+                String message = "Archivo almacenado en " + copies + " nodos (lote)";
+                if (!handoffHolders.isEmpty()) {
+                    message += " (" + handoffHolders.size() + " réplicas pendientes por hinted handoff)";
+                }
+                result = DistributedFileResult.success(fileId, file.getValue(), message);
+                successfulOperations++;
+            } else {
+                result = DistributedFileResult.failure(fileId, file.getValue(),
+                    "Quórum de escritura no alcanzado: " + copies + "/" + writeQuorum);
+                failedOperations++;
+            }
+            result.setReplicatedNodes(new ArrayList<>(locations.keySet()));
+            result.setNodeLocations(locations);
+            result.setFileSizeBytes(fileSizes.get(fileId));
+            result.setChecksum(fileChecksumRegistry.get(fileId));
+            result.setReplicationFactor(locations.size());
+            results[positions.get(fileId)] = result;
+        }
+        
+        logger.info("🎉 Lote de {} archivos enviado a {} nodos y {} custodios",
+                   fileNames.size(), itemsByNode.size(), handoffsByHolder.size());
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Envía a cada nodo sus elementos en trozos acotados en bytes
+     * 
+     * @return Ubicación confirmada de cada archivo por nodo
+     */
+    private Map<Long, Map<String, String>> storeBatchPerNode(Map<String, List<BatchStoreItem>> itemsByNode) {
+        Map<String, List<List<BatchStoreItem>>> chunksByNode = new HashMap<>();
+        for (Map.Entry<String, List<BatchStoreItem>> items : itemsByNode.entrySet()) {
+            chunksByNode.put(items.getKey(), chunkBySize(items.getValue(), maxBatchBytes));
+        }
+        Map<String, List<BatchItemResult<String>>> nodeResults = executePerNode(chunksByNode,
+            this::storeChunks);
+        
+        // Consolidar confirmaciones por archivo
+        Map<Long, Map<String, String>> locationsByFile = new HashMap<>();
+        for (Map.Entry<String, List<BatchItemResult<String>>> nodeResult : nodeResults.entrySet()) {
+            for (BatchItemResult<String> item : nodeResult.getValue()) {
+                if (item.isSuccess()) {
+                    locationsByFile.computeIfAbsent(item.getFileId(), k -> new HashMap<>())
+                        .put(nodeResult.getKey(), item.getValue());
+                }
+            }
+        }
+        return locationsByFile;
+    }
+    
+    /**
+     * Primer nodo disponible fuera de la selección, que custodia las réplicas
+     * de los nodos seleccionados que no las recibieron
+     */
+    private String handoffHolderFor(List<String> selectedNodes, List<String> availableNodes) {
+        for (String candidate : availableNodes) {
+            if (!selectedNodes.contains(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Recupera varios archivos agrupando por nodo. Los archivos que fallan en
+     * un nodo se reintentan en la siguiente réplica en otra ronda.
+     * 
+     * @return Datos por ID; los archivos no recuperados no aparecen
+     */
+    public Map<Long, byte[]> retrieveFiles(Collection<Long> fileIds) {
+        Map<Long, byte[]> retrieved = new HashMap<>();
+        List<String> availableNodes = getAvailableNodes();
+        Map<Long, Deque<String>> candidates = new HashMap<>();
+        
+        for (Long fileId : fileIds) {
+            totalOperations++;
+            candidates.put(fileId, new ArrayDeque<>(replicaNodesFor(fileId, availableNodes)));
+        }
+        
+        int rounds = 0;
+        while (!candidates.isEmpty()) {
+            Map<String, List<Long>> idsByNode = new HashMap<>();
+            for (Iterator<Map.Entry<Long, Deque<String>>> it = candidates.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Deque<String>> candidate = it.next();
+                String nodeId = candidate.getValue().poll();
+                if (nodeId == null) {
+                    it.remove();
+                } else {
+                    idsByNode.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(candidate.getKey());
+                }
+            }
+            if (idsByNode.isEmpty()) {
+                break;
+            }
+            rounds++;
+            
+            Map<String, List<BatchItemResult<byte[]>>> nodeResults = executePerNode(idsByNode,
+                StorageNodeInterface::retrieveFiles);
+            for (List<BatchItemResult<byte[]>> items : nodeResults.values()) {
+                for (BatchItemResult<byte[]> item : items) {
+                    String expected = fileChecksumRegistry.get(item.getFileId());
+                    if (item.isSuccess() && item.getValue() != null &&
+                        (expected == null || expected.equals(calculateChecksum(item.getValue())))) {
+                        retrieved.put(item.getFileId(), item.getValue());
+                        candidates.remove(item.getFileId());
+                    }
+                }
+            }
+        }
+        
+        successfulOperations += retrieved.size();
+        failedOperations += fileIds.size() - retrieved.size();
+        logger.info("📤 Recuperados {}/{} archivos en {} rondas por lotes", retrieved.size(), fileIds.size(), rounds);
+        return retrieved;
+    }
+    
+    /**
+     * Elimina varios archivos con una sola llamada por nodo
+     * 
+     * @return Resultado por ID (true si se eliminó de al menos un nodo)
+     */
+    public Map<Long, Boolean> deleteFiles(Collection<Long> fileIds) {
+        List<String> availableNodes = getAvailableNodes();
+        Map<String, List<Long>> idsByNode = new HashMap<>();
+        Map<Long, Boolean> deleted = new HashMap<>();
+        
+        for (Long fileId : fileIds) {
+            totalOperations++;
+            deleted.put(fileId, false);
+            for (String nodeId : replicaNodesFor(fileId, availableNodes)) {
+                idsByNode.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(fileId);
+            }
+        }
+        
+        Map<String, List<BatchItemResult<Boolean>>> nodeResults = executePerNode(idsByNode,
+            StorageNodeInterface::deleteFiles);
+        for (List<BatchItemResult<Boolean>> items : nodeResults.values()) {
+            for (BatchItemResult<Boolean> item : items) {
+                if (item.isSuccess() && Boolean.TRUE.equals(item.getValue())) {
+                    deleted.put(item.getFileId(), true);
+                }
+            }
+        }
+        
+        for (Map.Entry<Long, Boolean> entry : deleted.entrySet()) {
+            if (entry.getValue()) {
+                fileReplicaRegistry.remove(entry.getKey());
+                fileChecksumRegistry.remove(entry.getKey());
+                successfulOperations++;
+            } else {
+                failedOperations++;
+            }
+        }
+        
+        logger.info("🗑️ Eliminación por lotes: {} archivos en {} llamadas a nodos", fileIds.size(), idsByNode.size());
+        return deleted;
+    }
+    
+    /**
+     * Audita varios archivos con una sola llamada de verificación por nodo
+     * 
+     * @return Resultado por ID (true si todas las réplicas alcanzables son íntegras)
+     */
+    public Map<Long, Boolean> verifyFiles(Collection<Long> fileIds) {
+        List<String> availableNodes = getAvailableNodes();
+        Map<String, Map<Long, String>> checksumsByNode = new HashMap<>();
+        Map<Long, Boolean> integrity = new HashMap<>();
+        
+        for (Long fileId : fileIds) {
+            String checksum = fileChecksumRegistry.get(fileId);
+            List<String> replicaNodes = replicaNodesFor(fileId, availableNodes);
+            if (checksum == null || replicaNodes.isEmpty()) {
+                integrity.put(fileId, false);
+                continue;
+            }
+            integrity.put(fileId, true);
+            for (String nodeId : replicaNodes) {
+                checksumsByNode.computeIfAbsent(nodeId, k -> new HashMap<>()).put(fileId, checksum);
+            }
+        }
+        
+        Map<String, List<BatchItemResult<Boolean>>> nodeResults = executePerNode(checksumsByNode,
+            StorageNodeInterface::verifyFiles);
+        for (Map.Entry<String, Map<Long, String>> work : checksumsByNode.entrySet()) {
+            List<BatchItemResult<Boolean>> items = nodeResults.get(work.getKey());
+            if (items == null) {
+                continue; // Nodo no alcanzable: no invalida el resultado
+            }
+            for (BatchItemResult<Boolean> item : items) {
+                if (!item.isSuccess() || !Boolean.TRUE.equals(item.getValue())) {
+                    integrity.put(item.getFileId(), false);
+                    logger.warn("⚠️ Réplica de {} inválida en {}", item.getFileId(), work.getKey());
+                }
+            }
+        }
+        
+        logger.info("🔍 Auditoría por lotes: {} archivos en {} llamadas a nodos", fileIds.size(), checksumsByNode.size());
+        return integrity;
+    }
+    
     /**
      * Verifica la integridad de un archivo
      */
@@ -442,10 +1283,8 @@ public class DistributedStorageService {
         for (String nodeId : availableNodes) {
             CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
                 try {
-                    StorageNodeInterface node = getNodeConnection(nodeId);
-                    
                     // Obtener archivo y calcular checksum
-                    byte[] fileData = node.retrieveFile(fileId, null);
+                    byte[] fileData = readReplica(nodeId, fileId);
                     if (fileData != null) {
                         String checksum = calculateChecksum(fileData);
                         nodeChecksums.put(nodeId, checksum);
@@ -541,6 +1380,16 @@ public class DistributedStorageService {
         stats.setSuccessfulOperations(successfulOperations);
         stats.setFailedOperations(failedOperations);
         
+        // Hinted handoff
+        stats.setPendingHintedHandoffs(hintedHandoffService.getPendingHintCount());
+        stats.setPendingHintsByNode(hintedHandoffService.getPendingHintsByNode());
+        stats.setReplayedHintedHandoffs(hintedHandoffService.getReplayedHintCount());
+        
+        // Read repair
+        stats.setReadRepairsTriggered(readRepairsTriggered.get());
+        stats.setReadRepairsCompleted(readRepairsCompleted.get());
+        stats.setReadRepairsFailed(readRepairsFailed.get());
+        
         // Obtener estadísticas de nodos en paralelo
         Map<String, SystemStatistics.NodeStatistics> nodeStats = new ConcurrentHashMap<>();
         List<CompletableFuture<Void>> statsFutures = new ArrayList<>();
@@ -615,18 +1464,47 @@ public class DistributedStorageService {
     }
     
     /**
-     * Selecciona nodos para replicación basado en disponibilidad y carga
+     * Selecciona nodos para replicación según la lista de preferencia del anillo
+     * de hashing consistente. Los nodos caídos de la lista se conservan: sus
+     * réplicas se entregan luego mediante hinted handoff.
      */
-    private List<String> selectNodesForReplication(int replicationFactor) {
-        List<String> availableNodes = getAvailableNodes();
-        
-        if (availableNodes.size() <= replicationFactor) {
+    private List<String> selectNodesForReplication(Long fileId, int replicationFactor) {
+        return selectNodesForReplication(fileId, replicationFactor, getAvailableNodes());
+    }
+    
+    /**
+     * Igual que {@link #selectNodesForReplication(Long, int)} con la disponibilidad
+     * ya consultada, para no repetir los heartbeats en cada archivo de un lote
+     */
+    private List<String> selectNodesForReplication(Long fileId, int replicationFactor, List<String> availableNodes) {
+        if (availableNodes.isEmpty()) {
             return availableNodes;
         }
         
-        // Seleccionar nodos con menor carga (implementación simple)
-        Collections.shuffle(availableNodes);
-        return availableNodes.subList(0, Math.min(replicationFactor, availableNodes.size()));
+        return placementRing.getPreferenceList(String.valueOf(fileId), replicationFactor);
+    }
+    
+    /**
+     * Guarda la réplica destinada a un nodo caído en otro nodo saludable
+     * que no forme parte de la selección original.
+     * 
+     * @return ID del nodo custodio, o null si ningún nodo libre la aceptó
+     */
+    private String handOffReplica(String targetNodeId, List<String> selectedNodes, Long fileId,
+                                  String fileName, byte[] fileData, String checksum) {
+        for (String candidate : storageNodes.keySet()) {
+            if (selectedNodes.contains(candidate)) {
+                continue;
+            }
+            try {
+                writeReplica(candidate, fileId, fileName, fileData, checksum);
+                logger.info("📦 Réplica de {} custodiada por {} en nombre de {}", fileId, candidate, targetNodeId);
+                return candidate;
+            } catch (Exception e) {
+                logger.debug("Nodo {} no pudo custodiar réplica de {}: {}", candidate, fileId, e.getMessage());
+            }
+        }
+        return null;
     }
     
     /**
@@ -643,7 +1521,7 @@ public class DistributedStorageService {
                 }
             } catch (Exception e) {
                 // Nodo no disponible
-                activeConnections.remove(nodeId);
+                invalidateConnection(nodeId, e);
             }
         }
         
@@ -686,6 +1564,7 @@ public class DistributedStorageService {
     public void shutdown() {
         logger.info("🛑 Cerrando DistributedStorageService...");
         
+        hintedHandoffService.shutdown();
         executorService.shutdown();
         scheduledExecutor.shutdown();
         
@@ -702,7 +1581,8 @@ public class DistributedStorageService {
             Thread.currentThread().interrupt();
         }
         
-        activeConnections.clear();
+        dataPlaneClients.values().forEach(DataPlaneClient::close);
+        dataPlaneClients.clear();
         logger.info("👋 DistributedStorageService cerrado correctamente");
     }
     
@@ -728,6 +1608,9 @@ public class DistributedStorageService {
         totalOperations = 0;
         successfulOperations = 0;
         failedOperations = 0;
+        readRepairsTriggered.set(0);
+        readRepairsCompleted.set(0);
+        readRepairsFailed.set(0);
         logger.debug("🔄 Estadísticas reseteadas para testing");
     }
 }
@@ -0,0 +1,297 @@
+package com.distribuidos.clientbackend.service;
+
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio de hinted handoff para escrituras dirigidas a nodos no disponibles.
+ *
+ * Cuando un nodo destino de una réplica está caído, otro nodo saludable guarda
+ * los datos en su nombre y se registra un "hint". Cuando el destino vuelve a
+ * responder heartbeats, los hints se reproducen de forma limitada en tasa
+ * en un hilo propio del servicio.
+ */
+public class HintedHandoffService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HintedHandoffService.class);
+
+    // Configuración
+    public static final int DEFAULT_MAX_REPLAYS_PER_SECOND = 5;
+
+    /**
+     * Obtiene conexiones a nodos por ID (provisto por el servicio distribuido)
+     */
+    @FunctionalInterface
+    public interface NodeConnector {
+        StorageNodeInterface connect(String nodeId) throws Exception;
+    }
+
+    /**
+     * Hint pendiente: réplica destinada a un nodo caído y guardada en otro
+     */
+    public static class Hint {
+        private final Long fileId;
+        private final String fileName;
+        private final String checksum;
+        private final String targetNodeId;
+        private final String holderNodeId;
+        private final boolean holderIsReplica;
+        private final LocalDateTime createdAt;
+
+        public Hint(Long fileId, String fileName, String checksum, String targetNodeId,
+                   String holderNodeId, boolean holderIsReplica) {
+            this.fileId = fileId;
+            this.fileName = fileName;
+            this.checksum = checksum;
+            this.targetNodeId = targetNodeId;
+            this.holderNodeId = holderNodeId;
+            this.holderIsReplica = holderIsReplica;
+            this.createdAt = LocalDateTime.now();
+        }
+
+        public Long getFileId() { return fileId; }
+        public String getFileName() { return fileName; }
+        public String getChecksum() { return checksum; }
+        public String getTargetNodeId() { return targetNodeId; }
+        public String getHolderNodeId() { return holderNodeId; }
+        public boolean isHolderReplica() { return holderIsReplica; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+
+        @Override
+        public String toString() {
+            return "Hint{fileId=" + fileId + ", target='" + targetNodeId +
+                   "', holder='" + holderNodeId + "', holderIsReplica=" + holderIsReplica + '}';
+        }
+    }
+
+    private final Map<String, Queue<Hint>> hintsByTarget = new ConcurrentHashMap<>();
+    private final Set<String> replaysInProgress = ConcurrentHashMap.newKeySet();
+    private final long replayIntervalMillis;
+    // Hilo propio: la reproducción no ocupa los hilos de las lecturas y escrituras
+    private final ScheduledExecutorService replayScheduler;
+
+    // Estadísticas
+    private final AtomicLong recordedHints = new AtomicLong();
+    private final AtomicLong replayedHints = new AtomicLong();
+    private final AtomicLong failedReplays = new AtomicLong();
+
+    public HintedHandoffService() {
+        this(DEFAULT_MAX_REPLAYS_PER_SECOND);
+    }
+
+    public HintedHandoffService(int maxReplaysPerSecond) {
+        this(maxReplaysPerSecond, Executors.newSingleThreadScheduledExecutor(
+            ExecutorFactory.namedThreadFactory("hint-replay", true)));
+    }
+
+    /**
+     * @param replayScheduler hilo de reproducción; debe ejecutar las tareas de una en una
+     */
+    HintedHandoffService(int maxReplaysPerSecond, ScheduledExecutorService replayScheduler) {
+        if (maxReplaysPerSecond <= 0) {
+            throw new IllegalArgumentException("La tasa de reproducción debe ser positiva");
+        }
+        this.replayIntervalMillis = 1000L / maxReplaysPerSecond;
+        this.replayScheduler = replayScheduler;
+    }
+
+    /**
+     * Registra un hint para un nodo destino no disponible
+     */
+    public void recordHint(Hint hint) {
+        hintsByTarget.computeIfAbsent(hint.getTargetNodeId(), k -> new ConcurrentLinkedQueue<>()).add(hint);
+        recordedHints.incrementAndGet();
+        logger.info("📌 Hint registrado para {}: archivo {} custodiado por {}",
+                   hint.getTargetNodeId(), hint.getFileId(), hint.getHolderNodeId());
+    }
+
+    /**
+     * Indica si hay hints pendientes para un nodo
+     */
+    public boolean hasHints(String targetNodeId) {
+        Queue<Hint> hints = hintsByTarget.get(targetNodeId);
+        return hints != null && !hints.isEmpty();
+    }
+
+    /**
+     * Reproduce los hints pendientes de un nodo que volvió a estar disponible.
+     * Los hints se entregan de uno en uno en el hilo de reproducción propio
+     * del servicio, programando cada entrega tras el intervalo de la tasa
+     * máxima: la espera no ocupa ningún hilo. Se detiene en el primer fallo
+     * contra el destino; los hints no entregados permanecen en cola para el
+     * siguiente ciclo.
+     *
+     * @return número de hints entregados, al terminar la reproducción
+     */
+    public CompletableFuture<Integer> replayHints(String targetNodeId, NodeConnector connector) {
+        Queue<Hint> hints = hintsByTarget.get(targetNodeId);
+        if (hints == null || hints.isEmpty() || !replaysInProgress.add(targetNodeId)) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        logger.info("🔁 Reproduciendo {} hints pendientes para {}", hints.size(), targetNodeId);
+        Replay replay = new Replay(targetNodeId, hints, connector);
+        replay.result.whenComplete((delivered, error) -> replaysInProgress.remove(targetNodeId));
+        try {
+            replayScheduler.execute(replay);
+        } catch (RejectedExecutionException e) {
+            replay.result.complete(0);
+        }
+        return replay.result;
+    }
+
+    /**
+     * Reproducción en curso para un destino: cada ejecución entrega un hint
+     * y programa la siguiente
+     */
+    private final class Replay implements Runnable {
+        private final String targetNodeId;
+        private final Queue<Hint> hints;
+        private final NodeConnector connector;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        // Solo se recorren los hints presentes al empezar; los reencolados quedan para el siguiente ciclo
+        private int remaining;
+        private int delivered;
+
+        Replay(String targetNodeId, Queue<Hint> hints, NodeConnector connector) {
+            this.targetNodeId = targetNodeId;
+            this.hints = hints;
+            this.connector = connector;
+            this.remaining = hints.size();
+        }
+
+        @Override
+        public void run() {
+            boolean targetFailed = false;
+            try {
+                Hint hint;
+                // Un hint entregado por ejecución; los de custodio caído se saltan sin esperar
+                while (remaining > 0 && (hint = hints.poll()) != null) {
+                    remaining--;
+                    Boolean outcome = deliver(hint);
+                    if (outcome == null) {
+                        continue;
+                    }
+                    if (outcome) {
+                        delivered++;
+                    } else {
+                        targetFailed = true;
+                    }
+                    break;
+                }
+                if (!targetFailed && remaining > 0 && !hints.isEmpty()) {
+                    replayScheduler.schedule(this, replayIntervalMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            } catch (RejectedExecutionException e) {
+                // Servicio cerrado: los hints restantes siguen en cola
+            }
+            result.complete(delivered);
+        }
+
+        /**
+         * @return true si se entregó, false si el destino falló, null si el custodio no respondió
+         */
+        private Boolean deliver(Hint hint) {
+            byte[] fileData;
+            try {
+                StorageNodeInterface holder = connector.connect(hint.getHolderNodeId());
+                fileData = holder.retrieveFile(hint.getFileId(), null);
+            } catch (Exception e) {
+                // El custodio no está disponible: conservar el hint y seguir con los demás
+                logger.warn("⚠️ Custodio {} no disponible para hint {}: {}",
+                           hint.getHolderNodeId(), hint.getFileId(), e.getMessage());
+                hints.add(hint);
+                failedReplays.incrementAndGet();
+                return null;
+            }
+
+            try {
+                StorageNodeInterface target = connector.connect(targetNodeId);
+                target.storeFile(hint.getFileId(), hint.getFileName(), fileData, hint.getChecksum());
+            } catch (Exception e) {
+                logger.warn("⚠️ Destino {} rechazó el hint {}: {}", targetNodeId, hint.getFileId(), e.getMessage());
+                hints.add(hint);
+                failedReplays.incrementAndGet();
+                return false;
+            }
+
+            if (!hint.isHolderReplica()) {
+                releaseHolderCopy(hint, connector);
+            }
+
+            replayedHints.incrementAndGet();
+            logger.info("✅ Hint entregado a {}: archivo {}", targetNodeId, hint.getFileId());
+            return true;
+        }
+    }
+
+    /**
+     * Elimina la copia temporal del custodio una vez entregada al destino
+     */
+    private void releaseHolderCopy(Hint hint, NodeConnector connector) {
+        try {
+            StorageNodeInterface holder = connector.connect(hint.getHolderNodeId());
+            holder.deleteFile(hint.getFileId(), null);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo liberar la copia temporal de {} en {}: {}",
+                       hint.getFileId(), hint.getHolderNodeId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Número total de hints pendientes
+     */
+    public int getPendingHintCount() {
+        return hintsByTarget.values().stream().mapToInt(Queue::size).sum();
+    }
+
+    /**
+     * Hints pendientes agrupados por nodo destino
+     */
+    public Map<String, Integer> getPendingHintsByNode() {
+        Map<String, Integer> pending = new HashMap<>();
+        for (Map.Entry<String, Queue<Hint>> entry : hintsByTarget.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                pending.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        return pending;
+    }
+
+    public long getRecordedHintCount() {
+        return recordedHints.get();
+    }
+
+    public long getReplayedHintCount() {
+        return replayedHints.get();
+    }
+
+    public long getFailedReplayCount() {
+        return failedReplays.get();
+    }
+
+    /**
+     * Detiene las reproducciones en curso; los hints pendientes se conservan
+     */
+    public void shutdown() {
+        replayScheduler.shutdownNow();
+    }
+}
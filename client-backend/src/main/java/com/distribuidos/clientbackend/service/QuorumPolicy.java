@@ -0,0 +1,66 @@
+package com.distribuidos.clientbackend.service;
+
+/**
+ * Política de quórum para escrituras y lecturas replicadas.
+ *
+ * N es el número de réplicas, W las confirmaciones necesarias para dar una
+ * escritura por exitosa y R las réplicas consultadas en cada lectura. Las
+ * réplicas que no forman parte del quórum terminan en segundo plano.
+ */
+public final class QuorumPolicy {
+
+    /** Comportamiento clásico: esperar todas las réplicas y leer de una */
+    public static final QuorumPolicy STANDARD = new QuorumPolicy("STANDARD", 2, 2, 1);
+
+    /** Latencia mínima: confirma con la réplica más rápida */
+    public static final QuorumPolicy FAST = new QuorumPolicy("FAST", 2, 1, 1);
+
+    /** Mayoría en escritura y lectura (W + R > N) */
+    public static final QuorumPolicy STRONG = new QuorumPolicy("STRONG", 3, 2, 2);
+
+    private final String name;
+    private final int replicationFactor;
+    private final int writeQuorum;
+    private final int readQuorum;
+
+    private QuorumPolicy(String name, int replicationFactor, int writeQuorum, int readQuorum) {
+        if (replicationFactor <= 0) {
+            throw new IllegalArgumentException("N debe ser positivo");
+        }
+        if (writeQuorum <= 0 || writeQuorum > replicationFactor) {
+            throw new IllegalArgumentException("W debe estar entre 1 y N");
+        }
+        if (readQuorum <= 0 || readQuorum > replicationFactor) {
+            throw new IllegalArgumentException("R debe estar entre 1 y N");
+        }
+        this.name = name;
+        this.replicationFactor = replicationFactor;
+        this.writeQuorum = writeQuorum;
+        this.readQuorum = readQuorum;
+    }
+
+    /**
+     * Crea una política personalizada
+     */
+    public static QuorumPolicy of(int replicationFactor, int writeQuorum, int readQuorum) {
+        return new QuorumPolicy("N" + replicationFactor + "W" + writeQuorum + "R" + readQuorum,
+                                replicationFactor, writeQuorum, readQuorum);
+    }
+
+    public String getName() { return name; }
+    public int getReplicationFactor() { return replicationFactor; }
+    public int getWriteQuorum() { return writeQuorum; }
+    public int getReadQuorum() { return readQuorum; }
+
+    /**
+     * Indica si lecturas y escrituras se solapan en al menos una réplica
+     */
+    public boolean isStronglyConsistent() {
+        return writeQuorum + readQuorum > replicationFactor;
+    }
+
+    @Override
+    public String toString() {
+        return name + "{N=" + replicationFactor + ", W=" + writeQuorum + ", R=" + readQuorum + '}';
+    }
+}
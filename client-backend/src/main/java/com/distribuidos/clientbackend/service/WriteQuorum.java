@@ -0,0 +1,99 @@
+package com.distribuidos.clientbackend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Confirmaciones de una escritura replicada hasta alcanzar el quórum W.
+ *
+ * Cuenta copias físicas distintas: si una réplica fallida queda custodiada
+ * por hinted handoff en un nodo que ya confirmó (otra réplica o el custodio
+ * de otra réplica), ese nodo no vuelve a contar. El quórum falla en cuanto
+ * las réplicas pendientes ya no pueden alcanzarlo.
+ */
+final class WriteQuorum {
+
+    private final List<String> replicas;
+    private final int required;
+    // Nodos con una copia confirmada, réplicas o custodios
+    private final Set<String> copies = new LinkedHashSet<>();
+    // Réplicas seleccionadas que guardaron su propia copia
+    private final Set<String> storedReplicas = new LinkedHashSet<>();
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private int pending;
+    private int failures;
+
+    /**
+     * @param replicas nodos seleccionados para la escritura
+     * @param required confirmaciones necesarias (W), como máximo el número de réplicas
+     */
+    WriteQuorum(List<String> replicas, int required) {
+        this.replicas = new ArrayList<>(replicas);
+        this.required = required;
+        this.pending = replicas.size();
+    }
+
+    /**
+     * La réplica guardó su copia
+     */
+    synchronized void stored(String replica) {
+        storedReplicas.add(replica);
+        complete(replica);
+    }
+
+    /**
+     * La réplica falló pero otro nodo custodia su copia
+     */
+    synchronized void handedOff(String holder) {
+        complete(holder);
+    }
+
+    /**
+     * La réplica falló y nadie custodia su copia
+     */
+    synchronized void failed() {
+        failures++;
+        complete(null);
+    }
+
+    private void complete(String node) {
+        pending--;
+        if (node != null) {
+            copies.add(node);
+        }
+        if (copies.size() >= required) {
+            result.complete(null);
+        } else if (copies.size() + pending < required) {
+            result.completeExceptionally(new IllegalStateException(
+                "Quórum de escritura inalcanzable: " + copies.size() + " copias de " + required +
+                " necesarias, " + failures + " réplicas fallidas"));
+        }
+    }
+
+    CompletableFuture<Void> future() {
+        return result;
+    }
+
+    /**
+     * Réplicas seleccionadas que confirmaron su copia, en el orden de selección
+     */
+    synchronized List<String> getStoredReplicas() {
+        List<String> stored = new ArrayList<>();
+        for (String replica : replicas) {
+            if (storedReplicas.contains(replica)) {
+                stored.add(replica);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Copias físicas distintas confirmadas
+     */
+    synchronized int getCopyCount() {
+        return copies.size();
+    }
+}
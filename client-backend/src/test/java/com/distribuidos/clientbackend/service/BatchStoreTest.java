@@ -0,0 +1,133 @@
+package com.distribuidos.clientbackend.service;
+
+import com.distribuidos.clientbackend.model.DistributedFileResult;
+import com.distribuidos.shared.rmi.BatchItemResult;
+import com.distribuidos.shared.rmi.BatchStoreItem;
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas del almacenamiento por lotes: troceo por tamaño y orden de los resultados
+ */
+class BatchStoreTest {
+
+    private DistributedStorageService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private static BatchStoreItem item(long id, int size) {
+        return new BatchStoreItem(id, "f" + id, new byte[size], null);
+    }
+
+    private static List<Long> ids(List<BatchStoreItem> chunk) {
+        List<Long> ids = new ArrayList<>();
+        for (BatchStoreItem item : chunk) {
+            ids.add(item.getFileId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testChunksStayWithinByteLimitInOrder() {
+        List<BatchStoreItem> items = Arrays.asList(item(1, 40), item(2, 40), item(3, 30), item(4, 90), item(5, 10));
+
+        List<List<BatchStoreItem>> chunks = DistributedStorageService.chunkBySize(items, 100);
+
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(1L, 2L), ids(chunks.get(0)));
+        assertEquals(Arrays.asList(3L), ids(chunks.get(1)));
+        assertEquals(Arrays.asList(4L, 5L), ids(chunks.get(2)));
+    }
+
+    @Test
+    void testOversizedItemGoesAlone() {
+        List<BatchStoreItem> items = Arrays.asList(item(1, 10), item(2, 500), item(3, 10));
+
+        List<List<BatchStoreItem>> chunks = DistributedStorageService.chunkBySize(items, 100);
+
+        assertEquals(3, chunks.size());
+        assertEquals(Arrays.asList(2L), ids(chunks.get(1)));
+        assertTrue(DistributedStorageService.chunkBySize(new ArrayList<>(), 100).isEmpty());
+    }
+
+    @Test
+    void testResultsFollowMapOrderIncludingInvalidEntries() {
+        service = new DistributedStorageService();
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("a.txt", new byte[]{1});
+        files.put("empty.txt", new byte[0]);
+        files.put("b.txt", new byte[]{2});
+
+        List<DistributedFileResult> results = service.storeFiles(files);
+
+        assertEquals(3, results.size());
+        assertEquals("a.txt", results.get(0).getFileName());
+        assertEquals("empty.txt", results.get(1).getFileName());
+        assertNull(results.get(1).getFileId());
+        assertEquals("b.txt", results.get(2).getFileName());
+    }
+
+    private static StorageNodeInterface healthyNode() throws RemoteException {
+        StorageNodeInterface node = mock(StorageNodeInterface.class);
+        when(node.heartbeat()).thenReturn(true);
+        when(node.storeFiles(anyList())).thenAnswer(invocation -> {
+            List<BatchItemResult<String>> results = new ArrayList<>();
+            for (Object item : (List<?>) invocation.getArgument(0)) {
+                Long fileId = ((BatchStoreItem) item).getFileId();
+                results.add(BatchItemResult.success(fileId, "/storage/" + fileId));
+            }
+            return results;
+        });
+        return node;
+    }
+
+    @Test
+    void testDownNodeReplicasAreHandedOffWithOneHeartbeatPerNode() throws Exception {
+        Map<String, StorageNodeInterface> nodes = new LinkedHashMap<>();
+        nodes.put("storage-node-1", healthyNode());
+        nodes.put("storage-node-2", healthyNode());
+        StorageNodeInterface down = mock(StorageNodeInterface.class);
+        when(down.heartbeat()).thenThrow(new RemoteException("nodo caído"));
+        nodes.put("storage-node-3", down);
+        service = new DistributedStorageService(nodes::get);
+
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            files.put("f" + i + ".txt", new byte[]{(byte) i});
+        }
+        List<DistributedFileResult> results = service.storeFiles(files);
+
+        for (StorageNodeInterface node : nodes.values()) {
+            verify(node, times(1)).heartbeat();
+        }
+        verify(down, never()).storeFiles(anyList());
+
+        int handedOff = 0;
+        for (DistributedFileResult result : results) {
+            assertTrue(result.isSuccess(), result.getMessage());
+            assertFalse(result.getReplicatedNodes().contains("storage-node-3"));
+            if (result.getReplicatedNodes().size() == 1) {
+                handedOff++;
+            }
+        }
+        assertTrue(handedOff > 0, "Alguna réplica debe estar dirigida al nodo caído");
+        assertEquals(handedOff, service.getSystemStatistics().getPendingHintsByNode().get("storage-node-3"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.distribuidos.clientbackend.service;
+
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias del servicio de hinted handoff
+ */
+public class HintedHandoffServiceTest {
+
+    private static final byte[] DATA = "contenido custodiado".getBytes(StandardCharsets.UTF_8);
+
+    private HintedHandoffService handoffService;
+    private StorageNodeInterface holder;
+    private StorageNodeInterface target;
+    private Map<String, StorageNodeInterface> nodes;
+
+    @AfterEach
+    void tearDown() {
+        handoffService.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() throws RemoteException {
+        handoffService = new HintedHandoffService(1000);
+        holder = mock(StorageNodeInterface.class);
+        target = mock(StorageNodeInterface.class);
+        when(holder.retrieveFile(eq(7L), isNull())).thenReturn(DATA);
+
+        nodes = new HashMap<>();
+        nodes.put("storage-node-1", holder);
+        nodes.put("storage-node-2", target);
+    }
+
+    @Test
+    @DisplayName("Reproduce el hint en el destino y libera la copia temporal")
+    void testReplayDeliversHint() throws RemoteException {
+        handoffService.recordHint(new HintedHandoffService.Hint(
+            7L, "a.txt", "abc", "storage-node-2", "storage-node-1", false));
+
+        assertTrue(handoffService.hasHints("storage-node-2"));
+        assertEquals(1, handoffService.getPendingHintCount());
+
+        int delivered = handoffService.replayHints("storage-node-2", nodes::get).join();
+
+        assertEquals(1, delivered);
+        assertFalse(handoffService.hasHints("storage-node-2"));
+        assertEquals(1, handoffService.getReplayedHintCount());
+        verify(target).storeFile(7L, "a.txt", DATA, "abc");
+        verify(holder).deleteFile(7L, null);
+    }
+
+    @Test
+    @DisplayName("Conserva la copia cuando el custodio es una réplica legítima")
+    void testReplayKeepsReplicaHolderCopy() throws RemoteException {
+        handoffService.recordHint(new HintedHandoffService.Hint(
+            7L, "a.txt", "abc", "storage-node-2", "storage-node-1", true));
+
+        handoffService.replayHints("storage-node-2", nodes::get).join();
+
+        verify(target).storeFile(7L, "a.txt", DATA, "abc");
+        verify(holder, never()).deleteFile(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Mantiene el hint pendiente si el destino sigue fallando")
+    void testReplayKeepsHintOnTargetFailure() throws RemoteException {
+        when(target.storeFile(anyLong(), anyString(), any(), anyString()))
+            .thenThrow(new RemoteException("nodo caído"));
+        handoffService.recordHint(new HintedHandoffService.Hint(
+            7L, "a.txt", "abc", "storage-node-2", "storage-node-1", false));
+
+        int delivered = handoffService.replayHints("storage-node-2", nodes::get).join();
+
+        assertEquals(0, delivered);
+        assertEquals(1, handoffService.getPendingHintsByNode().get("storage-node-2"));
+        assertEquals(1, handoffService.getFailedReplayCount());
+        verify(holder, never()).deleteFile(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Espacia las entregas sin bloquear al llamador")
+    void testReplayDoesNotBlockCaller() throws RemoteException {
+        ManualScheduler scheduler = new ManualScheduler();
+        HintedHandoffService paced = new HintedHandoffService(20, scheduler);
+        try {
+            for (long id = 1; id <= 3; id++) {
+                when(holder.retrieveFile(eq(id), isNull())).thenReturn(DATA);
+                paced.recordHint(new HintedHandoffService.Hint(
+                    id, id + ".txt", "abc", "storage-node-2", "storage-node-1", false));
+            }
+
+            CompletableFuture<Integer> replay = paced.replayHints("storage-node-2", nodes::get);
+
+            // La llamada solo programa la primera entrega
+            assertFalse(replay.isDone());
+            verify(target, never()).storeFile(anyLong(), anyString(), any(), anyString());
+            while (scheduler.runNext()) {
+                // Cada ejecución entrega un hint y programa la siguiente
+            }
+            assertEquals(3, replay.join());
+            assertEquals(List.of(0L, 50L, 50L), scheduler.delays);
+            assertFalse(paced.hasHints("storage-node-2"));
+        } finally {
+            paced.shutdown();
+        }
+    }
+
+    /**
+     * Planificador que guarda las tareas y las ejecuta solo cuando la prueba lo pide
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+        final List<Long> delays = new ArrayList<>();
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            delays.add(unit.toMillis(delay));
+            tasks.add(command);
+            return null;
+        }
+
+        boolean runNext() {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                return false;
+            }
+            task.run();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.distribuidos.clientbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias de las políticas de quórum
+ */
+public class QuorumPolicyTest {
+
+    @Test
+    @DisplayName("Las clases predefinidas tienen los N, W y R documentados")
+    void testPredefinedPolicies() {
+        assertEquals(2, QuorumPolicy.STANDARD.getReplicationFactor());
+        assertEquals(2, QuorumPolicy.STANDARD.getWriteQuorum());
+        assertEquals(1, QuorumPolicy.STANDARD.getReadQuorum());
+
+        assertEquals(1, QuorumPolicy.FAST.getWriteQuorum());
+        assertFalse(QuorumPolicy.FAST.isStronglyConsistent());
+
+        assertEquals(3, QuorumPolicy.STRONG.getReplicationFactor());
+        assertTrue(QuorumPolicy.STRONG.isStronglyConsistent());
+    }
+
+    @Test
+    @DisplayName("Una política personalizada se nombra por sus parámetros")
+    void testCustomPolicy() {
+        QuorumPolicy policy = QuorumPolicy.of(5, 3, 3);
+
+        assertEquals("N5W3R3", policy.getName());
+        assertTrue(policy.isStronglyConsistent());
+        assertFalse(QuorumPolicy.of(5, 2, 3).isStronglyConsistent());
+    }
+
+    @Test
+    @DisplayName("Rechaza W y R fuera de 1..N")
+    void testInvalidPolicies() {
+        assertThrows(IllegalArgumentException.class, () -> QuorumPolicy.of(0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> QuorumPolicy.of(3, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> QuorumPolicy.of(3, 4, 1));
+        assertThrows(IllegalArgumentException.class, () -> QuorumPolicy.of(3, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> QuorumPolicy.of(3, 2, 4));
+    }
+}
@@ -0,0 +1,130 @@
+package com.distribuidos.clientbackend.service;
+
+import com.distribuidos.clientbackend.model.DistributedFileResult;
+import com.distribuidos.shared.rmi.StorageNodeInterface;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas de la lectura por quórum y del read repair con nodos simulados
+ */
+class ReadRepairTest {
+
+    private static final long FILE_ID = 42L;
+    private static final byte[] CURRENT = "versión vigente".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STALE = "versión antigua".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, StorageNodeInterface> nodes = new LinkedHashMap<>();
+    private DistributedStorageService service;
+
+    @BeforeEach
+    void setUp() throws RemoteException {
+        for (int i = 1; i <= 3; i++) {
+            StorageNodeInterface node = mock(StorageNodeInterface.class);
+            when(node.heartbeat()).thenReturn(true);
+            when(node.storeFile(anyLong(), anyString(), any(), anyString())).thenReturn("/storage/" + FILE_ID);
+            when(node.retrieveFile(eq(FILE_ID), isNull())).thenReturn(CURRENT);
+            when(node.verifyFile(anyLong(), any(), anyString())).thenReturn(true);
+            nodes.put("storage-node-" + i, node);
+        }
+        service = new DistributedStorageService(nodes::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static Map<String, String> checksums(String... values) {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            checksums.put("storage-node-" + (i + 1), values[i]);
+        }
+        return checksums;
+    }
+
+    @Test
+    @DisplayName("Sin checksum registrado, un empate no elige versión para reparar")
+    void testTieWithoutRecordedChecksumIsNotRepaired() {
+        assertNull(DistributedStorageService.repairChecksum(null, checksums("a", "b"), 2));
+        assertNull(DistributedStorageService.repairChecksum(null, checksums("a"), 3));
+        assertNull(DistributedStorageService.repairChecksum("c", checksums("a", "b"), 3));
+    }
+
+    @Test
+    @DisplayName("Repara contra el checksum registrado o una mayoría estricta")
+    void testRecordedChecksumOrStrictMajorityWins() {
+        assertEquals("b", DistributedStorageService.repairChecksum("b", checksums("a", "a", "b"), 3));
+        assertEquals("a", DistributedStorageService.repairChecksum(null, checksums("a", "a", "b"), 3));
+        assertEquals("a", DistributedStorageService.repairChecksum(null, checksums("a", "a"), 3));
+    }
+
+    @Test
+    @DisplayName("Una réplica leída con la versión antigua se reescribe con la mayoritaria")
+    void testStaleReplicaRepairedFromMajority() throws Exception {
+        StorageNodeInterface stale = nodes.get("storage-node-2");
+        when(stale.retrieveFile(eq(FILE_ID), isNull())).thenReturn(STALE);
+
+        DistributedFileResult result = service.retrieveFile(FILE_ID, QuorumPolicy.of(3, 1, 3));
+
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getReplicatedNodes().size());
+        verify(stale, timeout(5000)).storeFile(eq(FILE_ID), anyString(), eq(CURRENT), anyString());
+        verify(nodes.get("storage-node-1"), never()).storeFile(anyLong(), anyString(), any(), anyString());
+    }
+
+    @Test
+    @DisplayName("Con el checksum registrado al escribir se repara aunque la réplica vigente sea minoría")
+    void testRecordedChecksumOverridesMajority() throws Exception {
+        QuorumPolicy all = QuorumPolicy.of(3, 3, 3);
+        assertTrue(service.storeFile(FILE_ID, "a.txt", CURRENT, all).isSuccess());
+        for (String nodeId : new String[]{"storage-node-1", "storage-node-3"}) {
+            StorageNodeInterface node = nodes.get(nodeId);
+            clearInvocations(node);
+            when(node.retrieveFile(eq(FILE_ID), isNull())).thenReturn(STALE);
+        }
+
+        DistributedFileResult result = service.retrieveFile(FILE_ID, all);
+
+        assertTrue(result.isSuccess());
+        assertEquals("storage-node-2", result.getPrimaryNode());
+        verify(nodes.get("storage-node-1"), timeout(5000)).storeFile(eq(FILE_ID), anyString(), eq(CURRENT), anyString());
+        verify(nodes.get("storage-node-3"), timeout(5000)).storeFile(eq(FILE_ID), anyString(), eq(CURRENT), anyString());
+    }
+
+    @Test
+    @DisplayName("Las réplicas no consultadas solo se verifican en las lecturas muestreadas")
+    void testUncheckedReplicasVerifiedOnlyWhenSampled() throws Exception {
+        assertTrue(service.storeFile(FILE_ID, "a.txt", CURRENT, QuorumPolicy.of(3, 3, 1)).isSuccess());
+
+        service.setReadRepairVerifyRate(0);
+        assertTrue(service.retrieveFile(FILE_ID, QuorumPolicy.of(3, 3, 1)).isSuccess());
+        for (StorageNodeInterface node : nodes.values()) {
+            verify(node, never()).verifyFile(anyLong(), any(), anyString());
+        }
+
+        CountDownLatch verified = new CountDownLatch(2);
+        for (StorageNodeInterface node : nodes.values()) {
+            when(node.verifyFile(anyLong(), any(), anyString())).thenAnswer(invocation -> {
+                verified.countDown();
+                return true;
+            });
+        }
+        service.setReadRepairVerifyRate(1);
+        assertTrue(service.retrieveFile(FILE_ID, QuorumPolicy.of(3, 3, 1)).isSuccess());
+        assertTrue(verified.await(5, TimeUnit.SECONDS), "Las dos réplicas no leídas deben verificarse");
+    }
+}
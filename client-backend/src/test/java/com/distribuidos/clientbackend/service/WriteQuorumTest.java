@@ -0,0 +1,98 @@
+package com.distribuidos.clientbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias del conteo de confirmaciones de escritura
+ */
+public class WriteQuorumTest {
+
+    private static final List<String> REPLICAS = Arrays.asList("storage-node-1", "storage-node-2");
+
+    @Test
+    @DisplayName("Alcanza el quórum con W réplicas confirmadas")
+    void testQuorumReached() {
+        WriteQuorum quorum = new WriteQuorum(REPLICAS, 2);
+
+        quorum.stored("storage-node-2");
+        assertFalse(quorum.future().isDone());
+        quorum.stored("storage-node-1");
+
+        assertTrue(quorum.future().isDone());
+        assertFalse(quorum.future().isCompletedExceptionally());
+        assertEquals(REPLICAS, quorum.getStoredReplicas(), "En el orden de selección");
+    }
+
+    @Test
+    @DisplayName("Un custodio que ya tiene copia no cuenta dos veces")
+    void testHolderCountedOnce() {
+        WriteQuorum quorum = new WriteQuorum(REPLICAS, 2);
+
+        quorum.stored("storage-node-1");
+        // La réplica fallida quedó custodiada en el mismo nodo físico
+        quorum.handedOff("storage-node-1");
+
+        assertTrue(quorum.future().isCompletedExceptionally());
+        assertEquals(1, quorum.getCopyCount());
+        assertThrows(CompletionException.class, () -> quorum.future().join());
+    }
+
+    @Test
+    @DisplayName("Dos réplicas custodiadas por el mismo nodo son una sola copia")
+    void testSharedHolderCountedOnce() {
+        WriteQuorum quorum = new WriteQuorum(REPLICAS, 2);
+
+        quorum.handedOff("storage-node-3");
+        quorum.handedOff("storage-node-3");
+
+        assertTrue(quorum.future().isCompletedExceptionally());
+        assertEquals(1, quorum.getCopyCount());
+    }
+
+    @Test
+    @DisplayName("La copia de un custodio distinto completa el quórum pero no es réplica")
+    void testSloppyQuorumReportsOnlyReplicas() {
+        WriteQuorum quorum = new WriteQuorum(REPLICAS, 2);
+
+        quorum.stored("storage-node-1");
+        quorum.handedOff("storage-node-3");
+
+        assertFalse(quorum.future().isCompletedExceptionally());
+        assertTrue(quorum.future().isDone());
+        assertEquals(2, quorum.getCopyCount());
+        assertEquals(Collections.singletonList("storage-node-1"), quorum.getStoredReplicas());
+    }
+
+    @Test
+    @DisplayName("Falla en cuanto las réplicas pendientes no pueden alcanzar W")
+    void testQuorumFailsEarly() {
+        WriteQuorum quorum = new WriteQuorum(Arrays.asList("storage-node-1", "storage-node-2", "storage-node-3"), 2);
+
+        quorum.failed();
+        assertFalse(quorum.future().isDone(), "Quedan dos réplicas pendientes");
+        quorum.failed();
+
+        assertTrue(quorum.future().isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("W=1 se cumple con la primera confirmación aunque las demás fallen")
+    void testFastQuorum() {
+        WriteQuorum quorum = new WriteQuorum(REPLICAS, 1);
+
+        quorum.failed();
+        assertFalse(quorum.future().isDone());
+        quorum.stored("storage-node-2");
+
+        assertFalse(quorum.future().isCompletedExceptionally());
+        assertTrue(quorum.future().isDone());
+    }
+}
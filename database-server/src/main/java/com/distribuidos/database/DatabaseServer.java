@@ -1,105 +1,325 @@
 package com.distribuidos.database;
 
 import com.distribuidos.database.config.DatabaseConfig;
-import com.distribuidos.database.handler.ClientHandler;
+import com.distribuidos.database.handler.ClientConnection;
+import com.distribuidos.database.handler.MessageProcessor;
+import com.distribuidos.database.replication.ChangeLog;
+import com.distribuidos.database.replication.ReplicaFollower;
+import com.distribuidos.shared.util.ExecutorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Servidor de base de datos que maneja conexiones TCP
+ * Servidor de base de datos que maneja conexiones TCP.
+ *
+ * Usa selectores NIO: unos pocos hilos de I/O atienden todas las conexiones
+ * (incluidas miles de conexiones ociosas) y las tramas completas se entregan
+ * a un pool acotado de trabajadores que ejecuta JDBC. El tamaño del pool
+ * coincide con el del pool de conexiones de la base de datos. Con
+ * executor.mode=virtual cada petición corre en su propio hilo virtual.
+ *
+ * Con db.role=primary publica un registro de cambios; con db.role=replica
+ * (y db.primary=host:puerto) es una réplica de solo lectura que lo sigue.
  */
 public class DatabaseServer {
-    
+
     private static final Logger logger = LoggerFactory.getLogger(DatabaseServer.class);
     private static final int DEFAULT_PORT = 9001;
-    private static final int THREAD_POOL_SIZE = 10;
+    private static final int DEFAULT_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int WORKER_POOL_SIZE = 10;
+    private static final int WORKER_QUEUE_CAPACITY = 1024;
+    private static final int ACCEPT_BACKLOG = 1024;
     
+    public static final String ROLE_STANDALONE = "standalone";
+    public static final String ROLE_PRIMARY = "primary";
+    public static final String ROLE_REPLICA = "replica";
+    private static final int DEFAULT_MAX_STALENESS_MS = 1000;
+
     private final int port;
-    private final ExecutorService threadPool;
-    private ServerSocket serverSocket;
+    private final int ioThreadCount;
+    private final ExecutorService workerPool;
+    private final MessageProcessor messageProcessor;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private ReplicaFollower replicaFollower;
+    private ServerSocketChannel serverChannel;
+    private SelectorLoop[] selectorLoops;
     private volatile boolean running = false;
-    
+
     public DatabaseServer() {
         this(DEFAULT_PORT);
     }
-    
+
     public DatabaseServer(int port) {
+        this(port, DEFAULT_IO_THREADS);
+    }
+
+    public DatabaseServer(int port, int ioThreadCount) {
         this.port = port;
-        this.threadPool = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        this.ioThreadCount = ioThreadCount;
+        this.messageProcessor = new MessageProcessor();
+        this.workerPool = createWorkerPool();
     }
-    
+
     /**
-     * Inicia el servidor de base de datos
+     * Pool de trabajadores JDBC. En modo virtual la concurrencia queda acotada
+     * por el número de conexiones multiplicado por
+     * {@link ClientConnection#MAX_IN_FLIGHT}: cada conexión despacha hasta ese
+     * número de peticiones en paralelo y deja de leer mientras está llena.
+     */
+    private static ExecutorService createWorkerPool() {
+        if (ExecutorFactory.isVirtualModeEnabled()) {
+            return ExecutorFactory.newVirtualThreadPerTaskExecutor("db-worker");
+        }
+        return new ThreadPoolExecutor(WORKER_POOL_SIZE, WORKER_POOL_SIZE, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY),
+            ExecutorFactory.namedThreadFactory("db-worker", false));
+    }
+
+    /**
+     * Inicia el servidor de base de datos. Los hilos de I/O quedan atendiendo
+     * conexiones y el método retorna.
      */
     public void start() throws IOException, SQLException {
         // Inicializar la base de datos
         DatabaseConfig.initialize();
         logger.info("Base de datos inicializada correctamente");
-        
-        // Crear el socket del servidor
-        serverSocket = new ServerSocket(port);
+        startReplication();
+
+        // Crear el canal del servidor
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        serverChannel.configureBlocking(false);
         running = true;
-        
-        logger.info("Servidor de base de datos iniciado en puerto {}", port);
+
+        selectorLoops = new SelectorLoop[ioThreadCount];
+        for (int i = 0; i < ioThreadCount; i++) {
+            selectorLoops[i] = new SelectorLoop(i);
+        }
+        // El primer selector también acepta conexiones
+        serverChannel.register(selectorLoops[0].selector, SelectionKey.OP_ACCEPT);
+        for (SelectorLoop loop : selectorLoops) {
+            loop.thread.start();
+        }
+
+        logger.info("Servidor de base de datos iniciado en puerto {} ({} hilos de I/O, trabajadores: {})",
+                   getPort(), ioThreadCount, ExecutorFactory.isVirtualModeEnabled() ? "hilos virtuales" : WORKER_POOL_SIZE);
         logger.info("Esperando conexiones de clientes...");
-        
-        // Loop principal para aceptar conexiones
-        while (running) {
+    }
+
+    /**
+     * Papel del servidor en la replicación según db.role / DB_ROLE
+     */
+    private void startReplication() throws SQLException {
+        String role = DatabaseConfig.setting("db.role", "DB_ROLE", ROLE_STANDALONE).toLowerCase();
+        if (ROLE_PRIMARY.equals(role)) {
+            ChangeLog changeLog = new ChangeLog();
+            changeLog.install();
+            messageProcessor.setChangeLog(changeLog);
+        } else if (ROLE_REPLICA.equals(role)) {
+            String primary = DatabaseConfig.setting("db.primary", "DB_PRIMARY", (String) null);
+            if (primary == null || !primary.contains(":")) {
+                throw new IllegalStateException("Una réplica necesita db.primary=host:puerto");
+            }
+            String[] hostPort = primary.split(":");
+            replicaFollower = new ReplicaFollower(hostPort[0], Integer.parseInt(hostPort[1]),
+                DatabaseConfig.setting("db.replica.max.staleness.ms", "DB_REPLICA_MAX_STALENESS_MS",
+                                       DEFAULT_MAX_STALENESS_MS),
+                messageProcessor.getDatabaseService().getResultCache());
+            messageProcessor.setReplicaFollower(replicaFollower);
+            replicaFollower.start();
+        } else if (!ROLE_STANDALONE.equals(role)) {
+            logger.warn("Papel de replicación desconocido '{}', el servidor funciona sin replicación", role);
+        }
+    }
+
+    /**
+     * Hilo de I/O con su propio selector. Las tareas de otros hilos (registro
+     * de conexiones, respuestas listas) se encolan y se ejecutan aquí.
+     */
+    private class SelectorLoop implements Runnable, Executor {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private int nextLoop = 0;
+
+        SelectorLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "db-io-" + index);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    runTasks();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            acceptConnections();
+                        } else {
+                            ClientConnection connection = (ClientConnection) key.attachment();
+                            // Con peticiones en paralelo una conexión puede leer y escribir a la vez
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        logger.error("Error en el selector de I/O", e);
+                    }
+                }
+            }
+            closeAll();
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void acceptConnections() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                openConnections.incrementAndGet();
+                logger.debug("Nueva conexión desde: {}", channel.getRemoteAddress());
+
+                // Repartir conexiones entre los hilos de I/O
+                SelectorLoop owner = selectorLoops[nextLoop++ % selectorLoops.length];
+                SocketChannel accepted = channel;
+                owner.execute(() -> owner.register(accepted));
+            }
+        }
+
+        private void register(SocketChannel channel) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                logger.info("Nueva conexión desde: {}", clientSocket.getRemoteSocketAddress());
-                
-                // Manejar cada cliente en un hilo separado
-                ClientHandler clientHandler = new ClientHandler(clientSocket);
-                threadPool.submit(clientHandler);
-                
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new ClientConnection(channel, key, this, workerPool, messageProcessor,
+                                                openConnections::decrementAndGet));
             } catch (IOException e) {
-                if (running) {
-                    logger.error("Error aceptando conexión del cliente", e);
+                logger.error("Error registrando conexión", e);
+                openConnections.decrementAndGet();
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof ClientConnection) {
+                    ((ClientConnection) key.attachment()).close();
                 }
             }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.error("Error cerrando selector", e);
+            }
         }
     }
-    
+
     /**
      * Detiene el servidor de base de datos
      */
     public void stop() {
         running = false;
-        
+
         try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
             }
         } catch (IOException e) {
-            logger.error("Error cerrando el servidor socket", e);
+            logger.error("Error cerrando el canal del servidor", e);
+        }
+
+        if (selectorLoops != null) {
+            for (SelectorLoop loop : selectorLoops) {
+                loop.selector.wakeup();
+            }
         }
-        
-        threadPool.shutdown();
-        
+
+        if (replicaFollower != null) {
+            replicaFollower.stop();
+        }
+
+        messageProcessor.shutdown();
+        workerPool.shutdown();
+
         try {
             DatabaseConfig.shutdown();
             logger.info("Base de datos cerrada correctamente");
         } catch (SQLException e) {
             logger.error("Error cerrando la base de datos", e);
         }
-        
+
         logger.info("Servidor de base de datos detenido");
     }
-    
+
+    /**
+     * Puerto efectivo (útil cuando se inicia en el puerto 0)
+     */
+    public int getPort() {
+        if (serverChannel == null) {
+            return port;
+        }
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getOpenTransactions() {
+        return messageProcessor.getTransactions().getOpenTransactions();
+    }
+
     /**
      * Método principal
      */
     public static void main(String[] args) {
         int port = DEFAULT_PORT;
-        
+
         // Leer puerto desde argumentos si se proporciona
         if (args.length > 0) {
             try {
@@ -109,15 +329,15 @@ public class DatabaseServer {
                 port = DEFAULT_PORT;
             }
         }
-        
+
         DatabaseServer server = new DatabaseServer(port);
-        
+
         // Manejar shutdown gracefully
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Recibida señal de shutdown, deteniendo servidor...");
             server.stop();
         }));
-        
+
         try {
             server.start();
         } catch (IOException e) {
@@ -128,4 +348,4 @@ public class DatabaseServer {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,53 @@
 package com.distribuidos.database.client;
 
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseCursor;
 import com.distribuidos.shared.tcp.DatabaseMessage;
 import com.distribuidos.shared.tcp.DatabaseResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.net.Socket;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Cliente TCP para probar la conexión con el servidor de base de datos
+ * Cliente TCP para probar la conexión con el servidor de base de datos.
+ * Toma una conexión persistente de un {@link DatabaseConnectionPool} (propio
+ * o compartido) y la mantiene hasta desconectar; {@link #sendAsync} permite
+ * tener varias peticiones en vuelo sobre ella.
  */
 public class DatabaseClient {
     
     private static final Logger logger = LoggerFactory.getLogger(DatabaseClient.class);
     private static final String DEFAULT_HOST = "localhost";
     private static final int DEFAULT_PORT = 9001;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final long REQUEST_TIMEOUT_MS = 30000;
     
-    private Socket socket;
-    private ObjectOutputStream outputStream;
-    private ObjectInputStream inputStream;
+    private final boolean preferBinary;
+    private DatabaseConnectionPool pool;
+    private boolean ownsPool;
+    private DatabaseConnectionPool.PooledConnection connection;
+    
+    public DatabaseClient() {
+        this(true);
+    }
+    
+    /**
+     * @param preferBinary intentar negociar el protocolo binario al conectar
+     */
+    public DatabaseClient(boolean preferBinary) {
+        this.preferBinary = preferBinary;
+    }
+    
+    /**
+     * Cliente que toma su conexión de un pool compartido
+     */
+    public DatabaseClient(DatabaseConnectionPool pool) {
+        this.preferBinary = true;
+        this.pool = pool;
+    }
     
     /**
      * Conecta al servidor de base de datos
@@ -29,20 +57,44 @@ public class DatabaseClient {
     }
     
     /**
-     * Conecta al servidor de base de datos
+     * Conecta al servidor de base de datos.
+     * Con un pool compartido se usa el destino del pool y se ignoran host y puerto.
      */
     public boolean connect(String host, int port) {
+        if (pool == null) {
+            pool = new DatabaseConnectionPool(host, port, new DatabaseConnectionPool.Config()
+                .maxConnections(1)
+                .connectTimeoutMs(CONNECT_TIMEOUT_MS)
+                .requestTimeoutMs(REQUEST_TIMEOUT_MS)
+                .preferBinary(preferBinary));
+            ownsPool = true;
+        }
+        boolean connected = borrowConnection(host + ":" + port);
+        if (!connected && ownsPool) {
+            pool.close();
+            pool = null;
+            ownsPool = false;
+        }
+        return connected;
+    }
+    
+    /**
+     * Toma la conexión del pool ya configurado
+     */
+    private boolean borrowConnection(String target) {
         try {
-            socket = new Socket(host, port);
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
+            connection = pool.borrow();
             
-            logger.info("Conectado al servidor de base de datos en {}:{}", host, port);
+            logger.info("Conectado al servidor de base de datos en {} (protocolo {})",
+                       target, isBinaryProtocol() ? "binario" : "Java serialization");
             return true;
             
-        } catch (IOException e) {
+        } catch (IOException | TimeoutException e) {
             logger.error("Error conectando al servidor de base de datos", e);
             return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
     
@@ -51,30 +103,65 @@ public class DatabaseClient {
      */
     public DatabaseResponse sendMessage(DatabaseMessage message) {
         try {
-            outputStream.writeObject(message);
-            outputStream.flush();
+            return connection.send(message);
             
-            return (DatabaseResponse) inputStream.readObject();
-            
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (TimeoutException e) {
+            logger.error("Timeout esperando respuesta del servidor");
+            connection.invalidate();
+            return DatabaseResponse.error("Timeout en comunicación con base de datos");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DatabaseResponse.error("Petición interrumpida");
+        } catch (IOException e) {
             logger.error("Error enviando mensaje al servidor", e);
+            connection.invalidate();
             return DatabaseResponse.error("Error de comunicación: " + e.getMessage());
         }
     }
     
+    /**
+     * Envía un mensaje sin esperar a que terminen las anteriores.
+     * Las respuestas pueden completarse en cualquier orden.
+     */
+    public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+        return connection.sendAsync(message);
+    }
+    
+    /**
+     * Recorre todas las filas de una entidad página a página
+     */
+    public DatabaseCursor openCursor(String entity, int pageSize) {
+        return openCursor(entity, null, null, pageSize);
+    }
+    
+    /**
+     * Recorre el resultado de una consulta (que debe incluir la columna ID) página a página
+     */
+    public DatabaseCursor openCursor(String entity, String query, Object[] parameters, int pageSize) {
+        return new DatabaseCursor(connection::sendAsync, entity, query, parameters, pageSize, REQUEST_TIMEOUT_MS);
+    }
+    
+    /**
+     * Indica si la conexión actual usa el protocolo binario
+     */
+    public boolean isBinaryProtocol() {
+        return connection != null && connection.getWireVersion() > 0;
+    }
+    
     /**
      * Cierra la conexión
      */
     public void disconnect() {
-        try {
-            if (inputStream != null) inputStream.close();
-            if (outputStream != null) outputStream.close();
-            if (socket != null) socket.close();
-            
+        if (connection != null) {
+            // Devuelve la conexión al pool; solo se cierra si el pool es propio
+            connection.close();
+            connection = null;
+            if (ownsPool) {
+                pool.close();
+                pool = null;
+                ownsPool = false;
+            }
             logger.info("Desconectado del servidor de base de datos");
-            
-        } catch (IOException e) {
-            logger.error("Error cerrando conexión", e);
         }
     }
     
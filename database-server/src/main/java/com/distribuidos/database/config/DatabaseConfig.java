@@ -1,5 +1,6 @@
 package com.distribuidos.database.config;
 
+import com.distribuidos.shared.util.ExecutorFactory;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
@@ -7,19 +8,54 @@ import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuración de la base de datos
  * Preparado para migrar fácilmente de H2 a MySQL
+ *
+ * H2 funciona en memoria (por defecto) o en archivo con db.mode=file
+ * (propiedad del sistema o variable DB_MODE). En modo archivo los metadatos
+ * sobreviven a los reinicios y el catálogo no tiene que caber en el heap:
+ * - db.path / DB_PATH: ruta base de la base de datos (sin extensión);
+ * - db.cache.kb / DB_CACHE_KB: caché de páginas del MVStore;
+ * - db.write.delay.ms / DB_WRITE_DELAY_MS: retraso máximo con el que el
+ *   MVStore escribe los cambios confirmados. Por defecto 0: cada commit se
+ *   escribe antes de responder al cliente. Un valor mayor agrupa escrituras
+ *   y acelera las cargas con muchos commits pequeños, pero si el proceso o
+ *   la máquina caen se pierden hasta esos milisegundos de commits que ya se
+ *   confirmaron al cliente;
+ * - db.checkpoint.seconds / DB_CHECKPOINT_SECONDS: cada cuánto se fuerza un
+ *   checkpoint (0 lo desactiva);
+ * - db.retention.ms / DB_RETENTION_MS: tiempo que se conservan los fragmentos
+ *   reemplazados antes de que la compactación en segundo plano del MVStore
+ *   pueda reescribirlos o reutilizar su espacio. El valor por
+ *   defecto de H2 (45 s) hace crecer el archivo varias veces su tamaño útil
+ *   durante cargas sostenidas;
+ * - db.compact.ms / DB_COMPACT_MS: tiempo máximo de compactación al cerrar.
+ *
+ * Con db.shard.count / DB_SHARD_COUNT mayor que 1 el servidor es el
+ * fragmento db.shard.index / DB_SHARD_INDEX (desde 0) de los metadatos: sus
+ * columnas identidad generan solo ids con (id - 1) % count == index, así el
+ * cliente sabe en qué fragmento está cualquier fila por su id. Los usuarios
+ * iniciales se crean solo en el fragmento 0.
  */
 public class DatabaseConfig {
     
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConfig.class);
     
-    // Configuración para H2 (en memoria)
+    // Configuración para H2 (en memoria o en archivo)
     private static final String H2_URL = "jdbc:h2:mem:distributedfs;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    private static final String H2_FILE_URL = "jdbc:h2:file:%s;CACHE_SIZE=%d;WRITE_DELAY=%d;RETENTION_TIME=%d;" +
+                                              "MAX_COMPACT_TIME=%d;" +
+                                              "DB_CLOSE_ON_EXIT=FALSE";
     private static final String H2_DRIVER = "org.h2.Driver";
     private static final String H2_USERNAME = "sa";
     private static final String H2_PASSWORD = "";
@@ -32,16 +68,31 @@ public class DatabaseConfig {
     private static final String MYSQL_PASSWORD = "password";
     */
     
+    public static final String MODE_PROPERTY = "db.mode";
+    public static final String MODE_MEMORY = "mem";
+    public static final String MODE_FILE = "file";
+    private static final String DEFAULT_PATH = "./data/distributedfs";
+    private static final int DEFAULT_CACHE_KB = 64 * 1024;
+    private static final int DEFAULT_WRITE_DELAY_MS = 0;
+    private static final int DEFAULT_CHECKPOINT_SECONDS = 60;
+    private static final int DEFAULT_RETENTION_MS = 5000;
+    private static final int DEFAULT_COMPACT_MS = 2000;
+    
+    public static final String SHARD_INDEX_PROPERTY = "db.shard.index";
+    public static final String SHARD_COUNT_PROPERTY = "db.shard.count";
+    
     private static HikariDataSource dataSource;
+    private static ScheduledExecutorService checkpointer;
     
     /**
      * Inicializa la conexión a la base de datos
      */
     public static void initialize() throws SQLException {
         HikariConfig config = new HikariConfig();
+        boolean fileMode = isFileMode();
         
         // Configuración H2 (cambiar a MySQL cuando sea necesario)
-        config.setJdbcUrl(H2_URL);
+        config.setJdbcUrl(fileMode ? fileUrl() : H2_URL);
         config.setDriverClassName(H2_DRIVER);
         config.setUsername(H2_USERNAME);
         config.setPassword(H2_PASSWORD);
@@ -58,7 +109,90 @@ public class DatabaseConfig {
         // Crear las tablas
         createTables();
         
-        logger.info("Base de datos H2 inicializada correctamente");
+        if (fileMode) {
+            startCheckpoints(setting("db.checkpoint.seconds", "DB_CHECKPOINT_SECONDS", DEFAULT_CHECKPOINT_SECONDS));
+            logger.info("Base de datos H2 en archivo inicializada correctamente: {}", config.getJdbcUrl());
+        } else {
+            logger.info("Base de datos H2 inicializada correctamente");
+        }
+    }
+    
+    /**
+     * Modo solicitado: file, o mem en cualquier otro caso
+     */
+    public static boolean isFileMode() {
+        String mode = System.getProperty(MODE_PROPERTY);
+        if (mode == null) {
+            mode = System.getenv("DB_MODE");
+        }
+        return mode != null && MODE_FILE.equals(mode.trim().toLowerCase());
+    }
+    
+    private static String fileUrl() {
+        String path = System.getProperty("db.path");
+        if (path == null) {
+            path = System.getenv("DB_PATH");
+        }
+        return String.format(H2_FILE_URL, path != null ? path : DEFAULT_PATH,
+                             setting("db.cache.kb", "DB_CACHE_KB", DEFAULT_CACHE_KB),
+                             setting("db.write.delay.ms", "DB_WRITE_DELAY_MS", DEFAULT_WRITE_DELAY_MS),
+                             setting("db.retention.ms", "DB_RETENTION_MS", DEFAULT_RETENTION_MS),
+                             setting("db.compact.ms", "DB_COMPACT_MS", DEFAULT_COMPACT_MS));
+    }
+    
+    /**
+     * Valor de la propiedad del sistema, o de la variable de entorno si no está definida
+     */
+    public static String setting(String property, String env, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            value = System.getenv(env);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+    
+    public static int setting(String property, String env, int defaultValue) {
+        String value = setting(property, env, (String) null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Valor inválido '{}' para {}, usando {}", value, property, defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Checkpoint periódico: acota los cambios que quedan solo en memoria aunque
+     * el retraso de escritura sea alto o la carga no deje actuar al escritor de fondo
+     */
+    private static void startCheckpoints(int seconds) {
+        if (seconds <= 0) {
+            return;
+        }
+        checkpointer = Executors.newSingleThreadScheduledExecutor(
+            ExecutorFactory.namedThreadFactory("db-checkpoint", true));
+        checkpointer.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (SQLException e) {
+                logger.warn("Error en el checkpoint periódico: {}", e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Fuerza la escritura a disco de los cambios confirmados
+     */
+    public static void checkpoint() throws SQLException {
+        try (Connection connection = getConnection();
+             Statement stmt = connection.createStatement()) {
+            long start = System.currentTimeMillis();
+            stmt.execute("CHECKPOINT");
+            logger.debug("Checkpoint completado en {} ms", System.currentTimeMillis() - start);
+        }
     }
     
     /**
@@ -75,6 +209,10 @@ public class DatabaseConfig {
      * Cierra el pool de conexiones
      */
     public static void shutdown() throws SQLException {
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+            checkpointer = null;
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             logger.info("Pool de conexiones cerrado");
@@ -82,136 +220,85 @@ public class DatabaseConfig {
     }
     
     /**
-     * Crea las tablas necesarias en la base de datos
+     * Crea o actualiza las tablas necesarias en la base de datos
      */
     private static void createTables() throws SQLException {
         try (Connection connection = getConnection();
              Statement stmt = connection.createStatement()) {
             
-            // Tabla de usuarios
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS users (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "username VARCHAR(255) UNIQUE NOT NULL, " +
-                "password VARCHAR(255) NOT NULL, " +
-                "email VARCHAR(255) UNIQUE NOT NULL, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")"
-            );
-            
-            // Tabla de directorios
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS directories (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL, " +
-                "full_path VARCHAR(1000) NOT NULL, " +
-                "parent_id BIGINT, " +
-                "owner_id BIGINT NOT NULL, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (parent_id) REFERENCES directories(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE" +
-                ")"
-            );
-            
-            // Tabla de archivos
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS files (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL, " +
-                "original_name VARCHAR(255), " +
-                "file_path VARCHAR(1000) NOT NULL, " +
-                "file_size BIGINT, " +
-                "mime_type VARCHAR(255), " +
-                "checksum VARCHAR(255), " +
-                "directory_id BIGINT, " +
-                "owner_id BIGINT NOT NULL, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (directory_id) REFERENCES directories(id) ON DELETE SET NULL, " +
-                "FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE" +
-                ")"
-            );
-            
-            // Tabla de nodos
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS nodes (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "node_id VARCHAR(255) UNIQUE NOT NULL, " +
-                "hostname VARCHAR(255) NOT NULL, " +
-                "port INTEGER NOT NULL, " +
-                "storage_path VARCHAR(1000) NOT NULL, " +
-                "total_capacity BIGINT, " +
-                "used_capacity BIGINT DEFAULT 0, " +
-                "status VARCHAR(50) DEFAULT 'OFFLINE', " +
-                "last_heartbeat TIMESTAMP, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")"
-            );
-            
-            // Tabla de réplicas de archivos
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS file_replicas (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "file_id BIGINT NOT NULL, " +
-                "node_id BIGINT NOT NULL, " +
-                "local_path VARCHAR(1000) NOT NULL, " +
-                "replica_checksum VARCHAR(255), " +
-                "status VARCHAR(50) DEFAULT 'PENDING', " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "last_verified TIMESTAMP, " +
-                "FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (node_id) REFERENCES nodes(id) ON DELETE CASCADE" +
-                ")"
-            );
+            // Tablas e índices
+            int version = SchemaMigrator.migrate(connection);
             
-            // Tabla de permisos
-            stmt.execute(
-                "CREATE TABLE IF NOT EXISTS permissions (" +
-                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
-                "user_id BIGINT NOT NULL, " +
-                "file_id BIGINT, " +
-                "directory_id BIGINT, " +
-                "permission_type VARCHAR(50) NOT NULL, " +
-                "granted_by BIGINT NOT NULL, " +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-                "expires_at TIMESTAMP, " +
-                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (directory_id) REFERENCES directories(id) ON DELETE CASCADE, " +
-                "FOREIGN KEY (granted_by) REFERENCES users(id) ON DELETE CASCADE" +
-                ")"
-            );
+            int shardCount = getShardCount();
+            int shardIndex = getShardIndex();
+            if (shardCount > 1) {
+                configureShardIdentity(stmt, shardIndex, shardCount);
+            }
             
             // Insertar usuarios iniciales
-            insertInitialData(stmt);
+            if (shardIndex == 0) {
+                insertInitialData(stmt);
+            }
             
-            logger.info("Tablas creadas exitosamente");
+            logger.info("Esquema de la base de datos en la versión {}", version);
         }
     }
     
+    public static int getShardCount() {
+        return Math.max(1, setting(SHARD_COUNT_PROPERTY, "DB_SHARD_COUNT", 1));
+    }
+    
+    public static int getShardIndex() {
+        return setting(SHARD_INDEX_PROPERTY, "DB_SHARD_INDEX", 0);
+    }
+    
+    /**
+     * Ajusta cada columna identidad para que continúe tras el mayor id
+     * existente con ids de este fragmento: index + 1, index + 1 + count...
+     */
+    private static void configureShardIdentity(Statement stmt, int index, int count) throws SQLException {
+        if (index < 0 || index >= count) {
+            throw new SQLException("Índice de fragmento " + index + " fuera de rango para " + count + " fragmentos");
+        }
+        List<String> tables = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery(
+                 "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.COLUMNS " +
+                 "WHERE TABLE_SCHEMA = 'PUBLIC' AND COLUMN_NAME = 'ID' AND IS_IDENTITY = 'YES'")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        for (String table : tables) {
+            long maxId;
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+                rs.next();
+                maxId = rs.getLong(1);
+            }
+            long next = maxId + 1 + Math.floorMod(index - maxId, count);
+            stmt.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next +
+                         " SET INCREMENT BY " + count);
+        }
+        logger.info("Fragmento {} de {}: ids generados con (id - 1) % {} == {}", index, count, count, index);
+    }
+    
     /**
      * Inserta datos iniciales en la base de datos
      */
     private static void insertInitialData(Statement stmt) throws SQLException {
         // Verificar si ya existen usuarios
-        try {
-            stmt.executeQuery("SELECT COUNT(*) FROM users").next();
-            // Si llegamos aquí, la tabla ya tiene datos
-            return;
-        } catch (SQLException e) {
-            // La tabla está vacía, insertar datos iniciales
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                return;
+            }
         }
         
-        // Insertar usuarios hardcodeados
+        // Insertar usuarios hardcodeados; los ids los asigna la columna identidad
+        // para que los usuarios creados después no choquen con ellos
         stmt.execute(
-            "INSERT INTO users (id, username, password, email) VALUES " +
-            "(1, 'admin', 'admin123', 'admin@sistema.com'), " +
-            "(2, 'juan', 'juan123', 'juan@usuario.com'), " +
-            "(3, 'maria', 'maria123', 'maria@usuario.com')"
+            "INSERT INTO users (username, password, email) VALUES " +
+            "('admin', 'admin123', 'admin@sistema.com'), " +
+            "('juan', 'juan123', 'juan@usuario.com'), " +
+            "('maria', 'maria123', 'maria@usuario.com')"
         );
         
         logger.info("Datos iniciales insertados");
@@ -0,0 +1,246 @@
+package com.distribuidos.database.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Migraciones versionadas del esquema.
+ *
+ * Cada migración es una lista de sentencias DDL con un número de versión; las
+ * ya aplicadas quedan registradas en la tabla schema_version y al arrancar
+ * solo se ejecutan las pendientes, en orden. Para cambiar el esquema se añade
+ * una migración nueva al final: las existentes no se modifican, porque las
+ * bases de datos que ya las aplicaron no volverían a ejecutarlas. Las
+ * sentencias deben poder repetirse sin error, ya que una migración
+ * interrumpida se vuelve a ejecutar entera.
+ */
+public final class SchemaMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final String VERSION_TABLE =
+        "CREATE TABLE IF NOT EXISTS schema_version (" +
+        "version INTEGER PRIMARY KEY, " +
+        "description VARCHAR(255) NOT NULL, " +
+        "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+        ")";
+
+    /**
+     * Versión del esquema y las sentencias que llevan a ella
+     */
+    public static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = Arrays.asList(statements);
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public List<String> getStatements() {
+            return statements;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+
+        // Las tablas usan IF NOT EXISTS para adoptar bases de datos creadas antes de las migraciones
+        new Migration(1, "Esquema inicial",
+            // Tabla de usuarios
+            "CREATE TABLE IF NOT EXISTS users (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "username VARCHAR(255) UNIQUE NOT NULL, " +
+            "password VARCHAR(255) NOT NULL, " +
+            "email VARCHAR(255) UNIQUE NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+
+            // Tabla de directorios
+            "CREATE TABLE IF NOT EXISTS directories (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "name VARCHAR(255) NOT NULL, " +
+            "full_path VARCHAR(1000) NOT NULL, " +
+            "parent_id BIGINT, " +
+            "owner_id BIGINT NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "FOREIGN KEY (parent_id) REFERENCES directories(id) ON DELETE CASCADE, " +
+            "FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE" +
+            ")",
+
+            // Tabla de archivos
+            "CREATE TABLE IF NOT EXISTS files (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "name VARCHAR(255) NOT NULL, " +
+            "original_name VARCHAR(255), " +
+            "file_path VARCHAR(1000) NOT NULL, " +
+            "file_size BIGINT, " +
+            "mime_type VARCHAR(255), " +
+            "checksum VARCHAR(255), " +
+            "directory_id BIGINT, " +
+            "owner_id BIGINT NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "FOREIGN KEY (directory_id) REFERENCES directories(id) ON DELETE SET NULL, " +
+            "FOREIGN KEY (owner_id) REFERENCES users(id) ON DELETE CASCADE" +
+            ")",
+
+            // Tabla de nodos
+            "CREATE TABLE IF NOT EXISTS nodes (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "node_id VARCHAR(255) UNIQUE NOT NULL, " +
+            "hostname VARCHAR(255) NOT NULL, " +
+            "port INTEGER NOT NULL, " +
+            "storage_path VARCHAR(1000) NOT NULL, " +
+            "total_capacity BIGINT, " +
+            "used_capacity BIGINT DEFAULT 0, " +
+            "status VARCHAR(50) DEFAULT 'OFFLINE', " +
+            "last_heartbeat TIMESTAMP, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+
+            // Tabla de réplicas de archivos
+            "CREATE TABLE IF NOT EXISTS file_replicas (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "file_id BIGINT NOT NULL, " +
+            "node_id BIGINT NOT NULL, " +
+            "local_path VARCHAR(1000) NOT NULL, " +
+            "replica_checksum VARCHAR(255), " +
+            "status VARCHAR(50) DEFAULT 'PENDING', " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "last_verified TIMESTAMP, " +
+            "FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE, " +
+            "FOREIGN KEY (node_id) REFERENCES nodes(id) ON DELETE CASCADE" +
+            ")",
+
+            // Tabla de permisos
+            "CREATE TABLE IF NOT EXISTS permissions (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "user_id BIGINT NOT NULL, " +
+            "file_id BIGINT, " +
+            "directory_id BIGINT, " +
+            "permission_type VARCHAR(50) NOT NULL, " +
+            "granted_by BIGINT NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "expires_at TIMESTAMP, " +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE, " +
+            "FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE, " +
+            "FOREIGN KEY (directory_id) REFERENCES directories(id) ON DELETE CASCADE, " +
+            "FOREIGN KEY (granted_by) REFERENCES users(id) ON DELETE CASCADE" +
+            ")"
+        ),
+
+        // Índices de las búsquedas de metadatos del servidor de aplicación. Las claves
+        // foráneas ya tienen índice propio (file_replicas.node_id, permissions.user_id...),
+        // así que se crean índices compuestos que resuelven cada búsqueda completa.
+        new Migration(2, "Índices de consultas de metadatos",
+            // RESOLVE_FILE, GET_FILE_BY_NAME y LIST_USER_FILES: archivo de un propietario por nombre
+            "CREATE INDEX IF NOT EXISTS idx_files_owner_name ON files (owner_id, name)",
+            // Detección de contenido duplicado
+            "CREATE INDEX IF NOT EXISTS idx_files_checksum ON files (checksum)",
+            // Réplicas de un archivo en un estado (p. ej. las ACTIVE para descargar)
+            "CREATE INDEX IF NOT EXISTS idx_replicas_file_status ON file_replicas (file_id, status)",
+            // Réplicas de un nodo por estado, para re-replicar cuando un nodo cae
+            "CREATE INDEX IF NOT EXISTS idx_replicas_node_status ON file_replicas (node_id, status)",
+            // Comprobación de permisos de un usuario sobre un archivo
+            "CREATE INDEX IF NOT EXISTS idx_permissions_user_file ON permissions (user_id, file_id)"
+        )
+    );
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Aplica todas las migraciones pendientes
+     *
+     * @return versión del esquema tras migrar
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        return migrate(connection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Aplica las migraciones pendientes hasta la versión dada (incluida)
+     */
+    public static int migrate(Connection connection, int targetVersion) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(VERSION_TABLE);
+        }
+        int current = currentVersion(connection);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= current || migration.version > targetVersion) {
+                continue;
+            }
+            apply(connection, migration);
+            current = migration.version;
+        }
+        return current;
+    }
+
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * Ejecuta una migración y registra su versión.
+     *
+     * No es atómico: H2 confirma cada sentencia DDL por su cuenta, así que el
+     * rollback solo deshace el registro en schema_version. Si una migración
+     * falla a medias, sus sentencias ya ejecutadas quedan aplicadas sin que
+     * la versión conste, y se repiten en el siguiente arranque. Por eso toda
+     * sentencia de una migración debe ser idempotente (IF NOT EXISTS,
+     * IF EXISTS).
+     */
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement();
+             PreparedStatement record = connection.prepareStatement(
+                 "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            for (String sql : migration.statements) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Falló la migración " + migration.version + " (" + migration.description +
+                                   "): " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        logger.info("🔧 Migración {} aplicada: {} ({} ms)", migration.version, migration.description,
+                    System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,228 @@
+package com.distribuidos.database.handler;
+
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.FrameCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Estado de una conexión de cliente en el servidor no bloqueante.
+ *
+ * Los métodos on* se ejecutan en el hilo del selector dueño de la conexión.
+ * Las peticiones de una conexión se ejecutan en paralelo en el pool de
+ * trabajadores y cada respuesta se escribe en cuanto está lista, posiblemente
+ * fuera de orden; el cliente las empareja por requestId. Con
+ * {@link #MAX_IN_FLIGHT} peticiones pendientes se deja de leer del canal, lo
+ * que aplica contrapresión al cliente.
+ *
+ * El servidor también puede enviar tramas sin petición previa
+ * ({@link #push}), como los eventos de una suscripción; un cliente que no
+ * las lee a tiempo se desconecta.
+ *
+ * Si la conexión tenía una transacción abierta (BEGIN), al cerrarse se deshace.
+ */
+public class ClientConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientConnection.class);
+
+    /** Peticiones de una conexión en ejecución a la vez */
+    public static final int MAX_IN_FLIGHT = 64;
+
+    /** Tramas pendientes de escribir a partir de las cuales se desconecta a un cliente lento */
+    public static final int MAX_PENDING_WRITES = 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Executor selectorExecutor;
+    private final ExecutorService workerPool;
+    private final MessageProcessor messageProcessor;
+    private final Runnable onClose;
+
+    private final ByteBuffer header = ByteBuffer.allocate(FrameCodec.HEADER_SIZE);
+    private ByteBuffer payload;
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private int inFlight = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param selectorExecutor ejecuta tareas en el hilo del selector de esta conexión
+     */
+    public ClientConnection(SocketChannel channel, SelectionKey key, Executor selectorExecutor,
+                            ExecutorService workerPool, MessageProcessor messageProcessor, Runnable onClose) {
+        this.channel = channel;
+        this.key = key;
+        this.selectorExecutor = selectorExecutor;
+        this.workerPool = workerPool;
+        this.messageProcessor = messageProcessor;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Lee lo disponible del canal y despacha cada trama completa
+     */
+    public void onReadable() {
+        try {
+            while (inFlight < MAX_IN_FLIGHT) {
+                if (payload == null) {
+                    if (channel.read(header) < 0) {
+                        close();
+                        return;
+                    }
+                    if (header.hasRemaining()) {
+                        break;
+                    }
+                    header.flip();
+                    payload = ByteBuffer.allocate(FrameCodec.checkLength(header.getInt()));
+                    header.clear();
+                }
+
+                if (channel.read(payload) < 0) {
+                    close();
+                    return;
+                }
+                if (payload.hasRemaining()) {
+                    break;
+                }
+                byte[] frame = payload.array();
+                payload = null;
+                inFlight++;
+                dispatch(frame);
+            }
+            updateInterest();
+        } catch (IOException e) {
+            logger.debug("Error leyendo de {}: {}", describe(), e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Continúa escribiendo respuestas pendientes
+     */
+    public void onWritable() {
+        try {
+            while (!pendingWrites.isEmpty()) {
+                ByteBuffer frame = pendingWrites.peek();
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    break;
+                }
+                pendingWrites.poll();
+            }
+            updateInterest();
+        } catch (IOException e) {
+            logger.debug("Error escribiendo a {}: {}", describe(), e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Lee mientras haya cupo de peticiones y espera escritura si quedan respuestas
+     */
+    private void updateInterest() {
+        if (closed) {
+            return;
+        }
+        int ops = inFlight < MAX_IN_FLIGHT ? SelectionKey.OP_READ : 0;
+        if (!pendingWrites.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private void dispatch(byte[] frame) {
+        try {
+            workerPool.execute(() -> respond(messageProcessor.handle(frame, this)));
+        } catch (RejectedExecutionException e) {
+            // Pool saturado: responder de inmediato en lugar de encolar sin límite
+            logger.warn("Pool de trabajadores saturado, rechazando petición de {}", describe());
+            respond(messageProcessor.reject(frame, "Servidor ocupado, reintente más tarde"));
+        }
+    }
+
+    /**
+     * Termina una petición; sin contenido si su respuesta ya se envió con push
+     */
+    private void respond(byte[] responsePayload) {
+        ByteBuffer frame = responsePayload != null ? FrameCodec.encodeRaw(responsePayload) : null;
+        selectorExecutor.execute(() -> {
+            if (!closed) {
+                inFlight--;
+                if (frame == null) {
+                    updateInterest();
+                    return;
+                }
+                pendingWrites.add(frame);
+                onWritable();
+            }
+        });
+    }
+
+    /**
+     * Encola una trama que no responde a ninguna petición en curso. Se puede
+     * llamar desde cualquier hilo; las tramas salen en el orden de las llamadas.
+     *
+     * @return false si la conexión está cerrada
+     */
+    public boolean push(byte[] payload) {
+        if (closed) {
+            return false;
+        }
+        ByteBuffer frame = FrameCodec.encodeRaw(payload);
+        selectorExecutor.execute(() -> {
+            if (closed) {
+                return;
+            }
+            if (pendingWrites.size() >= MAX_PENDING_WRITES) {
+                logger.warn("Cliente {} no lee sus tramas pendientes, se cierra la conexión", describe());
+                close();
+                return;
+            }
+            pendingWrites.add(frame);
+            onWritable();
+        });
+        return true;
+    }
+
+    /**
+     * Cierra la conexión desde cualquier hilo
+     */
+    public void closeAsync() {
+        selectorExecutor.execute(this::close);
+    }
+
+    /**
+     * Cierra la conexión (solo desde el hilo del selector)
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error cerrando conexión: {}", e.getMessage());
+        }
+        messageProcessor.connectionClosed(this);
+        onClose.run();
+    }
+
+    private String describe() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "cliente desconectado";
+        }
+    }
+}
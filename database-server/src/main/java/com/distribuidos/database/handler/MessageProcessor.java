@@ -0,0 +1,385 @@
+package com.distribuidos.database.handler;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.replication.ChangeLog;
+import com.distribuidos.database.replication.ReplicaFollower;
+import com.distribuidos.database.service.ChangeStream;
+import com.distribuidos.database.service.DatabaseService;
+import com.distribuidos.database.service.FileMetadataService;
+import com.distribuidos.shared.tcp.BinaryWireCodec;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.FrameCodec;
+import com.distribuidos.shared.tcp.RowSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ejecuta los mensajes recibidos por el servidor de base de datos.
+ * Se invoca desde el pool de trabajadores, nunca desde los hilos de I/O.
+ *
+ * En un primario las escrituras pasan por el registro de cambios que leen
+ * las réplicas (REPLICATION_PULL). Una réplica rechaza las escrituras y, si
+ * está más desfasada de lo permitido, también las lecturas, para que el
+ * cliente las repita en el primario.
+ *
+ * SUBSCRIBE deja abierta una suscripción al flujo de cambios que envía los
+ * eventos por la misma conexión mientras siga abierta.
+ *
+ * BEGIN abre una transacción ligada a la conexión (TransactionRegistry):
+ * hasta COMMIT o ROLLBACK sus operaciones comparten una conexión JDBC y se
+ * confirman juntas.
+ */
+public class MessageProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageProcessor.class);
+    // Cada transacción abierta reserva una de las conexiones JDBC del pool
+    private static final int DEFAULT_MAX_TRANSACTIONS = 5;
+    private static final int DEFAULT_TRANSACTION_TIMEOUT_MS = 10_000;
+    private static final int DEFAULT_TRANSACTION_BEGIN_WAIT_MS = 2_000;
+
+    private final DatabaseService databaseService;
+    private final FileMetadataService fileMetadataService;
+    private final TransactionRegistry transactions;
+    private volatile ChangeLog changeLog;
+    private volatile ReplicaFollower replicaFollower;
+
+    public MessageProcessor() {
+        this(new DatabaseService());
+    }
+
+    public MessageProcessor(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+        this.fileMetadataService = new FileMetadataService(databaseService.getStatementCache(),
+                                                           databaseService.getResultCache(),
+                                                           databaseService.getChangeStream());
+        this.transactions = new TransactionRegistry(
+            DatabaseConfig.setting("db.transaction.max", "DB_TRANSACTION_MAX", DEFAULT_MAX_TRANSACTIONS),
+            DatabaseConfig.setting("db.transaction.timeout.ms", "DB_TRANSACTION_TIMEOUT_MS",
+                                   DEFAULT_TRANSACTION_TIMEOUT_MS),
+            DatabaseConfig.setting("db.transaction.begin.wait.ms", "DB_TRANSACTION_BEGIN_WAIT_MS",
+                                   DEFAULT_TRANSACTION_BEGIN_WAIT_MS));
+    }
+
+    public DatabaseService getDatabaseService() {
+        return databaseService;
+    }
+
+    /**
+     * Activa el papel de primario: las escrituras se publican en el registro
+     */
+    public void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Activa el papel de réplica de solo lectura
+     */
+    public void setReplicaFollower(ReplicaFollower replicaFollower) {
+        this.replicaFollower = replicaFollower;
+    }
+
+    /**
+     * Procesa el contenido de una trama y devuelve el contenido de la respuesta,
+     * en el mismo formato en que llegó la petición (binario o Java serialization).
+     * La respuesta lleva el requestId de la petición para que el cliente pueda
+     * emparejarla aunque llegue fuera de orden.
+     */
+    public byte[] handle(byte[] payload) {
+        return handle(payload, null);
+    }
+
+    /**
+     * Como {@link #handle(byte[])}, para una petición llegada por connection.
+     * Devuelve null si la respuesta ya se envió por la conexión (SUBSCRIBE).
+     */
+    public byte[] handle(byte[] payload, ClientConnection connection) {
+        int version = wireVersionOf(payload);
+        if (version > 0 && BinaryWireCodec.kindOf(payload) == BinaryWireCodec.KIND_HELLO) {
+            logger.debug("Protocolo binario negociado, versión {}", version);
+            return BinaryWireCodec.encodeHello(version);
+        }
+
+        DatabaseMessage message;
+        try {
+            message = version > 0
+                ? BinaryWireCodec.decodeRequest(payload)
+                : (DatabaseMessage) FrameCodec.deserialize(payload);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.error("Error deserializando mensaje del cliente", e);
+            return encode(DatabaseResponse.error("Error deserializando mensaje"), version);
+        }
+
+        logger.debug("Mensaje recibido: {}", message);
+        if (DatabaseMessage.SUBSCRIBE.equals(message.getOperation())) {
+            return subscribe(message, version, connection);
+        }
+        DatabaseResponse response = processMessage(message, connection);
+        response.setRequestId(message.getRequestId());
+        logger.debug("Respuesta generada: {}", response);
+        return encode(response, version);
+    }
+
+    /**
+     * Abre una suscripción al flujo de cambios. La respuesta inicial trae
+     * {streamId, version, resumed} y le siguen los lotes de eventos (RowSet),
+     * todos con el requestId de la petición.
+     */
+    private byte[] subscribe(DatabaseMessage message, int version, ClientConnection connection) {
+        String error = null;
+        if (connection == null) {
+            error = "SUBSCRIBE requiere una conexión persistente";
+        } else if (replicaFollower != null) {
+            error = "Réplica de solo lectura: SUBSCRIBE debe enviarse al primario";
+        }
+        long requestId = message.getRequestId();
+        if (error != null) {
+            DatabaseResponse response = DatabaseResponse.error(error);
+            response.setRequestId(requestId);
+            return encode(response, version);
+        }
+
+        Long knownStreamId = message.getData() instanceof Number ? ((Number) message.getData()).longValue() : null;
+        ChangeStream.Subscription subscription = databaseService.getChangeStream().open(message.getId(), knownStreamId);
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("streamId", subscription.getStreamId());
+        info.put("version", subscription.getVersion());
+        info.put("resumed", subscription.isResumed());
+        DatabaseResponse ack = DatabaseResponse.success(info);
+        ack.setRequestId(requestId);
+        // La respuesta inicial se encola antes de que empiecen los eventos
+        connection.push(encode(ack, version));
+        subscription.start(new ChangeStream.Subscriber() {
+            @Override
+            public boolean deliver(RowSet events) {
+                DatabaseResponse response = DatabaseResponse.success(events);
+                response.setRequestId(requestId);
+                return connection.push(encode(response, version));
+            }
+
+            @Override
+            public void lost() {
+                // El cliente reconecta y sabe por resumed=false que perdió cambios
+                connection.closeAsync();
+            }
+        });
+        logger.info("Suscripción al flujo de cambios desde la versión {}{}", subscription.getVersion(),
+                    subscription.isResumed() ? " (reanudada)" : "");
+        return null;
+    }
+
+    /**
+     * Respuesta de error para una petición que no se llegó a ejecutar
+     */
+    public byte[] reject(byte[] payload, String errorMessage) {
+        int version = wireVersionOf(payload);
+        DatabaseResponse response = DatabaseResponse.error(errorMessage);
+        try {
+            response.setRequestId(version > 0
+                ? BinaryWireCodec.peekRequestId(payload)
+                : ((DatabaseMessage) FrameCodec.deserialize(payload)).getRequestId());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.debug("No se pudo leer el requestId de la petición rechazada");
+        }
+        return encode(response, version);
+    }
+
+    /**
+     * Versión binaria de la trama, o 0 si usa Java serialization
+     */
+    private int wireVersionOf(byte[] payload) {
+        if (!BinaryWireCodec.isBinary(payload)) {
+            return 0;
+        }
+        return Math.min(BinaryWireCodec.versionOf(payload), BinaryWireCodec.VERSION);
+    }
+
+    private byte[] encode(DatabaseResponse response, int version) {
+        try {
+            return version > 0 ? BinaryWireCodec.encodeResponse(response, version) : FrameCodec.serialize(response);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error serializando respuesta", e);
+            DatabaseResponse fallback = DatabaseResponse.error("Error serializando respuesta: " + e.getMessage());
+            fallback.setRequestId(response.getRequestId());
+            try {
+                return version > 0 ? BinaryWireCodec.encodeResponse(fallback, version) : FrameCodec.serialize(fallback);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Procesa un mensaje llegado por una conexión: BEGIN, COMMIT y ROLLBACK
+     * abren y terminan su transacción, y mientras está abierta las demás
+     * operaciones se ejecutan dentro de ella
+     */
+    public DatabaseResponse processMessage(DatabaseMessage message, ClientConnection connection) {
+        String operation = message.getOperation();
+        if (DatabaseMessage.BEGIN.equals(operation)) {
+            if (connection == null) {
+                return DatabaseResponse.error("BEGIN requiere una conexión persistente");
+            }
+            if (replicaFollower != null) {
+                return DatabaseResponse.error("Réplica de solo lectura: BEGIN debe enviarse al primario");
+            }
+            return transactions.begin(connection);
+        }
+        if (DatabaseMessage.COMMIT.equals(operation) || DatabaseMessage.ROLLBACK.equals(operation)) {
+            if (connection == null) {
+                return DatabaseResponse.error("No hay transacción abierta");
+            }
+            return DatabaseMessage.COMMIT.equals(operation)
+                ? transactions.commit(connection)
+                : transactions.rollback(connection);
+        }
+        if (connection == null || operation == null || DatabaseMessage.REPLICATION_PULL.equals(operation)
+            || !transactions.isActive(connection)) {
+            return processMessage(message);
+        }
+        return transactions.execute(connection, message, changeLog, this::execute);
+    }
+
+    /**
+     * La conexión se cerró; si tenía una transacción abierta, se deshace
+     */
+    public void connectionClosed(ClientConnection connection) {
+        transactions.connectionClosed(connection);
+    }
+
+    public TransactionRegistry getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Deshace las transacciones abiertas
+     */
+    public void shutdown() {
+        transactions.shutdown();
+    }
+
+    /**
+     * Procesa un mensaje de base de datos
+     */
+    public DatabaseResponse processMessage(DatabaseMessage message) {
+        try {
+            String operation = message.getOperation();
+            String entity = message.getEntity();
+
+            logger.debug("Procesando operación: {} en entidad: {}", operation, entity);
+
+            if (operation == null) {
+                return DatabaseResponse.error("Operación no especificada");
+            }
+
+            if (DatabaseMessage.REPLICATION_PULL.equals(operation)) {
+                ChangeLog log = changeLog;
+                if (log == null) {
+                    return DatabaseResponse.error("El servidor no es un primario de replicación");
+                }
+                return DatabaseResponse.success(log.pull(message.getId() != null ? message.getId() : 1,
+                                                         message.getPageSize()));
+            }
+
+            ReplicaFollower follower = replicaFollower;
+            if (follower != null) {
+                if (!message.isReadOnly()) {
+                    return DatabaseResponse.error("Réplica de solo lectura: " + operation + " debe enviarse al primario");
+                }
+                if (!DatabaseMessage.PING.equals(operation) && !follower.isFresh()) {
+                    long staleness = follower.getStalenessMs();
+                    return DatabaseResponse.replicaUnavailable(staleness == Long.MAX_VALUE
+                        ? "copia inicial en curso"
+                        : "desfase de " + staleness + " ms");
+                }
+            }
+
+            ChangeLog log = changeLog;
+            if (log != null && !message.isReadOnly()) {
+                return log.record(() -> execute(message));
+            }
+            return execute(message);
+
+        } catch (Exception e) {
+            logger.error("Error procesando mensaje", e);
+            return DatabaseResponse.error("Error interno del servidor: " + e.getMessage());
+        }
+    }
+
+    private DatabaseResponse execute(DatabaseMessage message) {
+        String operation = message.getOperation();
+        String entity = message.getEntity();
+        try {
+            switch (operation) {
+                case DatabaseMessage.PING:
+                    return DatabaseResponse.success("PONG");
+
+                case DatabaseMessage.SAVE:
+                    return databaseService.save(entity, message.getData());
+
+                case DatabaseMessage.FIND_BY_ID:
+                    return databaseService.findById(entity, message.getId());
+
+                case DatabaseMessage.FIND_ALL:
+                    return databaseService.findAll(entity);
+
+                case DatabaseMessage.UPDATE:
+                    return databaseService.update(entity, message.getId(), message.getData());
+
+                case DatabaseMessage.UPSERT:
+                    return databaseService.upsert(entity, message.getData());
+
+                case DatabaseMessage.DELETE:
+                    return databaseService.delete(entity, message.getId());
+
+                case DatabaseMessage.FIND_BY_CRITERIA:
+                    return databaseService.findByCriteria(entity, message.getQuery(), message.getParameters());
+
+                case DatabaseMessage.FIND_PAGE:
+                    return databaseService.findPage(entity, message.getQuery(), message.getParameters(),
+                                                    message.getPageSize(), message.getPageToken());
+
+                case DatabaseMessage.BATCH:
+                    return databaseService.batch(message.getData());
+
+                case DatabaseMessage.CREATE_FILE:
+                    return fileMetadataService.createFile(message.getData());
+
+                case DatabaseMessage.RESOLVE_FILE:
+                    return fileMetadataService.resolveFile(message.getData());
+
+                case DatabaseMessage.RESERVE_FILE_ID:
+                    return ChangeLog.uncaptured(() -> fileMetadataService.reserveFileId(message.getData()));
+
+                case DatabaseMessage.GET_FILE_BY_NAME:
+                    return fileMetadataService.getFileByName(message.getData());
+
+                case DatabaseMessage.GET_FILE_REPLICAS:
+                    return fileMetadataService.getFileReplicas(message.getData());
+
+                case DatabaseMessage.UPDATE_FILE_REPLICAS:
+                    return fileMetadataService.updateFileReplicas(message.getData());
+
+                case DatabaseMessage.LIST_USER_FILES:
+                    return fileMetadataService.listUserFiles(message.getData());
+
+                case DatabaseMessage.DELETE_FILE:
+                    return fileMetadataService.deleteFile(message.getData());
+
+                case DatabaseMessage.EXECUTE_QUERY:
+                    return databaseService.executeQuery(message.getQuery(), message.getParameters());
+
+                default:
+                    return DatabaseResponse.error("Operación no soportada: " + operation);
+            }
+
+        } catch (Exception e) {
+            logger.error("Error procesando mensaje", e);
+            return DatabaseResponse.error("Error interno del servidor: " + e.getMessage());
+        }
+    }
+}
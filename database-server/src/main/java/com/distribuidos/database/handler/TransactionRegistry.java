@@ -0,0 +1,251 @@
+package com.distribuidos.database.handler;
+
+import com.distribuidos.database.replication.ChangeBatch;
+import com.distribuidos.database.replication.ChangeLog;
+import com.distribuidos.database.service.Transaction;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.util.ExecutorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Transacciones abiertas con BEGIN, como máximo una por conexión de cliente.
+ *
+ * La transacción pertenece a la conexión que la abrió: lo que llega por
+ * ella se ejecuta dentro de la transacción hasta COMMIT o ROLLBACK, y si la
+ * conexión se cierra la transacción se deshace. Una tarea periódica deshace
+ * las que llevan ociosas más del tiempo máximo y cierra su conexión, para
+ * que el cliente no siga enviando operaciones creyéndolas dentro de la
+ * transacción. Cada transacción reserva una conexión JDBC, así que su
+ * número está acotado: un BEGIN sin plaza espera un poco a que se libere
+ * una antes de rechazarse.
+ *
+ * En un primario de replicación las filas que escribe una transacción se
+ * guardan en su sesión y se publican en el registro de cambios al
+ * confirmarla; entre peticiones no retiene las escrituras de los demás.
+ */
+public class TransactionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRegistry.class);
+
+    /**
+     * Transacción de una conexión
+     */
+    private static final class Session {
+        final Transaction transaction;
+        // Filas escritas, para el registro de cambios de un primario
+        final List<ChangeBatch.Change> changes = new ArrayList<>();
+        final AtomicBoolean ended = new AtomicBoolean();
+        // Registro en el que se publican los cambios al confirmar, o null
+        volatile ChangeLog changeLog;
+
+        Session(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+
+    private final int maxTransactions;
+    // Un permiso por transacción abierta, devuelto en end()
+    private final Semaphore slots;
+    private final long idleTimeoutMs;
+    private final long beginWaitMs;
+    private final Map<ClientConnection, Session> sessions = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService reaper;
+
+    /**
+     * @param maxTransactions transacciones abiertas a la vez
+     * @param idleTimeoutMs tiempo sin peticiones tras el que una transacción se deshace
+     * @param beginWaitMs espera máxima de un BEGIN a que se libere una plaza
+     */
+    public TransactionRegistry(int maxTransactions, long idleTimeoutMs, long beginWaitMs) {
+        this.maxTransactions = maxTransactions;
+        this.slots = new Semaphore(maxTransactions, true);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.beginWaitMs = beginWaitMs;
+    }
+
+    public DatabaseResponse begin(ClientConnection connection) {
+        if (sessions.containsKey(connection)) {
+            return DatabaseResponse.error("Ya hay una transacción abierta en esta conexión");
+        }
+        try {
+            if (!slots.tryAcquire(beginWaitMs, TimeUnit.MILLISECONDS)) {
+                return DatabaseResponse.error("Demasiadas transacciones abiertas (" + maxTransactions +
+                                              "), reintente más tarde");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DatabaseResponse.error("Interrumpido esperando una transacción libre");
+        }
+        Transaction transaction;
+        try {
+            transaction = new Transaction();
+        } catch (SQLException e) {
+            slots.release();
+            logger.error("Error iniciando transacción", e);
+            return DatabaseResponse.error("Error iniciando transacción: " + e.getMessage());
+        }
+        if (sessions.putIfAbsent(connection, new Session(transaction)) != null) {
+            transaction.rollback();
+            slots.release();
+            return DatabaseResponse.error("Ya hay una transacción abierta en esta conexión");
+        }
+        ensureReaper();
+        logger.debug("Transacción iniciada ({} abiertas)", sessions.size());
+        return DatabaseResponse.success("Transacción iniciada");
+    }
+
+    /**
+     * Si la conexión tiene una transacción abierta
+     */
+    public boolean isActive(ClientConnection connection) {
+        return sessions.containsKey(connection);
+    }
+
+    /**
+     * Ejecuta una operación dentro de la transacción de la conexión
+     *
+     * @param changeLog registro de cambios si el servidor es primario, o null
+     */
+    public DatabaseResponse execute(ClientConnection connection, DatabaseMessage message, ChangeLog changeLog,
+                                    Function<DatabaseMessage, DatabaseResponse> executor) {
+        Session session = sessions.get(connection);
+        if (session == null) {
+            return DatabaseResponse.error("No hay transacción abierta en esta conexión");
+        }
+        try {
+            return session.transaction.run(() -> {
+                if (changeLog == null || message.isReadOnly()) {
+                    return executor.apply(message);
+                }
+                session.changeLog = changeLog;
+                return changeLog.recordInto(session.changes, () -> executor.apply(message));
+            });
+        } catch (IllegalStateException e) {
+            return DatabaseResponse.error("La transacción ya no está abierta");
+        }
+    }
+
+    public DatabaseResponse commit(ClientConnection connection) {
+        Session session = sessions.remove(connection);
+        if (session == null) {
+            return DatabaseResponse.error("No hay transacción abierta en esta conexión");
+        }
+        try {
+            ChangeLog log = session.changeLog;
+            if (log != null) {
+                log.commitTransaction(session.changes, session.transaction::commit);
+            } else {
+                session.transaction.commit();
+            }
+            end(session);
+            return DatabaseResponse.success("Transacción confirmada");
+        } catch (SQLException e) {
+            end(session);
+            logger.error("Error confirmando transacción", e);
+            return DatabaseResponse.error("Error confirmando transacción, se deshizo: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            end(session);
+            return DatabaseResponse.error("La transacción ya no está abierta: se deshizo por inactividad");
+        }
+    }
+
+    public DatabaseResponse rollback(ClientConnection connection) {
+        Session session = sessions.remove(connection);
+        if (session == null) {
+            return DatabaseResponse.error("No hay transacción abierta en esta conexión");
+        }
+        session.transaction.rollback();
+        end(session);
+        return DatabaseResponse.success("Transacción deshecha");
+    }
+
+    /**
+     * La conexión se cerró: su transacción, si la hay, se deshace fuera del
+     * hilo de I/O, esperando a que termine la operación en curso
+     */
+    public void connectionClosed(ClientConnection connection) {
+        Session session = sessions.remove(connection);
+        if (session == null) {
+            return;
+        }
+        Runnable abandon = () -> {
+            session.transaction.rollback();
+            end(session);
+            logger.info("Transacción deshecha al cerrarse la conexión del cliente");
+        };
+        ScheduledExecutorService executor = reaper;
+        try {
+            executor.execute(abandon);
+        } catch (RuntimeException e) {
+            abandon.run();
+        }
+    }
+
+    /**
+     * Libera la plaza de la transacción entre las abiertas; una sola vez por transacción
+     */
+    private void end(Session session) {
+        if (session.ended.compareAndSet(false, true)) {
+            slots.release();
+        }
+    }
+
+    private synchronized void ensureReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(ExecutorFactory.namedThreadFactory("db-tx-reaper", true));
+        long period = Math.max(100, Math.min(1000, idleTimeoutMs / 4));
+        reaper.scheduleWithFixedDelay(this::reapIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deshace las transacciones abandonadas y cierra su conexión
+     */
+    private void reapIdle() {
+        for (Map.Entry<ClientConnection, Session> entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (session.transaction.rollbackIfIdle(idleTimeoutMs) && sessions.remove(entry.getKey(), session)) {
+                end(session);
+                logger.warn("Transacción ociosa durante más de {} ms, deshecha y conexión cerrada", idleTimeoutMs);
+                entry.getKey().closeAsync();
+            }
+        }
+    }
+
+    public int getOpenTransactions() {
+        return sessions.size();
+    }
+
+    /**
+     * Deshace todas las transacciones abiertas (al detener el servidor)
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (reaper != null) {
+                reaper.shutdownNow();
+            }
+        }
+        for (ClientConnection connection : sessions.keySet()) {
+            Session session = sessions.remove(connection);
+            if (session != null) {
+                session.transaction.rollback();
+                end(session);
+            }
+        }
+    }
+}
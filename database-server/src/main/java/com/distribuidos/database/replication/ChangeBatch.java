@@ -0,0 +1,106 @@
+package com.distribuidos.database.replication;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Respuesta de REPLICATION_PULL: cambios del registro del primario a partir
+ * de un LSN, en orden de confirmación.
+ */
+public class ChangeBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long logId;
+    private final long headLsn;
+    private final boolean truncated;
+    private final List<Change> changes;
+
+    public ChangeBatch(long logId, long headLsn, boolean truncated, List<Change> changes) {
+        this.logId = logId;
+        this.headLsn = headLsn;
+        this.truncated = truncated;
+        this.changes = changes;
+    }
+
+    /**
+     * Identificador del registro; cambia si el primario se reinicia
+     */
+    public long getLogId() {
+        return logId;
+    }
+
+    /**
+     * Último LSN publicado por el primario
+     */
+    public long getHeadLsn() {
+        return headLsn;
+    }
+
+    /**
+     * Los cambios pedidos ya no están en el registro; la réplica debe copiar todo de nuevo
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Imagen completa de una fila insertada o actualizada, o id de una fila borrada
+     */
+    public static class Change implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long lsn;
+        private final String table;
+        private final boolean delete;
+        private final String[] columns;
+        private final Object[] row;
+
+        public Change(long lsn, String table, boolean delete, String[] columns, Object[] row) {
+            this.lsn = lsn;
+            this.table = table;
+            this.delete = delete;
+            this.columns = columns;
+            this.row = row;
+        }
+
+        Change withLsn(long lsn) {
+            return new Change(lsn, table, delete, columns, row);
+        }
+
+        public long getLsn() {
+            return lsn;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public boolean isDelete() {
+            return delete;
+        }
+
+        public String[] getColumns() {
+            return columns;
+        }
+
+        public Object[] getRow() {
+            return row;
+        }
+
+        /**
+         * Valor de la columna ID de la fila
+         */
+        public Object getId() {
+            for (int i = 0; i < columns.length; i++) {
+                if ("ID".equalsIgnoreCase(columns[i])) {
+                    return row[i];
+                }
+            }
+            throw new IllegalStateException("Cambio en " + table + " sin columna ID");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.distribuidos.database.replication;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trigger de H2 que pasa cada fila escrita al registro de cambios.
+ * H2 lo ejecuta en el hilo que escribe, también en los borrados en cascada.
+ */
+public class ChangeCaptureTrigger implements Trigger {
+
+    private String table;
+    private String[] columns;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName,
+                     boolean before, int type) throws SQLException {
+        this.table = tableName.toLowerCase();
+        List<String> names = new ArrayList<>();
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getColumns(null, schemaName, tableName, null)) {
+            while (rs.next()) {
+                names.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        this.columns = names.toArray(new String[0]);
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) {
+        if (newRow != null) {
+            ChangeLog.capture(table, false, columns, newRow.clone());
+        } else {
+            ChangeLog.capture(table, true, columns, oldRow.clone());
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
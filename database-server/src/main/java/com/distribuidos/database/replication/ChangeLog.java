@@ -0,0 +1,228 @@
+package com.distribuidos.database.replication;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.EntityTable;
+import com.distribuidos.database.service.Transaction;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Registro de cambios del primario del que leen las réplicas.
+ *
+ * Un trigger en cada tabla del esquema captura las filas que escribe cada
+ * petición. Cada escritura se ejecuta en su propia transacción JDBC y sus
+ * cambios se publican con LSN consecutivos solo si termina con éxito; el
+ * commit y la publicación se hacen de uno en uno, así el orden del registro
+ * coincide con el de confirmación y las réplicas no ven cambios deshechos.
+ * Las sentencias en sí se ejecutan en paralelo: una que espera un bloqueo
+ * de fila no retiene a las demás escrituras. Las lecturas no pasan por el
+ * registro. Una transacción de varias peticiones funciona igual: guarda
+ * aparte las filas que escribe y al confirmarla hace el commit y publica
+ * sus cambios juntos, con los LSN asignados en ese momento. Así ninguna
+ * escritura espera a que un cliente termine su transacción; si choca con
+ * una fila bloqueada por ella, falla al vencer la espera de bloqueos de H2.
+ *
+ * El registro guarda los últimos cambios en memoria; una réplica que se
+ * queda más atrás, o que ve un identificador de registro distinto (el
+ * primario se reinició), vuelve a copiar las tablas completas.
+ */
+public class ChangeLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLog.class);
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final String TRIGGER_PREFIX = "replication_capture_";
+
+    private static final ThreadLocal<List<ChangeBatch.Change>> captured = new ThreadLocal<>();
+
+    private final long logId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final ChangeBatch.Change[] ring;
+    // Un commit con su publicación a la vez
+    private final Semaphore writePermit = new Semaphore(1, true);
+    private long headLsn = 0;
+
+    public ChangeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeLog(int capacity) {
+        this.ring = new ChangeBatch.Change[capacity];
+    }
+
+    /**
+     * Crea los triggers de captura en todas las tablas del esquema
+     */
+    public void install() throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (EntityTable table : EntityTable.values()) {
+                stmt.execute("CREATE TRIGGER IF NOT EXISTS " + TRIGGER_PREFIX + table.getTableName() +
+                             " AFTER INSERT, UPDATE, DELETE ON " + table.getTableName() +
+                             " FOR EACH ROW CALL \"" + ChangeCaptureTrigger.class.getName() + "\"");
+            }
+        }
+        logger.info("Registro de cambios activo para {} tablas", EntityTable.values().length);
+    }
+
+    /**
+     * Ejecuta una escritura en su propia transacción y, si tuvo éxito, la
+     * confirma y publica las filas que cambió
+     */
+    public DatabaseResponse record(Supplier<DatabaseResponse> write) {
+        Transaction transaction;
+        try {
+            transaction = new Transaction();
+        } catch (SQLException e) {
+            logger.error("Error iniciando la transacción de una escritura", e);
+            return DatabaseResponse.error("Error iniciando la escritura: " + e.getMessage());
+        }
+        List<ChangeBatch.Change> changes = new ArrayList<>();
+        DatabaseResponse response;
+        try {
+            response = transaction.run(() -> capture(changes, write));
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+        if (!response.isSuccess()) {
+            transaction.rollback();
+            return response;
+        }
+        try {
+            commitTransaction(changes, transaction::commit);
+        } catch (SQLException e) {
+            logger.error("Error confirmando una escritura", e);
+            return DatabaseResponse.error("Error confirmando la escritura, se deshizo: " + e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Confirmación de una transacción
+     */
+    @FunctionalInterface
+    public interface Commit {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Ejecuta una escritura de una transacción de varias peticiones; si
+     * tiene éxito añade a changes las filas que cambió, sin publicarlas
+     */
+    public DatabaseResponse recordInto(List<ChangeBatch.Change> changes, Supplier<DatabaseResponse> write) {
+        List<ChangeBatch.Change> written = new ArrayList<>();
+        DatabaseResponse response = capture(written, write);
+        changes.addAll(written);
+        return response;
+    }
+
+    /**
+     * Confirma una transacción y publica sus cambios sin que otro commit
+     * se intercale entre el commit y la publicación; si el commit falla no
+     * se publica nada
+     *
+     * @param changes filas que escribió la transacción, reunidas con {@link #recordInto}
+     */
+    public void commitTransaction(List<ChangeBatch.Change> changes, Commit commit) throws SQLException {
+        writePermit.acquireUninterruptibly();
+        try {
+            commit.run();
+            if (!changes.isEmpty()) {
+                publish(changes);
+            }
+        } finally {
+            writePermit.release();
+        }
+    }
+
+    /**
+     * Ejecuta la escritura guardando en changes las filas que cambió; nada si falló
+     */
+    private static DatabaseResponse capture(List<ChangeBatch.Change> changes, Supplier<DatabaseResponse> write) {
+        captured.set(changes);
+        DatabaseResponse response;
+        try {
+            response = write.get();
+        } finally {
+            captured.remove();
+        }
+        if (!response.isSuccess()) {
+            changes.clear();
+        }
+        return response;
+    }
+
+    /**
+     * Ejecuta una escritura que se deshace antes de terminar, como la fila
+     * provisional de RESERVE_FILE_ID: sus filas no se publican ni se avisan
+     * como escrituras fuera del registro
+     */
+    public static <T> T uncaptured(Supplier<T> write) {
+        List<ChangeBatch.Change> previous = captured.get();
+        captured.set(new ArrayList<>());
+        try {
+            return write.get();
+        } finally {
+            if (previous != null) {
+                captured.set(previous);
+            } else {
+                captured.remove();
+            }
+        }
+    }
+
+    /**
+     * Llamado por el trigger con cada fila escrita
+     */
+    static void capture(String table, boolean delete, String[] columns, Object[] row) {
+        List<ChangeBatch.Change> changes = captured.get();
+        if (changes == null) {
+            logger.warn("Escritura en {} fuera del registro de cambios; las réplicas no la verán", table);
+            return;
+        }
+        changes.add(new ChangeBatch.Change(0, table, delete, columns, row));
+    }
+
+    private synchronized void publish(List<ChangeBatch.Change> changes) {
+        for (ChangeBatch.Change change : changes) {
+            headLsn++;
+            ring[(int) (headLsn % ring.length)] = change.withLsn(headLsn);
+        }
+    }
+
+    /**
+     * Hasta max cambios desde fromLsn (incluido); con max 0 solo el LSN actual
+     */
+    public synchronized ChangeBatch pull(long fromLsn, int max) {
+        if (max <= 0) {
+            return new ChangeBatch(logId, headLsn, false, Collections.emptyList());
+        }
+        long oldest = Math.max(1, headLsn - ring.length + 1);
+        if (fromLsn < oldest && fromLsn <= headLsn) {
+            return new ChangeBatch(logId, headLsn, true, Collections.emptyList());
+        }
+        List<ChangeBatch.Change> changes = new ArrayList<>();
+        for (long lsn = fromLsn; lsn <= headLsn && changes.size() < max; lsn++) {
+            changes.add(ring[(int) (lsn % ring.length)]);
+        }
+        return new ChangeBatch(logId, headLsn, false, changes);
+    }
+
+    public synchronized long getHeadLsn() {
+        return headLsn;
+    }
+
+    public long getLogId() {
+        return logId;
+    }
+}
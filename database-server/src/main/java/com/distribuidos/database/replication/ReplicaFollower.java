@@ -0,0 +1,272 @@
+package com.distribuidos.database.replication;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.EntityTable;
+import com.distribuidos.database.service.QueryResultCache;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseCursor;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.util.ExecutorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mantiene la base de datos local de una réplica al día con el primario.
+ *
+ * Al arrancar copia todas las tablas del primario por páginas y después lee
+ * su registro de cambios (REPLICATION_PULL) y aplica cada lote en una
+ * transacción: MERGE por id de la imagen completa de la fila, o DELETE por
+ * id. Aplicar un cambio dos veces da el mismo resultado, así que la copia
+ * inicial no necesita una instantánea: se anota el LSN del primario antes
+ * de copiar y se vuelven a aplicar los cambios posteriores.
+ *
+ * El desfase es el tiempo desde la última petición al primario tras la cual
+ * la réplica ya había aplicado todo lo publicado; el servidor rechaza las
+ * lecturas cuando supera el máximo configurado.
+ */
+public class ReplicaFollower {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaFollower.class);
+    private static final int PULL_MAX_CHANGES = 5000;
+    private static final int BOOTSTRAP_PAGE_SIZE = 5000;
+    private static final long POLL_INTERVAL_MS = 20;
+    private static final long RETRY_INTERVAL_MS = 1000;
+    private static final long REQUEST_TIMEOUT_MS = 30_000;
+
+    private final String primaryHost;
+    private final int primaryPort;
+    private final long maxStalenessMs;
+    private final QueryResultCache resultCache;
+    private final DatabaseConnectionPool primaryPool;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private long logId = 0;
+    private long appliedLsn = -1;
+    private volatile long caughtUpAt = 0;
+    private volatile long appliedChanges = 0;
+
+    public ReplicaFollower(String primaryHost, int primaryPort, long maxStalenessMs, QueryResultCache resultCache) {
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.maxStalenessMs = maxStalenessMs;
+        this.resultCache = resultCache;
+        this.primaryPool = new DatabaseConnectionPool(primaryHost, primaryPort, new DatabaseConnectionPool.Config()
+            .maxConnections(2)
+            .requestTimeoutMs(REQUEST_TIMEOUT_MS));
+    }
+
+    public void start() throws SQLException {
+        // Las filas llegan en orden de confirmación, no en el de las claves foráneas,
+        // y los borrados en cascada ya vienen como cambios propios
+        try (Connection conn = DatabaseConfig.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+        running = true;
+        thread = ExecutorFactory.namedThreadFactory("db-replica", true).newThread(this::run);
+        thread.start();
+        logger.info("Réplica de solo lectura siguiendo al primario {}:{} (desfase máximo {} ms)",
+                    primaryHost, primaryPort, maxStalenessMs);
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        primaryPool.close();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                long requestedAt = System.currentTimeMillis();
+                ChangeBatch batch = pull(appliedLsn + 1, PULL_MAX_CHANGES);
+                if (appliedLsn < 0 || batch.getLogId() != logId || batch.isTruncated()
+                        || batch.getHeadLsn() < appliedLsn) {
+                    bootstrap();
+                    continue;
+                }
+                apply(batch.getChanges());
+                if (appliedLsn >= batch.getHeadLsn()) {
+                    caughtUpAt = requestedAt;
+                }
+                if (batch.getChanges().isEmpty()) {
+                    Thread.sleep(POLL_INTERVAL_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Error replicando desde el primario: {}", e.getMessage());
+                try {
+                    Thread.sleep(RETRY_INTERVAL_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private ChangeBatch pull(long fromLsn, int max) throws Exception {
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.REPLICATION_PULL, null, fromLsn);
+        message.setPageSize(max);
+        DatabaseResponse response = primaryPool.send(message);
+        if (!response.isSuccess()) {
+            throw new IllegalStateException(response.getErrorMessage());
+        }
+        return (ChangeBatch) response.getData();
+    }
+
+    /**
+     * Sustituye el contenido local por una copia de las tablas del primario
+     */
+    private void bootstrap() throws Exception {
+        long start = System.currentTimeMillis();
+        // Hasta terminar la copia la réplica no atiende lecturas
+        caughtUpAt = 0;
+        ChangeBatch head = pull(0, 0);
+        long rows = 0;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (EntityTable table : EntityTable.values()) {
+                    stmt.executeUpdate("DELETE FROM " + table.getTableName());
+                }
+            }
+            conn.commit();
+            for (EntityTable table : EntityTable.values()) {
+                rows += copyTable(conn, table);
+            }
+        } finally {
+            resultCache.invalidateAll();
+        }
+        logId = head.getLogId();
+        appliedLsn = head.getHeadLsn();
+        logger.info("Copia inicial del primario: {} filas en {} ms, LSN {}", rows,
+                    System.currentTimeMillis() - start, appliedLsn);
+    }
+
+    private long copyTable(Connection conn, EntityTable table) throws SQLException {
+        DatabaseCursor cursor = new DatabaseCursor(primaryPool::sendAsync, table.name(), null, null,
+                                                   BOOTSTRAP_PAGE_SIZE, REQUEST_TIMEOUT_MS);
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        long rows = 0;
+        try {
+            while (cursor.hasNext()) {
+                Map<String, Object> row = cursor.next();
+                String[] columns = row.keySet().toArray(new String[0]);
+                merge(conn, statements, table.getTableName(), columns, row.values().toArray());
+                if (++rows % BOOTSTRAP_PAGE_SIZE == 0) {
+                    conn.commit();
+                }
+            }
+            conn.commit();
+        } finally {
+            closeAll(statements);
+        }
+        return rows;
+    }
+
+    /**
+     * Aplica un lote de cambios en una transacción
+     */
+    private void apply(List<ChangeBatch.Change> changes) throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (ChangeBatch.Change change : changes) {
+                    if (change.isDelete()) {
+                        PreparedStatement stmt = statement(conn, statements,
+                                                           "DELETE FROM " + change.getTable() + " WHERE id = ?");
+                        stmt.setObject(1, change.getId());
+                        stmt.executeUpdate();
+                    } else {
+                        merge(conn, statements, change.getTable(), change.getColumns(), change.getRow());
+                    }
+                    tables.add(change.getTable());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                closeAll(statements);
+            }
+        }
+        appliedLsn = changes.get(changes.size() - 1).getLsn();
+        appliedChanges += changes.size();
+        resultCache.invalidateTables(tables);
+    }
+
+    private static void merge(Connection conn, Map<String, PreparedStatement> statements, String table,
+                              String[] columns, Object[] row) throws SQLException {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        PreparedStatement stmt = statement(conn, statements, "MERGE INTO " + table + " (" +
+                                           String.join(", ", columns) + ") KEY (id) VALUES (" + placeholders + ")");
+        for (int i = 0; i < row.length; i++) {
+            stmt.setObject(i + 1, row[i]);
+        }
+        stmt.executeUpdate();
+    }
+
+    private static PreparedStatement statement(Connection conn, Map<String, PreparedStatement> statements,
+                                               String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = conn.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    private static void closeAll(Map<String, PreparedStatement> statements) throws SQLException {
+        for (PreparedStatement stmt : statements.values()) {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Milisegundos desde que la réplica estaba al día con el primario
+     */
+    public long getStalenessMs() {
+        long at = caughtUpAt;
+        return at == 0 ? Long.MAX_VALUE : System.currentTimeMillis() - at;
+    }
+
+    public long getMaxStalenessMs() {
+        return maxStalenessMs;
+    }
+
+    public boolean isFresh() {
+        return getStalenessMs() <= maxStalenessMs;
+    }
+
+    public long getAppliedChanges() {
+        return appliedChanges;
+    }
+}
@@ -0,0 +1,227 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.RowSet;
+import com.distribuidos.shared.util.ExecutorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Flujo ordenado de los cambios escritos a través de DatabaseService y
+ * FileMetadataService, para los clientes suscritos con SUBSCRIBE.
+ *
+ * Cada escritura publica después de confirmarse un evento {versión,
+ * entidad, id, operación} por fila escrita; las versiones son consecutivas
+ * en orden de publicación. Un hilo de entrega envía a cada suscriptor los
+ * eventos pendientes en lotes, así que publicar no espera a la red.
+ *
+ * Los últimos eventos se guardan en memoria para que un suscriptor que
+ * reconecta reciba los que se perdió. Si ya no están, o el flujo es otro
+ * (el servidor se reinició), la suscripción empieza en la versión actual y
+ * el cliente debe vaciar sus cachés. Un suscriptor que se queda más atrás
+ * de lo que se guarda se da de baja.
+ */
+public class ChangeStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStream.class);
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Destino de los eventos de una suscripción
+     */
+    public interface Subscriber {
+        /**
+         * @return false si el suscriptor ya no acepta eventos y debe darse de baja
+         */
+        boolean deliver(RowSet events);
+
+        /**
+         * El suscriptor se quedó atrás y perdió eventos
+         */
+        void lost();
+    }
+
+    private final long streamId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Object[][] ring;
+    private final Object lock = new Object();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long headVersion = 0;
+    private boolean pending = false;
+    private Thread deliveryThread;
+
+    public ChangeStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeStream(int capacity) {
+        this.ring = new Object[capacity][];
+    }
+
+    /**
+     * Suscripción abierta; recibe eventos a partir de start()
+     */
+    public final class Subscription {
+        private final long version;
+        private final boolean resumed;
+        private long nextVersion;
+        private Subscriber subscriber;
+
+        private Subscription(long version, long nextVersion, boolean resumed) {
+            this.version = version;
+            this.nextVersion = nextVersion;
+            this.resumed = resumed;
+        }
+
+        public long getStreamId() {
+            return streamId;
+        }
+
+        /**
+         * Última versión publicada al abrir la suscripción
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Si la suscripción continúa una anterior sin perder eventos
+         */
+        public boolean isResumed() {
+            return resumed;
+        }
+
+        /**
+         * Empieza a entregar eventos; lo que se envíe antes al cliente le llega antes que ellos
+         */
+        public void start(Subscriber subscriber) {
+            this.subscriber = subscriber;
+            subscriptions.add(this);
+            ensureDeliveryThread();
+            synchronized (lock) {
+                pending = true;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Entrega en lotes todo lo publicado desde la última entrega
+         */
+        private void deliverPending() {
+            while (true) {
+                List<Object[]> rows;
+                synchronized (lock) {
+                    if (nextVersion > headVersion) {
+                        return;
+                    }
+                    if (headVersion - nextVersion >= ring.length) {
+                        subscriptions.remove(this);
+                        logger.warn("Suscriptor de cambios {} versiones por detrás, dado de baja",
+                                    headVersion - nextVersion + 1);
+                        subscriber.lost();
+                        return;
+                    }
+                    long last = Math.min(headVersion, nextVersion + MAX_BATCH_SIZE - 1);
+                    rows = new ArrayList<>((int) (last - nextVersion + 1));
+                    for (long version = nextVersion; version <= last; version++) {
+                        rows.add(ring[(int) (version % ring.length)]);
+                    }
+                }
+                if (!subscriber.deliver(ChangeEvent.toRowSet(rows))) {
+                    subscriptions.remove(this);
+                    return;
+                }
+                nextVersion += rows.size();
+            }
+        }
+    }
+
+    /**
+     * Abre una suscripción. Continúa desde fromVersion si el cliente viene de
+     * este mismo flujo y los eventos desde esa versión siguen guardados.
+     *
+     * @param fromVersion primera versión que le falta al cliente, o null
+     * @param knownStreamId flujo de la suscripción anterior del cliente, o null
+     */
+    public Subscription open(Long fromVersion, Long knownStreamId) {
+        synchronized (lock) {
+            boolean resumed = fromVersion != null && knownStreamId != null && knownStreamId == streamId
+                && fromVersion <= headVersion + 1 && headVersion - fromVersion < ring.length;
+            return new Subscription(headVersion, resumed ? fromVersion : headVersion + 1, resumed);
+        }
+    }
+
+    public void publish(String entity, Long id, String operation) {
+        publish(Collections.singletonList(new Object[]{entity, id, operation}));
+    }
+
+    /**
+     * Publica con versiones consecutivas los cambios {entidad, id, operación} de una escritura
+     */
+    public void publish(List<Object[]> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            for (Object[] change : changes) {
+                long version = ++headVersion;
+                ring[(int) (version % ring.length)] = new Object[]{version, change[0], change[1], change[2]};
+            }
+            if (!subscriptions.isEmpty()) {
+                pending = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private synchronized void ensureDeliveryThread() {
+        if (deliveryThread == null) {
+            deliveryThread = ExecutorFactory.namedThreadFactory("db-changes", true).newThread(this::deliverLoop);
+            deliveryThread.start();
+        }
+    }
+
+    private void deliverLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (!pending) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                pending = false;
+            }
+            for (Subscription subscription : subscriptions) {
+                try {
+                    subscription.deliverPending();
+                } catch (RuntimeException e) {
+                    logger.error("Error entregando cambios a un suscriptor", e);
+                    subscriptions.remove(subscription);
+                }
+            }
+        }
+    }
+
+    public long getStreamId() {
+        return streamId;
+    }
+
+    public long getHeadVersion() {
+        synchronized (lock) {
+            return headVersion;
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+}
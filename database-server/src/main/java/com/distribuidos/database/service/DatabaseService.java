@@ -1,60 +1,118 @@
 package com.distribuidos.database.service;
 
-import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.DatabaseMessage;
 import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.PageTokens;
+import com.distribuidos.shared.tcp.RowSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Servicio de base de datos que maneja todas las operaciones CRUD
+ * Servicio de base de datos que maneja todas las operaciones CRUD.
+ * Cada escritura confirmada se publica en el flujo de cambios (SUBSCRIBE).
+ * Dentro de una {@link Transaction} las operaciones usan su conexión y la
+ * invalidación de cachés y la publicación esperan al commit.
  */
 public class DatabaseService {
     
     private static final Logger logger = LoggerFactory.getLogger(DatabaseService.class);
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final long RESULT_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    private static final long RESULT_CACHE_TTL_MS = 60_000;
+    
+    private final StatementCache statementCache;
+    private final QueryResultCache resultCache;
+    private final ChangeStream changeStream;
+    
+    public DatabaseService() {
+        this(new StatementCache(STATEMENT_CACHE_SIZE));
+    }
+    
+    public DatabaseService(StatementCache statementCache) {
+        this(statementCache, new QueryResultCache(RESULT_CACHE_MAX_BYTES, RESULT_CACHE_TTL_MS));
+    }
+    
+    public DatabaseService(StatementCache statementCache, QueryResultCache resultCache) {
+        this(statementCache, resultCache, new ChangeStream());
+    }
+    
+    public DatabaseService(StatementCache statementCache, QueryResultCache resultCache, ChangeStream changeStream) {
+        this.statementCache = statementCache;
+        this.resultCache = resultCache;
+        this.changeStream = changeStream;
+    }
     
     /**
-     * Guarda una entidad en la base de datos
+     * Guarda una entidad en la base de datos.
+     * Los datos son un mapa columna → valor o un modelo de shared.model; la
+     * respuesta trae el id generado.
      */
     public DatabaseResponse save(String entity, Object data) {
         try {
-            // Por simplicidad, usamos un enfoque básico
-            // En una implementación completa, usaríamos mapeo ORM
-            logger.info("Guardando entidad: {} con datos: {}", entity, data);
+            EntityTable.Write write = EntityTable.forEntity(entity).insert(ModelColumns.toColumns(data));
+            return executeWrite(write);
             
-            // Simular guardado exitoso
-            return DatabaseResponse.success("Entidad " + entity + " guardada correctamente");
-            
-        } catch (Exception e) {
+        } catch (IllegalArgumentException e) {
+            return DatabaseResponse.error("Datos inválidos para guardar " + entity + ": " + e.getMessage());
+        } catch (SQLException e) {
             logger.error("Error guardando entidad: " + entity, e);
             return DatabaseResponse.error("Error guardando entidad: " + e.getMessage());
         }
     }
     
     /**
-     * Busca una entidad por ID
+     * Inserta la entidad o actualiza la existente con el mismo id o clave
+     * natural (MERGE), en una sola sentencia. La respuesta trae el id de la fila.
      */
-    public DatabaseResponse findById(String entity, Long id) {
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            String sql = "SELECT * FROM " + getTableName(entity) + " WHERE id = ?";
+    public DatabaseResponse upsert(String entity, Object data) {
+        try {
+            EntityTable.Write write = EntityTable.forEntity(entity).merge(ModelColumns.toColumns(data));
+            return executeWrite(write);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setLong(1, id);
-                
+        } catch (IllegalArgumentException e) {
+            return DatabaseResponse.error("Datos inválidos para guardar " + entity + ": " + e.getMessage());
+        } catch (SQLException e) {
+            logger.error("Error guardando o actualizando entidad: " + entity, e);
+            return DatabaseResponse.error("Error guardando entidad: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Busca una entidad por ID; el resultado se guarda en la caché de consultas
+     */
+    public DatabaseResponse findById(String entity, Long id) {
+        if (id == null) {
+            return DatabaseResponse.error("FIND_BY_ID requiere id");
+        }
+        String table = getTableName(entity);
+        return resultCache.getRow(table, id, () -> loadById(entity, table, id));
+    }
+    
+    private DatabaseResponse loadById(String entity, String table, Long id) {
+        String sql = "SELECT * FROM " + table + " WHERE id = ?";
+        try {
+            return withStatement(sql, new Object[]{id}, stmt -> {
                 try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        Map<String, Object> result = resultSetToMap(rs);
+                    Map<String, Object> result = RowMapper.readSingle(rs);
+                    if (result != null) {
                         return DatabaseResponse.success(result);
                     } else {
                         return DatabaseResponse.error("Entidad no encontrada con ID: " + id);
                     }
                 }
-            }
+            });
             
         } catch (SQLException e) {
             logger.error("Error buscando entidad por ID: " + entity + ", " + id, e);
@@ -63,22 +121,18 @@ public class DatabaseService {
     }
     
     /**
-     * Busca todas las entidades
+     * Busca todas las entidades; el resultado se guarda en la caché de consultas
      */
     public DatabaseResponse findAll(String entity) {
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            String sql = "SELECT * FROM " + getTableName(entity);
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                List<Map<String, Object>> results = new ArrayList<>();
-                while (rs.next()) {
-                    results.add(resultSetToMap(rs));
-                }
-                
-                return DatabaseResponse.success(results);
-            }
+        String table = getTableName(entity);
+        return resultCache.get(QueryResultCache.key(DatabaseMessage.FIND_ALL, table),
+                               () -> loadAll(entity, table), table);
+    }
+    
+    private DatabaseResponse loadAll(String entity, String table) {
+        String sql = "SELECT * FROM " + table;
+        try {
+            return withStatement(sql, null, this::queryRows);
             
         } catch (SQLException e) {
             logger.error("Error buscando todas las entidades: " + entity, e);
@@ -87,31 +141,92 @@ public class DatabaseService {
     }
     
     /**
-     * Actualiza una entidad
+     * Actualiza una entidad; el id se toma de los datos
      */
     public DatabaseResponse update(String entity, Object data) {
+        return update(entity, null, data);
+    }
+    
+    /**
+     * Actualiza las columnas dadas de la entidad con ese id (o el de los datos)
+     */
+    public DatabaseResponse update(String entity, Long id, Object data) {
         try {
-            logger.info("Actualizando entidad: {} con datos: {}", entity, data);
-            
-            // Simular actualización exitosa
-            return DatabaseResponse.success("Entidad " + entity + " actualizada correctamente");
+            Map<String, Object> columns = ModelColumns.toColumns(data);
+            Long targetId = id != null ? id : idOf(columns);
+            if (targetId == null) {
+                return DatabaseResponse.error("UPDATE requiere id");
+            }
+            DatabaseResponse response = executeWrite(EntityTable.forEntity(entity).update(targetId, columns));
+            if (response.getAffectedRows() == 0) {
+                return DatabaseResponse.error("No se encontró entidad con ID: " + targetId);
+            }
+            return response;
             
-        } catch (Exception e) {
+        } catch (IllegalArgumentException e) {
+            return DatabaseResponse.error("Datos inválidos para actualizar " + entity + ": " + e.getMessage());
+        } catch (SQLException e) {
             logger.error("Error actualizando entidad: " + entity, e);
             return DatabaseResponse.error("Error actualizando entidad: " + e.getMessage());
         }
     }
     
+    private static Long idOf(Map<String, Object> columns) {
+        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase("id") && entry.getValue() instanceof Number) {
+                return ((Number) entry.getValue()).longValue();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Ejecuta una escritura con una sentencia de la caché: un único viaje a la
+     * base de datos que devuelve las filas afectadas y, si las hay, la clave generada.
+     * Invalida en la caché de consultas la fila escrita, o la tabla si no se conoce.
+     */
+    private DatabaseResponse executeWrite(EntityTable.Write write) throws SQLException {
+        return withStatement(write.getSql(), write.returnsGeneratedKeys(), stmt -> {
+            write.bind(stmt);
+            int affectedRows = stmt.executeUpdate();
+            Long generatedId = null;
+            if (write.returnsGeneratedKeys()) {
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    generatedId = keys.next() ? keys.getLong(1) : null;
+                }
+            }
+            Long rowId = generatedId != null ? generatedId : write.getRowId();
+            Transaction.afterCommit(() -> {
+                if (rowId != null) {
+                    resultCache.invalidateRow(write.getTable().getTableName(), rowId);
+                } else {
+                    resultCache.invalidateTables(write.getAffectedTables());
+                }
+                if (affectedRows > 0) {
+                    changeStream.publish(Collections.singletonList(changeOf(write, rowId)));
+                }
+            });
+            DatabaseResponse response = DatabaseResponse.success(generatedId);
+            response.setAffectedRows(affectedRows);
+            return response;
+        });
+    }
+    
     /**
      * Elimina una entidad por ID
      */
     public DatabaseResponse delete(String entity, Long id) {
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            String sql = "DELETE FROM " + getTableName(entity) + " WHERE id = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setLong(1, id);
+        String table = getTableName(entity);
+        String sql = "DELETE FROM " + table + " WHERE id = ?";
+        try {
+            return withStatement(sql, new Object[]{id}, stmt -> {
                 int affectedRows = stmt.executeUpdate();
+                Transaction.afterCommit(() -> {
+                    invalidateDelete(table, id);
+                    if (affectedRows > 0) {
+                        publishDelete(table, id);
+                    }
+                });
                 
                 if (affectedRows > 0) {
                     DatabaseResponse response = DatabaseResponse.success("Entidad eliminada correctamente");
@@ -120,7 +235,7 @@ public class DatabaseService {
                 } else {
                     return DatabaseResponse.error("No se encontró entidad con ID: " + id);
                 }
-            }
+            });
             
         } catch (SQLException e) {
             logger.error("Error eliminando entidad: " + entity + ", ID: " + id, e);
@@ -128,32 +243,287 @@ public class DatabaseService {
         }
     }
     
+    /**
+     * El borrado de una fila puede cambiar otras tablas por las claves foráneas
+     */
+    private void invalidateDelete(String table, Long id) {
+        try {
+            EntityTable entityTable = EntityTable.forEntity(table);
+            resultCache.invalidateRow(table, id);
+            resultCache.invalidateTables(entityTable.getCascades());
+        } catch (IllegalArgumentException e) {
+            resultCache.invalidateAll();
+        }
+    }
+    
+    private void publishDelete(String table, Long id) {
+        try {
+            changeStream.publish(EntityTable.forEntity(table).name(), id, ChangeEvent.DELETE);
+        } catch (IllegalArgumentException e) {
+            changeStream.publish(null, null, ChangeEvent.DELETE);
+        }
+    }
+    
+    /**
+     * Evento {entidad, id, operación} de una escritura. Las réplicas de
+     * archivo se notifican por el id de su archivo, que aquí no se conoce.
+     */
+    private static Object[] changeOf(EntityTable.Write write, Long rowId) {
+        EntityTable table = write.getTable();
+        return new Object[]{table.name(), table == EntityTable.FILE_REPLICA ? null : rowId, write.getOperation()};
+    }
+    
     /**
      * Busca entidades por criterios
      */
     public DatabaseResponse findByCriteria(String entity, String query, Object[] parameters) {
-        try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        try {
+            return withStatement(query, parameters, this::queryRows);
             
-            // Establecer parámetros si existen
-            if (parameters != null) {
-                for (int i = 0; i < parameters.length; i++) {
-                    stmt.setObject(i + 1, parameters[i]);
+        } catch (SQLException e) {
+            logger.error("Error ejecutando consulta por criterios: " + query, e);
+            return DatabaseResponse.error("Error ejecutando consulta: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Devuelve una página de resultados ordenada por id.
+     * Es paginación por clave: cada página continúa tras el último id de la
+     * anterior (codificado en el token) y se resuelve con el índice de la
+     * clave primaria, sin OFFSET. Sin query se pagina la tabla de la entidad;
+     * con query se pagina su resultado, que debe incluir la columna ID.
+     */
+    public DatabaseResponse findPage(String entity, String query, Object[] parameters, int pageSize, String pageToken) {
+        int limit = pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+        Long afterId;
+        try {
+            afterId = PageTokens.decode(pageToken);
+        } catch (IllegalArgumentException e) {
+            return DatabaseResponse.error("Token de página inválido");
+        }
+        
+        String source = query != null ? "(" + query + ")" : getTableName(entity);
+        String sql = "SELECT * FROM " + source + " q" +
+                     (afterId != null ? " WHERE q.id > ?" : "") + " ORDER BY q.id LIMIT ?";
+        
+        int baseCount = parameters != null ? parameters.length : 0;
+        Object[] allParameters = new Object[baseCount + (afterId != null ? 2 : 1)];
+        if (parameters != null) {
+            System.arraycopy(parameters, 0, allParameters, 0, baseCount);
+        }
+        if (afterId != null) {
+            allParameters[baseCount] = afterId;
+        }
+        // Una fila de más indica si existe una página siguiente
+        allParameters[allParameters.length - 1] = limit + 1;
+        
+        try {
+            return withStatement(sql, allParameters, stmt -> {
+                stmt.setFetchSize(limit + 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    RowSet rows = RowMapper.read(rs, limit);
+                    int idColumn = rows.indexOf("ID");
+                    if (idColumn < 0) {
+                        return DatabaseResponse.error("La consulta debe incluir la columna ID para paginar");
+                    }
+                    
+                    DatabaseResponse response = DatabaseResponse.success(rows);
+                    if (rs.next() && !rows.isEmpty()) {
+                        Number lastId = (Number) rows.getValue(rows.size() - 1, idColumn);
+                        response.setNextPageToken(PageTokens.encode(lastId.longValue()));
+                    }
+                    return response;
                 }
-            }
+            });
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                List<Map<String, Object>> results = new ArrayList<>();
-                while (rs.next()) {
-                    results.add(resultSetToMap(rs));
+        } catch (SQLException e) {
+            logger.error("Error paginando entidad: " + entity, e);
+            return DatabaseResponse.error("Error paginando resultados: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Ejecuta varias operaciones SAVE, UPDATE y DELETE en una sola transacción.
+     *
+     * Las operaciones consecutivas que generan el mismo SQL se envían a JDBC
+     * como un único lote (addBatch/executeBatch), así una importación masiva
+     * cuesta un viaje de ida y vuelta y un commit en lugar de uno por fila.
+     * Si alguna operación falla se deshace el lote completo.
+     *
+     * Admite SAVE, UPDATE, UPSERT y DELETE con los mismos datos que las
+     * operaciones sueltas. La respuesta trae un RowSet con una fila por
+     * operación, en el mismo orden: AFFECTED_ROWS y GENERATED_ID (id de la
+     * fila en SAVE y UPSERT, null en el resto).
+     */
+    public DatabaseResponse batch(Object operations) {
+        if (!(operations instanceof List)) {
+            return DatabaseResponse.error("BATCH requiere una lista de operaciones");
+        }
+        List<?> items = (List<?>) operations;
+        List<EntityTable.Write> batch = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                batch.add(toWrite(items.get(i)));
+            } catch (IllegalArgumentException e) {
+                return DatabaseResponse.error("Operación " + i + " del lote inválida: " + e.getMessage());
+            }
+        }
+        
+        RowSet results = new RowSet(new String[]{"AFFECTED_ROWS", "GENERATED_ID"},
+                                    new int[]{Types.INTEGER, Types.BIGINT});
+        try (Connection conn = Transaction.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // Dentro de una transacción el lote solo confirma con ella, y si falla se deshace solo el lote
+            Savepoint savepoint = autoCommit ? null : conn.setSavepoint();
+            conn.setAutoCommit(false);
+            try {
+                int start = 0;
+                while (start < batch.size()) {
+                    int end = start + 1;
+                    while (end < batch.size() && batch.get(end).getSql().equals(batch.get(start).getSql())) {
+                        end++;
+                    }
+                    executeBatchGroup(conn, batch, start, end, results);
+                    start = end;
                 }
-                
-                return DatabaseResponse.success(results);
+                if (savepoint == null) {
+                    conn.commit();
+                } else {
+                    conn.releaseSavepoint(savepoint);
+                }
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    conn.rollback(savepoint);
+                } else {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
+            Transaction.afterCommit(() -> {
+                invalidateBatch(batch);
+                publishBatch(batch, results);
+            });
             
         } catch (SQLException e) {
-            logger.error("Error ejecutando consulta por criterios: " + query, e);
-            return DatabaseResponse.error("Error ejecutando consulta: " + e.getMessage());
+            logger.error("Error ejecutando lote de {} operaciones", batch.size(), e);
+            return DatabaseResponse.error("Error ejecutando lote, no se aplicó ninguna operación: " + e.getMessage());
+        }
+        
+        int affectedRows = 0;
+        for (int i = 0; i < results.size(); i++) {
+            affectedRows += (Integer) results.getValue(i, 0);
+        }
+        logger.debug("Lote de {} operaciones ejecutado, {} filas afectadas", batch.size(), affectedRows);
+        DatabaseResponse response = DatabaseResponse.success(results);
+        response.setAffectedRows(affectedRows);
+        return response;
+    }
+    
+    /**
+     * Un lote invalida de una vez las tablas que toca
+     */
+    private void invalidateBatch(List<EntityTable.Write> batch) {
+        Set<String> tables = new LinkedHashSet<>();
+        for (EntityTable.Write write : batch) {
+            tables.addAll(write.getAffectedTables());
+        }
+        resultCache.invalidateTables(tables);
+    }
+    
+    /**
+     * Publica de una vez los cambios de las operaciones del lote que escribieron alguna fila
+     */
+    private void publishBatch(List<EntityTable.Write> batch, RowSet results) {
+        List<Object[]> changes = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if ((Integer) results.getValue(i, 0) > 0) {
+                Long generatedId = (Long) results.getValue(i, 1);
+                changes.add(changeOf(batch.get(i), generatedId != null ? generatedId : batch.get(i).getRowId()));
+            }
+        }
+        changeStream.publish(changes);
+    }
+    
+    /**
+     * Ejecuta como un lote JDBC las operaciones [start, end), que comparten SQL
+     */
+    private void executeBatchGroup(Connection conn, List<EntityTable.Write> batch, int start, int end,
+                                   RowSet results) throws SQLException {
+        EntityTable.Write first = batch.get(start);
+        try (PreparedStatement stmt = first.returnsGeneratedKeys()
+                ? conn.prepareStatement(first.getSql(), Statement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(first.getSql())) {
+            for (int i = start; i < end; i++) {
+                batch.get(i).bind(stmt);
+                stmt.addBatch();
+            }
+            
+            int[] counts;
+            try {
+                counts = stmt.executeBatch();
+            } catch (BatchUpdateException e) {
+                throw new SQLException("falló la operación " + (start + firstFailed(e.getUpdateCounts())) +
+                                       ": " + e.getMessage(), e.getSQLState(), e);
+            }
+            
+            ResultSet keys = first.returnsGeneratedKeys() ? stmt.getGeneratedKeys() : null;
+            try {
+                for (int i = 0; i < counts.length; i++) {
+                    Long generatedId = keys != null && keys.next() ? keys.getLong(1) : null;
+                    results.addRow(new Object[]{Math.max(counts[i], 0), generatedId});
+                }
+            } finally {
+                if (keys != null) {
+                    keys.close();
+                }
+            }
+        }
+    }
+    
+    private static int firstFailed(int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        return counts.length;
+    }
+    
+    /**
+     * Traduce una operación de un lote a su sentencia de escritura
+     */
+    private EntityTable.Write toWrite(Object item) {
+        if (!(item instanceof DatabaseMessage)) {
+            throw new IllegalArgumentException("se esperaba un DatabaseMessage");
+        }
+        DatabaseMessage operation = (DatabaseMessage) item;
+        if (operation.getOperation() == null) {
+            throw new IllegalArgumentException("operación no especificada");
+        }
+        EntityTable table = EntityTable.forEntity(operation.getEntity());
+        
+        switch (operation.getOperation()) {
+            case DatabaseMessage.SAVE:
+                return table.insert(ModelColumns.toColumns(operation.getData()));
+            case DatabaseMessage.UPSERT:
+                return table.merge(ModelColumns.toColumns(operation.getData()));
+            case DatabaseMessage.UPDATE: {
+                Map<String, Object> columns = ModelColumns.toColumns(operation.getData());
+                Long id = operation.getId() != null ? operation.getId() : idOf(columns);
+                if (id == null) {
+                    throw new IllegalArgumentException("UPDATE requiere id");
+                }
+                return table.update(id, columns);
+            }
+            case DatabaseMessage.DELETE:
+                if (operation.getId() == null) {
+                    throw new IllegalArgumentException("DELETE requiere id");
+                }
+                return table.delete(operation.getId());
+            default:
+                throw new IllegalArgumentException("operación no admitida en un lote: " + operation.getOperation());
         }
     }
     
@@ -161,39 +531,23 @@ public class DatabaseService {
      * Ejecuta una consulta personalizada
      */
     public DatabaseResponse executeQuery(String query, Object[] parameters) {
-        try (Connection conn = DatabaseConfig.getConnection()) {
-            
+        try {
             if (query.trim().toLowerCase().startsWith("select")) {
                 // Consulta SELECT
-                try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                    if (parameters != null) {
-                        for (int i = 0; i < parameters.length; i++) {
-                            stmt.setObject(i + 1, parameters[i]);
-                        }
-                    }
-                    
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        List<Map<String, Object>> results = new ArrayList<>();
-                        while (rs.next()) {
-                            results.add(resultSetToMap(rs));
-                        }
-                        return DatabaseResponse.success(results);
-                    }
-                }
+                return withStatement(query, parameters, this::queryRows);
             } else {
                 // Consulta UPDATE/INSERT/DELETE
-                try (PreparedStatement stmt = conn.prepareStatement(query)) {
-                    if (parameters != null) {
-                        for (int i = 0; i < parameters.length; i++) {
-                            stmt.setObject(i + 1, parameters[i]);
-                        }
-                    }
-                    
+                return withStatement(query, parameters, stmt -> {
                     int affectedRows = stmt.executeUpdate();
+                    // No se sabe qué tablas toca el SQL libre
+                    Transaction.afterCommit(() -> {
+                        resultCache.invalidateAll();
+                        changeStream.publish(null, null, operationOf(query));
+                    });
                     DatabaseResponse response = DatabaseResponse.success("Consulta ejecutada correctamente");
                     response.setAffectedRows(affectedRows);
                     return response;
-                }
+                });
             }
             
         } catch (SQLException e) {
@@ -202,6 +556,80 @@ public class DatabaseService {
         }
     }
     
+    /**
+     * Operación sobre una sentencia preparada
+     */
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T apply(PreparedStatement stmt) throws SQLException;
+    }
+    
+    /**
+     * Ejecuta una operación con una sentencia de la caché de la conexión
+     * (la de la transacción en curso, si la hay).
+     * Si falla, la sentencia se descarta de la caché.
+     */
+    private <T> T withStatement(String sql, Object[] parameters, StatementCallback<T> callback) throws SQLException {
+        return withStatement(sql, false, stmt -> {
+            if (parameters != null) {
+                for (int i = 0; i < parameters.length; i++) {
+                    stmt.setObject(i + 1, parameters[i]);
+                }
+            }
+            return callback.apply(stmt);
+        });
+    }
+    
+    /**
+     * Variante en la que el callback asigna los parámetros
+     */
+    private <T> T withStatement(String sql, boolean returnGeneratedKeys, StatementCallback<T> callback)
+            throws SQLException {
+        try (Connection conn = Transaction.getConnection()) {
+            try {
+                return callback.apply(statementCache.prepare(conn, sql, returnGeneratedKeys));
+            } catch (SQLException e) {
+                statementCache.invalidate(conn, sql, returnGeneratedKeys);
+                throw e;
+            }
+        }
+    }
+    
+    private DatabaseResponse queryRows(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return DatabaseResponse.success(RowMapper.readAll(rs));
+        }
+    }
+    
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+    
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    public ChangeStream getChangeStream() {
+        return changeStream;
+    }
+    
+    /**
+     * Operación de una sentencia de SQL libre para el flujo de cambios
+     */
+    private static String operationOf(String query) {
+        String sql = query.trim().toUpperCase(Locale.ROOT);
+        if (sql.startsWith("INSERT")) {
+            return ChangeEvent.INSERT;
+        }
+        if (sql.startsWith("DELETE")) {
+            return ChangeEvent.DELETE;
+        }
+        if (sql.startsWith("MERGE")) {
+            return ChangeEvent.UPSERT;
+        }
+        return ChangeEvent.UPDATE;
+    }
+    
     /**
      * Convierte el nombre de entidad al nombre de tabla
      */
@@ -216,21 +644,4 @@ public class DatabaseService {
             default: return entity.toLowerCase();
         }
     }
-    
-    /**
-     * Convierte un ResultSet a Map
-     */
-    private Map<String, Object> resultSetToMap(ResultSet rs) throws SQLException {
-        Map<String, Object> map = new HashMap<>();
-        ResultSetMetaData metaData = rs.getMetaData();
-        int columnCount = metaData.getColumnCount();
-        
-        for (int i = 1; i <= columnCount; i++) {
-            String columnName = metaData.getColumnName(i);
-            Object value = rs.getObject(i);
-            map.put(columnName, value);
-        }
-        
-        return map;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.shared.tcp.ChangeEvent;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tablas del esquema creado por DatabaseConfig con sus columnas escribibles.
+ *
+ * Genera el SQL de las escrituras (INSERT, UPDATE y MERGE): solo se aceptan
+ * columnas conocidas, y cada valor se envía a JDBC con el tipo SQL de su
+ * columna. La clave natural de cada tabla es la que usa el UPSERT cuando los
+ * datos no traen id.
+ */
+public enum EntityTable {
+
+    USER("users", new String[]{"username"}, new String[]{"directories", "files", "file_replicas", "permissions"},
+         "username", Types.VARCHAR, "password", Types.VARCHAR, "email", Types.VARCHAR,
+         "created_at", Types.TIMESTAMP, "updated_at", Types.TIMESTAMP),
+
+    DIRECTORY("directories", null, new String[]{"directories", "files", "file_replicas", "permissions"},
+              "name", Types.VARCHAR, "full_path", Types.VARCHAR, "parent_id", Types.BIGINT,
+              "owner_id", Types.BIGINT, "created_at", Types.TIMESTAMP, "updated_at", Types.TIMESTAMP),
+
+    FILE("files", new String[]{"file_path"}, new String[]{"file_replicas", "permissions"},
+         "name", Types.VARCHAR, "original_name", Types.VARCHAR, "file_path", Types.VARCHAR,
+         "file_size", Types.BIGINT, "mime_type", Types.VARCHAR, "checksum", Types.VARCHAR,
+         "directory_id", Types.BIGINT, "owner_id", Types.BIGINT,
+         "created_at", Types.TIMESTAMP, "updated_at", Types.TIMESTAMP),
+
+    NODE("nodes", new String[]{"node_id"}, new String[]{"file_replicas"},
+         "node_id", Types.VARCHAR, "hostname", Types.VARCHAR, "port", Types.INTEGER,
+         "storage_path", Types.VARCHAR, "total_capacity", Types.BIGINT, "used_capacity", Types.BIGINT,
+         "status", Types.VARCHAR, "last_heartbeat", Types.TIMESTAMP,
+         "created_at", Types.TIMESTAMP, "updated_at", Types.TIMESTAMP),
+
+    FILE_REPLICA("file_replicas", new String[]{"file_id", "node_id"}, new String[0],
+                 "file_id", Types.BIGINT, "node_id", Types.BIGINT, "local_path", Types.VARCHAR,
+                 "replica_checksum", Types.VARCHAR, "status", Types.VARCHAR,
+                 "created_at", Types.TIMESTAMP, "updated_at", Types.TIMESTAMP, "last_verified", Types.TIMESTAMP),
+
+    PERMISSION("permissions", null, new String[0],
+               "user_id", Types.BIGINT, "file_id", Types.BIGINT, "directory_id", Types.BIGINT,
+               "permission_type", Types.VARCHAR, "granted_by", Types.BIGINT,
+               "created_at", Types.TIMESTAMP, "expires_at", Types.TIMESTAMP);
+
+    private static final String UPDATED_AT = "updated_at";
+
+    private final String tableName;
+    private final String[] naturalKey;
+    private final String[] cascades;
+    private final Map<String, Integer> columnTypes = new LinkedHashMap<>();
+
+    /**
+     * @param naturalKey columnas que identifican una fila sin id, o null si la tabla no tiene
+     * @param cascades tablas cuyas filas cambian al borrar una fila de esta (ON DELETE CASCADE / SET NULL)
+     * @param columns pares nombre de columna, tipo SQL ({@link Types})
+     */
+    EntityTable(String tableName, String[] naturalKey, String[] cascades, Object... columns) {
+        this.tableName = tableName;
+        this.naturalKey = naturalKey;
+        this.cascades = cascades;
+        columnTypes.put("id", Types.BIGINT);
+        for (int i = 0; i < columns.length; i += 2) {
+            columnTypes.put((String) columns[i], (Integer) columns[i + 1]);
+        }
+    }
+
+    /**
+     * Tabla de una entidad (USER, FILE...) o de su nombre de tabla
+     *
+     * @throws IllegalArgumentException si no es una tabla del esquema
+     */
+    public static EntityTable forEntity(String entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("entidad no especificada");
+        }
+        for (EntityTable table : values()) {
+            if (table.name().equalsIgnoreCase(entity) || table.tableName.equalsIgnoreCase(entity)) {
+                return table;
+            }
+        }
+        throw new IllegalArgumentException("entidad desconocida: " + entity);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Tablas afectadas indirectamente al borrar filas de esta
+     */
+    public List<String> getCascades() {
+        return Arrays.asList(cascades);
+    }
+
+    /**
+     * INSERT con las columnas dadas; devuelve la clave generada
+     */
+    public Write insert(Map<String, Object> values) {
+        Map<String, Object> columns = checkColumns(values);
+        if (columns.get("id") == null) {
+            columns.remove("id");
+        }
+        StringBuilder names = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        List<Object> parameters = new ArrayList<>(columns.size());
+        List<Integer> types = new ArrayList<>(columns.size());
+        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+            appendSeparator(names);
+            appendSeparator(placeholders);
+            names.append(entry.getKey());
+            placeholders.append('?');
+            parameters.add(entry.getValue());
+            types.add(columnTypes.get(entry.getKey()));
+        }
+        return new Write(this, "INSERT INTO " + tableName + " (" + names + ") VALUES (" + placeholders + ")",
+                         parameters, types, true, ChangeEvent.INSERT, null);
+    }
+
+    /**
+     * UPDATE por id de las columnas dadas; updated_at se actualiza si no viene en los datos
+     */
+    public Write update(long id, Map<String, Object> values) {
+        Map<String, Object> columns = checkColumns(values);
+        columns.remove("id");
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("UPDATE sin columnas a modificar");
+        }
+        StringBuilder assignments = new StringBuilder();
+        List<Object> parameters = new ArrayList<>(columns.size() + 1);
+        List<Integer> types = new ArrayList<>(columns.size() + 1);
+        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+            appendSeparator(assignments);
+            assignments.append(entry.getKey()).append(" = ?");
+            parameters.add(entry.getValue());
+            types.add(columnTypes.get(entry.getKey()));
+        }
+        if (columnTypes.containsKey(UPDATED_AT) && !columns.containsKey(UPDATED_AT)) {
+            assignments.append(", ").append(UPDATED_AT).append(" = CURRENT_TIMESTAMP");
+        }
+        parameters.add(id);
+        types.add(Types.BIGINT);
+        return new Write(this, "UPDATE " + tableName + " SET " + assignments + " WHERE id = ?", parameters, types, false,
+                         ChangeEvent.UPDATE, id);
+    }
+
+    public Write delete(long id) {
+        List<Object> parameters = new ArrayList<>(1);
+        parameters.add(id);
+        List<Integer> types = new ArrayList<>(1);
+        types.add(Types.BIGINT);
+        return new Write(this, "DELETE FROM " + tableName + " WHERE id = ?", parameters, types, false,
+                         ChangeEvent.DELETE, id);
+    }
+
+    /**
+     * MERGE por id si los datos lo traen, o por la clave natural de la tabla.
+     * Inserta o actualiza en una sola sentencia y devuelve el id de la fila.
+     */
+    public Write merge(Map<String, Object> values) {
+        Map<String, Object> columns = checkColumns(values);
+        String[] key;
+        if (columns.get("id") != null) {
+            key = new String[]{"id"};
+        } else if (naturalKey != null) {
+            columns.remove("id");
+            key = naturalKey;
+            for (String column : key) {
+                if (columns.get(column) == null) {
+                    throw new IllegalArgumentException("UPSERT en " + tableName + " requiere id o " +
+                                                       String.join(", ", naturalKey));
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("UPSERT en " + tableName + " requiere id");
+        }
+
+        StringBuilder names = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        List<Object> parameters = new ArrayList<>(columns.size());
+        List<Integer> types = new ArrayList<>(columns.size());
+        for (Map.Entry<String, Object> entry : columns.entrySet()) {
+            appendSeparator(names);
+            appendSeparator(placeholders);
+            names.append(entry.getKey());
+            placeholders.append('?');
+            parameters.add(entry.getValue());
+            types.add(columnTypes.get(entry.getKey()));
+        }
+        if (columnTypes.containsKey(UPDATED_AT) && !columns.containsKey(UPDATED_AT)) {
+            names.append(", ").append(UPDATED_AT);
+            placeholders.append(", CURRENT_TIMESTAMP");
+        }
+        return new Write(this, "MERGE INTO " + tableName + " (" + names + ") KEY (" + String.join(", ", key) +
+                         ") VALUES (" + placeholders + ")", parameters, types, true, ChangeEvent.UPSERT, null);
+    }
+
+    /**
+     * Normaliza los nombres de columna a minúsculas y rechaza los que no son de la tabla
+     */
+    private Map<String, Object> checkColumns(Map<String, Object> values) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("sin columnas que escribir en " + tableName);
+        }
+        Map<String, Object> columns = new LinkedHashMap<>(values.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String column = entry.getKey().toLowerCase(Locale.ROOT);
+            if (!columnTypes.containsKey(column)) {
+                throw new IllegalArgumentException("columna desconocida en " + tableName + ": " + entry.getKey());
+            }
+            columns.put(column, entry.getValue());
+        }
+        return columns;
+    }
+
+    private static void appendSeparator(StringBuilder sql) {
+        if (sql.length() > 0) {
+            sql.append(", ");
+        }
+    }
+
+    /**
+     * Sentencia de escritura ya generada con sus parámetros tipados
+     */
+    public static final class Write {
+        private final EntityTable table;
+        private final String sql;
+        private final Object[] parameters;
+        private final int[] types;
+        private final boolean returnsGeneratedKeys;
+        private final String operation;
+        private final Long rowId;
+
+        private Write(EntityTable table, String sql, List<Object> parameters, List<Integer> types,
+                      boolean returnsGeneratedKeys, String operation, Long rowId) {
+            this.table = table;
+            this.sql = sql;
+            this.parameters = parameters.toArray();
+            this.types = types.stream().mapToInt(Integer::intValue).toArray();
+            this.returnsGeneratedKeys = returnsGeneratedKeys;
+            this.operation = operation;
+            this.rowId = rowId;
+        }
+
+        public EntityTable getTable() {
+            return table;
+        }
+
+        /**
+         * Tablas cuyas filas puede cambiar la sentencia, incluidas las del borrado en cascada
+         */
+        public List<String> getAffectedTables() {
+            if (!ChangeEvent.DELETE.equals(operation)) {
+                return Collections.singletonList(table.tableName);
+            }
+            List<String> tables = new ArrayList<>(table.getCascades());
+            tables.add(0, table.tableName);
+            return tables;
+        }
+
+        /**
+         * Operación para el flujo de cambios (ChangeEvent.INSERT, UPDATE, UPSERT o DELETE)
+         */
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Id de la fila que modifica la sentencia, o null si no se conoce antes de ejecutarla
+         */
+        public Long getRowId() {
+            return rowId;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public boolean returnsGeneratedKeys() {
+            return returnsGeneratedKeys;
+        }
+
+        /**
+         * Asigna los parámetros con el tipo SQL de cada columna
+         */
+        public void bind(PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < parameters.length; i++) {
+                Object value = parameters[i];
+                if (value == null) {
+                    stmt.setNull(i + 1, types[i]);
+                } else if (value instanceof Enum) {
+                    stmt.setObject(i + 1, ((Enum<?>) value).name(), types[i]);
+                } else {
+                    stmt.setObject(i + 1, value, types[i]);
+                }
+            }
+        }
+    }
+}
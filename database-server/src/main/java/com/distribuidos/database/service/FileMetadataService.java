@@ -0,0 +1,541 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.dto.ResolvedFile;
+import com.distribuidos.shared.model.Directory;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operaciones de metadatos de archivos que usa el servidor de aplicación.
+ *
+ * Cada operación es una única consulta (o una única transacción) en el
+ * servidor, de modo que al cliente le cuesta un solo viaje de ida y vuelta.
+ * RESOLVE_FILE devuelve el archivo junto con sus réplicas y rutas locales
+ * con un JOIN, que es todo lo que necesita una descarga o un borrado.
+ * Los usuarios se identifican por nombre de usuario, como en las sesiones SOAP.
+ * Las lecturas pasan por la caché de consultas y las escrituras invalidan
+ * las tablas que modifican y se publican en el flujo de cambios; dentro de
+ * una {@link Transaction}, al confirmarla.
+ */
+public class FileMetadataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileMetadataService.class);
+
+    private static final String FILE_COLUMNS =
+        "f.id, f.name, f.original_name, f.file_path, f.file_size, f.mime_type, f.checksum, " +
+        "f.directory_id, f.owner_id, f.created_at, f.updated_at, u.username";
+
+    // Las consultas parten del usuario: con LEFT JOIN H2 respeta el orden escrito, y así
+    // el archivo se busca con el índice (owner_id, name) en lugar de recorrer files
+    private static final String RESOLVE_SQL =
+        "SELECT " + FILE_COLUMNS + ", n.node_id AS replica_node, r.local_path, r.status AS replica_status " +
+        "FROM users u JOIN files f ON f.owner_id = u.id " +
+        "LEFT JOIN file_replicas r ON r.file_id = f.id " +
+        "LEFT JOIN nodes n ON n.id = r.node_id " +
+        "WHERE f.name = ? AND u.username = ? ORDER BY f.id DESC, r.id";
+
+    private static final String FIND_BY_NAME_SQL =
+        "SELECT " + FILE_COLUMNS + " FROM users u JOIN files f ON f.owner_id = u.id " +
+        "WHERE f.name = ? AND u.username = ? ORDER BY f.id DESC LIMIT 1";
+
+    private static final String LIST_BY_USER_SQL =
+        "SELECT " + FILE_COLUMNS + " FROM users u JOIN files f ON f.owner_id = u.id " +
+        "WHERE u.username = ? ORDER BY f.id";
+
+    private static final String REPLICA_NODES_SQL =
+        "SELECT n.node_id FROM file_replicas r JOIN nodes n ON n.id = r.node_id WHERE r.file_id = ? ORDER BY r.id";
+
+    private static final String INSERT_FILE_SQL =
+        "INSERT INTO files (name, original_name, file_path, file_size, mime_type, checksum, directory_id, owner_id) " +
+        "SELECT ?, ?, ?, ?, ?, ?, ?, u.id FROM users u WHERE ";
+
+    // Con el id reservado antes con RESERVE_FILE_ID
+    private static final String INSERT_FILE_WITH_ID_SQL =
+        "INSERT INTO files (id, name, original_name, file_path, file_size, mime_type, checksum, directory_id, " +
+        "owner_id) SELECT ?, ?, ?, ?, ?, ?, ?, ?, u.id FROM users u WHERE ";
+
+    // Fila provisional de RESERVE_FILE_ID, que se deshace en cuanto genera el id
+    private static final String RESERVE_FILE_SQL =
+        "INSERT INTO files (name, file_path, owner_id) SELECT '', '', u.id FROM users u WHERE ";
+
+    // Los nodos que aún no están registrados se crean con datos mínimos para poder referenciarlos
+    private static final String ENSURE_NODE_SQL =
+        "INSERT INTO nodes (node_id, hostname, port, storage_path, status) " +
+        "SELECT ?, ?, 0, '', 'ONLINE' WHERE NOT EXISTS (SELECT 1 FROM nodes WHERE node_id = ?)";
+
+    private static final String INSERT_REPLICA_SQL =
+        "INSERT INTO file_replicas (file_id, node_id, local_path, status) " +
+        "SELECT ?, n.id, ?, 'ACTIVE' FROM nodes n WHERE n.node_id = ?";
+
+    // Tablas de las que dependen las lecturas de archivos
+    private static final String[] FILE_TABLES = {"files", "users"};
+    private static final String[] RESOLVE_TABLES = {"files", "users", "file_replicas", "nodes"};
+    private static final String[] REPLICA_TABLES = {"file_replicas", "nodes"};
+
+    private final StatementCache statementCache;
+    private final QueryResultCache resultCache;
+    private final ChangeStream changeStream;
+
+    public FileMetadataService(StatementCache statementCache, QueryResultCache resultCache,
+                               ChangeStream changeStream) {
+        this.statementCache = statementCache;
+        this.resultCache = resultCache;
+        this.changeStream = changeStream;
+    }
+
+    /**
+     * Crea la entrada de un archivo. El propietario se toma de file.owner
+     * (por id o por nombre de usuario) y se resuelve en la misma sentencia.
+     * Si file.id viene dado (reservado con RESERVE_FILE_ID) se usa ese id.
+     * Devuelve el archivo con su id asignado.
+     */
+    public DatabaseResponse createFile(Object data) {
+        if (!(data instanceof File)) {
+            return DatabaseResponse.error("CREATE_FILE requiere un File");
+        }
+        File file = (File) data;
+        User owner = file.getOwner();
+        if (file.getName() == null || owner == null || (owner.getId() == null && owner.getUsername() == null)) {
+            return DatabaseResponse.error("CREATE_FILE requiere nombre y propietario");
+        }
+        if (file.getOriginalName() == null) {
+            file.setOriginalName(file.getName());
+        }
+        if (file.getFilePath() == null) {
+            file.setFilePath("/" + (owner.getUsername() != null ? owner.getUsername() : owner.getId()) +
+                             "/" + file.getName());
+        }
+
+        Long reservedId = file.getId();
+        String sql = (reservedId != null ? INSERT_FILE_WITH_ID_SQL : INSERT_FILE_SQL) + ownerCondition(owner);
+        try {
+            return withStatement(sql, reservedId == null, stmt -> {
+                int p = 1;
+                if (reservedId != null) {
+                    stmt.setLong(p++, reservedId);
+                }
+                stmt.setString(p++, file.getName());
+                stmt.setString(p++, file.getOriginalName());
+                stmt.setString(p++, file.getFilePath());
+                stmt.setObject(p++, file.getFileSize(), Types.BIGINT);
+                stmt.setString(p++, file.getMimeType());
+                stmt.setString(p++, file.getChecksum());
+                stmt.setObject(p++, file.getDirectory() != null ? file.getDirectory().getId() : null, Types.BIGINT);
+                stmt.setObject(p, ownerKey(owner));
+                if (stmt.executeUpdate() == 0) {
+                    return DatabaseResponse.error("Propietario desconocido: " + ownerKey(owner));
+                }
+                if (reservedId == null) {
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        keys.next();
+                        file.setId(keys.getLong(1));
+                    }
+                }
+                Long fileId = file.getId();
+                Transaction.afterCommit(() -> {
+                    resultCache.invalidateRow("files", fileId);
+                    changeStream.publish(DatabaseMessage.FILE, fileId, ChangeEvent.INSERT);
+                });
+                DatabaseResponse response = DatabaseResponse.success(file);
+                response.setAffectedRows(1);
+                return response;
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error creando archivo: " + file.getName(), e);
+            return DatabaseResponse.error("Error creando archivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reserva el id de un archivo nuevo sin crear su fila, para copiar el
+     * contenido en los nodos (que lo guardan por id) antes de registrarlo.
+     * Inserta una fila provisional en una transacción propia y la deshace:
+     * los valores de la columna identidad no vuelven atrás con el rollback,
+     * así que ninguna otra fila recibirá ese id. data: el propietario (User)
+     * o un File con owner.
+     */
+    public DatabaseResponse reserveFileId(Object data) {
+        User owner = data instanceof File ? ((File) data).getOwner() : data instanceof User ? (User) data : null;
+        if (owner == null || (owner.getId() == null && owner.getUsername() == null)) {
+            return DatabaseResponse.error("RESERVE_FILE_ID requiere el propietario");
+        }
+        // Conexión propia: el rollback no debe deshacer la transacción en curso, si la hay
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(RESERVE_FILE_SQL + ownerCondition(owner),
+                                                                Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setObject(1, ownerKey(owner));
+                if (stmt.executeUpdate() == 0) {
+                    return DatabaseResponse.error("Propietario desconocido: " + ownerKey(owner));
+                }
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    keys.next();
+                    return DatabaseResponse.success(keys.getLong(1));
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error reservando id de archivo para: " + ownerKey(owner), e);
+            return DatabaseResponse.error("Error reservando id de archivo: " + e.getMessage());
+        }
+    }
+
+    private static String ownerCondition(User owner) {
+        return owner.getId() != null ? "u.id = ?" : "u.username = ?";
+    }
+
+    private static Object ownerKey(User owner) {
+        return owner.getId() != null ? owner.getId() : owner.getUsername();
+    }
+
+    /**
+     * Archivo y réplicas (nodo, ruta local y estado) en una sola consulta
+     */
+    public DatabaseResponse resolveFile(Object data) {
+        String[] query = fileQuery(data);
+        if (query == null) {
+            return DatabaseResponse.error("RESOLVE_FILE requiere fileName y userId");
+        }
+        return resultCache.get(QueryResultCache.key(DatabaseMessage.RESOLVE_FILE, query[0], query[1]),
+                               () -> loadResolvedFile(query), RESOLVE_TABLES);
+    }
+
+    private DatabaseResponse loadResolvedFile(String[] query) {
+        try {
+            return withStatement(RESOLVE_SQL, false, stmt -> {
+                stmt.setString(1, query[0]);
+                stmt.setString(2, query[1]);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResolvedFile resolved = null;
+                    while (rs.next()) {
+                        if (resolved == null) {
+                            resolved = new ResolvedFile(readFile(rs));
+                        } else if (rs.getLong("id") != resolved.getFile().getId()) {
+                            // Solo el archivo más reciente con ese nombre
+                            break;
+                        }
+                        String nodeId = rs.getString("replica_node");
+                        if (nodeId != null) {
+                            resolved.getReplicas().add(new ResolvedFile.ReplicaLocation(
+                                nodeId, rs.getString("local_path"), rs.getString("replica_status")));
+                        }
+                    }
+                    return resolved != null
+                        ? DatabaseResponse.success(resolved)
+                        : DatabaseResponse.error("Archivo no encontrado: " + query[0]);
+                }
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error resolviendo archivo: " + query[0], e);
+            return DatabaseResponse.error("Error resolviendo archivo: " + e.getMessage());
+        }
+    }
+
+    public DatabaseResponse getFileByName(Object data) {
+        String[] query = fileQuery(data);
+        if (query == null) {
+            return DatabaseResponse.error("GET_FILE_BY_NAME requiere fileName y userId");
+        }
+        return resultCache.get(QueryResultCache.key(DatabaseMessage.GET_FILE_BY_NAME, query[0], query[1]),
+                               () -> loadFileByName(query), FILE_TABLES);
+    }
+
+    private DatabaseResponse loadFileByName(String[] query) {
+        try {
+            return withStatement(FIND_BY_NAME_SQL, false, stmt -> {
+                stmt.setString(1, query[0]);
+                stmt.setString(2, query[1]);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next()
+                        ? DatabaseResponse.success(readFile(rs))
+                        : DatabaseResponse.error("Archivo no encontrado: " + query[0]);
+                }
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error buscando archivo: " + query[0], e);
+            return DatabaseResponse.error("Error buscando archivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ids de los nodos que tienen réplica del archivo
+     */
+    public DatabaseResponse getFileReplicas(Object data) {
+        Long fileId = toLong(data);
+        if (fileId == null) {
+            return DatabaseResponse.error("GET_FILE_REPLICAS requiere el id del archivo");
+        }
+        return resultCache.get(QueryResultCache.key(DatabaseMessage.GET_FILE_REPLICAS, fileId),
+                               () -> loadFileReplicas(fileId), REPLICA_TABLES);
+    }
+
+    private DatabaseResponse loadFileReplicas(Long fileId) {
+        try {
+            return withStatement(REPLICA_NODES_SQL, false, stmt -> {
+                stmt.setLong(1, fileId);
+                List<String> nodes = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        nodes.add(rs.getString(1));
+                    }
+                }
+                return DatabaseResponse.success(nodes);
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error buscando réplicas del archivo: " + fileId, e);
+            return DatabaseResponse.error("Error buscando réplicas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sustituye las réplicas registradas de un archivo en una transacción.
+     * data: {fileId, replicas: {nodeId → ruta local}} o, sin rutas, {fileId, nodeIds: [...]}
+     */
+    public DatabaseResponse updateFileReplicas(Object data) {
+        if (!(data instanceof Map)) {
+            return DatabaseResponse.error("UPDATE_FILE_REPLICAS requiere {fileId, replicas}");
+        }
+        Map<?, ?> request = (Map<?, ?>) data;
+        Long fileId = toLong(request.get("fileId"));
+        Map<String, String> replicas = new LinkedHashMap<>();
+        if (request.get("replicas") instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) request.get("replicas")).entrySet()) {
+                replicas.put(String.valueOf(entry.getKey()), entry.getValue() != null ? entry.getValue().toString() : "");
+            }
+        } else if (request.get("nodeIds") instanceof Collection) {
+            for (Object nodeId : (Collection<?>) request.get("nodeIds")) {
+                replicas.put(String.valueOf(nodeId), "");
+            }
+        }
+        if (fileId == null) {
+            return DatabaseResponse.error("UPDATE_FILE_REPLICAS requiere fileId");
+        }
+
+        try (Connection conn = Transaction.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            // Dentro de una transacción se confirma con ella, y si falla se deshace solo esta operación
+            Savepoint savepoint = autoCommit ? null : conn.setSavepoint();
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement("DELETE FROM file_replicas WHERE file_id = ?");
+                 PreparedStatement ensureNode = conn.prepareStatement(ENSURE_NODE_SQL);
+                 PreparedStatement insert = conn.prepareStatement(INSERT_REPLICA_SQL)) {
+                delete.setLong(1, fileId);
+                delete.executeUpdate();
+                for (Map.Entry<String, String> replica : replicas.entrySet()) {
+                    ensureNode.setString(1, replica.getKey());
+                    ensureNode.setString(2, replica.getKey());
+                    ensureNode.setString(3, replica.getKey());
+                    ensureNode.addBatch();
+                    insert.setLong(1, fileId);
+                    insert.setString(2, replica.getValue());
+                    insert.setString(3, replica.getKey());
+                    insert.addBatch();
+                }
+                int newNodes = 0;
+                for (int count : ensureNode.executeBatch()) {
+                    newNodes += Math.max(count, 0);
+                }
+                int affectedRows = 0;
+                for (int count : insert.executeBatch()) {
+                    affectedRows += Math.max(count, 0);
+                }
+                if (savepoint == null) {
+                    conn.commit();
+                } else {
+                    conn.releaseSavepoint(savepoint);
+                }
+                List<Object[]> changes = new ArrayList<>(2);
+                changes.add(new Object[]{DatabaseMessage.FILE_REPLICA, fileId, ChangeEvent.UPDATE});
+                if (newNodes > 0) {
+                    changes.add(new Object[]{DatabaseMessage.NODE, null, ChangeEvent.INSERT});
+                }
+                Transaction.afterCommit(() -> {
+                    resultCache.invalidateTables(Arrays.asList(REPLICA_TABLES));
+                    changeStream.publish(changes);
+                });
+
+                DatabaseResponse response = DatabaseResponse.success("Réplicas actualizadas");
+                response.setAffectedRows(affectedRows);
+                return response;
+            } catch (SQLException e) {
+                if (savepoint != null) {
+                    conn.rollback(savepoint);
+                } else {
+                    conn.rollback();
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+        } catch (SQLException e) {
+            logger.error("Error actualizando réplicas del archivo: " + fileId, e);
+            return DatabaseResponse.error("Error actualizando réplicas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Archivos de un usuario (por nombre de usuario)
+     */
+    public DatabaseResponse listUserFiles(Object data) {
+        if (data == null) {
+            return DatabaseResponse.error("LIST_USER_FILES requiere el usuario");
+        }
+        String username = data.toString();
+        return resultCache.get(QueryResultCache.key(DatabaseMessage.LIST_USER_FILES, username),
+                               () -> loadUserFiles(username), FILE_TABLES);
+    }
+
+    private DatabaseResponse loadUserFiles(String username) {
+        try {
+            return withStatement(LIST_BY_USER_SQL, false, stmt -> {
+                stmt.setString(1, username);
+                List<File> files = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        files.add(readFile(rs));
+                    }
+                }
+                return DatabaseResponse.success(files);
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error listando archivos del usuario: " + username, e);
+            return DatabaseResponse.error("Error listando archivos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Elimina un archivo; sus réplicas y permisos se eliminan en cascada
+     */
+    public DatabaseResponse deleteFile(Object data) {
+        Long fileId = toLong(data);
+        if (fileId == null) {
+            return DatabaseResponse.error("DELETE_FILE requiere el id del archivo");
+        }
+        try {
+            return withStatement("DELETE FROM files WHERE id = ?", false, stmt -> {
+                stmt.setLong(1, fileId);
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    return DatabaseResponse.error("No se encontró archivo con ID: " + fileId);
+                }
+                Transaction.afterCommit(() -> {
+                    resultCache.invalidateRow("files", fileId);
+                    resultCache.invalidateTables(EntityTable.FILE.getCascades());
+                    changeStream.publish(DatabaseMessage.FILE, fileId, ChangeEvent.DELETE);
+                });
+                DatabaseResponse response = DatabaseResponse.success("Archivo eliminado correctamente");
+                response.setAffectedRows(affectedRows);
+                return response;
+            });
+
+        } catch (SQLException e) {
+            logger.error("Error eliminando archivo: " + fileId, e);
+            return DatabaseResponse.error("Error eliminando archivo: " + e.getMessage());
+        }
+    }
+
+    private static File readFile(ResultSet rs) throws SQLException {
+        File file = new File();
+        file.setId(rs.getLong("id"));
+        file.setName(rs.getString("name"));
+        file.setOriginalName(rs.getString("original_name"));
+        file.setFilePath(rs.getString("file_path"));
+        long size = rs.getLong("file_size");
+        file.setFileSize(rs.wasNull() ? null : size);
+        file.setMimeType(rs.getString("mime_type"));
+        file.setChecksum(rs.getString("checksum"));
+
+        long directoryId = rs.getLong("directory_id");
+        if (!rs.wasNull()) {
+            Directory directory = new Directory();
+            directory.setId(directoryId);
+            file.setDirectory(directory);
+        }
+        User owner = new User();
+        owner.setId(rs.getLong("owner_id"));
+        owner.setUsername(rs.getString("username"));
+        file.setOwner(owner);
+
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        file.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        file.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        return file;
+    }
+
+    /**
+     * {fileName, userId} de la petición, o null si falta alguno
+     */
+    private static String[] fileQuery(Object data) {
+        if (!(data instanceof Map)) {
+            return null;
+        }
+        Object fileName = ((Map<?, ?>) data).get("fileName");
+        Object userId = ((Map<?, ?>) data).get("userId");
+        if (fileName == null || userId == null) {
+            return null;
+        }
+        return new String[]{fileName.toString(), userId.toString()};
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T apply(PreparedStatement stmt) throws SQLException;
+    }
+
+    private <T> T withStatement(String sql, boolean returnGeneratedKeys, StatementCallback<T> callback)
+            throws SQLException {
+        try (Connection conn = Transaction.getConnection()) {
+            try {
+                return callback.apply(statementCache.prepare(conn, sql, returnGeneratedKeys));
+            } catch (SQLException e) {
+                statementCache.invalidate(conn, sql, returnGeneratedKeys);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.distribuidos.database.service;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convierte los datos de una escritura en un mapa columna → valor.
+ *
+ * Acepta mapas (se devuelven tal cual) o instancias de los modelos de
+ * com.distribuidos.shared.model: sus anotaciones JPA dan el nombre de cada
+ * columna y las relaciones @ManyToOne se escriben como el id de la entidad
+ * referenciada. Los campos nulos se omiten para que actúen los valores por
+ * defecto de la tabla. Los campos de cada clase se resuelven una sola vez.
+ */
+public final class ModelColumns {
+
+    private static final Map<Class<?>, List<Mapping>> MAPPINGS = new ConcurrentHashMap<>();
+
+    private ModelColumns() {
+    }
+
+    /**
+     * Columna de la tabla asociada a un campo del modelo
+     */
+    private static final class Mapping {
+        final Field field;
+        final String column;
+        final boolean reference;
+
+        Mapping(Field field, String column, boolean reference) {
+            this.field = field;
+            this.column = column;
+            this.reference = reference;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> toColumns(Object data) {
+        if (data instanceof Map) {
+            for (Object key : ((Map<?, ?>) data).keySet()) {
+                if (!(key instanceof String)) {
+                    throw new IllegalArgumentException("nombre de columna inválido: " + key);
+                }
+            }
+            return (Map<String, Object>) data;
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("sin datos que escribir");
+        }
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        for (Mapping mapping : mappingsOf(data.getClass())) {
+            Object value = read(mapping.field, data);
+            if (value != null && mapping.reference) {
+                value = idOf(value);
+            }
+            if (value != null) {
+                columns.put(mapping.column, value);
+            }
+        }
+        return columns;
+    }
+
+    private static Object idOf(Object entity) {
+        for (Mapping mapping : mappingsOf(entity.getClass())) {
+            if (mapping.column.equals("id")) {
+                return read(mapping.field, entity);
+            }
+        }
+        throw new IllegalArgumentException("la entidad referenciada no tiene id: " + entity.getClass().getName());
+    }
+
+    private static List<Mapping> mappingsOf(Class<?> type) {
+        return MAPPINGS.computeIfAbsent(type, ModelColumns::resolve);
+    }
+
+    private static List<Mapping> resolve(Class<?> type) {
+        if (type.getAnnotation(Entity.class) == null) {
+            throw new IllegalArgumentException("tipo de datos no admitido: " + type.getName());
+        }
+        List<Mapping> mappings = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                    || field.isAnnotationPresent(Transient.class) || field.isAnnotationPresent(OneToMany.class)
+                    || field.isAnnotationPresent(ManyToMany.class) || Collection.class.isAssignableFrom(field.getType())) {
+                continue;
+            }
+            field.setAccessible(true);
+            JoinColumn join = field.getAnnotation(JoinColumn.class);
+            Column column = field.getAnnotation(Column.class);
+            if (join != null) {
+                String name = join.name().isEmpty() ? snakeCase(field.getName()) + "_id" : join.name();
+                mappings.add(new Mapping(field, name, true));
+            } else if (field.isAnnotationPresent(Id.class)) {
+                mappings.add(new Mapping(field, "id", false));
+            } else {
+                String name = column != null && !column.name().isEmpty() ? column.name() : snakeCase(field.getName());
+                mappings.add(new Mapping(field, name, false));
+            }
+        }
+        return mappings;
+    }
+
+    private static Object read(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("No se pudo leer el campo " + field.getName(), e);
+        }
+    }
+
+    private static String snakeCase(String name) {
+        StringBuilder result = new StringBuilder(name.length() + 4);
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                result.append('_').append(Character.toLowerCase(c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
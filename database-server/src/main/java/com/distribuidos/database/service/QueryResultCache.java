@@ -0,0 +1,317 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.shared.dto.ResolvedFile;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.RowSet;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de resultados de consultas de metadatos (FIND_ALL, FIND_BY_ID,
+ * búsquedas de archivos por nombre...).
+ *
+ * Las entradas se guardan por clave (operación, entidad y parámetros) junto
+ * con las tablas de las que dependen. Cada tabla tiene dos versiones:
+ * - tableVersion cambia con cualquier escritura en la tabla e invalida los
+ *   listados y búsquedas que dependen de ella;
+ * - rowsVersion cambia solo con escrituras cuyo alcance se desconoce (lotes,
+ *   consultas libres) e invalida además las entradas de una sola fila. Una
+ *   escritura sobre una fila concreta elimina solo la entrada de esa fila.
+ *
+ * Invalidar es O(1): las entradas obsoletas se detectan al leerlas. Un
+ * resultado cargado mientras se escribía en alguna de sus tablas no se
+ * guarda, así que nunca se cachea un valor anterior a una escritura ya
+ * confirmada. La memoria está acotada por un tamaño estimado (expulsión
+ * LRU) y cada entrada caduca tras un TTL.
+ *
+ * Las lecturas dentro de una transacción no usan la caché.
+ *
+ * Los valores cacheados se comparten entre peticiones y no deben modificarse.
+ */
+public class QueryResultCache {
+
+    /**
+     * Carga el resultado cuando no está en caché
+     */
+    @FunctionalInterface
+    public interface Loader {
+        DatabaseResponse load();
+    }
+
+    private static final class Entry {
+        final Object data;
+        final String[] tables;
+        final long[] versions;
+        final String rowTable;
+        final long rowsVersion;
+        final long expiresAt;
+        final long weight;
+
+        Entry(Object data, String[] tables, long[] versions, String rowTable, long rowsVersion,
+              long expiresAt, long weight) {
+            this.data = data;
+            this.tables = tables;
+            this.versions = versions;
+            this.rowTable = rowTable;
+            this.rowsVersion = rowsVersion;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+    }
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> rowsVersions = new ConcurrentHashMap<>();
+    private long usedBytes = 0;
+    // Cambia con invalidateAll para descartar también las cargas en curso
+    private long epoch = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public QueryResultCache(long maxBytes, long ttlMillis) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Clave de caché a partir de la operación y sus parámetros
+     */
+    public static String key(Object... parts) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            // Separador que no aparece en nombres de archivo ni de usuario
+            key.append(part).append('\u001F');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Resultado de un listado o búsqueda que depende de las tablas dadas
+     */
+    public DatabaseResponse get(String key, Loader loader, String... tables) {
+        return lookup(key, null, loader, tables);
+    }
+
+    /**
+     * Resultado de la búsqueda de una sola fila por id
+     */
+    public DatabaseResponse getRow(String table, long id, Loader loader) {
+        return lookup(rowKey(table, id), table, loader, table);
+    }
+
+    private DatabaseResponse lookup(String key, String rowTable, Loader loader, String... tables) {
+        // Una transacción lee de su conexión, que puede tener escrituras sin confirmar
+        if (Transaction.current() != null) {
+            return loader.load();
+        }
+        Entry entry;
+        long startEpoch;
+        synchronized (this) {
+            startEpoch = epoch;
+            entry = entries.get(key);
+            if (entry != null && !isValid(entry)) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            return DatabaseResponse.success(entry.data);
+        }
+        misses.incrementAndGet();
+
+        String[] normalized = new String[tables.length];
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            normalized[i] = normalize(tables[i]);
+            versions[i] = version(tableVersions, normalized[i]);
+        }
+        String normalizedRowTable = rowTable != null ? normalize(rowTable) : null;
+        long rowsVersion = normalizedRowTable != null ? version(rowsVersions, normalizedRowTable) : 0;
+
+        DatabaseResponse response = loader.load();
+        if (!response.isSuccess()) {
+            return response;
+        }
+        long weight = estimateSize(response.getData());
+        if (weight > maxBytes / 4) {
+            return response;
+        }
+        synchronized (this) {
+            // Si hubo escrituras durante la carga el resultado puede ser anterior a ellas
+            if (epoch != startEpoch) {
+                return response;
+            }
+            for (int i = 0; i < normalized.length; i++) {
+                if (version(tableVersions, normalized[i]) != versions[i]) {
+                    return response;
+                }
+            }
+            remove(key);
+            entries.put(key, new Entry(response.getData(), normalized, versions, normalizedRowTable, rowsVersion,
+                                       System.currentTimeMillis() + ttlMillis, weight));
+            usedBytes += weight;
+            evictToBound();
+        }
+        return response;
+    }
+
+    /**
+     * Escritura sobre una fila concreta
+     */
+    public void invalidateRow(String table, long id) {
+        String normalized = normalize(table);
+        synchronized (this) {
+            bump(tableVersions, normalized);
+            remove(rowKey(normalized, id));
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Escritura de alcance desconocido sobre una tabla
+     */
+    public void invalidateTable(String table) {
+        String normalized = normalize(table);
+        synchronized (this) {
+            bump(tableVersions, normalized);
+            bump(rowsVersions, normalized);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public void invalidateTables(Collection<String> tables) {
+        for (String table : tables) {
+            invalidateTable(table);
+        }
+    }
+
+    /**
+     * Escritura sobre tablas desconocidas (p. ej. SQL libre)
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            epoch++;
+            entries.clear();
+            usedBytes = 0;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private boolean isValid(Entry entry) {
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            return false;
+        }
+        if (entry.rowTable != null) {
+            return version(rowsVersions, entry.rowTable) == entry.rowsVersion;
+        }
+        for (int i = 0; i < entry.tables.length; i++) {
+            if (version(tableVersions, entry.tables[i]) != entry.versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.weight;
+        }
+    }
+
+    private void evictToBound() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().weight;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long version(Map<String, AtomicLong> versions, String table) {
+        AtomicLong version = versions.get(table);
+        return version != null ? version.get() : 0;
+    }
+
+    private static void bump(Map<String, AtomicLong> versions, String table) {
+        versions.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String normalize(String table) {
+        return table.toLowerCase(Locale.ROOT);
+    }
+
+    private static String rowKey(String table, long id) {
+        return "ROW|" + normalize(table) + "|" + id;
+    }
+
+    /**
+     * Tamaño aproximado en memoria de un resultado
+     */
+    private static long estimateSize(Object data) {
+        if (data instanceof RowSet) {
+            RowSet rows = (RowSet) data;
+            return 128 + (long) rows.size() * (32 + rows.getColumnCount() * 40L);
+        }
+        if (data instanceof Collection) {
+            long size = 64;
+            for (Object item : (Collection<?>) data) {
+                size += 16 + estimateSize(item);
+            }
+            return size;
+        }
+        if (data instanceof Map) {
+            return 64 + ((Map<?, ?>) data).size() * 80L;
+        }
+        if (data instanceof ResolvedFile) {
+            return 640 + ((ResolvedFile) data).getReplicas().size() * 160L;
+        }
+        if (data instanceof String) {
+            return 48 + ((String) data).length() * 2L;
+        }
+        return 512;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResultCache{entries=" + size() + ", bytes=" + getUsedBytes() + ", hits=" + getHits() +
+               ", misses=" + getMisses() + ", evictions=" + getEvictions() +
+               ", invalidations=" + getInvalidations() + '}';
+    }
+}
@@ -0,0 +1,104 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.shared.tcp.RowSet;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Map;
+
+/**
+ * Convierte un ResultSet en un {@link RowSet}.
+ * Los metadatos de las columnas se leen una sola vez por resultado y cada
+ * valor se obtiene con el getter JDBC de su tipo.
+ */
+public final class RowMapper {
+
+    private RowMapper() {
+    }
+
+    /**
+     * Lee todas las filas restantes del resultado
+     */
+    public static RowSet readAll(ResultSet rs) throws SQLException {
+        return read(rs, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lee como máximo maxRows filas; el resultado queda posicionado en la última leída
+     */
+    public static RowSet read(ResultSet rs, int maxRows) throws SQLException {
+        RowSet rows = newRowSet(rs.getMetaData());
+        int columnCount = rows.getColumnCount();
+        int[] types = rows.getColumnTypes();
+        while (rows.size() < maxRows && rs.next()) {
+            rows.addRow(readRow(rs, types, columnCount));
+        }
+        return rows;
+    }
+
+    /**
+     * Lee la fila siguiente, o devuelve null si no hay más
+     */
+    public static Map<String, Object> readSingle(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        RowSet rows = newRowSet(rs.getMetaData());
+        rows.addRow(readRow(rs, rows.getColumnTypes(), rows.getColumnCount()));
+        return rows.get(0);
+    }
+
+    private static RowSet newRowSet(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] columns = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1);
+            types[i] = metaData.getColumnType(i + 1);
+        }
+        return new RowSet(columns, types);
+    }
+
+    private static Object[] readRow(ResultSet rs, int[] types, int columnCount) throws SQLException {
+        Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = readValue(rs, i + 1, types[i]);
+        }
+        return values;
+    }
+
+    private static Object readValue(ResultSet rs, int column, int type) throws SQLException {
+        Object value;
+        switch (type) {
+            case Types.BIGINT:
+                value = rs.getLong(column);
+                break;
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                value = rs.getInt(column);
+                break;
+            case Types.VARCHAR:
+            case Types.CHAR:
+            case Types.LONGVARCHAR:
+            case Types.NVARCHAR:
+                return rs.getString(column);
+            case Types.TIMESTAMP:
+                return rs.getTimestamp(column);
+            case Types.BOOLEAN:
+            case Types.BIT:
+                value = rs.getBoolean(column);
+                break;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                value = rs.getDouble(column);
+                break;
+            default:
+                return rs.getObject(column);
+        }
+        // Los getters primitivos devuelven 0/false para NULL
+        return rs.wasNull() ? null : value;
+    }
+}
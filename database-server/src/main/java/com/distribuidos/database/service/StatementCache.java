@@ -0,0 +1,148 @@
+package com.distribuidos.database.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de sentencias preparadas por conexión física.
+ *
+ * Las sentencias se preparan sobre la conexión desenvuelta del pool de
+ * Hikari: el proxy cierra al devolver la conexión todas las sentencias
+ * creadas a través de él. Cada conexión mantiene un LRU de tamaño fijo y la
+ * usa un solo hilo a la vez (mientras la tiene prestada), por lo que solo el
+ * mapa de conexiones necesita sincronización.
+ *
+ * Las sentencias devueltas no deben cerrarse; solo sus ResultSet.
+ */
+public class StatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    private final int maxPerConnection;
+    private final Map<Connection, Map<String, PreparedStatement>> caches = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StatementCache(int maxPerConnection) {
+        this.maxPerConnection = maxPerConnection;
+    }
+
+    /**
+     * Devuelve una sentencia preparada para el SQL, reutilizándola si la
+     * conexión física ya la tenía
+     */
+    public PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        return prepare(connection, sql, false);
+    }
+
+    /**
+     * Como {@link #prepare(Connection, String)}, pudiendo pedir las claves
+     * generadas; las sentencias con y sin claves se guardan por separado
+     */
+    public PreparedStatement prepare(Connection connection, String sql, boolean returnGeneratedKeys)
+            throws SQLException {
+        Connection physical = connection.unwrap(Connection.class);
+        Map<String, PreparedStatement> cache = cacheFor(physical);
+        String key = cacheKey(sql, returnGeneratedKeys);
+
+        PreparedStatement statement = cache.get(key);
+        if (statement != null && !statement.isClosed()) {
+            hits.incrementAndGet();
+            statement.clearParameters();
+            return statement;
+        }
+
+        misses.incrementAndGet();
+        statement = returnGeneratedKeys
+            ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+            : physical.prepareStatement(sql);
+        cache.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * Descarta una sentencia que falló para no reutilizarla en mal estado
+     */
+    public void invalidate(Connection connection, String sql) {
+        invalidate(connection, sql, false);
+    }
+
+    public void invalidate(Connection connection, String sql, boolean returnGeneratedKeys) {
+        try {
+            Connection physical = connection.unwrap(Connection.class);
+            Map<String, PreparedStatement> cache;
+            synchronized (caches) {
+                cache = caches.get(physical);
+            }
+            PreparedStatement statement = cache != null ? cache.remove(cacheKey(sql, returnGeneratedKeys)) : null;
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Error descartando sentencia en caché: {}", e.getMessage());
+        }
+    }
+
+    private static String cacheKey(String sql, boolean returnGeneratedKeys) {
+        return returnGeneratedKeys ? "[keys] " + sql : sql;
+    }
+
+    private Map<String, PreparedStatement> cacheFor(Connection physical) throws SQLException {
+        synchronized (caches) {
+            Map<String, PreparedStatement> cache = caches.get(physical);
+            if (cache == null) {
+                purgeClosedConnections();
+                cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= maxPerConnection) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+                caches.put(physical, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Olvida las conexiones que Hikari ya retiró (solo al registrar una nueva)
+     */
+    private void purgeClosedConnections() throws SQLException {
+        Iterator<Connection> connections = caches.keySet().iterator();
+        while (connections.hasNext()) {
+            if (connections.next().isClosed()) {
+                connections.remove();
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Error cerrando sentencia expulsada de la caché: {}", e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
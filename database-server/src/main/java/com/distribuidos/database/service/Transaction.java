@@ -0,0 +1,213 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Transacción de varias peticiones sobre una conexión JDBC reservada.
+ *
+ * Mientras un hilo ejecuta una operación de la transacción (run), las
+ * operaciones de DatabaseService y FileMetadataService usan su conexión
+ * ({@link #getConnection()}) en lugar de pedir una a Hikari y no confirman
+ * nada; las que deben ser atómicas por sí solas (BATCH, UPDATE_FILE_REPLICAS)
+ * se deshacen hasta un savepoint si fallan. Lo que solo debe verse tras
+ * confirmar, como invalidar la caché de consultas o publicar en el flujo de
+ * cambios, se aplaza hasta el commit ({@link #afterCommit}) y se descarta
+ * con el rollback. Las lecturas no pasan por la caché de consultas, para
+ * ver las escrituras propias sin guardar en ella datos sin confirmar.
+ */
+public class Transaction {
+
+    private static final Logger logger = LoggerFactory.getLogger(Transaction.class);
+
+    private static final ThreadLocal<Transaction> current = new ThreadLocal<>();
+
+    private final Connection connection;
+    // La misma conexión, pero close() no la devuelve al pool
+    private final Connection view;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final long startedAt = System.currentTimeMillis();
+    private volatile long lastUsedAt = startedAt;
+    private volatile boolean finished = false;
+
+    public Transaction() throws SQLException {
+        Connection conn = DatabaseConfig.getConnection();
+        try {
+            conn.setAutoCommit(false);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        this.connection = conn;
+        this.view = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                    return null;
+                }
+                try {
+                    return method.invoke(conn, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    /**
+     * Transacción en curso en el hilo actual, o null
+     */
+    public static Transaction current() {
+        return current.get();
+    }
+
+    /**
+     * Conexión para una operación: la de la transacción en curso o una del
+     * pool. Debe cerrarse siempre; en una transacción cerrarla no hace nada.
+     */
+    public static Connection getConnection() throws SQLException {
+        Transaction transaction = current.get();
+        return transaction != null ? transaction.view : DatabaseConfig.getConnection();
+    }
+
+    /**
+     * Ejecuta la acción tras confirmar la transacción en curso, o ya si no hay ninguna
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction transaction = current.get();
+        if (transaction != null) {
+            transaction.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Ejecuta una operación dentro de la transacción en el hilo actual. Las
+     * operaciones de una misma transacción se ejecutan de una en una.
+     *
+     * @throws IllegalStateException si la transacción ya terminó
+     */
+    public <T> T run(Supplier<T> operation) {
+        lock.lock();
+        try {
+            checkActive();
+            current.set(this);
+            try {
+                return operation.get();
+            } finally {
+                current.remove();
+                lastUsedAt = System.currentTimeMillis();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Confirma la transacción y ejecuta las acciones aplazadas. Si el commit
+     * falla la transacción se deshace. En ambos casos la conexión vuelve al pool.
+     */
+    public void commit() throws SQLException {
+        lock.lock();
+        try {
+            checkActive();
+            finished = true;
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                rollbackQuietly();
+                throw e;
+            } finally {
+                release();
+            }
+            for (Runnable action : afterCommit) {
+                action.run();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deshace la transacción y descarta las acciones aplazadas
+     *
+     * @return false si ya había terminado
+     */
+    public boolean rollback() {
+        lock.lock();
+        try {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            rollbackQuietly();
+            release();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deshace la transacción si lleva ociosa al menos idleMs. No espera a
+     * una operación en curso: en ese caso la transacción no está ociosa.
+     */
+    public boolean rollbackIfIdle(long idleMs) {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (finished || System.currentTimeMillis() - lastUsedAt < idleMs) {
+                return false;
+            }
+            return rollback();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkActive() {
+        if (finished) {
+            throw new IllegalStateException("La transacción ya terminó");
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("Error deshaciendo transacción: {}", e.getMessage());
+        }
+    }
+
+    private void release() {
+        try {
+            connection.setAutoCommit(true);
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Error devolviendo la conexión de una transacción: {}", e.getMessage());
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+}
@@ -0,0 +1,114 @@
+package com.distribuidos.database;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.ChangeEvent;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.MultiplexedConnection;
+import com.distribuidos.shared.tcp.RowSet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Flujo de cambios (SUBSCRIBE) contra un servidor real con H2 en memoria
+ */
+class ChangeStreamIntegrationTest {
+
+    private static final int TIMEOUT_MS = 30_000;
+
+    private static DatabaseServer server;
+    private static DatabaseConnectionPool pool;
+    private static long owner;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+        server = new DatabaseServer(0);
+        server.start();
+        pool = new DatabaseConnectionPool("localhost", server.getPort(),
+            new DatabaseConnectionPool.Config().maxConnections(2).requestTimeoutMs(TIMEOUT_MS));
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", "changes_test");
+        user.put("password", "x");
+        user.put("email", "changes_test@test");
+        owner = (Long) check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user)))
+            .getData();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (pool != null) {
+            pool.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+    }
+
+    @Test
+    void testResumedSubscriptionReceivesMissedEventsInOrder() throws Exception {
+        int missed = 20;
+        Map<?, ?> first;
+        try (MultiplexedConnection connection = MultiplexedConnection.open("localhost", server.getPort(),
+                                                                           TIMEOUT_MS, true)) {
+            first = (Map<?, ?>) check(connection.subscribe(new DatabaseMessage(DatabaseMessage.SUBSCRIBE, null),
+                                                           response -> { }).get()).getData();
+        }
+        for (int i = 0; i < missed; i++) {
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("name", "changes_" + i + ".dat");
+            file.put("file_path", "/test/changes_" + i + ".dat");
+            file.put("file_size", 1024L);
+            file.put("owner_id", owner);
+            check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, file)));
+        }
+
+        List<ChangeEvent> received = new ArrayList<>();
+        long from = ((Number) first.get("version")).longValue() + 1;
+        try (MultiplexedConnection connection = MultiplexedConnection.open("localhost", server.getPort(),
+                                                                           TIMEOUT_MS, true)) {
+            DatabaseMessage resume = new DatabaseMessage(DatabaseMessage.SUBSCRIBE, null, from);
+            resume.setData(first.get("streamId"));
+            Map<?, ?> ack = (Map<?, ?>) check(connection.subscribe(resume, response -> {
+                if (response.getData() instanceof RowSet) {
+                    synchronized (received) {
+                        received.addAll(ChangeEvent.fromRowSet((RowSet) response.getData()));
+                    }
+                }
+            }).get()).getData();
+            assertEquals(Boolean.TRUE, ack.get("resumed"), "La suscripción no se reanudó: " + ack);
+
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (true) {
+                synchronized (received) {
+                    if (received.size() >= missed) {
+                        break;
+                    }
+                }
+                assertTrue(System.currentTimeMillis() < deadline, "Faltan eventos perdidos por recibir");
+                Thread.sleep(10);
+            }
+        }
+        synchronized (received) {
+            for (int i = 0; i < received.size(); i++) {
+                assertEquals(from + i, received.get(i).getVersion());
+            }
+        }
+    }
+
+    private static DatabaseResponse check(DatabaseResponse response) {
+        assertTrue(response.isSuccess(), response.getErrorMessage());
+        return response;
+    }
+}
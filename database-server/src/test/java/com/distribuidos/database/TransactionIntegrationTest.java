@@ -0,0 +1,290 @@
+package com.distribuidos.database;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.DatabaseTransaction;
+import com.distribuidos.shared.tcp.MultiplexedConnection;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transacciones de varias peticiones (BEGIN/COMMIT) contra un servidor real
+ * con H2 en memoria: visibilidad antes del COMMIT, ROLLBACK, cierre de la
+ * conexión, transacciones abandonadas, límite de transacciones abiertas e
+ * ids de archivo reservados antes de la transacción.
+ */
+class TransactionIntegrationTest {
+
+    private static final int TIMEOUT_MS = 30_000;
+    private static final int IDLE_TIMEOUT_MS = 1000;
+    private static final int MAX_TRANSACTIONS = 3;
+    private static final int BEGIN_WAIT_MS = 500;
+    private static final String OWNER = "tx_test";
+
+    private static DatabaseServer server;
+    private static DatabaseConnectionPool pool;
+
+    @FunctionalInterface
+    private interface Sender {
+        DatabaseResponse send(DatabaseMessage message) throws Exception;
+    }
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+        System.setProperty("db.transaction.timeout.ms", String.valueOf(IDLE_TIMEOUT_MS));
+        System.setProperty("db.transaction.max", String.valueOf(MAX_TRANSACTIONS));
+        System.setProperty("db.transaction.begin.wait.ms", String.valueOf(BEGIN_WAIT_MS));
+        server = new DatabaseServer(0);
+        server.start();
+        pool = new DatabaseConnectionPool("localhost", server.getPort(),
+            new DatabaseConnectionPool.Config().maxConnections(2).requestTimeoutMs(TIMEOUT_MS));
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", OWNER);
+        user.put("password", "x");
+        user.put("email", OWNER + "@test");
+        check(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user)));
+    }
+
+    @AfterAll
+    static void stopServer() {
+        if (pool != null) {
+            pool.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+        System.clearProperty("db.transaction.timeout.ms");
+        System.clearProperty("db.transaction.max");
+        System.clearProperty("db.transaction.begin.wait.ms");
+    }
+
+    @Test
+    void testWritesVisibleOutsideOnlyAfterCommit() throws Exception {
+        String name = "tx_committed.dat";
+        try (DatabaseTransaction tx = pool.begin()) {
+            storeFile(tx::send, name);
+            assertTrue(exists(tx::send, name), "Lo escrito debe verse dentro de la transacción");
+            assertFalse(exists(pool::send, name), "Lo escrito no debe verse fuera antes del COMMIT");
+            check(tx.commit());
+        }
+        assertTrue(exists(pool::send, name));
+    }
+
+    @Test
+    void testRollbackDiscardsWrites() throws Exception {
+        String name = "tx_rolled_back.dat";
+        try (DatabaseTransaction tx = pool.begin()) {
+            storeFile(tx::send, name);
+            check(tx.rollback());
+        }
+        assertFalse(exists(pool::send, name));
+    }
+
+    @Test
+    void testClosingConnectionRollsBack() throws Exception {
+        String name = "tx_disconnected.dat";
+        try (MultiplexedConnection connection = MultiplexedConnection.open("localhost", server.getPort(),
+                                                                           TIMEOUT_MS, true)) {
+            check(connection.send(new DatabaseMessage(DatabaseMessage.BEGIN, null), TIMEOUT_MS));
+            storeFile(message -> connection.send(message, TIMEOUT_MS), name);
+        }
+        awaitNoTransactions();
+        assertFalse(exists(pool::send, name));
+    }
+
+    @Test
+    void testIdleTransactionIsReapedAndConnectionClosed() throws Exception {
+        String name = "tx_abandoned.dat";
+        try (MultiplexedConnection connection = MultiplexedConnection.open("localhost", server.getPort(),
+                                                                           TIMEOUT_MS, true)) {
+            check(connection.send(new DatabaseMessage(DatabaseMessage.BEGIN, null), TIMEOUT_MS));
+            storeFile(message -> connection.send(message, TIMEOUT_MS), name);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (connection.isOpen()) {
+                assertTrue(System.currentTimeMillis() < deadline, "El servidor no cerró la transacción abandonada");
+                Thread.sleep(10);
+            }
+        }
+        awaitNoTransactions();
+        assertFalse(exists(pool::send, name));
+    }
+
+    @Test
+    void testConcurrentBeginsRespectLimit() throws Exception {
+        int clients = MAX_TRANSACTIONS * 3;
+        List<MultiplexedConnection> connections = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            for (int i = 0; i < clients; i++) {
+                connections.add(MultiplexedConnection.open("localhost", server.getPort(), TIMEOUT_MS, true));
+            }
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> begins = new ArrayList<>();
+            for (MultiplexedConnection connection : connections) {
+                begins.add(executor.submit(() -> {
+                    start.await();
+                    return connection.send(new DatabaseMessage(DatabaseMessage.BEGIN, null), TIMEOUT_MS).isSuccess();
+                }));
+            }
+            start.countDown();
+            int started = 0;
+            for (Future<Boolean> begin : begins) {
+                if (begin.get()) {
+                    started++;
+                }
+            }
+            assertEquals(MAX_TRANSACTIONS, started);
+            assertEquals(MAX_TRANSACTIONS, server.getOpenTransactions());
+        } finally {
+            executor.shutdownNow();
+            for (MultiplexedConnection connection : connections) {
+                connection.close();
+            }
+        }
+        awaitNoTransactions();
+
+        // Las plazas se devuelven al terminar cada transacción
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        List<DatabaseTransaction> reopened = new ArrayList<>();
+        DatabaseConnectionPool wide = new DatabaseConnectionPool("localhost", server.getPort(),
+            new DatabaseConnectionPool.Config().maxConnections(MAX_TRANSACTIONS).requestTimeoutMs(TIMEOUT_MS));
+        try {
+            while (reopened.size() < MAX_TRANSACTIONS) {
+                try {
+                    reopened.add(wide.begin());
+                } catch (IOException e) {
+                    assertTrue(System.currentTimeMillis() < deadline, e.getMessage());
+                    Thread.sleep(10);
+                }
+            }
+        } finally {
+            for (DatabaseTransaction tx : reopened) {
+                tx.close();
+            }
+            wide.close();
+        }
+    }
+
+    @Test
+    void testBeginWaitsForFreeSlot() throws Exception {
+        List<MultiplexedConnection> connections = new ArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i <= MAX_TRANSACTIONS; i++) {
+                connections.add(MultiplexedConnection.open("localhost", server.getPort(), TIMEOUT_MS, true));
+            }
+            for (int i = 0; i < MAX_TRANSACTIONS; i++) {
+                check(connections.get(i).send(new DatabaseMessage(DatabaseMessage.BEGIN, null), TIMEOUT_MS));
+            }
+            MultiplexedConnection waiting = connections.get(MAX_TRANSACTIONS);
+            Future<DatabaseResponse> begin = executor.submit(
+                () -> waiting.send(new DatabaseMessage(DatabaseMessage.BEGIN, null), TIMEOUT_MS));
+            Thread.sleep(BEGIN_WAIT_MS / 5);
+            assertFalse(begin.isDone(), "Sin plazas, el BEGIN espera");
+
+            check(connections.get(0).send(new DatabaseMessage(DatabaseMessage.ROLLBACK, null), TIMEOUT_MS));
+            check(begin.get());
+            check(waiting.send(new DatabaseMessage(DatabaseMessage.ROLLBACK, null), TIMEOUT_MS));
+        } finally {
+            executor.shutdownNow();
+            for (MultiplexedConnection connection : connections) {
+                connection.close();
+            }
+        }
+        awaitNoTransactions();
+    }
+
+    @Test
+    void testReservedFileIdIsUsedOnlyByItsCreate() throws Exception {
+        User owner = new User();
+        owner.setUsername(OWNER);
+        long reserved = (Long) check(pool.send(
+            new DatabaseMessage(DatabaseMessage.RESERVE_FILE_ID, DatabaseMessage.FILE, owner))).getData();
+        assertFalse(exists(pool::send, ""), "La fila provisional no queda");
+
+        // Otro archivo creado mientras tanto no recibe el id reservado
+        long other = storeFile(pool::send, "tx_reserve_other.dat", null);
+        assertNotEquals(reserved, other);
+
+        try (DatabaseTransaction tx = pool.begin()) {
+            assertEquals(reserved, storeFile(tx::send, "tx_reserved.dat", reserved));
+            check(tx.commit());
+        }
+        assertTrue(exists(pool::send, "tx_reserved.dat"));
+
+        User unknown = new User();
+        unknown.setUsername("tx_nobody");
+        assertFalse(pool.send(
+            new DatabaseMessage(DatabaseMessage.RESERVE_FILE_ID, DatabaseMessage.FILE, unknown)).isSuccess());
+    }
+
+    private static long storeFile(Sender sender, String name) throws Exception {
+        return storeFile(sender, name, null);
+    }
+
+    private static long storeFile(Sender sender, String name, Long reservedId) throws Exception {
+        File file = new File();
+        file.setId(reservedId);
+        file.setName(name);
+        file.setFileSize(1024L);
+        User owner = new User();
+        owner.setUsername(OWNER);
+        file.setOwner(owner);
+        DatabaseMessage create = new DatabaseMessage();
+        create.setOperation(DatabaseMessage.CREATE_FILE);
+        create.setData(file);
+        long fileId = ((File) check(sender.send(create)).getData()).getId();
+
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put("node-1", "/storage/node-1/" + fileId);
+        Map<String, Object> data = new HashMap<>();
+        data.put("fileId", fileId);
+        data.put("replicas", replicas);
+        DatabaseMessage update = new DatabaseMessage();
+        update.setOperation(DatabaseMessage.UPDATE_FILE_REPLICAS);
+        update.setData(data);
+        check(sender.send(update));
+        return fileId;
+    }
+
+    private static boolean exists(Sender sender, String name) throws Exception {
+        Map<String, Object> query = new HashMap<>();
+        query.put("fileName", name);
+        query.put("userId", OWNER);
+        return sender.send(new DatabaseMessage(DatabaseMessage.RESOLVE_FILE, null, query)).isSuccess();
+    }
+
+    private static void awaitNoTransactions() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (server.getOpenTransactions() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Quedan transacciones abiertas");
+            Thread.sleep(10);
+        }
+    }
+
+    private static DatabaseResponse check(DatabaseResponse response) {
+        assertTrue(response.isSuccess(), response.getErrorMessage());
+        return response;
+    }
+}
@@ -0,0 +1,61 @@
+package com.distribuidos.database.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de las migraciones del esquema sobre H2 en memoria
+ */
+public class SchemaMigratorTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migrator_" + System.nanoTime(), "sa", "");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void testMigratesToLatestVersionOnce() throws SQLException {
+        int latest = SchemaMigrator.getMigrations().get(SchemaMigrator.getMigrations().size() - 1).getVersion();
+
+        assertEquals(latest, SchemaMigrator.migrate(connection));
+        assertEquals(latest, SchemaMigrator.migrate(connection));
+        assertEquals(latest, SchemaMigrator.currentVersion(connection));
+    }
+
+    @Test
+    void testMigrationsCanBeRepeatedAfterInterruption() throws SQLException {
+        SchemaMigrator.migrate(connection);
+
+        // El DDL ya se confirmó pero la versión no consta, como tras un fallo a medias
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM schema_version");
+        }
+
+        assertDoesNotThrow(() -> SchemaMigrator.migrate(connection));
+        assertEquals(SchemaMigrator.getMigrations().size(), countVersions());
+    }
+
+    private int countVersions() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.distribuidos.database.replication;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.database.service.Transaction;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias del registro de cambios. Las escrituras simulan el
+ * trigger llamando a ChangeLog.capture desde el hilo que escribe; record
+ * abre una transacción JDBC, así que se usa H2 en memoria.
+ */
+public class ChangeLogTest {
+
+    private static final String[] COLUMNS = {"ID", "NAME"};
+
+    @BeforeAll
+    static void initializeDatabase() throws Exception {
+        System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+        DatabaseConfig.initialize();
+    }
+
+    @AfterAll
+    static void shutdownDatabase() throws Exception {
+        DatabaseConfig.shutdown();
+        System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+    }
+
+    private static DatabaseResponse write(boolean success, long... ids) {
+        for (long id : ids) {
+            ChangeLog.capture("files", false, COLUMNS, new Object[]{id, "f" + id});
+        }
+        return success ? DatabaseResponse.success() : DatabaseResponse.error("fallo");
+    }
+
+    private static List<Object> ids(ChangeBatch batch) {
+        List<Object> ids = new ArrayList<>();
+        for (ChangeBatch.Change change : batch.getChanges()) {
+            ids.add(change.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testPublishesSuccessfulWritesWithConsecutiveLsns() {
+        ChangeLog log = new ChangeLog(16);
+
+        log.record(() -> write(true, 1, 2));
+        log.record(() -> write(true, 3));
+
+        ChangeBatch batch = log.pull(1, 10);
+        assertEquals(3, log.getHeadLsn());
+        assertEquals(3, batch.getHeadLsn());
+        assertEquals(List.of(1L, 2L, 3L), ids(batch));
+        for (int i = 0; i < batch.getChanges().size(); i++) {
+            assertEquals(i + 1, batch.getChanges().get(i).getLsn());
+        }
+    }
+
+    @Test
+    void testFailedWritesAreNotPublished() {
+        ChangeLog log = new ChangeLog(16);
+
+        DatabaseResponse response = log.record(() -> write(false, 1));
+
+        assertFalse(response.isSuccess());
+        assertEquals(0, log.getHeadLsn());
+        assertTrue(log.pull(1, 10).getChanges().isEmpty());
+    }
+
+    @Test
+    void testPullHonoursMaxAndHeadOnlyRequests() {
+        ChangeLog log = new ChangeLog(16);
+        log.record(() -> write(true, 1, 2, 3, 4));
+
+        assertEquals(List.of(2L, 3L), ids(log.pull(2, 2)));
+        ChangeBatch head = log.pull(0, 0);
+        assertEquals(4, head.getHeadLsn());
+        assertTrue(head.getChanges().isEmpty());
+        assertEquals(log.getLogId(), head.getLogId());
+        assertTrue(log.pull(5, 10).getChanges().isEmpty());
+    }
+
+    @Test
+    void testReportsTruncationWhenReaderFellBehindRing() {
+        ChangeLog log = new ChangeLog(4);
+        for (long id = 1; id <= 6; id++) {
+            long value = id;
+            log.record(() -> write(true, value));
+        }
+
+        assertTrue(log.pull(1, 10).isTruncated());
+        ChangeBatch recent = log.pull(3, 10);
+        assertFalse(recent.isTruncated());
+        assertEquals(List.of(3L, 4L, 5L, 6L), ids(recent));
+    }
+
+    @Test
+    void testTransactionChangesPublishedTogetherOnlyOnCommit() throws Exception {
+        ChangeLog log = new ChangeLog(16);
+
+        List<ChangeBatch.Change> committed = new ArrayList<>();
+        log.recordInto(committed, () -> write(true, 1));
+        log.recordInto(committed, () -> write(false, 99));
+        log.recordInto(committed, () -> write(true, 2));
+        assertEquals(0, log.getHeadLsn());
+        log.commitTransaction(committed, () -> { });
+        assertEquals(List.of(1L, 2L), ids(log.pull(1, 10)));
+
+        List<ChangeBatch.Change> failed = new ArrayList<>();
+        log.recordInto(failed, () -> write(true, 3));
+        assertThrows(SQLException.class, () -> log.commitTransaction(failed, () -> {
+            throw new SQLException("commit fallido");
+        }));
+        assertEquals(2, log.getHeadLsn());
+
+        log.record(() -> write(true, 4));
+        assertEquals(List.of(4L), ids(log.pull(3, 10)));
+    }
+
+    @Test
+    void testOpenTransactionDoesNotBlockOtherWrites() throws Exception {
+        ChangeLog log = new ChangeLog(16);
+
+        List<ChangeBatch.Change> transaction = new ArrayList<>();
+        log.recordInto(transaction, () -> write(true, 1));
+        // Otra escritura mientras la transacción sigue abierta, desde otro hilo
+        Thread writer = new Thread(() -> log.record(() -> write(true, 2)));
+        writer.start();
+        writer.join(5000);
+        assertFalse(writer.isAlive(), "La escritura no debe esperar a la transacción");
+        log.commitTransaction(transaction, () -> { });
+
+        // Los LSN se asignan al confirmar: la transacción va detrás
+        assertEquals(List.of(2L, 1L), ids(log.pull(1, 10)));
+    }
+
+    @Test
+    void testWaitingWriteDoesNotBlockOtherWrites() throws Exception {
+        ChangeLog log = new ChangeLog(16);
+        CountDownLatch waiting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Una escritura que espera, como ante una fila bloqueada
+        Thread blocked = new Thread(() -> log.record(() -> {
+            waiting.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return write(true, 1);
+        }));
+        blocked.start();
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        Thread writer = new Thread(() -> log.record(() -> write(true, 2)));
+        writer.start();
+        writer.join(5000);
+        assertFalse(writer.isAlive(), "La escritura no debe esperar a la que está bloqueada");
+
+        release.countDown();
+        blocked.join(5000);
+        assertEquals(List.of(2L, 1L), ids(log.pull(1, 10)));
+    }
+
+    @Test
+    void testRecordCommitsOnlySuccessfulWrites() throws Exception {
+        ChangeLog log = new ChangeLog(16);
+
+        assertFalse(log.record(() -> insertUser("changelog_failed", false)).isSuccess());
+        assertTrue(log.record(() -> insertUser("changelog_committed", true)).isSuccess());
+
+        assertFalse(userExists("changelog_failed"), "Una escritura fallida se deshace");
+        assertTrue(userExists("changelog_committed"));
+    }
+
+    private static DatabaseResponse insertUser(String username, boolean success) {
+        try (Connection conn = Transaction.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                 "INSERT INTO users (username, password, email) VALUES (?, 'x', ?)")) {
+            assertFalse(conn.getAutoCommit(), "La escritura corre en su propia transacción");
+            stmt.setString(1, username);
+            stmt.setString(2, username + "@test");
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            return DatabaseResponse.error(e.getMessage());
+        }
+        return success ? DatabaseResponse.success() : DatabaseResponse.error("fallo");
+    }
+
+    private static boolean userExists(String username) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM users WHERE username = ?")) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    @Test
+    void testLogIdDiffersBetweenInstances() {
+        assertNotEquals(new ChangeLog(4).getLogId(), new ChangeLog(4).getLogId());
+    }
+}
@@ -0,0 +1,196 @@
+package com.distribuidos.database.replication;
+
+import com.distribuidos.database.DatabaseServer;
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.DatabaseConnectionPool;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replicación de extremo a extremo: un primario en otro proceso (la
+ * configuración de H2 es estática, una base de datos por JVM) y una réplica
+ * en este proceso sobre una base de datos en archivo temporal. Comprueba la
+ * copia inicial y que ReplicaFollower aplica inserciones, actualizaciones y
+ * borrados del registro de cambios.
+ */
+public class ReplicationIntegrationTest {
+
+    private static final int TIMEOUT_MS = 30_000;
+
+    @TempDir
+    static Path tempDir;
+
+    private static Process primaryProcess;
+    private static DatabaseServer replica;
+    private static DatabaseConnectionPool primary;
+    private static DatabaseConnectionPool replicaPool;
+    private static long owner;
+    private static long bootstrappedFile;
+
+    @BeforeAll
+    static void startServers() throws Exception {
+        int primaryPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            primaryPort = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Ddb.role=" + DatabaseServer.ROLE_PRIMARY);
+        command.add(DatabaseServer.class.getName());
+        command.add(String.valueOf(primaryPort));
+        primaryProcess = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(tempDir.resolve("primary.log").toFile())
+            .start();
+        primary = pool(primaryPort);
+        awaitResponse(primary, new DatabaseMessage(DatabaseMessage.PING, null), r -> true);
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", "replication_test");
+        user.put("password", "x");
+        user.put("email", "replication_test@test");
+        owner = (Long) check(primary.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user)))
+            .getData();
+        bootstrappedFile = saveFile("before_replica.dat");
+
+        System.setProperty("db.role", DatabaseServer.ROLE_REPLICA);
+        System.setProperty("db.primary", "localhost:" + primaryPort);
+        System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_FILE);
+        System.setProperty("db.path", tempDir.resolve("replica").toString());
+        replica = new DatabaseServer(0);
+        replica.start();
+        replicaPool = pool(replica.getPort());
+    }
+
+    @AfterAll
+    static void stopServers() throws Exception {
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
+        if (replica != null) {
+            replica.stop();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+        if (primaryProcess != null) {
+            primaryProcess.destroy();
+            primaryProcess.waitFor();
+        }
+        System.clearProperty("db.role");
+        System.clearProperty("db.primary");
+        System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+        System.clearProperty("db.path");
+    }
+
+    @Test
+    void testBootstrapCopiesExistingRows() throws Exception {
+        Map<?, ?> row = awaitFile(bootstrappedFile, DatabaseResponse::isSuccess);
+        assertEquals("before_replica.dat", value(row, "name"));
+    }
+
+    @Test
+    void testAppliesInsertUpdateAndDelete() throws Exception {
+        long fileId = saveFile("after_replica.dat");
+        awaitFile(fileId, DatabaseResponse::isSuccess);
+
+        DatabaseMessage update = new DatabaseMessage(DatabaseMessage.UPDATE, DatabaseMessage.FILE, fileId);
+        Map<String, Object> columns = new LinkedHashMap<>();
+        columns.put("file_size", 4096L);
+        update.setData(columns);
+        check(primary.send(update));
+        awaitFile(fileId, r -> r.isSuccess() && ((Number) value((Map<?, ?>) r.getData(), "file_size")).longValue() == 4096L);
+
+        check(primary.send(new DatabaseMessage(DatabaseMessage.DELETE, DatabaseMessage.FILE, fileId)));
+        awaitFile(fileId, r -> !r.isSuccess() && r.getErrorMessage().contains("no encontrada"));
+    }
+
+    @Test
+    void testReplicaRejectsWrites() throws Exception {
+        Map<String, Object> file = fileRow("rejected.dat");
+
+        DatabaseResponse response = replicaPool.send(new DatabaseMessage(DatabaseMessage.SAVE,
+                                                                        DatabaseMessage.FILE, file));
+
+        assertFalse(response.isSuccess());
+    }
+
+    private static long saveFile(String name) throws Exception {
+        return (Long) check(primary.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                             fileRow(name)))).getData();
+    }
+
+    private static Map<String, Object> fileRow(String name) {
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", name);
+        file.put("file_path", "/test/" + name);
+        file.put("file_size", 1024L);
+        file.put("owner_id", owner);
+        return file;
+    }
+
+    /**
+     * Lee el archivo en la réplica hasta que la respuesta cumple la condición
+     */
+    private static Map<?, ?> awaitFile(long fileId, Predicate<DatabaseResponse> condition) throws Exception {
+        DatabaseResponse response = awaitResponse(replicaPool,
+            new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, fileId), condition);
+        return response.isSuccess() ? (Map<?, ?>) response.getData() : null;
+    }
+
+    private static DatabaseResponse awaitResponse(DatabaseConnectionPool pool, DatabaseMessage message,
+                                                  Predicate<DatabaseResponse> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            try {
+                DatabaseResponse response = pool.send(message);
+                if (condition.test(response)) {
+                    return response;
+                }
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "Sin respuesta esperada para " + message.getOperation());
+            Thread.sleep(50);
+        }
+    }
+
+    private static Object value(Map<?, ?> row, String column) {
+        for (Map.Entry<?, ?> entry : row.entrySet()) {
+            if (column.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static DatabaseConnectionPool pool(int port) {
+        return new DatabaseConnectionPool("localhost", port, new DatabaseConnectionPool.Config()
+            .maxConnections(2)
+            .requestTimeoutMs(TIMEOUT_MS));
+    }
+
+    private static DatabaseResponse check(DatabaseResponse response) {
+        assertTrue(response.isSuccess(), response.getErrorMessage());
+        return response;
+    }
+}
@@ -0,0 +1,390 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.database.config.DatabaseConfig;
+import com.distribuidos.shared.tcp.DatabaseCursor;
+import com.distribuidos.shared.tcp.DatabaseMessage;
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import com.distribuidos.shared.tcp.RowSet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de DatabaseService contra H2 en memoria. Cada prueba escribe con
+ * un propietario propio para no depender de los datos de las demás.
+ */
+class DatabaseServiceTest {
+
+    private static final String FILES_OF_OWNER = "SELECT * FROM files WHERE owner_id = ?";
+    private static final AtomicInteger OWNERS = new AtomicInteger();
+
+    private DatabaseService service;
+    private long ownerId;
+
+    @BeforeAll
+    static void initializeDatabase() throws Exception {
+        System.setProperty(DatabaseConfig.MODE_PROPERTY, DatabaseConfig.MODE_MEMORY);
+        DatabaseConfig.initialize();
+    }
+
+    @AfterAll
+    static void shutdownDatabase() throws Exception {
+        DatabaseConfig.shutdown();
+        System.clearProperty(DatabaseConfig.MODE_PROPERTY);
+    }
+
+    @BeforeEach
+    void setUp() {
+        service = new DatabaseService();
+        String username = "service_test_" + OWNERS.incrementAndGet();
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", username);
+        user.put("password", "x");
+        user.put("email", username + "@test");
+        ownerId = (Long) check(service.save(DatabaseMessage.USER, user)).getData();
+    }
+
+    private static DatabaseResponse check(DatabaseResponse response) {
+        assertTrue(response.isSuccess(), response.getErrorMessage());
+        return response;
+    }
+
+    private Map<String, Object> file(String name) {
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", name);
+        file.put("file_path", "/" + ownerId + "/" + name);
+        file.put("owner_id", ownerId);
+        return file;
+    }
+
+    private long saveFile(String name) {
+        return (Long) check(service.save(DatabaseMessage.FILE, file(name))).getData();
+    }
+
+    private List<Long> saveFiles(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(saveFile("f" + i + ".txt"));
+        }
+        return ids;
+    }
+
+    private DatabaseResponse page(int pageSize, String pageToken) {
+        return service.findPage(DatabaseMessage.FILE, FILES_OF_OWNER, new Object[]{ownerId}, pageSize, pageToken);
+    }
+
+    private static List<Long> ids(DatabaseResponse response) {
+        RowSet rows = (RowSet) response.getData();
+        List<Long> ids = new ArrayList<>();
+        int idColumn = rows.indexOf("ID");
+        for (int i = 0; i < rows.size(); i++) {
+            ids.add(((Number) rows.getValue(i, idColumn)).longValue());
+        }
+        return ids;
+    }
+
+    // ---- Paginación por clave (FIND_PAGE) ----
+
+    @Test
+    void testPagesSplitAtPageSizeInIdOrder() {
+        List<Long> saved = saveFiles(7);
+
+        DatabaseResponse first = check(page(3, null));
+        DatabaseResponse second = check(page(3, first.getNextPageToken()));
+        DatabaseResponse third = check(page(3, second.getNextPageToken()));
+
+        assertEquals(saved.subList(0, 3), ids(first));
+        assertEquals(saved.subList(3, 6), ids(second));
+        assertEquals(saved.subList(6, 7), ids(third));
+        assertTrue(first.hasMorePages());
+        assertTrue(second.hasMorePages());
+        assertFalse(third.hasMorePages());
+    }
+
+    @Test
+    void testExactMultipleDoesNotAskForAnEmptyPage() {
+        List<Long> saved = saveFiles(6);
+
+        DatabaseResponse first = check(page(3, null));
+        DatabaseResponse second = check(page(3, first.getNextPageToken()));
+
+        assertEquals(saved.subList(3, 6), ids(second));
+        assertFalse(second.hasMorePages());
+    }
+
+    @Test
+    void testEmptyListingIsOneEmptyPage() {
+        DatabaseResponse response = check(page(3, null));
+
+        assertTrue(ids(response).isEmpty());
+        assertFalse(response.hasMorePages());
+    }
+
+    @Test
+    void testRowsInsertedOrDeletedBetweenPagesDoNotShiftTheListing() {
+        List<Long> saved = saveFiles(6);
+        DatabaseResponse first = check(page(3, null));
+
+        long added = saveFile("nuevo.txt");
+        check(service.delete(DatabaseMessage.FILE, saved.get(4)));
+        DatabaseResponse second = check(page(3, first.getNextPageToken()));
+
+        // Ni se repiten ni se saltan filas: el token es el último id, no un desplazamiento
+        assertEquals(List.of(saved.get(3), saved.get(5), added), ids(second));
+        assertFalse(second.hasMorePages());
+    }
+
+    @Test
+    void testInvalidTokenAndQueryWithoutIdAreRejected() {
+        assertFalse(page(3, "no-es-un-token").isSuccess());
+        assertFalse(service.findPage(DatabaseMessage.FILE, "SELECT name FROM files WHERE owner_id = ?",
+                                     new Object[]{ownerId}, 3, null).isSuccess());
+    }
+
+    @Test
+    void testCursorWalksEveryPage() {
+        List<Long> saved = saveFiles(10);
+        DatabaseCursor cursor = new DatabaseCursor(
+            message -> CompletableFuture.completedFuture(service.findPage(message.getEntity(), message.getQuery(),
+                message.getParameters(), message.getPageSize(), message.getPageToken())),
+            DatabaseMessage.FILE, FILES_OF_OWNER, new Object[]{ownerId}, 4, 5000);
+
+        List<Long> read = new ArrayList<>();
+        while (cursor.hasNext()) {
+            read.add(((Number) cursor.next().get("ID")).longValue());
+        }
+
+        assertEquals(saved, read);
+        assertEquals(3, cursor.getPagesRead());
+    }
+
+    // ---- Lotes (BATCH) ----
+
+    private static DatabaseMessage op(String operation, String entity, Object data) {
+        return new DatabaseMessage(operation, entity, data);
+    }
+
+    private int countFiles() {
+        return ((RowSet) check(service.findByCriteria(DatabaseMessage.FILE, FILES_OF_OWNER,
+                                                       new Object[]{ownerId})).getData()).size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String fileName(long id) {
+        return (String) ((Map<String, Object>) check(service.findById(DatabaseMessage.FILE, id)).getData()).get("NAME");
+    }
+
+    @Test
+    void testBatchReturnsGeneratedKeysInOperationOrder() {
+        Map<String, Object> rename = new LinkedHashMap<>();
+        rename.put("name", "a2.txt");
+        DatabaseMessage update = op(DatabaseMessage.UPDATE, DatabaseMessage.FILE, rename);
+        long existing = saveFile("a.txt");
+        update.setId(existing);
+        List<DatabaseMessage> operations = List.of(
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("b.txt")),
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("c.txt")),
+            update,
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("d.txt")));
+
+        DatabaseResponse response = check(service.batch(operations));
+
+        RowSet results = (RowSet) response.getData();
+        assertEquals(4, results.size());
+        assertEquals(4, response.getAffectedRows());
+        assertNull(results.getValue(2, 1), "UPDATE no genera id");
+        String[] names = {"b.txt", "c.txt", null, "d.txt"};
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                assertEquals(names[i], fileName((Long) results.getValue(i, 1)));
+            }
+        }
+        assertEquals("a2.txt", fileName(existing));
+    }
+
+    @Test
+    void testFailingStatementRollsBackWholeBatch() {
+        Map<String, Object> orphan = file("huérfano.txt");
+        orphan.put("owner_id", -1L);
+        List<DatabaseMessage> operations = List.of(
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("a.txt")),
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("b.txt")),
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, orphan));
+
+        DatabaseResponse response = service.batch(operations);
+
+        assertFalse(response.isSuccess());
+        assertTrue(response.getErrorMessage().contains("no se aplicó ninguna operación"), response.getErrorMessage());
+        assertTrue(response.getErrorMessage().contains("operación 2"), response.getErrorMessage());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testInvalidOperationRejectsBatchBeforeExecuting() {
+        List<DatabaseMessage> operations = List.of(
+            op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("a.txt")),
+            op(DatabaseMessage.FIND_ALL, DatabaseMessage.FILE, null));
+
+        assertFalse(service.batch(operations).isSuccess());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testFailedBatchInTransactionRollsBackOnlyToItsSavepoint() throws Exception {
+        Map<String, Object> orphan = file("huérfano.txt");
+        orphan.put("owner_id", -1L);
+        Transaction transaction = new Transaction();
+        try {
+            transaction.run(() -> check(service.save(DatabaseMessage.FILE, file("antes.txt"))));
+            DatabaseResponse failed = transaction.run(() -> service.batch(List.of(
+                op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("a.txt")),
+                op(DatabaseMessage.SAVE, DatabaseMessage.FILE, orphan))));
+            assertFalse(failed.isSuccess());
+            transaction.run(() -> check(service.batch(List.of(
+                op(DatabaseMessage.SAVE, DatabaseMessage.FILE, file("b.txt"))))));
+
+            // El lote confirmado dentro de la transacción aún no se ve desde fuera
+            assertEquals(0, countFiles());
+            transaction.commit();
+        } finally {
+            transaction.rollback();
+        }
+
+        List<String> names = new ArrayList<>();
+        RowSet rows = (RowSet) check(page(10, null)).getData();
+        for (Map<String, Object> row : rows) {
+            names.add((String) row.get("NAME"));
+        }
+        assertEquals(List.of("antes.txt", "b.txt"), names);
+    }
+
+    // ---- Escrituras (SAVE, UPDATE, UPSERT) ----
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> fileRow(long id) {
+        return (Map<String, Object>) check(service.findById(DatabaseMessage.FILE, id)).getData();
+    }
+
+    @Test
+    void testSaveOmitsMissingColumnsSoDefaultsApply() {
+        Map<String, Object> explicitNull = file("nulo.txt");
+        explicitNull.put("checksum", null);
+
+        Map<String, Object> row = fileRow(saveFile("a.txt"));
+        Map<String, Object> nullRow = fileRow((Long) check(service.save(DatabaseMessage.FILE, explicitNull)).getData());
+
+        assertNotNull(row.get("CREATED_AT"));
+        assertNotNull(row.get("UPDATED_AT"));
+        assertNull(row.get("MIME_TYPE"));
+        assertNull(nullRow.get("CHECKSUM"));
+        assertNotNull(nullRow.get("CREATED_AT"));
+    }
+
+    @Test
+    void testSaveWithExistingNaturalKeyFailsInsteadOfUpdating() {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", "service_test_" + OWNERS.get());
+        user.put("password", "y");
+        user.put("email", "otro@test");
+
+        assertFalse(service.save(DatabaseMessage.USER, user).isSuccess());
+    }
+
+    @Test
+    void testUpsertInsertsLikeSaveWhenNoRowMatches() {
+        Map<String, Object> data = file("a.txt");
+        data.put("mime_type", "text/plain");
+
+        long id = (Long) check(service.upsert(DatabaseMessage.FILE, data)).getData();
+
+        Map<String, Object> row = fileRow(id);
+        assertEquals("a.txt", row.get("NAME"));
+        assertEquals("text/plain", row.get("MIME_TYPE"));
+        assertNull(row.get("CHECKSUM"));
+        assertNotNull(row.get("CREATED_AT"));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testUpsertByNaturalKeyUpdatesOnlyTheGivenColumns() {
+        Map<String, Object> original = file("a.txt");
+        original.put("mime_type", "text/plain");
+        original.put("checksum", "abc");
+        long id = (Long) check(service.save(DatabaseMessage.FILE, original)).getData();
+        Object createdAt = fileRow(id).get("CREATED_AT");
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("file_path", "/" + ownerId + "/a.txt");
+        changes.put("name", "renombrado.txt");
+        changes.put("owner_id", ownerId);
+        changes.put("checksum", null);
+        DatabaseResponse response = check(service.upsert(DatabaseMessage.FILE, changes));
+
+        // Misma fila: el id de la respuesta es el existente y no se crea otra
+        assertEquals(id, response.getData());
+        assertEquals(1, countFiles());
+        Map<String, Object> row = fileRow(id);
+        assertEquals("renombrado.txt", row.get("NAME"));
+        assertEquals("text/plain", row.get("MIME_TYPE"), "Las columnas omitidas no se tocan");
+        assertNull(row.get("CHECKSUM"), "Un null explícito se escribe como NULL");
+        assertEquals(createdAt, row.get("CREATED_AT"));
+    }
+
+    @Test
+    void testUpsertByIdUpdatesExistingRow() {
+        long id = saveFile("a.txt");
+        Map<String, Object> changes = file("b.txt");
+        changes.put("id", id);
+
+        assertEquals(id, check(service.upsert(DatabaseMessage.FILE, changes)).getData());
+
+        assertEquals("b.txt", fileRow(id).get("NAME"));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testUpsertWithoutIdOrNaturalKeyIsRejected() {
+        Map<String, Object> data = file("a.txt");
+        data.remove("file_path");
+
+        assertFalse(service.upsert(DatabaseMessage.FILE, data).isSuccess());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void testUpdateChangesGivenColumnsAndClearsExplicitNulls() {
+        Map<String, Object> original = file("a.txt");
+        original.put("mime_type", "text/plain");
+        original.put("checksum", "abc");
+        long id = (Long) check(service.save(DatabaseMessage.FILE, original)).getData();
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("name", "b.txt");
+        changes.put("checksum", null);
+        assertEquals(1, check(service.update(DatabaseMessage.FILE, id, changes)).getAffectedRows());
+
+        Map<String, Object> row = fileRow(id);
+        assertEquals("b.txt", row.get("NAME"));
+        assertEquals("text/plain", row.get("MIME_TYPE"));
+        assertNull(row.get("CHECKSUM"));
+    }
+
+    @Test
+    void testUpdateOfMissingRowFails() {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("name", "b.txt");
+
+        assertFalse(service.update(DatabaseMessage.FILE, -1L, changes).isSuccess());
+        assertFalse(service.update(DatabaseMessage.FILE, changes).isSuccess(), "Sin id no hay fila que actualizar");
+    }
+}
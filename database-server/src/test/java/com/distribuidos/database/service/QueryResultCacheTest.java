@@ -0,0 +1,159 @@
+package com.distribuidos.database.service;
+
+import com.distribuidos.shared.tcp.DatabaseResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias de la caché de resultados de consultas
+ */
+public class QueryResultCacheTest {
+
+    private static final long TTL_MS = 60_000;
+
+    /**
+     * Cargador que cuenta sus llamadas y devuelve un texto distinto en cada una
+     */
+    private static final class CountingLoader implements QueryResultCache.Loader {
+        final AtomicInteger loads = new AtomicInteger();
+        final String prefix;
+        Runnable duringLoad = () -> { };
+
+        CountingLoader(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public DatabaseResponse load() {
+            duringLoad.run();
+            return DatabaseResponse.success(prefix + loads.incrementAndGet());
+        }
+    }
+
+    @Test
+    void testHitAfterMissAndTableInvalidation() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, TTL_MS);
+        CountingLoader loader = new CountingLoader("files-");
+
+        assertEquals("files-1", cache.get("all", loader, "files").getData());
+        assertEquals("files-1", cache.get("all", loader, "FILES").getData());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.invalidateTable("Files");
+        assertEquals("files-2", cache.get("all", loader, "files").getData());
+    }
+
+    @Test
+    void testRowWriteEvictsOnlyThatRowAndListings() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, TTL_MS);
+        CountingLoader row1 = new CountingLoader("row1-");
+        CountingLoader row2 = new CountingLoader("row2-");
+        CountingLoader listing = new CountingLoader("list-");
+        cache.getRow("files", 1, row1);
+        cache.getRow("files", 2, row2);
+        cache.get("all", listing, "files");
+
+        cache.invalidateRow("files", 1);
+
+        assertEquals("row1-2", cache.getRow("files", 1, row1).getData());
+        assertEquals("row2-1", cache.getRow("files", 2, row2).getData());
+        assertEquals("list-2", cache.get("all", listing, "files").getData());
+
+        cache.invalidateTable("files");
+        assertEquals("row2-2", cache.getRow("files", 2, row2).getData());
+    }
+
+    @Test
+    void testResultLoadedDuringTableWriteIsNotCached() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, TTL_MS);
+        CountingLoader loader = new CountingLoader("files-");
+        // La escritura se confirma mientras la carga lee el estado anterior
+        loader.duringLoad = () -> {
+            if (loader.loads.get() == 0) {
+                cache.invalidateTable("files");
+            }
+        };
+
+        assertEquals("files-1", cache.get("all", loader, "files").getData());
+        assertEquals(0, cache.size());
+        assertEquals("files-2", cache.get("all", loader, "files").getData());
+        assertEquals("files-2", cache.get("all", loader, "files").getData());
+        assertEquals(2, loader.loads.get());
+    }
+
+    @Test
+    void testResultLoadedDuringInvalidateAllIsNotCached() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, TTL_MS);
+        CountingLoader loader = new CountingLoader("files-");
+        loader.duringLoad = () -> {
+            if (loader.loads.get() == 0) {
+                cache.invalidateAll();
+            }
+        };
+
+        cache.get("all", loader, "files");
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals("files-2", cache.get("all", loader, "files").getData());
+    }
+
+    @Test
+    void testFailedLoadsAreNotCached() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, TTL_MS);
+        AtomicInteger loads = new AtomicInteger();
+        QueryResultCache.Loader failing = () -> {
+            loads.incrementAndGet();
+            return DatabaseResponse.error("fallo");
+        };
+
+        assertFalse(cache.get("all", failing, "files").isSuccess());
+        assertFalse(cache.get("all", failing, "files").isSuccess());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedWithinByteBound() {
+        // Cada texto de 100 caracteres pesa 248 bytes: caben 4 en 1000
+        QueryResultCache cache = new QueryResultCache(1000, TTL_MS);
+        String value = "x".repeat(100);
+        for (int i = 1; i <= 4; i++) {
+            cache.get("k" + i, () -> DatabaseResponse.success(value), "files");
+        }
+        assertEquals(4, cache.size());
+
+        // k1 pasa a ser la más reciente, así que se expulsa k2
+        cache.get("k1", () -> DatabaseResponse.success("otro"), "files");
+        cache.get("k5", () -> DatabaseResponse.success(value), "files");
+
+        assertEquals(4, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getUsedBytes() <= 1000);
+        assertEquals(value, cache.get("k1", () -> DatabaseResponse.success("otro"), "files").getData());
+        assertEquals("recargado", cache.get("k2", () -> DatabaseResponse.success("recargado"), "files").getData());
+    }
+
+    @Test
+    void testOversizedResultIsNotCached() {
+        QueryResultCache cache = new QueryResultCache(1000, TTL_MS);
+
+        cache.get("big", () -> DatabaseResponse.success("x".repeat(200)), "files");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() {
+        QueryResultCache cache = new QueryResultCache(1 << 20, 0);
+        CountingLoader loader = new CountingLoader("files-");
+
+        cache.get("all", loader, "files");
+        cache.get("all", loader, "files");
+
+        assertEquals(2, loader.loads.get());
+    }
+}
@@ -0,0 +1,246 @@
+package com.distribuidos.shared.dataplane;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cliente del plano de datos de un nodo de almacenamiento.
+ * Mantiene un pequeño conjunto de conexiones reutilizables hacia el nodo.
+ * Las conexiones ociosas se descartan antes de que el nodo las cierre por
+ * inactividad, y cada lectura o escritura falla si el nodo deja de avanzar
+ * durante más del tiempo máximo configurado.
+ */
+public class DataPlaneClient implements Closeable {
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final InetSocketAddress address;
+    private final int readTimeoutMs;
+    private final long maxIdleMs;
+    private final Queue<IdleConnection> idleConnections = new ConcurrentLinkedQueue<>();
+
+    public DataPlaneClient(String host, int port) {
+        this(host, port, DataPlaneProtocol.getReadTimeoutMs(), DataPlaneProtocol.getIdleTimeoutMs());
+    }
+
+    /**
+     * @param readTimeoutMs tiempo máximo sin avance dentro de una solicitud
+     * @param serverIdleTimeoutMs tiempo tras el que el nodo cierra una conexión ociosa;
+     *                            el cliente deja de reutilizarlas a la mitad de ese tiempo
+     */
+    public DataPlaneClient(String host, int port, int readTimeoutMs, int serverIdleTimeoutMs) {
+        this.address = new InetSocketAddress(host, port);
+        this.readTimeoutMs = readTimeoutMs;
+        this.maxIdleMs = serverIdleTimeoutMs / 2;
+    }
+
+    /**
+     * Conexión devuelta al pool y el momento en que se devolvió
+     */
+    private static final class IdleConnection {
+        final TimedChannel channel;
+        final long releasedAt = System.currentTimeMillis();
+
+        IdleConnection(TimedChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Envía un archivo desde memoria
+     * @return Ruta local donde el nodo guardó el archivo
+     */
+    public String storeFile(Long fileId, String fileName, byte[] data, String checksum) throws IOException {
+        return execute(channel -> {
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_PUT, fileId, fileName, checksum, data.length),
+                ByteBuffer.wrap(data));
+            return new String(readResponse(channel, DataPlaneProtocol.MAX_MESSAGE_LENGTH), StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Envía un archivo desde disco con transferTo, sin cargarlo en memoria
+     * @return Ruta local donde el nodo guardó el archivo
+     */
+    public String storeFile(Long fileId, String fileName, Path source, String checksum) throws IOException {
+        return execute(channel -> {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = in.size();
+                DataPlaneProtocol.writeFully(channel,
+                    DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_PUT, fileId, fileName, checksum, size));
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferFrom(in, position, size - position);
+                }
+            }
+            return new String(readResponse(channel, DataPlaneProtocol.MAX_MESSAGE_LENGTH), StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Recupera un archivo completo en memoria
+     */
+    public byte[] retrieveFile(Long fileId) throws IOException {
+        return execute(channel -> {
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_GET, fileId, null, null, 0));
+            return readResponse(channel, DataPlaneProtocol.getMaxInMemoryLength());
+        });
+    }
+
+    /**
+     * Recupera un archivo directamente a disco usando un buffer directo
+     * @return Número de bytes recibidos
+     */
+    public long retrieveFile(Long fileId, Path target) throws IOException {
+        return execute(channel -> {
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_GET, fileId, null, null, 0));
+            long length = readResponseHeader(channel);
+
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(DataPlaneProtocol.TRANSFER_BUFFER_SIZE);
+                long remaining = length;
+                while (remaining > 0) {
+                    buffer.clear();
+                    if (remaining < buffer.capacity()) {
+                        buffer.limit((int) remaining);
+                    }
+                    int read = channel.read(buffer);
+                    if (read < 0) {
+                        throw new IOException("Conexión cerrada durante la transferencia");
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    remaining -= read;
+                }
+            }
+            return length;
+        });
+    }
+
+    @FunctionalInterface
+    private interface ChannelCall<T> {
+        T run(TimedChannel channel) throws IOException;
+    }
+
+    /**
+     * Ejecuta una solicitud sobre una conexión del pool. Tras un error de
+     * aplicación la conexión sigue sincronizada y se devuelve al pool;
+     * tras un error de E/S se descarta.
+     */
+    private <T> T execute(ChannelCall<T> call) throws IOException {
+        TimedChannel channel = borrow();
+        try {
+            T result = call.run(channel);
+            release(channel);
+            return result;
+        } catch (DataPlaneException e) {
+            release(channel);
+            throw e;
+        } catch (IOException e) {
+            discard(channel);
+            throw e;
+        }
+    }
+
+    private byte[] readResponse(TimedChannel channel, long maxLength) throws IOException {
+        int length = DataPlaneProtocol.checkLength(readResponseHeader(channel), maxLength, "respuesta");
+        return DataPlaneProtocol.readFully(channel, ByteBuffer.allocate(length)).array();
+    }
+
+    /**
+     * Lee la cabecera de respuesta; en caso de error consume el mensaje y lanza excepción
+     * @return Longitud del payload
+     */
+    private long readResponseHeader(TimedChannel channel) throws IOException {
+        ByteBuffer header = DataPlaneProtocol.readFully(channel,
+            ByteBuffer.allocate(DataPlaneProtocol.RESPONSE_HEADER_SIZE));
+        byte status = header.get();
+        long length = header.getLong();
+        if (length < 0) {
+            throw new IOException("Longitud de respuesta negativa: " + length);
+        }
+
+        if (status != DataPlaneProtocol.STATUS_OK) {
+            int messageLength = DataPlaneProtocol.checkLength(length, DataPlaneProtocol.MAX_MESSAGE_LENGTH, "mensaje de error");
+            byte[] message = DataPlaneProtocol.readFully(channel, ByteBuffer.allocate(messageLength)).array();
+            throw new DataPlaneException(new String(message, StandardCharsets.UTF_8));
+        }
+        return length;
+    }
+
+    private TimedChannel borrow() throws IOException {
+        long now = System.currentTimeMillis();
+        IdleConnection idle;
+        while ((idle = idleConnections.poll()) != null) {
+            if (idle.channel.isOpen() && now - idle.releasedAt < maxIdleMs) {
+                return idle.channel;
+            }
+            discard(idle.channel);
+        }
+
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, DataPlaneProtocol.SOCKET_BUFFER_SIZE);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, DataPlaneProtocol.SOCKET_BUFFER_SIZE);
+            channel.socket().connect(address, CONNECT_TIMEOUT_MS);
+            return new TimedChannel(channel, readTimeoutMs);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void release(TimedChannel channel) {
+        if (idleConnections.size() < MAX_IDLE_CONNECTIONS && channel.isOpen()) {
+            idleConnections.offer(new IdleConnection(channel));
+        } else {
+            discard(channel);
+        }
+    }
+
+    private void discard(TimedChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Conexión ya inutilizable
+        }
+    }
+
+    @Override
+    public void close() {
+        IdleConnection idle;
+        while ((idle = idleConnections.poll()) != null) {
+            discard(idle.channel);
+        }
+    }
+
+    /**
+     * Error reportado por el nodo (archivo inexistente, checksum inválido, etc.)
+     */
+    public static class DataPlaneException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public DataPlaneException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.distribuidos.shared.dataplane;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Almacén local que el servidor del plano de datos usa para leer y escribir archivos.
+ * Lo implementa el servicio de almacenamiento de cada nodo.
+ */
+public interface DataPlaneFileStore {
+
+    /**
+     * Ubica el archivo físico de un ID para enviarlo
+     * @throws IOException si el archivo no existe
+     */
+    Path locateFile(Long fileId) throws IOException;
+
+    /**
+     * Crea un archivo temporal donde recibir los bytes de una escritura
+     */
+    Path createTempFile(Long fileId) throws IOException;
+
+    /**
+     * Confirma un archivo recibido y actualiza índice y metadatos
+     * @return Ruta local definitiva del archivo
+     */
+    String commitFile(Long fileId, String fileName, Path tempFile, long size, String checksum) throws IOException;
+}
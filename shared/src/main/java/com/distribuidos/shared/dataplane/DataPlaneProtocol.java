@@ -0,0 +1,146 @@
+package com.distribuidos.shared.dataplane;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocolo binario del plano de datos entre clientes y nodos de almacenamiento.
+ *
+ * Solicitud: [magic:int][op:byte][fileId:long][nameLen:short][name][checksumLen:short][checksum][length:long][payload]
+ * Respuesta: [status:byte][length:long][payload]
+ *
+ * En PUT el payload son los bytes del archivo y la respuesta trae la ruta local.
+ * En GET la solicitud no lleva payload y la respuesta trae los bytes del archivo.
+ * En errores la respuesta trae el mensaje en UTF-8.
+ */
+public final class DataPlaneProtocol {
+
+    public static final int MAGIC = 0x44504C31; // "DPL1"
+
+    public static final byte OP_PUT = 1;
+    public static final byte OP_GET = 2;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    /** Desplazamiento del puerto de datos respecto al puerto RMI del nodo */
+    public static final int DEFAULT_PORT_OFFSET = 1000;
+
+    public static final int RESPONSE_HEADER_SIZE = 1 + 8;
+    public static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+    public static final int SOCKET_BUFFER_SIZE = 1024 * 1024;
+
+    /** Tiempo máximo sin avance dentro de una solicitud en curso */
+    public static final int DEFAULT_READ_TIMEOUT_MS = 30_000;
+    public static final String READ_TIMEOUT_PROPERTY = "dataplane.read.timeout.ms";
+
+    /** Tiempo que una conexión persistente puede quedar sin solicitudes */
+    public static final int DEFAULT_IDLE_TIMEOUT_MS = 60_000;
+    public static final String IDLE_TIMEOUT_PROPERTY = "dataplane.idle.timeout.ms";
+
+    /** Longitud máxima de las respuestas de texto (rutas y mensajes de error) */
+    public static final int MAX_MESSAGE_LENGTH = 64 * 1024;
+
+    /** Longitud máxima de un archivo recibido en memoria */
+    public static final long DEFAULT_MAX_IN_MEMORY_LENGTH = 512L * 1024 * 1024;
+    public static final String MAX_IN_MEMORY_PROPERTY = "dataplane.max.memory.bytes";
+
+    private DataPlaneProtocol() {
+    }
+
+    public static int getReadTimeoutMs() {
+        return Integer.getInteger(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    public static int getIdleTimeoutMs() {
+        return Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    public static long getMaxInMemoryLength() {
+        // Un arreglo de Java no admite más de Integer.MAX_VALUE - 8 elementos
+        return Math.min(Long.getLong(MAX_IN_MEMORY_PROPERTY, DEFAULT_MAX_IN_MEMORY_LENGTH), Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Valida una longitud recibida antes de reservar memoria para ella
+     * @throws IOException si es negativa o supera el máximo
+     */
+    public static int checkLength(long length, long max, String what) throws IOException {
+        if (length < 0 || length > max) {
+            throw new IOException("Longitud de " + what + " inválida: " + length + " bytes (máximo " + max + ")");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Codifica la cabecera de una solicitud
+     */
+    public static ByteBuffer encodeRequestHeader(byte op, Long fileId, String fileName,
+                                                 String checksum, long payloadLength) {
+        byte[] name = fileName != null ? fileName.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] sum = checksum != null ? checksum.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        ByteBuffer header = ByteBuffer.allocate(4 + 1 + 8 + 2 + name.length + 2 + sum.length + 8);
+        header.putInt(MAGIC);
+        header.put(op);
+        header.putLong(fileId);
+        header.putShort((short) name.length);
+        header.put(name);
+        header.putShort((short) sum.length);
+        header.put(sum);
+        header.putLong(payloadLength);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Codifica la cabecera de una respuesta
+     */
+    public static ByteBuffer encodeResponseHeader(byte status, long payloadLength) {
+        ByteBuffer header = ByteBuffer.allocate(RESPONSE_HEADER_SIZE);
+        header.put(status);
+        header.putLong(payloadLength);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Lee una cadena precedida por su longitud (short)
+     */
+    public static String readString(ReadableByteChannel channel) throws IOException {
+        ByteBuffer lengthBuffer = readFully(channel, ByteBuffer.allocate(2));
+        int length = lengthBuffer.getShort() & 0xFFFF;
+        if (length == 0) {
+            return null;
+        }
+        ByteBuffer value = readFully(channel, ByteBuffer.allocate(length));
+        return new String(value.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Llena el buffer desde el canal y lo deja listo para lectura
+     */
+    public static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Conexión cerrada por el extremo remoto");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Escribe todos los buffers en el canal
+     */
+    public static void writeFully(WritableByteChannel channel, ByteBuffer... buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.distribuidos.shared.dataplane;
+
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor NIO del plano de datos de un nodo de almacenamiento.
+ *
+ * Atiende transferencias de bytes de archivos fuera de RMI: los envíos usan
+ * {@link FileChannel#transferTo} (zero-copy desde el page cache al socket) y
+ * las recepciones leen en buffers directos que se escriben al disco sin pasar
+ * por el heap. Cada conexión puede reutilizarse para varias solicitudes.
+ *
+ * Cada conexión ocupa un hilo del pool mientras está abierta, así que las
+ * conexiones persistentes sin solicitudes se cierran tras el tiempo de
+ * inactividad, y una solicitud cuyo cliente deja de enviar o de leer se
+ * aborta tras el tiempo máximo de lectura.
+ */
+public class DataPlaneServer implements Closeable {
+
+    private static final int MAX_CONNECTIONS = 32;
+
+    private static final ThreadLocal<ByteBuffer> RECEIVE_BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DataPlaneProtocol.TRANSFER_BUFFER_SIZE));
+
+    private final int port;
+    private final DataPlaneFileStore fileStore;
+    private final ExecutorService connectionPool;
+    private final int readTimeoutMs;
+    private final int idleTimeoutMs;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile boolean running = false;
+
+    // Estadísticas
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong requestsServed = new AtomicLong();
+    private final AtomicLong idleConnectionsClosed = new AtomicLong();
+
+    public DataPlaneServer(int port, DataPlaneFileStore fileStore) {
+        this(port, fileStore, DataPlaneProtocol.getReadTimeoutMs(), DataPlaneProtocol.getIdleTimeoutMs());
+    }
+
+    /**
+     * @param readTimeoutMs tiempo máximo sin avance dentro de una solicitud
+     * @param idleTimeoutMs tiempo que una conexión puede esperar la siguiente solicitud
+     */
+    public DataPlaneServer(int port, DataPlaneFileStore fileStore, int readTimeoutMs, int idleTimeoutMs) {
+        this.port = port;
+        this.fileStore = fileStore;
+        this.readTimeoutMs = readTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.connectionPool = ExecutorFactory.newBlockingExecutor("dataplane-" + port, MAX_CONNECTIONS, true);
+    }
+
+    /**
+     * Abre el puerto y comienza a aceptar conexiones en un hilo propio
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, DataPlaneProtocol.SOCKET_BUFFER_SIZE);
+        serverChannel.bind(new InetSocketAddress(port));
+        running = true;
+
+        Thread acceptor = new Thread(this::acceptLoop, "dataplane-acceptor-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        System.out.println("🚚 Plano de datos escuchando en puerto " + getPort());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel client = serverChannel.accept();
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                client.setOption(StandardSocketOptions.SO_SNDBUF, DataPlaneProtocol.SOCKET_BUFFER_SIZE);
+                connectionPool.submit(() -> handleConnection(client));
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("❌ Error aceptando conexión de datos: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleConnection(SocketChannel client) {
+        try (TimedChannel channel = new TimedChannel(client, idleTimeoutMs)) {
+            while (running) {
+                ByteBuffer header;
+                channel.setTimeout(idleTimeoutMs);
+                try {
+                    header = DataPlaneProtocol.readFully(channel, ByteBuffer.allocate(4 + 1 + 8));
+                } catch (EOFException e) {
+                    return; // El cliente cerró la conexión entre solicitudes
+                } catch (SocketTimeoutException e) {
+                    idleConnectionsClosed.incrementAndGet();
+                    return; // Conexión persistente sin uso: se libera el hilo
+                }
+                channel.setTimeout(readTimeoutMs);
+
+                if (header.getInt() != DataPlaneProtocol.MAGIC) {
+                    System.err.println("❌ Trama de datos inválida, cerrando conexión");
+                    return;
+                }
+                byte op = header.get();
+                long fileId = header.getLong();
+                String fileName = DataPlaneProtocol.readString(channel);
+                String checksum = DataPlaneProtocol.readString(channel);
+                long length = DataPlaneProtocol.readFully(channel, ByteBuffer.allocate(8)).getLong();
+                if (length < 0) {
+                    sendError(channel, "Longitud de payload inválida: " + length);
+                    return;
+                }
+
+                switch (op) {
+                    case DataPlaneProtocol.OP_PUT:
+                        handlePut(channel, fileId, fileName, checksum, length);
+                        break;
+                    case DataPlaneProtocol.OP_GET:
+                        handleGet(channel, fileId);
+                        break;
+                    default:
+                        sendError(channel, "Operación desconocida: " + op);
+                        return;
+                }
+                requestsServed.incrementAndGet();
+            }
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("⚠️ Conexión de datos interrumpida: " + e.getMessage());
+            }
+            try {
+                client.close();
+            } catch (IOException closeError) {
+                // Conexión ya inutilizable
+            }
+        }
+    }
+
+    /**
+     * Recibe un archivo en un buffer directo y lo escribe a disco verificando el checksum
+     */
+    private void handlePut(TimedChannel channel, long fileId, String fileName, String checksum,
+                           long length) throws IOException {
+        Path tempFile = fileStore.createTempFile(fileId);
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = RECEIVE_BUFFER.get();
+
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("Conexión cerrada durante la transferencia");
+                }
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        bytesReceived.addAndGet(length);
+
+        if (checksum != null && !checksum.equals(toHex(digest.digest()))) {
+            Files.deleteIfExists(tempFile);
+            sendError(channel, "Checksum no coincide para archivo " + fileId);
+            return;
+        }
+
+        try {
+            String localPath = fileStore.commitFile(fileId, fileName, tempFile, length, checksum);
+            byte[] body = localPath.getBytes(StandardCharsets.UTF_8);
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeResponseHeader(DataPlaneProtocol.STATUS_OK, body.length),
+                ByteBuffer.wrap(body));
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            sendError(channel, "Error guardando archivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envía un archivo con transferTo, sin copiarlo al heap
+     */
+    private void handleGet(TimedChannel channel, long fileId) throws IOException {
+        Path path;
+        try {
+            path = fileStore.locateFile(fileId);
+        } catch (IOException e) {
+            sendError(channel, e.getMessage());
+            return;
+        }
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = in.size();
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeResponseHeader(DataPlaneProtocol.STATUS_OK, size));
+
+            long position = 0;
+            while (position < size) {
+                position += channel.transferFrom(in, position, size - position);
+            }
+            bytesSent.addAndGet(size);
+        }
+    }
+
+    private void sendError(TimedChannel channel, String message) throws IOException {
+        byte[] body = (message != null ? message : "Error desconocido").getBytes(StandardCharsets.UTF_8);
+        DataPlaneProtocol.writeFully(channel,
+            DataPlaneProtocol.encodeResponseHeader(DataPlaneProtocol.STATUS_ERROR, body.length),
+            ByteBuffer.wrap(body));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Puerto efectivo (útil cuando se inicia con puerto 0)
+     */
+    public int getPort() {
+        try {
+            ServerSocketChannel channel = serverChannel;
+            if (channel != null) {
+                return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            }
+        } catch (IOException e) {
+            // Se informa el puerto configurado
+        }
+        return port;
+    }
+
+    public long getBytesReceived() { return bytesReceived.get(); }
+    public long getBytesSent() { return bytesSent.get(); }
+    public long getRequestsServed() { return requestsServed.get(); }
+    public long getIdleConnectionsClosed() { return idleConnectionsClosed.get(); }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        connectionPool.shutdownNow();
+    }
+}
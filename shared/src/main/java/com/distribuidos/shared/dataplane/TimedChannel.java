@@ -0,0 +1,122 @@
+package com.distribuidos.shared.dataplane;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Canal de socket con tiempo máximo de espera en lecturas y escrituras.
+ *
+ * Un SocketChannel bloqueante ignora SO_TIMEOUT, así que el socket se deja
+ * en modo no bloqueante y cada espera pasa por un Selector propio. Se
+ * conservan los buffers directos y el transferTo zero-copy: solo cambia
+ * cómo se espera cuando el socket no tiene datos o no admite más bytes.
+ * El tiempo cuenta desde el último avance, no desde el inicio de la
+ * transferencia, de modo que los archivos grandes no lo agotan.
+ */
+final class TimedChannel implements ByteChannel {
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private volatile int timeoutMs;
+
+    TimedChannel(SocketChannel channel, int timeoutMs) throws IOException {
+        this.channel = channel;
+        this.timeoutMs = timeoutMs;
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        try {
+            this.key = channel.register(selector, 0);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cambia el tiempo máximo de espera de las operaciones siguientes
+     */
+    void setTimeout(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Lee al menos un byte, o devuelve -1 si el extremo remoto cerró
+     * @throws SocketTimeoutException si no llegan datos dentro del tiempo máximo
+     */
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        int read;
+        while ((read = channel.read(buffer)) == 0 && buffer.hasRemaining()) {
+            await(SelectionKey.OP_READ);
+        }
+        return read;
+    }
+
+    /**
+     * Escribe al menos un byte
+     * @throws SocketTimeoutException si el socket no admite datos dentro del tiempo máximo
+     */
+    @Override
+    public int write(ByteBuffer buffer) throws IOException {
+        int written;
+        while ((written = channel.write(buffer)) == 0 && buffer.hasRemaining()) {
+            await(SelectionKey.OP_WRITE);
+        }
+        return written;
+    }
+
+    /**
+     * Envía una porción del archivo con transferTo
+     * @return Bytes enviados (al menos uno si count es positivo)
+     */
+    long transferFrom(FileChannel source, long position, long count) throws IOException {
+        long sent;
+        while ((sent = source.transferTo(position, count, channel)) == 0 && count > 0) {
+            await(SelectionKey.OP_WRITE);
+        }
+        return sent;
+    }
+
+    private void await(int operation) throws IOException {
+        key.interestOps(operation);
+        try {
+            int ready = selector.select(timeoutMs);
+            selector.selectedKeys().clear();
+            if (ready == 0) {
+                if (!channel.isOpen()) {
+                    throw new IOException("Conexión cerrada");
+                }
+                throw new SocketTimeoutException("Sin actividad en la conexión de datos durante " + timeoutMs + " ms");
+            }
+        } finally {
+            if (key.isValid()) {
+                key.interestOps(0);
+            }
+        }
+    }
+
+    SocketChannel socket() {
+        return channel;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.distribuidos.shared.dto;
+
+import com.distribuidos.shared.model.File;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resultado de RESOLVE_FILE: el archivo y dónde está cada una de sus réplicas,
+ * todo lo necesario para descargarlo o eliminarlo con una sola consulta de metadatos
+ */
+public class ResolvedFile implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private File file;
+    private List<ReplicaLocation> replicas = new ArrayList<>();
+
+    /**
+     * Réplica de un archivo en un nodo de almacenamiento
+     */
+    public static class ReplicaLocation implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String nodeId;
+        private String localPath;
+        private String status;
+
+        public ReplicaLocation() {}
+
+        public ReplicaLocation(String nodeId, String localPath, String status) {
+            this.nodeId = nodeId;
+            this.localPath = localPath;
+            this.status = status;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public String getLocalPath() {
+            return localPath;
+        }
+
+        public void setLocalPath(String localPath) {
+            this.localPath = localPath;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        @Override
+        public String toString() {
+            return nodeId + ":" + localPath;
+        }
+    }
+
+    public ResolvedFile() {}
+
+    public ResolvedFile(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    public List<ReplicaLocation> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<ReplicaLocation> replicas) {
+        this.replicas = replicas;
+    }
+
+    @Override
+    public String toString() {
+        return "ResolvedFile{" +
+                "fileId=" + (file != null ? file.getId() : null) +
+                ", replicas=" + replicas +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.distribuidos.shared.model;
 
 import javax.persistence.*;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -9,7 +10,8 @@ import java.util.List;
  */
 @Entity
 @Table(name = "files")
-public class File {
+public class File implements Serializable {
+    private static final long serialVersionUID = 1L;
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
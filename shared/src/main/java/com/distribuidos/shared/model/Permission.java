@@ -1,6 +1,7 @@
 package com.distribuidos.shared.model;
 
 import javax.persistence.*;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 /**
@@ -8,7 +9,8 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "permissions")
-public class Permission {
+public class Permission implements Serializable {
+    private static final long serialVersionUID = 1L;
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
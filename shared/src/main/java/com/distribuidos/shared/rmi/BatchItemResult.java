@@ -0,0 +1,44 @@
+package com.distribuidos.shared.rmi;
+
+import java.io.Serializable;
+
+/**
+ * Resultado individual de un elemento en una operación por lotes.
+ * Un fallo en un elemento no afecta al resto del lote.
+ *
+ * @param <T> Tipo del valor devuelto (ruta local, datos, resultado booleano)
+ */
+public class BatchItemResult<T extends Serializable> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Long fileId;
+    private final boolean success;
+    private final T value;
+    private final String errorMessage;
+
+    private BatchItemResult(Long fileId, boolean success, T value, String errorMessage) {
+        this.fileId = fileId;
+        this.success = success;
+        this.value = value;
+        this.errorMessage = errorMessage;
+    }
+
+    public static <T extends Serializable> BatchItemResult<T> success(Long fileId, T value) {
+        return new BatchItemResult<>(fileId, true, value, null);
+    }
+
+    public static <T extends Serializable> BatchItemResult<T> failure(Long fileId, String errorMessage) {
+        return new BatchItemResult<>(fileId, false, null, errorMessage);
+    }
+
+    public Long getFileId() { return fileId; }
+    public boolean isSuccess() { return success; }
+    public T getValue() { return value; }
+    public String getErrorMessage() { return errorMessage; }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{fileId=" + fileId + ", success=" + success +
+               (errorMessage != null ? ", error='" + errorMessage + '\'' : "") + '}';
+    }
+}
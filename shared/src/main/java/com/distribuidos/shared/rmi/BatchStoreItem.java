@@ -0,0 +1,27 @@
+package com.distribuidos.shared.rmi;
+
+import java.io.Serializable;
+
+/**
+ * Archivo a almacenar dentro de una operación por lotes
+ */
+public class BatchStoreItem implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Long fileId;
+    private final String fileName;
+    private final byte[] fileData;
+    private final String checksum;
+
+    public BatchStoreItem(Long fileId, String fileName, byte[] fileData, String checksum) {
+        this.fileId = fileId;
+        this.fileName = fileName;
+        this.fileData = fileData;
+        this.checksum = checksum;
+    }
+
+    public Long getFileId() { return fileId; }
+    public String getFileName() { return fileName; }
+    public byte[] getFileData() { return fileData; }
+    public String getChecksum() { return checksum; }
+}
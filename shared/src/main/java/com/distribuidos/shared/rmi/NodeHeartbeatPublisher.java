@@ -0,0 +1,147 @@
+package com.distribuidos.shared.rmi;
+
+import java.rmi.NoSuchObjectException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica el registro y los heartbeats de un nodo en el servidor de aplicación.
+ *
+ * El nodo empuja periódicamente su {@link NodeInfo} (capacidad, archivos,
+ * estado) y el servidor mantiene la tabla de membresía sin tener que consultar
+ * a cada nodo antes de decidir dónde colocar un archivo. Si el servidor no está
+ * disponible o reinicia y olvida al nodo, el siguiente ciclo vuelve a registrarlo.
+ *
+ * El nombre del servicio RMI del nodo se usa como identificador de registro,
+ * ya que es el nombre con el que el servidor lo busca en el registry.
+ */
+public class NodeHeartbeatPublisher {
+
+    public static final String APPLICATION_SERVER_NAME = "ApplicationServer";
+    public static final int DEFAULT_APPLICATION_SERVER_PORT = 1098;
+    public static final long DEFAULT_INTERVAL_SECONDS = 10;
+
+    private final String serviceName;
+    private final String storagePath;
+    private final Callable<NodeInfo> nodeInfoSupplier;
+    private final String serverHost;
+    private final int serverPort;
+    private final long intervalSeconds;
+    private final RemoteStubCache stubCache = RemoteStubCache.getDefault();
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean registered = false;
+
+    /**
+     * Publicador configurado con las propiedades del sistema
+     * appserver.host, appserver.rmi.port y node.heartbeat.interval.seconds
+     */
+    public NodeHeartbeatPublisher(String serviceName, String storagePath, Callable<NodeInfo> nodeInfoSupplier) {
+        this(serviceName, storagePath, nodeInfoSupplier,
+             System.getProperty("appserver.host", "localhost"),
+             Integer.getInteger("appserver.rmi.port", DEFAULT_APPLICATION_SERVER_PORT),
+             Long.getLong("node.heartbeat.interval.seconds", DEFAULT_INTERVAL_SECONDS));
+    }
+
+    public NodeHeartbeatPublisher(String serviceName, String storagePath, Callable<NodeInfo> nodeInfoSupplier,
+                                  String serverHost, int serverPort, long intervalSeconds) {
+        this.serviceName = serviceName;
+        this.storagePath = storagePath;
+        this.nodeInfoSupplier = nodeInfoSupplier;
+        this.serverHost = serverHost;
+        this.serverPort = serverPort;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * Registra el nodo de inmediato y programa los heartbeats
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heartbeat-" + serviceName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::publish, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Detiene los heartbeats y desregistra el nodo para que el servidor deje
+     * de considerarlo sin esperar a que expire
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+
+        if (registered) {
+            try {
+                lookupServer().unregisterNode(serviceName);
+                System.out.println("👋 " + serviceName + " desregistrado del servidor de aplicación");
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudo desregistrar " + serviceName + ": " + e.getMessage());
+            }
+            registered = false;
+        }
+    }
+
+    /**
+     * Un ciclo de publicación: registro si hace falta y heartbeat con métricas
+     */
+    void publish() {
+        try {
+            NodeInfo nodeInfo = nodeInfoSupplier.call();
+            ApplicationServerInterface server = lookupServer();
+
+            if (!registered) {
+                register(server, nodeInfo);
+            }
+            if (registered && !server.updateNodeHeartbeat(serviceName, nodeInfo)) {
+                // El servidor no conoce al nodo (p.ej. se reinició): registrarse de nuevo
+                registered = false;
+                register(server, nodeInfo);
+            }
+        } catch (Exception e) {
+            if (registered) {
+                System.err.println("💔 Heartbeat de " + serviceName + " fallido: " + e.getMessage());
+            }
+            registered = false;
+            if (e instanceof NoSuchObjectException) {
+                stubCache.invalidate(serverHost, serverPort, APPLICATION_SERVER_NAME);
+            }
+        }
+    }
+
+    private void register(ApplicationServerInterface server, NodeInfo nodeInfo) throws Exception {
+        registered = server.registerNode(serviceName, nodeInfo.getHostname(), nodeInfo.getPort(),
+                                         storagePath, nodeInfo.getTotalCapacity())
+                     && server.updateNodeHeartbeat(serviceName, nodeInfo);
+        if (registered) {
+            System.out.println("📝 " + serviceName + " registrado en el servidor de aplicación " +
+                             serverHost + ":" + serverPort);
+        }
+    }
+
+    private ApplicationServerInterface lookupServer() throws Exception {
+        return stubCache.lookup(serverHost, serverPort, APPLICATION_SERVER_NAME, ApplicationServerInterface.class);
+    }
+
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    public String getServerAddress() {
+        return serverHost + ":" + serverPort;
+    }
+
+    public long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+}
@@ -9,14 +9,17 @@ public class NodeInfo implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private String nodeId;
+    private String serviceName;
     private String hostname;
     private Integer port;
+    private Integer dataPort;
     private Long totalCapacity;
     private Long usedCapacity;
     private Long availableCapacity;
     private double usagePercentage;
     private String status;
     private int activeConnections;
+    private int storedFiles;
     private long uptime;
     
     // Constructors
@@ -43,6 +46,17 @@ public class NodeInfo implements Serializable {
         this.nodeId = nodeId;
     }
     
+    /**
+     * Nombre con el que el nodo está publicado en su registry RMI
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+    
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+    
     public String getHostname() {
         return hostname;
     }
@@ -59,6 +73,14 @@ public class NodeInfo implements Serializable {
         this.port = port;
     }
     
+    public Integer getDataPort() {
+        return dataPort;
+    }
+    
+    public void setDataPort(Integer dataPort) {
+        this.dataPort = dataPort;
+    }
+    
     public Long getTotalCapacity() {
         return totalCapacity;
     }
@@ -109,6 +131,14 @@ public class NodeInfo implements Serializable {
         this.activeConnections = activeConnections;
     }
     
+    public int getStoredFiles() {
+        return storedFiles;
+    }
+    
+    public void setStoredFiles(int storedFiles) {
+        this.storedFiles = storedFiles;
+    }
+    
     public long getUptime() {
         return uptime;
     }
@@ -156,6 +186,7 @@ public class NodeInfo implements Serializable {
     public String toString() {
         return "NodeInfo{" +
                 "nodeId='" + nodeId + '\'' +
+                ", serviceName='" + serviceName + '\'' +
                 ", hostname='" + hostname + '\'' +
                 ", port=" + port +
                 ", totalCapacity=" + formatBytes(totalCapacity) +
@@ -164,6 +195,7 @@ public class NodeInfo implements Serializable {
                 ", usagePercentage=" + String.format("%.2f%%", usagePercentage) +
                 ", status='" + status + '\'' +
                 ", activeConnections=" + activeConnections +
+                ", storedFiles=" + storedFiles +
                 ", uptime=" + uptime +
                 '}';
     }
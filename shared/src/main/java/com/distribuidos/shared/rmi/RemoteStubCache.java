@@ -0,0 +1,148 @@
+package com.distribuidos.shared.rmi;
+
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché compartida de stubs RMI.
+ *
+ * Evita repetir la búsqueda en el registry en cada llamada o tras cada error
+ * transitorio: un stub sigue siendo válido mientras el objeto remoto exista,
+ * y el runtime de RMI se reconecta por sí solo. Un hilo en segundo plano
+ * vuelve a resolver las entradas periódicamente para detectar nodos
+ * reiniciados fuera del camino crítico de las operaciones.
+ */
+public class RemoteStubCache {
+
+    public static final long DEFAULT_REFRESH_INTERVAL_SECONDS = 30;
+
+    /** Tiempo que RMI conserva conexiones ociosas para reutilizarlas */
+    private static final String CONNECTION_REUSE_PROPERTY = "sun.rmi.transport.connectionTimeout";
+    private static final String CONNECTION_REUSE_MILLIS = "60000";
+
+    private static volatile RemoteStubCache defaultInstance;
+
+    private final Map<String, Entry> stubs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    // Estadísticas
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    private static class Entry {
+        final String host;
+        final int port;
+        final String name;
+        final Remote stub;
+
+        Entry(String host, int port, String name, Remote stub) {
+            this.host = host;
+            this.port = port;
+            this.name = name;
+            this.stub = stub;
+        }
+    }
+
+    public RemoteStubCache(long refreshIntervalSeconds) {
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rmi-stub-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshAll,
+            refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Instancia compartida por todos los servicios de la JVM
+     */
+    public static RemoteStubCache getDefault() {
+        if (defaultInstance == null) {
+            synchronized (RemoteStubCache.class) {
+                if (defaultInstance == null) {
+                    if (System.getProperty(CONNECTION_REUSE_PROPERTY) == null) {
+                        System.setProperty(CONNECTION_REUSE_PROPERTY, CONNECTION_REUSE_MILLIS);
+                    }
+                    defaultInstance = new RemoteStubCache(DEFAULT_REFRESH_INTERVAL_SECONDS);
+                }
+            }
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Obtiene un stub de la caché o lo busca en el registry del host
+     */
+    public <T extends Remote> T lookup(String host, int port, String name, Class<T> type)
+            throws RemoteException, NotBoundException {
+        String key = key(host, port, name);
+        Entry entry = stubs.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return type.cast(entry.stub);
+        }
+
+        Remote stub = resolve(host, port, name);
+        stubs.put(key, new Entry(host, port, name, stub));
+        return type.cast(stub);
+    }
+
+    /**
+     * Descarta un stub (p.ej. tras NoSuchObjectException porque el nodo se reinició)
+     */
+    public void invalidate(String host, int port, String name) {
+        stubs.remove(key(host, port, name));
+    }
+
+    private Remote resolve(String host, int port, String name) throws RemoteException, NotBoundException {
+        lookups.incrementAndGet();
+        Registry registry = LocateRegistry.getRegistry(host, port);
+        return registry.lookup(name);
+    }
+
+    /**
+     * Vuelve a resolver todas las entradas; las que fallan se eliminan para
+     * que la próxima llamada intente de nuevo
+     */
+    private void refreshAll() {
+        for (Map.Entry<String, Entry> cached : stubs.entrySet()) {
+            Entry entry = cached.getValue();
+            try {
+                Remote stub = resolve(entry.host, entry.port, entry.name);
+                if (!stub.equals(entry.stub)) {
+                    stubs.put(cached.getKey(), new Entry(entry.host, entry.port, entry.name, stub));
+                }
+            } catch (Exception e) {
+                refreshFailures.incrementAndGet();
+                stubs.remove(cached.getKey(), entry);
+            }
+        }
+    }
+
+    private static String key(String host, int port, String name) {
+        return host + ":" + port + "/" + name;
+    }
+
+    public int size() { return stubs.size(); }
+    public long getHitCount() { return hits.get(); }
+    public long getLookupCount() { return lookups.get(); }
+    public long getRefreshFailureCount() { return refreshFailures.get(); }
+
+    public void clear() {
+        stubs.clear();
+    }
+
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+}
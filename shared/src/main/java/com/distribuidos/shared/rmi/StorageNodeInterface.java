@@ -2,6 +2,8 @@ package com.distribuidos.shared.rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaz RMI para operaciones de archivos en nodos de almacenamiento
@@ -67,4 +69,36 @@ public interface StorageNodeInterface extends Remote {
      * @throws RemoteException Si hay error en la comunicación remota
      */
     Long[] getStoredFiles() throws RemoteException;
+    
+    /**
+     * Almacena varios archivos en una sola llamada
+     * @param items Archivos a almacenar
+     * @return Resultado por archivo (ruta local si tuvo éxito), en el mismo orden
+     * @throws RemoteException Si hay error en la comunicación remota
+     */
+    List<BatchItemResult<String>> storeFiles(List<BatchStoreItem> items) throws RemoteException;
+    
+    /**
+     * Recupera varios archivos en una sola llamada
+     * @param fileIds IDs de los archivos
+     * @return Resultado por archivo con sus datos, en el mismo orden
+     * @throws RemoteException Si hay error en la comunicación remota
+     */
+    List<BatchItemResult<byte[]>> retrieveFiles(List<Long> fileIds) throws RemoteException;
+    
+    /**
+     * Elimina varios archivos en una sola llamada
+     * @param fileIds IDs de los archivos
+     * @return Resultado por archivo (true si se eliminó), en el mismo orden
+     * @throws RemoteException Si hay error en la comunicación remota
+     */
+    List<BatchItemResult<Boolean>> deleteFiles(List<Long> fileIds) throws RemoteException;
+    
+    /**
+     * Verifica la integridad de varios archivos en una sola llamada
+     * @param expectedChecksums Checksum esperado por ID de archivo
+     * @return Resultado por archivo (true si es íntegro)
+     * @throws RemoteException Si hay error en la comunicación remota
+     */
+    List<BatchItemResult<Boolean>> verifyFiles(Map<Long, String> expectedChecksums) throws RemoteException;
 }
\ No newline at end of file
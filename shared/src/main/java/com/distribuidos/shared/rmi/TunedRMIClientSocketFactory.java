@@ -0,0 +1,102 @@
+package com.distribuidos.shared.rmi;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fábrica de sockets cliente para RMI con opciones TCP ajustadas.
+ *
+ * Viaja dentro de los stubs exportados por los nodos. Las instancias con la
+ * misma configuración son iguales ({@link #equals}), lo que permite al runtime
+ * de RMI reutilizar las conexiones abiertas hacia un mismo endpoint en lugar
+ * de abrir un socket por stub.
+ *
+ * Los sockets tienen un tiempo máximo de lectura (SO_TIMEOUT): si un nodo
+ * deja de responder a mitad de una llamada, el hilo que la hizo recibe una
+ * excepción en lugar de quedar bloqueado indefinidamente. El valor lo fija
+ * quien exporta el objeto y cada cliente puede reemplazarlo con la propiedad
+ * {@value #READ_TIMEOUT_PROPERTY}; debe superar la llamada más larga
+ * esperada (p. ej. un lote grande).
+ */
+public class TunedRMIClientSocketFactory implements RMIClientSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 3000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 60_000;
+    public static final String READ_TIMEOUT_PROPERTY = "rmi.client.read.timeout.ms";
+
+    private static final AtomicLong socketsCreated = new AtomicLong();
+
+    private final int bufferSize;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public TunedRMIClientSocketFactory() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    public TunedRMIClientSocketFactory(int bufferSize, int connectTimeoutMillis) {
+        this(bufferSize, connectTimeoutMillis, DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    /**
+     * @param readTimeoutMillis espera máxima de cada lectura, 0 para ilimitada
+     */
+    public TunedRMIClientSocketFactory(int bufferSize, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.bufferSize = bufferSize;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSendBufferSize(bufferSize);
+            socket.setReceiveBufferSize(bufferSize);
+            socket.setSoTimeout(getReadTimeoutMillis());
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        socketsCreated.incrementAndGet();
+        return socket;
+    }
+
+    /**
+     * Tiempo máximo de lectura efectivo en esta JVM: la propiedad del cliente o el del exportador
+     */
+    public int getReadTimeoutMillis() {
+        return Integer.getInteger(READ_TIMEOUT_PROPERTY, readTimeoutMillis);
+    }
+
+    /**
+     * Sockets abiertos por esta JVM con fábricas ajustadas (medida de churn de conexiones)
+     */
+    public static long getSocketsCreated() {
+        return socketsCreated.get();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TunedRMIClientSocketFactory that = (TunedRMIClientSocketFactory) o;
+        return bufferSize == that.bufferSize && connectTimeoutMillis == that.connectTimeoutMillis &&
+               readTimeoutMillis == that.readTimeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * bufferSize + connectTimeoutMillis) + readTimeoutMillis;
+    }
+}
@@ -0,0 +1,55 @@
+package com.distribuidos.shared.rmi;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.rmi.server.RMIServerSocketFactory;
+
+/**
+ * Fábrica de sockets servidor para RMI con buffers de recepción ampliados.
+ * El buffer se fija antes de bind para que se aplique a la ventana TCP de
+ * las conexiones aceptadas.
+ */
+public class TunedRMIServerSocketFactory implements RMIServerSocketFactory {
+
+    private static final int DEFAULT_BACKLOG = 128;
+
+    private final int receiveBufferSize;
+    private final int backlog;
+
+    public TunedRMIServerSocketFactory() {
+        this(TunedRMIClientSocketFactory.DEFAULT_BUFFER_SIZE, DEFAULT_BACKLOG);
+    }
+
+    public TunedRMIServerSocketFactory(int receiveBufferSize, int backlog) {
+        this.receiveBufferSize = receiveBufferSize;
+        this.backlog = backlog;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket();
+        try {
+            serverSocket.setReuseAddress(true);
+            serverSocket.setReceiveBufferSize(receiveBufferSize);
+            serverSocket.bind(new InetSocketAddress(port), backlog);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        return serverSocket;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TunedRMIServerSocketFactory that = (TunedRMIServerSocketFactory) o;
+        return receiveBufferSize == that.receiveBufferSize && backlog == that.backlog;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * receiveBufferSize + backlog;
+    }
+}
@@ -0,0 +1,696 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación binaria compacta de {@link DatabaseMessage} y {@link DatabaseResponse}.
+ *
+ * Cada trama empieza con [magic 0xDB][versión][tipo]; un flujo de Java
+ * serialization empieza con 0xACED, de modo que el servidor distingue ambos
+ * formatos trama a trama. Los valores llevan una etiqueta de tipo y los
+ * enteros se escriben como varints. Los {@link RowSet} y las listas de filas
+ * homogéneas (List&lt;Map&lt;String,Object&gt;&gt;) se codifican como row set: nombres
+ * y tipos de columna una sola vez, y por fila un mapa de nulos y los valores
+ * sin etiqueta. Al decodificar se obtiene siempre un {@link RowSet}.
+ * Los tipos no reconocidos viajan con Java serialization dentro del valor.
+ *
+ * Versiones: 1 = formato inicial; 2 = añade el requestId tras la cabecera
+ * para multiplexar peticiones en una conexión; 3 = añade los campos de
+ * paginación por clave; 4 = los mensajes anidados (operaciones de un BATCH)
+ * se codifican en binario en lugar de con Java serialization.
+ */
+public final class BinaryWireCodec {
+
+    public static final byte MAGIC = (byte) 0xDB;
+    public static final int VERSION = 4;
+
+    public static final byte KIND_HELLO = 1;
+    public static final byte KIND_REQUEST = 2;
+    public static final byte KIND_RESPONSE = 3;
+
+    // Etiquetas de tipo
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_LONG = 2;
+    private static final byte T_INT = 3;
+    private static final byte T_DOUBLE = 4;
+    private static final byte T_BOOLEAN = 5;
+    private static final byte T_TIMESTAMP = 6;
+    private static final byte T_DATE = 7;
+    private static final byte T_DECIMAL = 8;
+    private static final byte T_BYTES = 9;
+    private static final byte T_LIST = 10;
+    private static final byte T_ARRAY = 11;
+    private static final byte T_MAP = 12;
+    private static final byte T_ROWSET = 13;
+    private static final byte T_SERIALIZED = 14;
+    /** Solo en columnas de row set: cada valor lleva su propia etiqueta */
+    private static final byte T_ANY = 15;
+    /** DatabaseMessage anidado, desde la versión 4 */
+    private static final byte T_MESSAGE = 16;
+
+    private BinaryWireCodec() {
+    }
+
+    /**
+     * Indica si el contenido de una trama usa este protocolo
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length >= 3 && payload[0] == MAGIC;
+    }
+
+    public static byte kindOf(byte[] payload) {
+        return payload[2];
+    }
+
+    public static int versionOf(byte[] payload) {
+        return payload[1] & 0xFF;
+    }
+
+    /**
+     * Saludo de negociación; la respuesta lleva la versión aceptada
+     */
+    public static byte[] encodeHello(int version) {
+        return new byte[]{MAGIC, (byte) version, KIND_HELLO};
+    }
+
+    /**
+     * Negocia el protocolo al abrir una conexión.
+     * Un servidor que solo entiende Java serialization responde con un error
+     * serializado, y en ese caso se sigue usando Java serialization.
+     *
+     * @return versión binaria aceptada por el servidor, o 0 para Java serialization
+     */
+    public static int negotiate(DataOutputStream out, DataInputStream in) throws IOException {
+        FrameCodec.writeRawFrame(out, encodeHello(VERSION));
+        byte[] reply = FrameCodec.readRawFrame(in);
+        if (isBinary(reply) && kindOf(reply) == KIND_HELLO) {
+            return Math.min(versionOf(reply), VERSION);
+        }
+        return 0;
+    }
+
+    /**
+     * Envía un mensaje y lee su respuesta en el formato negociado
+     *
+     * @param wireVersion versión binaria negociada, o 0 para Java serialization
+     */
+    public static DatabaseResponse exchange(DataOutputStream out, DataInputStream in,
+                                            DatabaseMessage message, int wireVersion)
+            throws IOException, ClassNotFoundException {
+        if (wireVersion == 0) {
+            FrameCodec.writeFrame(out, message);
+            return (DatabaseResponse) FrameCodec.readFrame(in);
+        }
+        FrameCodec.writeRawFrame(out, encodeRequest(message, wireVersion));
+        return decodeResponse(FrameCodec.readRawFrame(in));
+    }
+
+    public static byte[] encodeRequest(DatabaseMessage message) {
+        return encodeRequest(message, VERSION);
+    }
+
+    public static byte[] encodeRequest(DatabaseMessage message, int version) {
+        Output out = new Output(256, KIND_REQUEST, version);
+        writeRequest(out, message);
+        return out.toByteArray();
+    }
+
+    private static void writeRequest(Output out, DatabaseMessage message) {
+        if (out.version >= 2) {
+            out.writeVarLong(message.getRequestId());
+        }
+        out.writeNullableString(message.getOperation());
+        out.writeNullableString(message.getEntity());
+        out.writeValue(message.getData());
+        out.writeNullableLong(message.getId());
+        out.writeNullableString(message.getQuery());
+        out.writeValue(message.getParameters());
+        out.writeBoolean(message.isSuccess());
+        out.writeNullableString(message.getErrorMessage());
+        if (out.version >= 3) {
+            out.writeVarLong(message.getPageSize());
+            out.writeNullableString(message.getPageToken());
+        }
+    }
+
+    /**
+     * Lee solo el requestId de una petición (0 en la versión 1)
+     */
+    public static long peekRequestId(byte[] payload) throws IOException {
+        Input in = new Input(payload, KIND_REQUEST);
+        try {
+            return in.version >= 2 ? in.readVarLong() : 0;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Petición binaria corrupta", e);
+        }
+    }
+
+    public static DatabaseMessage decodeRequest(byte[] payload) throws IOException {
+        Input in = new Input(payload, KIND_REQUEST);
+        try {
+            return readRequest(in);
+        } catch (BufferUnderflowException | ClassCastException e) {
+            throw new IOException("Petición binaria corrupta", e);
+        }
+    }
+
+    private static DatabaseMessage readRequest(Input in) throws IOException {
+        DatabaseMessage message = new DatabaseMessage();
+        if (in.version >= 2) {
+            message.setRequestId(in.readVarLong());
+        }
+        message.setOperation(in.readNullableString());
+        message.setEntity(in.readNullableString());
+        message.setData(in.readValue());
+        message.setId(in.readNullableLong());
+        message.setQuery(in.readNullableString());
+        Object parameters = in.readValue();
+        message.setParameters((Object[]) parameters);
+        message.setSuccess(in.readBoolean());
+        message.setErrorMessage(in.readNullableString());
+        if (in.version >= 3) {
+            message.setPageSize((int) in.readVarLong());
+            message.setPageToken(in.readNullableString());
+        }
+        return message;
+    }
+
+    public static byte[] encodeResponse(DatabaseResponse response) {
+        return encodeResponse(response, VERSION);
+    }
+
+    /**
+     * Codifica una respuesta en la versión usada por la petición
+     */
+    public static byte[] encodeResponse(DatabaseResponse response, int version) {
+        Output out = new Output(256, KIND_RESPONSE, version);
+        if (version >= 2) {
+            out.writeVarLong(response.getRequestId());
+        }
+        out.writeBoolean(response.isSuccess());
+        out.writeValue(response.getData());
+        out.writeNullableString(response.getErrorMessage());
+        out.writeVarLong(response.getAffectedRows());
+        out.writeNullableString(response.getOperationType());
+        if (version >= 3) {
+            out.writeNullableString(response.getNextPageToken());
+        }
+        return out.toByteArray();
+    }
+
+    public static DatabaseResponse decodeResponse(byte[] payload) throws IOException {
+        Input in = new Input(payload, KIND_RESPONSE);
+        try {
+            DatabaseResponse response = new DatabaseResponse();
+            if (in.version >= 2) {
+                response.setRequestId(in.readVarLong());
+            }
+            response.setSuccess(in.readBoolean());
+            response.setData(in.readValue());
+            response.setErrorMessage(in.readNullableString());
+            response.setAffectedRows((int) in.readVarLong());
+            response.setOperationType(in.readNullableString());
+            if (in.version >= 3) {
+                response.setNextPageToken(in.readNullableString());
+            }
+            return response;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Respuesta binaria corrupta", e);
+        }
+    }
+
+    /**
+     * Buffer de escritura con crecimiento automático
+     */
+    private static final class Output {
+        private final int version;
+        private byte[] buffer;
+        private int position;
+
+        Output(int initialCapacity, byte kind, int version) {
+            this.version = version;
+            this.buffer = new byte[initialCapacity];
+            writeByte(MAGIC);
+            writeByte((byte) version);
+            writeByte(kind);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+
+        void writeByte(byte value) {
+            ensure(1);
+            buffer[position++] = value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? (byte) 1 : (byte) 0);
+        }
+
+        void writeVarLong(long value) {
+            // Zigzag para que los negativos pequeños también ocupen poco
+            long v = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[position++] = (byte) v;
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            ensure(8);
+            for (int i = 7; i >= 0; i--) {
+                buffer[position++] = (byte) (bits >>> (i * 8));
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeNullableString(String value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeString(value);
+            }
+        }
+
+        void writeNullableLong(Long value) {
+            writeBoolean(value != null);
+            if (value != null) {
+                writeVarLong(value);
+            }
+        }
+
+        void writeValue(Object value) {
+            byte tag = simpleTag(value);
+            if (tag != T_SERIALIZED || value == null) {
+                writeByte(tag);
+                writeRaw(tag, value);
+                return;
+            }
+            if (value instanceof RowSet) {
+                RowSet rowSet = (RowSet) value;
+                writeByte(T_ROWSET);
+                writeRowSet(rowSet.getColumns(), rowSet.size(), (r, c) -> rowSet.getRowValues(r)[c]);
+            } else if (value instanceof List && isRowSet((List<?>) value)) {
+                List<?> rows = (List<?>) value;
+                String[] columns = ((Map<?, ?>) rows.get(0)).keySet().toArray(new String[0]);
+                writeByte(T_ROWSET);
+                writeRowSet(columns, rows.size(), (r, c) -> ((Map<?, ?>) rows.get(r)).get(columns[c]));
+            } else if (value instanceof Collection) {
+                writeByte(T_LIST);
+                Collection<?> items = (Collection<?>) value;
+                writeVarLong(items.size());
+                for (Object item : items) {
+                    writeValue(item);
+                }
+            } else if (value instanceof Object[]) {
+                writeByte(T_ARRAY);
+                Object[] items = (Object[]) value;
+                writeVarLong(items.length);
+                for (Object item : items) {
+                    writeValue(item);
+                }
+            } else if (value instanceof DatabaseMessage && version >= 4) {
+                writeByte(T_MESSAGE);
+                writeRequest(this, (DatabaseMessage) value);
+            } else if (value instanceof Map && hasStringKeys((Map<?, ?>) value)) {
+                writeByte(T_MAP);
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString((String) entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                writeByte(T_SERIALIZED);
+                try {
+                    writeBytes(FrameCodec.serialize(value));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Valor no serializable: " + value.getClass().getName(), e);
+                }
+            }
+        }
+
+        /**
+         * Escribe un valor de tipo simple sin etiqueta
+         */
+        void writeRaw(byte tag, Object value) {
+            switch (tag) {
+                case T_NULL:
+                    break;
+                case T_STRING:
+                    writeString((String) value);
+                    break;
+                case T_LONG:
+                    writeVarLong((Long) value);
+                    break;
+                case T_INT:
+                    writeVarLong((Integer) value);
+                    break;
+                case T_DOUBLE:
+                    writeDouble((Double) value);
+                    break;
+                case T_BOOLEAN:
+                    writeBoolean((Boolean) value);
+                    break;
+                case T_TIMESTAMP:
+                    Timestamp timestamp = (Timestamp) value;
+                    writeVarLong(timestamp.getTime());
+                    writeVarLong(timestamp.getNanos());
+                    break;
+                case T_DATE:
+                    writeVarLong(((Date) value).getTime());
+                    break;
+                case T_DECIMAL:
+                    writeString(((BigDecimal) value).toString());
+                    break;
+                case T_BYTES:
+                    writeBytes((byte[]) value);
+                    break;
+                default:
+                    writeValue(value);
+            }
+        }
+
+        private void writeRowSet(String[] columns, int rowCount, CellReader cells) {
+            byte[] types = new byte[columns.length];
+
+            // Tipo de cada columna: el de sus valores no nulos si todos coinciden
+            Arrays.fill(types, T_NULL);
+            for (int r = 0; r < rowCount; r++) {
+                for (int c = 0; c < columns.length; c++) {
+                    if (types[c] == T_ANY) {
+                        continue;
+                    }
+                    Object value = cells.get(r, c);
+                    if (value == null) {
+                        continue;
+                    }
+                    byte tag = simpleTag(value);
+                    if (tag == T_SERIALIZED) {
+                        types[c] = T_ANY;
+                    } else if (types[c] == T_NULL) {
+                        types[c] = tag;
+                    } else if (types[c] != tag) {
+                        types[c] = T_ANY;
+                    }
+                }
+            }
+
+            writeVarLong(columns.length);
+            for (int c = 0; c < columns.length; c++) {
+                writeString(columns[c]);
+                writeByte(types[c]);
+            }
+
+            writeVarLong(rowCount);
+            byte[] nullMask = new byte[(columns.length + 7) / 8];
+            for (int r = 0; r < rowCount; r++) {
+                Arrays.fill(nullMask, (byte) 0);
+                for (int c = 0; c < columns.length; c++) {
+                    if (cells.get(r, c) == null) {
+                        nullMask[c >> 3] |= (byte) (1 << (c & 7));
+                    }
+                }
+                ensure(nullMask.length);
+                System.arraycopy(nullMask, 0, buffer, position, nullMask.length);
+                position += nullMask.length;
+
+                for (int c = 0; c < columns.length; c++) {
+                    Object value = cells.get(r, c);
+                    if (value != null) {
+                        writeRaw(types[c], value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Acceso a la celda (fila, columna) de un row set
+     */
+    private interface CellReader {
+        Object get(int row, int column);
+    }
+
+    /**
+     * Etiqueta de un valor de tipo simple, o T_SERIALIZED si es compuesto o desconocido
+     */
+    private static byte simpleTag(Object value) {
+        if (value == null) return T_NULL;
+        if (value instanceof String) return T_STRING;
+        if (value instanceof Long) return T_LONG;
+        if (value instanceof Integer) return T_INT;
+        if (value instanceof Double) return T_DOUBLE;
+        if (value instanceof Boolean) return T_BOOLEAN;
+        if (value instanceof Timestamp) return T_TIMESTAMP;
+        if (value.getClass() == Date.class) return T_DATE;
+        if (value instanceof BigDecimal) return T_DECIMAL;
+        if (value instanceof byte[]) return T_BYTES;
+        return T_SERIALIZED;
+    }
+
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Una lista es row set si todas sus filas son mapas con las mismas claves de texto
+     */
+    private static boolean isRowSet(List<?> rows) {
+        if (rows.isEmpty() || !(rows.get(0) instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> first = (Map<?, ?>) rows.get(0);
+        if (first.isEmpty() || !hasStringKeys(first)) {
+            return false;
+        }
+        for (Object row : rows) {
+            if (!(row instanceof Map)) {
+                return false;
+            }
+            Map<?, ?> values = (Map<?, ?>) row;
+            if (values.size() != first.size() || !values.keySet().containsAll(first.keySet())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lector sobre el contenido de una trama
+     */
+    private static final class Input {
+        private final ByteBuffer buffer;
+        private final int version;
+
+        Input(byte[] payload, byte expectedKind) throws IOException {
+            if (!isBinary(payload)) {
+                throw new IOException("La trama no usa el protocolo binario");
+            }
+            if (versionOf(payload) > VERSION) {
+                throw new IOException("Versión de protocolo no soportada: " + versionOf(payload));
+            }
+            if (kindOf(payload) != expectedKind) {
+                throw new IOException("Tipo de trama inesperado: " + kindOf(payload));
+            }
+            this.version = versionOf(payload);
+            this.buffer = ByteBuffer.wrap(payload, 3, payload.length - 3);
+        }
+
+        boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (result >>> 1) ^ -(result & 1);
+        }
+
+        double readDouble() {
+            return buffer.getDouble();
+        }
+
+        byte[] readBytes() {
+            byte[] bytes = new byte[(int) readVarLong()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                                      StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        String readNullableString() {
+            return readBoolean() ? readString() : null;
+        }
+
+        Long readNullableLong() {
+            return readBoolean() ? readVarLong() : null;
+        }
+
+        Object readValue() throws IOException {
+            return readRaw(buffer.get());
+        }
+
+        Object readRaw(byte tag) throws IOException {
+            switch (tag) {
+                case T_NULL:
+                    return null;
+                case T_STRING:
+                    return readString();
+                case T_LONG:
+                    return readVarLong();
+                case T_INT:
+                    return (int) readVarLong();
+                case T_DOUBLE:
+                    return readDouble();
+                case T_BOOLEAN:
+                    return readBoolean();
+                case T_TIMESTAMP:
+                    Timestamp timestamp = new Timestamp(readVarLong());
+                    timestamp.setNanos((int) readVarLong());
+                    return timestamp;
+                case T_DATE:
+                    return new Date(readVarLong());
+                case T_DECIMAL:
+                    return new BigDecimal(readString());
+                case T_BYTES:
+                    return readBytes();
+                case T_LIST: {
+                    int size = (int) readVarLong();
+                    List<Object> items = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        items.add(readValue());
+                    }
+                    return items;
+                }
+                case T_ARRAY: {
+                    Object[] items = new Object[(int) readVarLong()];
+                    for (int i = 0; i < items.length; i++) {
+                        items[i] = readValue();
+                    }
+                    return items;
+                }
+                case T_MAP: {
+                    int size = (int) readVarLong();
+                    Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                    for (int i = 0; i < size; i++) {
+                        map.put(readString(), readValue());
+                    }
+                    return map;
+                }
+                case T_ROWSET:
+                    return readRowSet();
+                case T_ANY:
+                    return readValue();
+                case T_MESSAGE:
+                    return readRequest(this);
+                case T_SERIALIZED:
+                    try {
+                        return FrameCodec.deserialize(readBytes());
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException("Clase desconocida en valor serializado", e);
+                    }
+                default:
+                    throw new IOException("Etiqueta de tipo desconocida: " + tag);
+            }
+        }
+
+        private RowSet readRowSet() throws IOException {
+            int columnCount = (int) readVarLong();
+            String[] columns = new String[columnCount];
+            byte[] types = new byte[columnCount];
+            int[] sqlTypes = new int[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                columns[c] = readString();
+                types[c] = buffer.get();
+                sqlTypes[c] = sqlTypeOf(types[c]);
+            }
+
+            int rowCount = (int) readVarLong();
+            RowSet rows = new RowSet(columns, sqlTypes, new ArrayList<>(rowCount));
+            byte[] nullMask = new byte[(columnCount + 7) / 8];
+            for (int r = 0; r < rowCount; r++) {
+                buffer.get(nullMask);
+                Object[] values = new Object[columnCount];
+                for (int c = 0; c < columnCount; c++) {
+                    if ((nullMask[c >> 3] & (1 << (c & 7))) == 0) {
+                        values[c] = readRaw(types[c]);
+                    }
+                }
+                rows.addRow(values);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Tipo SQL aproximado de una columna según su etiqueta en la red
+     */
+    private static int sqlTypeOf(byte tag) {
+        switch (tag) {
+            case T_STRING: return Types.VARCHAR;
+            case T_LONG: return Types.BIGINT;
+            case T_INT: return Types.INTEGER;
+            case T_DOUBLE: return Types.DOUBLE;
+            case T_BOOLEAN: return Types.BOOLEAN;
+            case T_TIMESTAMP: return Types.TIMESTAMP;
+            case T_DATE: return Types.DATE;
+            case T_DECIMAL: return Types.DECIMAL;
+            case T_BYTES: return Types.VARBINARY;
+            case T_NULL: return Types.NULL;
+            default: return Types.OTHER;
+        }
+    }
+}
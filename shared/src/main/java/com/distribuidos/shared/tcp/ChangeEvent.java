@@ -0,0 +1,96 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.Serializable;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cambio confirmado en el servidor de base de datos, recibido por SUBSCRIBE.
+ *
+ * La versión crece en el orden en que el servidor publica los cambios, que
+ * es siempre posterior a su confirmación: una lectura hecha después de
+ * recibir el evento ya ve el cambio.
+ *
+ * La entidad es una de las de DatabaseMessage, o null si el servidor no sabe
+ * qué tablas cambiaron (SQL libre). El id es el de la fila, o null si no se
+ * conoce; salvo en FILE_REPLICA, donde es el id del archivo cuyas réplicas
+ * se sustituyeron. Un DELETE implica el borrado o la desvinculación en
+ * cascada de las filas que dependen de la eliminada, que no llegan como
+ * eventos propios.
+ */
+public class ChangeEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Operaciones
+    public static final String INSERT = "INSERT";
+    public static final String UPDATE = "UPDATE";
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    // Los lotes de eventos viajan como un RowSet con una fila {versión, entidad, id, operación}
+    private static final String[] COLUMNS = {"VERSION", "ENTITY", "ID", "OPERATION"};
+    private static final int[] COLUMN_TYPES = {Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.VARCHAR};
+
+    private final long version;
+    private final String entity;
+    private final Long id;
+    private final String operation;
+
+    public ChangeEvent(long version, String entity, Long id, String operation) {
+        this.version = version;
+        this.entity = entity;
+        this.id = id;
+        this.operation = operation;
+    }
+
+    /**
+     * Lote de eventos para enviar; cada fila es {versión, entidad, id, operación}
+     */
+    public static RowSet toRowSet(List<Object[]> rows) {
+        return new RowSet(COLUMNS, COLUMN_TYPES, rows);
+    }
+
+    public static List<ChangeEvent> fromRowSet(RowSet rows) {
+        List<ChangeEvent> events = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Number id = (Number) rows.getValue(i, 2);
+            events.add(new ChangeEvent(((Number) rows.getValue(i, 0)).longValue(), (String) rows.getValue(i, 1),
+                                       id != null ? id.longValue() : null, (String) rows.getValue(i, 3)));
+        }
+        return events;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Si el cambio afecta a una entidad; los cambios sin entidad conocida afectan a todas
+     */
+    public boolean affects(String entity) {
+        return this.entity == null || this.entity.equals(entity);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "version=" + version +
+                ", entity='" + entity + '\'' +
+                ", id=" + id +
+                ", operation='" + operation + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suscripción al flujo de cambios de un servidor de base de datos (SUBSCRIBE).
+ *
+ * Usa una conexión propia, fuera de los pools, por la que el servidor envía
+ * los cambios confirmados en cuanto se publican; el listener los recibe en
+ * orden de versión desde el hilo lector de la conexión. Si la conexión se
+ * pierde, reconecta y pide los cambios desde la última versión recibida.
+ *
+ * Mientras no está conectada isLive() es false y los cambios pueden
+ * perderse o retrasarse, así que al desconectarse, y al reconectar a un
+ * servidor que ya no conserva los cambios pendientes (o que se reinició), se
+ * avisa con onReset para que el cliente descarte lo derivado de ellos.
+ */
+public class ChangeSubscription implements Closeable {
+
+    private static final long RETRY_INTERVAL_MS = 1000;
+
+    /**
+     * Recibe los cambios de la suscripción
+     */
+    public interface Listener {
+        void onEvents(List<ChangeEvent> events);
+
+        /**
+         * Puede haberse perdido algún cambio: las cachés deben vaciarse
+         */
+        void onReset();
+    }
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMs;
+    private final boolean preferBinary;
+    private final Listener listener;
+    private Thread thread;
+    private volatile MultiplexedConnection connection;
+    private volatile boolean running = false;
+    private volatile boolean live = false;
+
+    // Solo se modifican desde el hilo lector de la conexión actual
+    private volatile long streamId = 0;
+    private volatile long lastVersion = 0;
+
+    public ChangeSubscription(String host, int port, int connectTimeoutMs, boolean preferBinary, Listener listener) {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.preferBinary = preferBinary;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = ExecutorFactory.namedThreadFactory("db-changes-" + host + ":" + port, true).newThread(this::run);
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                follow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (running) {
+                    System.err.println("⚠️ Suscripción de cambios con " + host + ":" + port +
+                                       " interrumpida: " + e.getMessage());
+                }
+            }
+            if (live) {
+                live = false;
+                notifyReset();
+            }
+            try {
+                Thread.sleep(RETRY_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Se suscribe y espera hasta que la conexión se cierra
+     */
+    private void follow() throws Exception {
+        CompletableFuture<Void> ended = new CompletableFuture<>();
+        try (MultiplexedConnection conn = MultiplexedConnection.open(host, port, connectTimeoutMs, preferBinary)) {
+            connection = conn;
+            if (!running) {
+                return;
+            }
+            long knownStream = streamId;
+            DatabaseMessage message = new DatabaseMessage(DatabaseMessage.SUBSCRIBE, null,
+                                                          knownStream != 0 ? lastVersion + 1 : null);
+            message.setData(knownStream != 0 ? knownStream : null);
+            DatabaseResponse ack;
+            try {
+                ack = conn.subscribe(message, response -> onResponse(response, ended))
+                          .get(connectTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            if (!ack.isSuccess()) {
+                throw new IOException(ack.getErrorMessage());
+            }
+            ended.get();
+        } finally {
+            connection = null;
+        }
+    }
+
+    /**
+     * Primera respuesta: {streamId, version, resumed}; después, lotes de eventos
+     */
+    private void onResponse(DatabaseResponse response, CompletableFuture<Void> ended) {
+        if (!response.isSuccess()) {
+            ended.complete(null);
+            return;
+        }
+        try {
+            if (response.getData() instanceof RowSet) {
+                List<ChangeEvent> events = ChangeEvent.fromRowSet((RowSet) response.getData());
+                if (!events.isEmpty()) {
+                    lastVersion = events.get(events.size() - 1).getVersion();
+                    listener.onEvents(events);
+                }
+            } else if (response.getData() instanceof Map) {
+                Map<?, ?> info = (Map<?, ?>) response.getData();
+                streamId = ((Number) info.get("streamId")).longValue();
+                if (!Boolean.TRUE.equals(info.get("resumed"))) {
+                    lastVersion = ((Number) info.get("version")).longValue();
+                    notifyReset();
+                }
+                live = true;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("❌ Error procesando cambios de " + host + ":" + port + ": " + e.getMessage());
+        }
+    }
+
+    private void notifyReset() {
+        try {
+            listener.onReset();
+        } catch (RuntimeException e) {
+            System.err.println("❌ Error reiniciando tras perder cambios de " + host + ":" + port + ": " +
+                               e.getMessage());
+        }
+    }
+
+    /**
+     * Si está conectada y recibiendo los cambios del servidor
+     */
+    public boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Versión del último cambio recibido
+     */
+    public long getLastVersion() {
+        return lastVersion;
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        MultiplexedConnection current = connection;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        live = false;
+    }
+}
@@ -0,0 +1,369 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de conexiones persistentes con el servidor de base de datos.
+ *
+ * Cada conexión se negocia una sola vez al abrirse, de modo que una petición
+ * cuesta un único viaje de ida y vuelta. Al prestar una conexión que lleva
+ * tiempo ociosa se valida con PING; una tarea de mantenimiento cierra las
+ * conexiones ociosas de más y las que superan su tiempo de vida máximo.
+ * Las conexiones prestadas admiten varias peticiones en vuelo
+ * ({@link PooledConnection#sendAsync}).
+ */
+public class DatabaseConnectionPool implements DatabasePool {
+
+    /**
+     * Parámetros del pool con sus valores por defecto
+     */
+    public static class Config {
+        private int maxConnections = 10;
+        private int minIdle = 1;
+        private long borrowTimeoutMs = 5000;
+        private long idleTimeoutMs = 60_000;
+        private long maxLifetimeMs = 30 * 60_000;
+        private long validationIntervalMs = 30_000;
+        private int connectTimeoutMs = 5000;
+        private long requestTimeoutMs = 5000;
+        private boolean preferBinary = true;
+
+        public Config maxConnections(int value) {
+            this.maxConnections = value;
+            return this;
+        }
+
+        public Config minIdle(int value) {
+            this.minIdle = value;
+            return this;
+        }
+
+        public Config borrowTimeoutMs(long value) {
+            this.borrowTimeoutMs = value;
+            return this;
+        }
+
+        public Config idleTimeoutMs(long value) {
+            this.idleTimeoutMs = value;
+            return this;
+        }
+
+        public Config maxLifetimeMs(long value) {
+            this.maxLifetimeMs = value;
+            return this;
+        }
+
+        /** Tiempo ocioso a partir del cual se valida la conexión antes de prestarla */
+        public Config validationIntervalMs(long value) {
+            this.validationIntervalMs = value;
+            return this;
+        }
+
+        public Config connectTimeoutMs(int value) {
+            this.connectTimeoutMs = value;
+            return this;
+        }
+
+        public Config requestTimeoutMs(long value) {
+            this.requestTimeoutMs = value;
+            return this;
+        }
+
+        public Config preferBinary(boolean value) {
+            this.preferBinary = value;
+            return this;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final Config config;
+    private final Semaphore permits;
+    // LIFO: la conexión usada más recientemente es la que menos probablemente esté caída
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed = false;
+
+    public DatabaseConnectionPool(String host, int port, Config config) {
+        this.host = host;
+        this.port = port;
+        this.config = config;
+        this.permits = new Semaphore(config.maxConnections, true);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(config.idleTimeoutMs, config.maxLifetimeMs) / 2);
+        maintenance.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión; debe devolverse con {@link PooledConnection#close()}
+     *
+     * @throws TimeoutException si no queda cupo en el tiempo de espera configurado
+     */
+    public PooledConnection borrow() throws IOException, TimeoutException, InterruptedException {
+        if (closed) {
+            throw new IOException("Pool de conexiones cerrado");
+        }
+        if (!permits.tryAcquire(config.borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("Sin conexiones disponibles con la base de datos tras " +
+                                       config.borrowTimeoutMs + " ms");
+        }
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (isUsable(connection)) {
+                    connection.borrowed = true;
+                    return connection;
+                }
+                discard(connection);
+            }
+            connection = new PooledConnection(MultiplexedConnection.open(host, port, config.connectTimeoutMs,
+                                                                         config.preferBinary));
+            openConnections.incrementAndGet();
+            connection.borrowed = true;
+            return connection;
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Envía un mensaje usando una conexión del pool.
+     * Si una conexión reutilizada resulta estar caída (p. ej. el servidor se
+     * reinició) se reintenta una vez con una conexión nueva, pero solo cuando
+     * el reintento no puede duplicar efectos: el mensaje es de solo lectura o
+     * la petición falló antes de escribirse. Una escritura que pudo llegar al
+     * servidor devuelve el error sin reintentar. Un mensaje con valores no
+     * codificables falla con IllegalArgumentException sin tocar el pool.
+     */
+    public DatabaseResponse send(DatabaseMessage message) throws IOException, TimeoutException, InterruptedException {
+        try {
+            return sendOnce(message);
+        } catch (IOException e) {
+            purgeIdle();
+            if (!message.isReadOnly() && !(e instanceof RequestNotSentException)) {
+                throw e;
+            }
+            return sendOnce(message);
+        }
+    }
+
+    /**
+     * Abre una transacción en una conexión del pool, que queda reservada
+     * para ella hasta que termina ({@link DatabaseTransaction#close()}).
+     * Como send, reintenta una vez si la conexión reutilizada está caída.
+     */
+    public DatabaseTransaction begin() throws IOException, TimeoutException, InterruptedException {
+        PooledConnection connection = borrow();
+        try {
+            return DatabaseTransaction.begin(connection);
+        } catch (IOException e) {
+            if (!connection.broken) {
+                // El servidor rechazó la transacción
+                throw e;
+            }
+            purgeIdle();
+            return DatabaseTransaction.begin(borrow());
+        }
+    }
+
+    /**
+     * Con un solo servidor el propietario no cambia dónde se abre la transacción
+     */
+    @Override
+    public DatabaseTransaction begin(User owner) throws IOException, TimeoutException, InterruptedException {
+        return begin();
+    }
+
+    /**
+     * Envía un mensaje sin bloquear. La conexión se devuelve al pool al
+     * completarse la respuesta, o se descarta si falla o vence el timeout.
+     * Sin reintentos: el llamador decide si el mensaje admite repetirse.
+     */
+    public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+        PooledConnection connection;
+        try {
+            connection = borrow();
+        } catch (IOException | TimeoutException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        return connection.sendAsync(message)
+            .orTimeout(config.requestTimeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((response, error) -> {
+                // Un mensaje no codificable no llegó a enviarse: la conexión sigue sana
+                if (error != null && !(error instanceof IllegalArgumentException)) {
+                    connection.invalidate();
+                }
+                connection.close();
+            });
+    }
+
+    private DatabaseResponse sendOnce(DatabaseMessage message)
+            throws IOException, TimeoutException, InterruptedException {
+        PooledConnection connection = borrow();
+        try {
+            return connection.send(message);
+        } catch (IOException | TimeoutException e) {
+            // Tras un timeout la respuesta podría llegar tarde: no reutilizar la conexión
+            connection.broken = true;
+            throw e;
+        } finally {
+            connection.close();
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long now = System.currentTimeMillis();
+        if (!connection.connection.isOpen() || now - connection.createdAt >= config.maxLifetimeMs) {
+            return false;
+        }
+        if (now - connection.lastUsedAt < config.validationIntervalMs) {
+            return true;
+        }
+        try {
+            DatabaseResponse pong = connection.connection.send(new DatabaseMessage(DatabaseMessage.PING, ""),
+                                                               config.connectTimeoutMs);
+            connection.lastUsedAt = System.currentTimeMillis();
+            return pong.isSuccess();
+        } catch (IOException | TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        connection.borrowed = false;
+        connection.lastUsedAt = System.currentTimeMillis();
+        boolean expired = connection.lastUsedAt - connection.createdAt >= config.maxLifetimeMs;
+        if (closed || connection.broken || expired || !connection.connection.isOpen()) {
+            discard(connection);
+        } else {
+            idle.addFirst(connection);
+        }
+        permits.release();
+    }
+
+    private void discard(PooledConnection connection) {
+        connection.connection.close();
+        openConnections.decrementAndGet();
+    }
+
+    /**
+     * Cierra todas las conexiones ociosas (tras detectar que el servidor cayó)
+     */
+    private void purgeIdle() {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Cierra las conexiones ociosas de más y las que superaron su tiempo de vida
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        int remaining = idle.size();
+        // Las más antiguas en uso están al final de la cola
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection connection = oldestFirst.next();
+            boolean expired = now - connection.createdAt >= config.maxLifetimeMs;
+            boolean idleTooLong = now - connection.lastUsedAt >= config.idleTimeoutMs && remaining > config.minIdle;
+            if ((expired || idleTooLong || !connection.connection.isOpen()) && idle.removeFirstOccurrence(connection)) {
+                evicted.add(connection);
+                remaining--;
+            }
+        }
+        for (PooledConnection connection : evicted) {
+            discard(connection);
+        }
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        purgeIdle();
+    }
+
+    /**
+     * Conexión prestada por el pool. close() la devuelve al pool en lugar de cerrarla.
+     */
+    public final class PooledConnection implements Closeable {
+        private final MultiplexedConnection connection;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+        private volatile boolean borrowed;
+        private volatile boolean broken;
+
+        private PooledConnection(MultiplexedConnection connection) {
+            this.connection = connection;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        public DatabaseResponse send(DatabaseMessage message)
+                throws IOException, TimeoutException, InterruptedException {
+            return connection.send(message, config.requestTimeoutMs);
+        }
+
+        /**
+         * Envía sin esperar respuesta; varias peticiones pueden estar en vuelo a la vez
+         */
+        public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+            return connection.sendAsync(message);
+        }
+
+        public int getWireVersion() {
+            return connection.getWireVersion();
+        }
+
+        /**
+         * Marca la conexión para que se cierre en lugar de volver al pool
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (borrowed) {
+                release(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.distribuidos.shared.tcp;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Recorre un listado completo pidiéndolo página a página con FIND_PAGE.
+ *
+ * Solo mantiene en memoria la página actual y la siguiente, que se solicita
+ * en cuanto llega la actual para solapar la red con el recorrido. Así un
+ * listado de millones de filas se recorre con memoria constante en el cliente
+ * y en el servidor.
+ */
+public class DatabaseCursor implements Iterator<Map<String, Object>> {
+
+    /**
+     * Envía la petición de una página sin bloquear
+     */
+    @FunctionalInterface
+    public interface PageFetcher {
+        CompletableFuture<DatabaseResponse> fetch(DatabaseMessage message);
+    }
+
+    private final PageFetcher fetcher;
+    private final String entity;
+    private final String query;
+    private final Object[] parameters;
+    private final int pageSize;
+    private final long timeoutMs;
+
+    private List<Map<String, Object>> page = Collections.emptyList();
+    private int position = 0;
+    private CompletableFuture<DatabaseResponse> nextPage;
+    private long pagesRead = 0;
+
+    /**
+     * @param query consulta a paginar (debe incluir la columna ID), o null para toda la tabla
+     */
+    public DatabaseCursor(PageFetcher fetcher, String entity, String query, Object[] parameters,
+                          int pageSize, long timeoutMs) {
+        this.fetcher = fetcher;
+        this.entity = entity;
+        this.query = query;
+        this.parameters = parameters;
+        this.pageSize = pageSize;
+        this.timeoutMs = timeoutMs;
+        this.nextPage = fetcher.fetch(pageRequest(null));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position >= page.size()) {
+            if (nextPage == null) {
+                return false;
+            }
+            DatabaseResponse response = await(nextPage);
+            if (!response.isSuccess()) {
+                nextPage = null;
+                throw new IllegalStateException("Error leyendo página: " + response.getErrorMessage());
+            }
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> rows = (List<Map<String, Object>>) response.getData();
+            page = rows != null ? rows : Collections.emptyList();
+            position = 0;
+            pagesRead++;
+            nextPage = response.hasMorePages() ? fetcher.fetch(pageRequest(response.getNextPageToken())) : null;
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(position++);
+    }
+
+    public long getPagesRead() {
+        return pagesRead;
+    }
+
+    private DatabaseMessage pageRequest(String pageToken) {
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.FIND_PAGE, entity);
+        message.setQuery(query);
+        message.setParameters(parameters);
+        message.setPageSize(pageSize);
+        message.setPageToken(pageToken);
+        return message;
+    }
+
+    private DatabaseResponse await(CompletableFuture<DatabaseResponse> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lectura de página interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error de comunicación leyendo página: " + e.getCause().getMessage(),
+                                            e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timeout leyendo página tras " + timeoutMs + " ms", e);
+        }
+    }
+}
@@ -16,6 +16,11 @@ public class DatabaseMessage implements Serializable {
     private Object[] parameters;
     private boolean success;
     private String errorMessage;
+    // Identificador para emparejar respuestas en conexiones multiplexadas (0 = sin asignar)
+    private long requestId;
+    // Paginación por clave (FIND_PAGE): tamaño de página y token devuelto por la página anterior
+    private int pageSize;
+    private String pageToken;
     
     // Operaciones disponibles
     public static final String SAVE = "SAVE";
@@ -25,6 +30,39 @@ public class DatabaseMessage implements Serializable {
     public static final String DELETE = "DELETE";
     public static final String FIND_BY_CRITERIA = "FIND_BY_CRITERIA";
     public static final String EXECUTE_QUERY = "EXECUTE_QUERY";
+    public static final String PING = "PING";
+    public static final String FIND_PAGE = "FIND_PAGE";
+    // Inserta o actualiza por id o clave natural (MERGE)
+    public static final String UPSERT = "UPSERT";
+    // data: List<DatabaseMessage> con operaciones SAVE, UPDATE, UPSERT y DELETE ejecutadas en una transacción
+    public static final String BATCH = "BATCH";
+    
+    // Operaciones de metadatos de archivos; data con {fileName, userId} (nombre de usuario) o el id del archivo
+    public static final String CREATE_FILE = "CREATE_FILE";
+    public static final String GET_FILE_BY_NAME = "GET_FILE_BY_NAME";
+    public static final String GET_FILE_REPLICAS = "GET_FILE_REPLICAS";
+    public static final String UPDATE_FILE_REPLICAS = "UPDATE_FILE_REPLICAS";
+    public static final String LIST_USER_FILES = "LIST_USER_FILES";
+    public static final String DELETE_FILE = "DELETE_FILE";
+    // Archivo y ubicación de sus réplicas en una sola consulta (ResolvedFile)
+    public static final String RESOLVE_FILE = "RESOLVE_FILE";
+    // Reserva el id de un archivo nuevo sin crear su fila (data: User propietario o File con owner);
+    // un CREATE_FILE posterior con ese id crea la fila
+    public static final String RESERVE_FILE_ID = "RESERVE_FILE_ID";
+    
+    // Replicación entre servidores de base de datos: cambios del primario desde el LSN id, hasta pageSize
+    public static final String REPLICATION_PULL = "REPLICATION_PULL";
+    
+    // Flujo de cambios desde la versión id (data: streamId de la suscripción anterior, o null).
+    // Tras la respuesta inicial el servidor sigue enviando lotes de cambios con el mismo
+    // requestId, así que requiere una conexión dedicada (ChangeSubscription)
+    public static final String SUBSCRIBE = "SUBSCRIBE";
+    
+    // Transacción de varias peticiones ligada a la conexión: entre BEGIN y COMMIT o ROLLBACK
+    // todas las operaciones de la conexión usan la misma conexión JDBC (DatabaseTransaction)
+    public static final String BEGIN = "BEGIN";
+    public static final String COMMIT = "COMMIT";
+    public static final String ROLLBACK = "ROLLBACK";
     
     // Entidades
     public static final String USER = "USER";
@@ -119,9 +157,60 @@ public class DatabaseMessage implements Serializable {
         this.errorMessage = errorMessage;
     }
     
+    public long getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+    
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+    
+    public String getPageToken() {
+        return pageToken;
+    }
+    
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
+    
+    /**
+     * Si la operación solo lee datos y puede atenderla una réplica
+     */
+    public boolean isReadOnly() {
+        if (operation == null) {
+            return false;
+        }
+        switch (operation) {
+            case PING:
+            case FIND_BY_ID:
+            case FIND_ALL:
+            case FIND_BY_CRITERIA:
+            case FIND_PAGE:
+            case RESOLVE_FILE:
+            case GET_FILE_BY_NAME:
+            case GET_FILE_REPLICAS:
+            case LIST_USER_FILES:
+            case REPLICATION_PULL:
+                return true;
+            case EXECUTE_QUERY:
+                return query != null && query.trim().toLowerCase().startsWith("select");
+            default:
+                return false;
+        }
+    }
+    
     @Override
     public String toString() {
         return "DatabaseMessage{" +
+                "requestId=" + requestId + ", " +
                 "operation='" + operation + '\'' +
                 ", entity='" + entity + '\'' +
                 ", id=" + id +
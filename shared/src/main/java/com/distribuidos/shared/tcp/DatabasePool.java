@@ -0,0 +1,31 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Destino de los mensajes del cliente de base de datos: un servidor, un
+ * primario con réplicas o un conjunto de fragmentos.
+ */
+public interface DatabasePool extends Closeable {
+
+    DatabaseResponse send(DatabaseMessage message) throws IOException, TimeoutException, InterruptedException;
+
+    CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message);
+
+    /**
+     * Abre una transacción en el servidor que guarda las filas de owner: el
+     * único servidor, el primario o el fragmento del usuario. Todas las
+     * operaciones de la transacción deben ser de ese propietario.
+     *
+     * @param owner propietario con id o nombre de usuario; solo se usa con fragmentos
+     */
+    DatabaseTransaction begin(User owner) throws IOException, TimeoutException, InterruptedException;
+
+    @Override
+    void close();
+}
@@ -8,11 +8,18 @@ import java.io.Serializable;
 public class DatabaseResponse implements Serializable {
     private static final long serialVersionUID = 1L;
     
+    // Prefijo del error de una réplica que no puede atender lecturas (demasiado desfasada)
+    public static final String REPLICA_UNAVAILABLE = "REPLICA_UNAVAILABLE";
+    
     private boolean success;
     private Object data;
     private String errorMessage;
     private int affectedRows;
     private String operationType;
+    // Copia del requestId de la petición a la que responde
+    private long requestId;
+    // Token para pedir la página siguiente de FIND_PAGE (null = última página)
+    private String nextPageToken;
     
     // Constructors
     public DatabaseResponse() {}
@@ -44,6 +51,10 @@ public class DatabaseResponse implements Serializable {
         return new DatabaseResponse(false, errorMessage);
     }
     
+    public static DatabaseResponse replicaUnavailable(String reason) {
+        return new DatabaseResponse(false, REPLICA_UNAVAILABLE + ": " + reason);
+    }
+    
     // Getters and Setters
     public boolean isSuccess() {
         return success;
@@ -85,9 +96,37 @@ public class DatabaseResponse implements Serializable {
         this.operationType = operationType;
     }
     
+    public long getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+    
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+    
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+    
+    public boolean hasMorePages() {
+        return nextPageToken != null;
+    }
+    
+    /**
+     * La réplica rechazó la lectura; debe repetirse en el primario
+     */
+    public boolean isReplicaUnavailable() {
+        return !success && errorMessage != null && errorMessage.startsWith(REPLICA_UNAVAILABLE);
+    }
+    
     @Override
     public String toString() {
         return "DatabaseResponse{" +
+                "requestId=" + requestId + ", " +
                 "success=" + success +
                 ", data=" + data +
                 ", errorMessage='" + errorMessage + '\'' +
@@ -0,0 +1,173 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transacción de varias peticiones en el servidor de base de datos.
+ *
+ * Reserva una conexión del pool durante toda la transacción: el servidor
+ * ejecuta lo que llega por ella entre BEGIN y COMMIT con una misma conexión
+ * JDBC, así que las escrituras se confirman juntas con un único commit o no
+ * se aplica ninguna. Las peticiones se envían de una en una, esperando cada
+ * respuesta.
+ *
+ * close() deshace la transacción si no terminó y devuelve la conexión al
+ * pool. Si la conexión falla o vence el tiempo de espera se descarta, y el
+ * servidor deshace la transacción al cerrarse la conexión. El servidor
+ * también la deshace, y cierra la conexión, si queda ociosa más tiempo del
+ * permitido.
+ */
+public class DatabaseTransaction implements Closeable {
+
+    /**
+     * Trabajo previo a una operación que no puede ir dentro de la transacción
+     */
+    @FunctionalInterface
+    interface Preparation {
+        /**
+         * @return null para enviar la operación, o la respuesta con la que se rechaza
+         */
+        DatabaseResponse prepare(DatabaseMessage message) throws IOException, TimeoutException, InterruptedException;
+    }
+
+    private final DatabaseConnectionPool.PooledConnection connection;
+    private boolean active = true;
+    private Preparation preparation;
+    private Runnable onEnd;
+
+    private DatabaseTransaction(DatabaseConnectionPool.PooledConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Envía BEGIN por una conexión prestada; si falla, la conexión se devuelve al pool
+     *
+     * @throws IOException si el servidor rechaza la transacción o la conexión falla
+     */
+    static DatabaseTransaction begin(DatabaseConnectionPool.PooledConnection connection)
+            throws IOException, TimeoutException, InterruptedException {
+        DatabaseResponse response;
+        try {
+            response = connection.send(new DatabaseMessage(DatabaseMessage.BEGIN, null));
+        } catch (IOException | TimeoutException | InterruptedException e) {
+            connection.invalidate();
+            connection.close();
+            throw e;
+        }
+        if (!response.isSuccess()) {
+            connection.close();
+            throw new IOException("No se pudo iniciar la transacción: " + response.getErrorMessage());
+        }
+        return new DatabaseTransaction(connection);
+    }
+
+    /**
+     * Ejecuta preparation antes de cada operación, fuera de la transacción
+     */
+    DatabaseTransaction prepareWith(Preparation preparation) {
+        this.preparation = preparation;
+        return this;
+    }
+
+    /**
+     * Ejecuta action una vez cuando la transacción termina, de cualquier forma
+     */
+    DatabaseTransaction onEnd(Runnable action) {
+        this.onEnd = action;
+        return this;
+    }
+
+    /**
+     * Ejecuta una operación dentro de la transacción. Si la operación falla
+     * en el servidor se deshace solo ella y la transacción sigue abierta.
+     */
+    public DatabaseResponse send(DatabaseMessage message)
+            throws IOException, TimeoutException, InterruptedException {
+        if (!active) {
+            throw new IllegalStateException("La transacción ya terminó");
+        }
+        if (preparation != null) {
+            DatabaseResponse rejected = preparation.prepare(message);
+            if (rejected != null) {
+                return rejected;
+            }
+        }
+        return sendOrDiscard(message);
+    }
+
+    /**
+     * Confirma la transacción. Si el commit falla el servidor la deshace;
+     * en ambos casos la transacción termina.
+     */
+    public DatabaseResponse commit() throws IOException, TimeoutException, InterruptedException {
+        return finish(DatabaseMessage.COMMIT);
+    }
+
+    public DatabaseResponse rollback() throws IOException, TimeoutException, InterruptedException {
+        return finish(DatabaseMessage.ROLLBACK);
+    }
+
+    private DatabaseResponse finish(String operation) throws IOException, TimeoutException, InterruptedException {
+        if (!active) {
+            throw new IllegalStateException("La transacción ya terminó");
+        }
+        active = false;
+        try {
+            return sendOrDiscard(new DatabaseMessage(operation, null));
+        } finally {
+            connection.close();
+            ended();
+        }
+    }
+
+    /**
+     * Tras un fallo de la conexión no se sabe en qué estado quedó la
+     * transacción: la conexión se descarta y el servidor la deshace
+     */
+    private DatabaseResponse sendOrDiscard(DatabaseMessage message)
+            throws IOException, TimeoutException, InterruptedException {
+        try {
+            return connection.send(message);
+        } catch (IOException | TimeoutException | InterruptedException e) {
+            active = false;
+            connection.invalidate();
+            connection.close();
+            ended();
+            throw e;
+        }
+    }
+
+    private void ended() {
+        Runnable action = onEnd;
+        onEnd = null;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Si la transacción sigue abierta (ni confirmada, ni deshecha, ni perdida)
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Deshace la transacción si sigue abierta y devuelve la conexión al pool
+     */
+    @Override
+    public void close() {
+        if (!active) {
+            return;
+        }
+        try {
+            rollback();
+        } catch (IOException | TimeoutException e) {
+            // La conexión ya se descartó en sendOrDiscard
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
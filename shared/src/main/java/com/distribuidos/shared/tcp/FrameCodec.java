@@ -0,0 +1,106 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codificación de mensajes TCP con el servidor de base de datos en tramas
+ * con prefijo de longitud: [longitud int32][mensaje serializado].
+ * El contenido puede ir en Java serialization o en el formato de
+ * {@link BinaryWireCodec}; los métodos *Raw no interpretan el contenido.
+ *
+ * El prefijo permite al servidor no bloqueante saber cuándo ha recibido un
+ * mensaje completo sin depender de un stream de objetos por conexión.
+ */
+public final class FrameCodec {
+
+    public static final int HEADER_SIZE = Integer.BYTES;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Serializa un mensaje sin cabecera
+     */
+    public static byte[] serialize(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializa el contenido de una trama
+     */
+    public static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Trama completa lista para escribir en un canal
+     */
+    public static ByteBuffer encode(Object message) throws IOException {
+        return encodeRaw(serialize(message));
+    }
+
+    /**
+     * Trama completa con un contenido ya codificado
+     */
+    public static ByteBuffer encodeRaw(byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        return frame;
+    }
+
+    /**
+     * Escribe una trama en un stream bloqueante
+     */
+    public static void writeFrame(DataOutputStream out, Object message) throws IOException {
+        writeRawFrame(out, serialize(message));
+    }
+
+    /**
+     * Escribe una trama con un contenido ya codificado
+     */
+    public static void writeRawFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Lee una trama de un stream bloqueante
+     */
+    public static Object readFrame(DataInputStream in) throws IOException, ClassNotFoundException {
+        return deserialize(readRawFrame(in));
+    }
+
+    /**
+     * Lee el contenido de una trama sin interpretarlo
+     */
+    public static byte[] readRawFrame(DataInputStream in) throws IOException {
+        byte[] payload = new byte[checkLength(in.readInt())];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Valida la longitud declarada en una cabecera
+     */
+    public static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Longitud de trama inválida: " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,241 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Conexión TCP con el servidor de base de datos que admite muchas peticiones
+ * en vuelo a la vez. Cada petición recibe un requestId y un hilo lector
+ * completa el futuro correspondiente cuando llega su respuesta, en cualquier
+ * orden. Es segura para usarse desde varios hilos.
+ *
+ * Con Java serialization el requestId viaja en los propios objetos; con el
+ * protocolo binario se requiere la versión 2 o superior.
+ *
+ * Una petición abierta con {@link #subscribe} recibe varias respuestas, que
+ * se entregan a su consumidor; la primera completa además su futuro.
+ */
+public class MultiplexedConnection implements Closeable {
+
+    private static final AtomicLong READER_COUNTER = new AtomicLong();
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final int wireVersion;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, CompletableFuture<DatabaseResponse>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Consumer<DatabaseResponse>> streams = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile boolean closed = false;
+
+    private MultiplexedConnection(Socket socket, DataOutputStream out, DataInputStream in, int wireVersion) {
+        this.socket = socket;
+        this.out = out;
+        this.in = in;
+        this.wireVersion = wireVersion;
+
+        Thread reader = new Thread(this::readLoop, "db-conn-reader-" + READER_COUNTER.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Abre la conexión y negocia el protocolo
+     *
+     * @param connectTimeoutMs timeout de conexión y de la negociación
+     * @param preferBinary intentar usar el protocolo binario
+     */
+    public static MultiplexedConnection open(String host, int port, int connectTimeoutMs,
+                                             boolean preferBinary) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(connectTimeoutMs);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            int version = preferBinary ? BinaryWireCodec.negotiate(out, in) : 0;
+            // Sin requestId en la trama binaria v1 no se puede multiplexar
+            if (version < 2) {
+                version = 0;
+            }
+            // El hilo lector espera respuestas sin límite; los timeouts son por petición
+            socket.setSoTimeout(0);
+            return new MultiplexedConnection(socket, out, in, version);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Envía una petición sin esperar la respuesta.
+     * Asigna el requestId del mensaje, por lo que un mismo objeto no debe
+     * enviarse dos veces a la vez.
+     */
+    public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+        return sendRequest(message, null);
+    }
+
+    private CompletableFuture<DatabaseResponse> sendRequest(DatabaseMessage message,
+                                                            Consumer<DatabaseResponse> listener) {
+        CompletableFuture<DatabaseResponse> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RequestNotSentException("Conexión cerrada"));
+            return future;
+        }
+
+        long requestId = nextRequestId.incrementAndGet();
+        message.setRequestId(requestId);
+        byte[] payload;
+        try {
+            payload = wireVersion > 0
+                ? BinaryWireCodec.encodeRequest(message, wireVersion)
+                : FrameCodec.serialize(message);
+        } catch (IllegalArgumentException | IOException e) {
+            // Valor no codificable: solo falla esta petición y la conexión sigue sana
+            future.completeExceptionally(e instanceof IllegalArgumentException ? e
+                : new IllegalArgumentException("Mensaje no serializable: " + e.getMessage(), e));
+            return future;
+        }
+        if (listener != null) {
+            // Antes de enviar, para no perder respuestas que lleguen justo detrás de la primera
+            streams.put(requestId, listener);
+        }
+        pending.put(requestId, future);
+        if (closed && pending.remove(requestId) != null) {
+            streams.remove(requestId);
+            // La conexión falló entre la comprobación y el registro
+            future.completeExceptionally(new RequestNotSentException("Conexión cerrada"));
+            return future;
+        }
+        try {
+            synchronized (writeLock) {
+                FrameCodec.writeRawFrame(out, payload);
+            }
+        } catch (IOException e) {
+            pending.remove(requestId);
+            future.completeExceptionally(e);
+            fail(e);
+        }
+        return future;
+    }
+
+    /**
+     * Envía una petición que el servidor responde varias veces (SUBSCRIBE).
+     * listener recibe todas las respuestas desde el hilo lector, en orden de
+     * llegada; la primera además completa el futuro. Si la conexión se
+     * cierra, listener recibe una última respuesta de error.
+     */
+    public CompletableFuture<DatabaseResponse> subscribe(DatabaseMessage message,
+                                                         Consumer<DatabaseResponse> listener) {
+        return sendRequest(message, listener);
+    }
+
+    /**
+     * Envía una petición y espera su respuesta
+     *
+     * @throws RequestNotSentException si la conexión ya estaba cerrada y la petición no salió
+     * @throws IllegalArgumentException si el mensaje lleva un valor que no se puede codificar
+     */
+    public DatabaseResponse send(DatabaseMessage message, long timeoutMs)
+            throws IOException, TimeoutException, InterruptedException {
+        CompletableFuture<DatabaseResponse> future = sendAsync(message);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pending.remove(message.getRequestId());
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) cause;
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (!closed) {
+                byte[] payload = FrameCodec.readRawFrame(in);
+                DatabaseResponse response = BinaryWireCodec.isBinary(payload)
+                    ? BinaryWireCodec.decodeResponse(payload)
+                    : (DatabaseResponse) FrameCodec.deserialize(payload);
+
+                CompletableFuture<DatabaseResponse> future = pending.remove(response.getRequestId());
+                Consumer<DatabaseResponse> listener = streams.get(response.getRequestId());
+                if (listener != null) {
+                    listener.accept(response);
+                }
+                if (future != null) {
+                    future.complete(response);
+                }
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            fail(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    /**
+     * Cierra la conexión y falla todas las peticiones pendientes
+     */
+    private void fail(IOException cause) {
+        if (!closed) {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ya se está cerrando por un error
+            }
+        }
+        // Se completa antes de quitarla: si el hilo lector falla a la vez, ninguno
+        // de los dos vuelve con una petición pendiente sin completar
+        for (Map.Entry<Long, CompletableFuture<DatabaseResponse>> entry : pending.entrySet()) {
+            entry.getValue().completeExceptionally(cause);
+            pending.remove(entry.getKey(), entry.getValue());
+        }
+        for (Long requestId : streams.keySet()) {
+            Consumer<DatabaseResponse> listener = streams.remove(requestId);
+            if (listener != null) {
+                listener.accept(DatabaseResponse.error(cause.getMessage()));
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Versión binaria en uso, o 0 si la conexión usa Java serialization
+     */
+    public int getWireVersion() {
+        return wireVersion;
+    }
+
+    public int getInFlight() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        fail(new IOException("Conexión cerrada"));
+    }
+}
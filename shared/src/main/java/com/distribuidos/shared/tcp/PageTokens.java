@@ -0,0 +1,39 @@
+package com.distribuidos.shared.tcp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Tokens de FIND_PAGE: codifican el último id de la página anterior
+ */
+public final class PageTokens {
+
+    private static final String PREFIX = "id:";
+
+    private PageTokens() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                     .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return último id de la página anterior, o null para la primera página
+     * @throws IllegalArgumentException si el token no es válido
+     */
+    public static Long decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        if (!decoded.startsWith(PREFIX)) {
+            throw new IllegalArgumentException("Token de página inválido: " + token);
+        }
+        try {
+            return Long.parseLong(decoded.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Token de página inválido: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reparte los mensajes entre el servidor de base de datos primario y sus
+ * réplicas de lectura.
+ *
+ * Las escrituras van siempre al primario. Las lecturas se reparten por
+ * turnos entre las réplicas, que solo las atienden si su desfase con el
+ * primario está dentro del límite configurado en ellas; si una réplica la
+ * rechaza o no responde, la lectura se repite en el primario y una réplica
+ * caída se deja de usar durante un tiempo. Tras una escritura, las lecturas
+ * de la misma sesión (ver openSession) van al primario durante
+ * readYourWritesMs para que vea sus propios cambios; las de otras sesiones
+ * siguen yendo a las réplicas. Los mensajes enviados fuera de una sesión
+ * comparten una sesión anónima. Las transacciones se abren en el primario y
+ * cuentan como escritura de su sesión al terminar. Sin réplicas se comporta
+ * como el pool del primario.
+ *
+ * La repetición en el primario de una lectura asíncrona fallida se lanza
+ * desde un ejecutor propio: la respuesta de la réplica se completa en el
+ * hilo lector de su conexión, que no debe quedarse esperando una conexión
+ * libre del primario.
+ */
+public class ReplicatedDatabasePool implements DatabasePool {
+
+    private static final long REPLICA_RETRY_MS = 5000;
+    private static final String ANONYMOUS_SESSION = "";
+    // Sesiones a partir de las cuales se purgan las que ya salieron de la ventana
+    private static final int SESSION_PURGE_THRESHOLD = 1024;
+    private static final int FALLBACK_THREADS = 4;
+    private static final ThreadLocal<String> CURRENT_SESSION = new ThreadLocal<>();
+
+    private final DatabaseConnectionPool primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long readYourWritesMs;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Long> lastWriteAt = new ConcurrentHashMap<>();
+    private volatile long lastPurgeAt = 0;
+    private final ExecutorService fallbackExecutor =
+        ExecutorFactory.newBlockingExecutor("db-replica-fallback", FALLBACK_THREADS, true);
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * Réplica con el instante hasta el que no se usa tras un fallo
+     */
+    private static final class Replica {
+        final DatabaseConnectionPool pool;
+        volatile long downUntil = 0;
+
+        Replica(DatabaseConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Sesión abierta en el hilo actual; al cerrarla se restaura la anterior
+     */
+    public static final class Session implements AutoCloseable {
+        private final String previous;
+
+        private Session(String previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT_SESSION.remove();
+            } else {
+                CURRENT_SESSION.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Asocia a la sesión key (por ejemplo, el usuario de la petición) los
+     * mensajes que envíe este hilo hasta cerrar la sesión devuelta
+     */
+    public static Session openSession(String key) {
+        Session session = new Session(CURRENT_SESSION.get());
+        CURRENT_SESSION.set(key != null ? key : ANONYMOUS_SESSION);
+        return session;
+    }
+
+    private static String currentSession() {
+        String session = CURRENT_SESSION.get();
+        return session != null ? session : ANONYMOUS_SESSION;
+    }
+
+    public ReplicatedDatabasePool(DatabaseConnectionPool primary, List<DatabaseConnectionPool> replicas,
+                                  long readYourWritesMs) {
+        this.primary = primary;
+        for (DatabaseConnectionPool replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.readYourWritesMs = readYourWritesMs;
+    }
+
+    public DatabaseResponse send(DatabaseMessage message) throws IOException, TimeoutException, InterruptedException {
+        Replica replica = replicaFor(message);
+        if (replica != null) {
+            try {
+                DatabaseResponse response = replica.pool.send(message);
+                if (!response.isReplicaUnavailable()) {
+                    replicaReads.incrementAndGet();
+                    return response;
+                }
+            } catch (IOException | TimeoutException e) {
+                markDown(replica);
+            }
+            fallbacks.incrementAndGet();
+        }
+        return sendToPrimary(message);
+    }
+
+    public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+        String session = currentSession();
+        Replica replica = replicaFor(message);
+        if (replica == null) {
+            return sendToPrimaryAsync(message, session);
+        }
+        return replica.pool.sendAsync(message)
+            .handle((response, error) -> {
+                if (error == null && !response.isReplicaUnavailable()) {
+                    replicaReads.incrementAndGet();
+                    return response;
+                }
+                if (error != null) {
+                    markDown(replica);
+                }
+                fallbacks.incrementAndGet();
+                return null;
+            })
+            .thenComposeAsync(response -> response != null
+                ? CompletableFuture.completedFuture(response)
+                : sendToPrimaryAsync(message, session), fallbackExecutor);
+    }
+
+    @Override
+    public DatabaseTransaction begin(User owner) throws IOException, TimeoutException, InterruptedException {
+        String session = currentSession();
+        return primary.begin().onEnd(() -> recordWrite(session));
+    }
+
+    /**
+     * Envía el mensaje al primario aunque sea una lectura, para quien no
+     * puede aceptar el desfase de una réplica
+     */
+    public DatabaseResponse sendToPrimary(DatabaseMessage message)
+            throws IOException, TimeoutException, InterruptedException {
+        boolean write = !message.isReadOnly();
+        if (!write) {
+            primaryReads.incrementAndGet();
+        }
+        DatabaseResponse response = primary.send(message);
+        if (write) {
+            recordWrite(currentSession());
+        }
+        return response;
+    }
+
+    private CompletableFuture<DatabaseResponse> sendToPrimaryAsync(DatabaseMessage message, String session) {
+        if (message.isReadOnly()) {
+            primaryReads.incrementAndGet();
+            return primary.sendAsync(message);
+        }
+        return primary.sendAsync(message).whenComplete((response, error) -> recordWrite(session));
+    }
+
+    private void recordWrite(String session) {
+        if (readYourWritesMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lastWriteAt.put(session, now);
+        if (lastWriteAt.size() > SESSION_PURGE_THRESHOLD && now - lastPurgeAt >= readYourWritesMs) {
+            lastPurgeAt = now;
+            lastWriteAt.values().removeIf(writtenAt -> now - writtenAt >= readYourWritesMs);
+        }
+    }
+
+    /**
+     * Réplica que debe atender el mensaje, o null si va al primario
+     */
+    private Replica replicaFor(DatabaseMessage message) {
+        if (replicas.isEmpty() || !message.isReadOnly()
+                || DatabaseMessage.PING.equals(message.getOperation())
+                || DatabaseMessage.REPLICATION_PULL.equals(message.getOperation())) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Long writtenAt = lastWriteAt.get(currentSession());
+        if (writtenAt != null && now - writtenAt < readYourWritesMs) {
+            return null;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (replica.downUntil <= now) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void markDown(Replica replica) {
+        replica.downUntil = System.currentTimeMillis() + REPLICA_RETRY_MS;
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * Lecturas que una réplica rechazó o no respondió y se repitieron en el primario
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    @Override
+    public void close() {
+        fallbackExecutor.shutdown();
+        primary.close();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+}
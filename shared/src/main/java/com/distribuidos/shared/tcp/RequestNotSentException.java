@@ -0,0 +1,15 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.IOException;
+
+/**
+ * La petición falló antes de escribirse en la conexión, de modo que el
+ * servidor no la recibió y reintentarla no puede duplicar sus efectos.
+ */
+public class RequestNotSentException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public RequestNotSentException(String message) {
+        super(message);
+    }
+}
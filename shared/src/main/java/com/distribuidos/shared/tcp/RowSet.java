@@ -0,0 +1,198 @@
+package com.distribuidos.shared.tcp;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Resultado tabular compacto: los nombres y tipos SQL de las columnas se
+ * guardan una vez y cada fila es un Object[].
+ *
+ * Se presenta como List&lt;Map&lt;String,Object&gt;&gt; para que el código que
+ * consumía listas de mapas siga funcionando; cada fila es una vista sobre su
+ * array y solo admite modificar columnas existentes.
+ */
+public class RowSet extends AbstractList<Map<String, Object>> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columns;
+    private final int[] columnTypes;
+    private final List<Object[]> rows;
+    private transient Map<String, Integer> columnIndex;
+
+    /**
+     * @param columnTypes tipos de java.sql.Types para cada columna
+     */
+    public RowSet(String[] columns, int[] columnTypes) {
+        this(columns, columnTypes, new ArrayList<>());
+    }
+
+    public RowSet(String[] columns, int[] columnTypes, List<Object[]> rows) {
+        if (columns.length != columnTypes.length) {
+            throw new IllegalArgumentException("Columnas y tipos de distinta longitud");
+        }
+        this.columns = columns;
+        this.columnTypes = columnTypes;
+        this.rows = rows;
+    }
+
+    public void addRow(Object[] values) {
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException("Se esperaban " + columns.length + " valores");
+        }
+        rows.add(values);
+    }
+
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    public int[] getColumnTypes() {
+        return columnTypes.clone();
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    public int getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    /**
+     * Posición de una columna, o -1 si no existe
+     */
+    public int indexOf(String column) {
+        Integer index = index().get(column);
+        return index != null ? index : -1;
+    }
+
+    public Object getValue(int row, int column) {
+        return rows.get(row)[column];
+    }
+
+    /**
+     * Valores de una fila sin copiar
+     */
+    public Object[] getRowValues(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public Map<String, Object> get(int row) {
+        return new Row(columns, index(), rows.get(row));
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    private Map<String, Integer> index() {
+        Map<String, Integer> index = columnIndex;
+        if (index == null) {
+            index = new HashMap<>(columns.length * 4 / 3 + 1);
+            for (int i = 0; i < columns.length; i++) {
+                index.put(columns[i], i);
+            }
+            columnIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Vista de una fila como mapa columna → valor, en el orden de las columnas
+     */
+    private static final class Row extends AbstractMap<String, Object> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final transient String[] columns;
+        private final transient Map<String, Integer> index;
+        private final transient Object[] values;
+
+        Row(String[] columns, Map<String, Integer> index, Object[] values) {
+            this.columns = columns;
+            this.index = index;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer i = index.get(key);
+            return i != null ? values[i] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return index.containsKey(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Integer i = index.get(key);
+            if (i == null) {
+                throw new UnsupportedOperationException("Columna inexistente: " + key);
+            }
+            Object previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return columns.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < columns.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (next >= columns.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = next++;
+                            return new SimpleEntry<>(columns[i], values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return columns.length;
+                }
+            };
+        }
+
+        /**
+         * Una fila suelta se serializa como mapa independiente del RowSet
+         */
+        private Object writeReplace() {
+            return new LinkedHashMap<>(this);
+        }
+    }
+}
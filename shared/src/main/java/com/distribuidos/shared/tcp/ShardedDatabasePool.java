@@ -0,0 +1,819 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.model.Directory;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.FileReplica;
+import com.distribuidos.shared.model.Permission;
+import com.distribuidos.shared.model.User;
+import com.distribuidos.shared.util.ExecutorFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Reparte los metadatos entre varios servidores de base de datos
+ * (fragmentos), cada uno arrancado con db.shard.index y db.shard.count.
+ *
+ * Los datos se fragmentan por propietario: un usuario, sus directorios,
+ * sus archivos y las réplicas y permisos de esos archivos viven en el mismo
+ * fragmento, así RESOLVE_FILE y el resto de operaciones de un usuario son
+ * consultas de un solo fragmento. Cada fragmento genera ids con
+ * (id - 1) % fragmentos == índice, de modo que cualquier operación por id
+ * (o por owner_id / file_id) sabe a dónde ir sin consultar nada. Un usuario
+ * nuevo se crea en el fragmento que indica el hash de su nombre; las
+ * operaciones por nombre de usuario buscan su fragmento la primera vez y lo
+ * recuerdan.
+ *
+ * La tabla nodes es de referencia: se escribe en el fragmento 0 y cada fila
+ * se copia con el mismo id al resto para que las réplicas de archivos de
+ * cualquier fragmento puedan referenciarla.
+ *
+ * Los listados (FIND_ALL, FIND_BY_CRITERIA, SELECT libres) consultan todos
+ * los fragmentos en paralelo y concatenan los resultados; ORDER BY y LIMIT
+ * se aplican dentro de cada fragmento, así que el resultado combinado no
+ * está ordenado ni limitado. Las consultas con agregados, GROUP BY o
+ * DISTINCT se rechazan al repartirse, porque concatenar sus resultados
+ * parciales daría una respuesta incorrecta. El SQL libre que escribe
+ * (EXECUTE_QUERY que no es SELECT) debe llevar en id la clave de
+ * fragmentación (id de la fila o de su propietario) y se ejecuta solo en
+ * ese fragmento; sin ella se rechaza. Con id, un SELECT libre también va a
+ * un solo fragmento y admite agregados. FIND_PAGE combina las páginas de
+ * todos los fragmentos por id y mantiene la paginación por clave.
+ * Un BATCH se divide por fragmento y cada parte es atómica en el suyo, pero
+ * el lote completo no lo es. Una transacción se abre en el fragmento de su
+ * propietario y solo puede tocar filas de ese fragmento.
+ *
+ * Los datos de una escritura pueden ser un mapa columna → valor o un objeto
+ * de com.distribuidos.shared.model; de ambos se obtiene la clave de
+ * fragmentación. Lo que se envía tras una respuesta previa (consultar el
+ * fragmento de un usuario, copiar un nodo, repartir un lote) continúa en un
+ * ejecutor propio: las respuestas se completan en el hilo lector de una
+ * conexión, y enviar desde él puede bloquearlo esperando una conexión libre.
+ */
+public class ShardedDatabasePool implements DatabasePool {
+
+    // Tamaños de página del servidor, para cortar la página combinada igual que él
+    private static final int DEFAULT_PAGE_SIZE = 500;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final String USER_SHARD_QUERY = "SELECT id FROM users WHERE username = ?";
+    private static final String NODE_ID_QUERY = "SELECT id FROM nodes WHERE node_id = ?";
+    private static final int CONTINUATION_THREADS = 8;
+    // Consultas cuyo resultado no se obtiene concatenando el de cada fragmento
+    private static final Pattern NON_MERGEABLE = Pattern.compile(
+        "\\b(COUNT|SUM|AVG|MIN|MAX)\\s*\\(|\\bGROUP\\s+BY\\b|\\bDISTINCT\\b", Pattern.CASE_INSENSITIVE);
+
+    private final List<DatabasePool> shards;
+    private final Map<String, Integer> userShards = new ConcurrentHashMap<>();
+    private final Set<String> knownNodes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService continuations =
+        ExecutorFactory.newBlockingExecutor("db-shard-continuation", CONTINUATION_THREADS, true);
+
+    public ShardedDatabasePool(List<? extends DatabasePool> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un fragmento");
+        }
+        this.shards = new ArrayList<>(shards);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Fragmento que generó el id (y que guarda la fila)
+     */
+    public int shardOfId(long id) {
+        return Math.floorMod(id - 1, shards.size());
+    }
+
+    /**
+     * Fragmento en el que se crea un usuario nuevo
+     */
+    public int shardOfNewUser(String username) {
+        return Math.floorMod(username.hashCode(), shards.size());
+    }
+
+    @Override
+    public DatabaseResponse send(DatabaseMessage message) throws IOException, TimeoutException, InterruptedException {
+        return await(sendAsync(message));
+    }
+
+    /**
+     * Abre la transacción en el fragmento del propietario. Los nodos que
+     * registra UPDATE_FILE_REPLICAS se copian antes a todos los fragmentos,
+     * fuera de la transacción, como al enviarlo sin ella.
+     */
+    @Override
+    public DatabaseTransaction begin(User owner) throws IOException, TimeoutException, InterruptedException {
+        if (owner == null || (owner.getId() == null && owner.getUsername() == null)) {
+            throw new IllegalArgumentException("Una transacción con fragmentos requiere el propietario");
+        }
+        DatabasePool shard = shards.get(await(ownerShard(owner)));
+        return shard.begin(owner).prepareWith(message -> {
+            if (!DatabaseMessage.UPDATE_FILE_REPLICAS.equals(message.getOperation())) {
+                return null;
+            }
+            DatabaseResponse ensured = await(ensureReplicaNodes(message));
+            return ensured.isSuccess() ? null : ensured;
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException, TimeoutException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+        try {
+            return route(message);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(DatabaseResponse.error(e.getMessage()));
+        }
+    }
+
+    private CompletableFuture<DatabaseResponse> route(DatabaseMessage message) {
+        String operation = message.getOperation();
+        if (operation == null) {
+            return shards.get(0).sendAsync(message);
+        }
+        String entity = entityOf(message.getEntity());
+        switch (operation) {
+            case DatabaseMessage.PING:
+                return all(message).thenApply(ShardedDatabasePool::firstFailureOrFirst);
+
+            case DatabaseMessage.REPLICATION_PULL:
+                throw new IllegalArgumentException("REPLICATION_PULL debe enviarse a un servidor concreto");
+
+            case DatabaseMessage.FIND_BY_ID:
+                if (DatabaseMessage.NODE.equals(entity)) {
+                    return shards.get(0).sendAsync(message);
+                }
+                return onShard(shardOfId(requireId(message)), message);
+
+            case DatabaseMessage.FIND_ALL:
+            case DatabaseMessage.FIND_BY_CRITERIA:
+                if (DatabaseMessage.NODE.equals(entity)) {
+                    return shards.get(0).sendAsync(message);
+                }
+                requireMergeable(message);
+                return gather(message);
+
+            case DatabaseMessage.FIND_PAGE:
+                if (DatabaseMessage.NODE.equals(entity)) {
+                    return shards.get(0).sendAsync(message);
+                }
+                return findPage(message);
+
+            case DatabaseMessage.EXECUTE_QUERY:
+                if (!message.isReadOnly()) {
+                    if (message.getId() == null) {
+                        throw new IllegalArgumentException("EXECUTE_QUERY de escritura con fragmentos requiere id " +
+                                                           "(de la fila o de su propietario)");
+                    }
+                    // El SQL libre puede cambiar nombres de usuario o nodos
+                    userShards.clear();
+                    knownNodes.clear();
+                }
+                if (message.getId() != null) {
+                    return onShard(shardOfId(message.getId()), message);
+                }
+                requireMergeable(message);
+                return gather(message);
+
+            case DatabaseMessage.SAVE:
+            case DatabaseMessage.UPSERT:
+            case DatabaseMessage.UPDATE:
+            case DatabaseMessage.DELETE:
+                if (DatabaseMessage.NODE.equals(entity)) {
+                    return writeNode(message);
+                }
+                if (DatabaseMessage.USER.equals(entity) && !DatabaseMessage.SAVE.equals(operation)) {
+                    userShards.clear();
+                }
+                return onShard(writeShard(message), message);
+
+            case DatabaseMessage.BATCH:
+                return batch(message);
+
+            case DatabaseMessage.CREATE_FILE:
+            case DatabaseMessage.RESERVE_FILE_ID:
+                // El id reservado es del fragmento del propietario, donde se crea después la fila
+                User owner = message.getData() instanceof File ? ((File) message.getData()).getOwner()
+                    : message.getData() instanceof User ? (User) message.getData() : null;
+                return onShard(ownerShard(owner), message);
+
+            case DatabaseMessage.RESOLVE_FILE:
+            case DatabaseMessage.GET_FILE_BY_NAME:
+                Object userId = message.getData() instanceof Map ? ((Map<?, ?>) message.getData()).get("userId") : null;
+                if (userId == null) {
+                    return shards.get(0).sendAsync(message);
+                }
+                return onShard(userShard(userId.toString()), message);
+
+            case DatabaseMessage.LIST_USER_FILES:
+                if (message.getData() == null) {
+                    return shards.get(0).sendAsync(message);
+                }
+                return onShard(userShard(message.getData().toString()), message);
+
+            case DatabaseMessage.GET_FILE_REPLICAS:
+            case DatabaseMessage.DELETE_FILE:
+                return onShard(shardOfId(requireLong(message.getData(), operation + " requiere el id del archivo")),
+                               message);
+
+            case DatabaseMessage.UPDATE_FILE_REPLICAS:
+                return updateFileReplicas(message);
+
+            default:
+                return shards.get(0).sendAsync(message);
+        }
+    }
+
+    private CompletableFuture<DatabaseResponse> onShard(int shard, DatabaseMessage message) {
+        return shards.get(shard).sendAsync(message);
+    }
+
+    /**
+     * Envía el mensaje al fragmento cuando se conozca; si ya se conoce, desde este mismo hilo
+     */
+    private CompletableFuture<DatabaseResponse> onShard(CompletableFuture<Integer> shard, DatabaseMessage message) {
+        if (shard.isDone() && !shard.isCompletedExceptionally()) {
+            return onShard(shard.join(), message);
+        }
+        return shard.thenComposeAsync(index -> onShard(index, message), continuations);
+    }
+
+    /**
+     * Envía el mensaje a todos los fragmentos en paralelo; respuestas en orden de fragmento
+     */
+    private CompletableFuture<List<DatabaseResponse>> all(DatabaseMessage message) {
+        return sendTo(shards, message);
+    }
+
+    private CompletableFuture<List<DatabaseResponse>> onOtherShards(DatabaseMessage message) {
+        return sendTo(shards.subList(1, shards.size()), message);
+    }
+
+    private static CompletableFuture<List<DatabaseResponse>> sendTo(List<DatabasePool> targets,
+                                                                    DatabaseMessage message) {
+        List<CompletableFuture<DatabaseResponse>> futures = new ArrayList<>(targets.size());
+        for (DatabasePool target : targets) {
+            futures.add(target.sendAsync(message));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<DatabaseResponse> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<DatabaseResponse> future : futures) {
+                responses.add(future.join());
+            }
+            return responses;
+        });
+    }
+
+    private static DatabaseResponse firstFailureOrFirst(List<DatabaseResponse> responses) {
+        for (DatabaseResponse response : responses) {
+            if (!response.isSuccess()) {
+                return response;
+            }
+        }
+        return responses.get(0);
+    }
+
+    /**
+     * Consulta todos los fragmentos y concatena sus resultados
+     */
+    private CompletableFuture<DatabaseResponse> gather(DatabaseMessage message) {
+        return all(message).thenApply(responses -> {
+            DatabaseResponse failure = firstFailure(responses);
+            if (failure != null) {
+                return failure;
+            }
+            DatabaseResponse merged = DatabaseResponse.success(mergeData(responses));
+            merged.setAffectedRows(sumAffectedRows(responses));
+            return merged;
+        });
+    }
+
+    /**
+     * Rechaza las consultas repartidas cuyo resultado no es la concatenación
+     * de los resultados de cada fragmento
+     */
+    private static void requireMergeable(DatabaseMessage message) {
+        String query = message.getQuery();
+        if (query != null && NON_MERGEABLE.matcher(query).find()) {
+            throw new IllegalArgumentException("Consulta con agregados, GROUP BY o DISTINCT: no se puede combinar " +
+                                               "entre fragmentos; envíela con id a un solo fragmento");
+        }
+    }
+
+    private static Object mergeData(List<DatabaseResponse> responses) {
+        Object first = responses.get(0).getData();
+        if (first instanceof RowSet) {
+            RowSet template = (RowSet) first;
+            RowSet rows = new RowSet(template.getColumns(), template.getColumnTypes());
+            for (DatabaseResponse response : responses) {
+                RowSet shardRows = (RowSet) response.getData();
+                for (int i = 0; i < shardRows.size(); i++) {
+                    rows.addRow(shardRows.getRowValues(i));
+                }
+            }
+            return rows;
+        }
+        if (first instanceof Collection) {
+            List<Object> items = new ArrayList<>();
+            for (DatabaseResponse response : responses) {
+                items.addAll((Collection<?>) response.getData());
+            }
+            return items;
+        }
+        return first;
+    }
+
+    /**
+     * Página combinada: cada fragmento devuelve su siguiente página tras el
+     * mismo id y se toman las filas de menor id de todas ellas
+     */
+    private CompletableFuture<DatabaseResponse> findPage(DatabaseMessage message) {
+        int limit = message.getPageSize() <= 0 ? DEFAULT_PAGE_SIZE : Math.min(message.getPageSize(), MAX_PAGE_SIZE);
+        return all(message).thenApply(responses -> {
+            DatabaseResponse failure = firstFailure(responses);
+            if (failure != null) {
+                return failure;
+            }
+            RowSet template = (RowSet) responses.get(0).getData();
+            int idColumn = template.indexOf("ID");
+            List<Object[]> candidates = new ArrayList<>();
+            boolean shardHasMore = false;
+            for (DatabaseResponse response : responses) {
+                RowSet shardRows = (RowSet) response.getData();
+                for (int i = 0; i < shardRows.size(); i++) {
+                    candidates.add(shardRows.getRowValues(i));
+                }
+                shardHasMore |= response.hasMorePages();
+            }
+            candidates.sort((a, b) -> Long.compare(((Number) a[idColumn]).longValue(),
+                                                   ((Number) b[idColumn]).longValue()));
+
+            RowSet page = new RowSet(template.getColumns(), template.getColumnTypes());
+            for (int i = 0; i < Math.min(limit, candidates.size()); i++) {
+                page.addRow(candidates.get(i));
+            }
+            DatabaseResponse response = DatabaseResponse.success(page);
+            if ((shardHasMore || candidates.size() > limit) && !page.isEmpty()) {
+                Number lastId = (Number) page.getValue(page.size() - 1, idColumn);
+                response.setNextPageToken(PageTokens.encode(lastId.longValue()));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Fragmento de una escritura SAVE, UPSERT, UPDATE o DELETE fuera de la tabla nodes
+     */
+    private CompletableFuture<Integer> writeShard(DatabaseMessage message) {
+        Object data = message.getData();
+        Long id = message.getId() != null ? message.getId() : toLong(column(data, "id"));
+        if (id != null) {
+            return CompletableFuture.completedFuture(shardOfId(id));
+        }
+        String operation = message.getOperation();
+        if (DatabaseMessage.UPDATE.equals(operation) || DatabaseMessage.DELETE.equals(operation)) {
+            throw new IllegalArgumentException(operation + " requiere id");
+        }
+        String entity = entityOf(message.getEntity());
+        Object key;
+        switch (entity != null ? entity : "") {
+            case DatabaseMessage.USER:
+                Object username = column(data, "username");
+                if (username == null) {
+                    throw new IllegalArgumentException(operation + " de USER requiere username");
+                }
+                return DatabaseMessage.SAVE.equals(operation)
+                    ? CompletableFuture.completedFuture(shardOfNewUser(username.toString()))
+                    : userShard(username.toString());
+            case DatabaseMessage.DIRECTORY:
+            case DatabaseMessage.FILE:
+                key = column(data, "owner_id");
+                break;
+            case DatabaseMessage.FILE_REPLICA:
+                key = column(data, "file_id");
+                break;
+            case DatabaseMessage.PERMISSION:
+                key = column(data, "file_id") != null ? column(data, "file_id") : column(data, "directory_id");
+                break;
+            default:
+                throw new IllegalArgumentException("Entidad desconocida: " + message.getEntity());
+        }
+        return CompletableFuture.completedFuture(
+            shardOfId(requireLong(key, operation + " de " + entity + " requiere la clave de fragmentación")));
+    }
+
+    /**
+     * Fragmento del propietario de un CREATE_FILE, RESERVE_FILE_ID o de una transacción
+     */
+    private CompletableFuture<Integer> ownerShard(User owner) {
+        if (owner == null || (owner.getId() == null && owner.getUsername() == null)) {
+            // El servidor responde con el error de validación
+            return CompletableFuture.completedFuture(0);
+        }
+        return owner.getId() != null
+            ? CompletableFuture.completedFuture(shardOfId(owner.getId()))
+            : userShard(owner.getUsername());
+    }
+
+    /**
+     * Fragmento de un usuario existente; si no existe, el de un usuario nuevo con ese nombre
+     */
+    private CompletableFuture<Integer> userShard(String username) {
+        Integer cached = userShards.get(username);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        DatabaseMessage lookup = new DatabaseMessage(DatabaseMessage.FIND_BY_CRITERIA, DatabaseMessage.USER);
+        lookup.setQuery(USER_SHARD_QUERY);
+        lookup.setParameters(new Object[]{username});
+        return gather(lookup).thenApply(response -> {
+            if (response.isSuccess() && response.getData() instanceof RowSet && !((RowSet) response.getData()).isEmpty()) {
+                int shard = shardOfId(((Number) ((RowSet) response.getData()).getValue(0, 0)).longValue());
+                userShards.put(username, shard);
+                return shard;
+            }
+            return shardOfNewUser(username);
+        });
+    }
+
+    /**
+     * Escritura en nodes: se aplica en el fragmento 0 y se copia la fila al resto
+     */
+    private CompletableFuture<DatabaseResponse> writeNode(DatabaseMessage message) {
+        if (!DatabaseMessage.SAVE.equals(message.getOperation())) {
+            knownNodes.clear();
+        }
+        return shards.get(0).sendAsync(message).thenComposeAsync(response -> {
+            if (!response.isSuccess()) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (DatabaseMessage.DELETE.equals(message.getOperation())) {
+                return onOtherShards(message).thenApply(ignored -> response);
+            }
+            Long id = DatabaseMessage.UPDATE.equals(message.getOperation())
+                ? (message.getId() != null ? message.getId() : toLong(column(message.getData(), "id")))
+                : toLong(response.getData());
+            if (id == null) {
+                return CompletableFuture.completedFuture(response);
+            }
+            return copyNode(id).thenApply(copy -> copy.isSuccess() ? response : copy);
+        }, continuations);
+    }
+
+    /**
+     * Copia la fila del nodo del fragmento 0 al resto de fragmentos
+     */
+    private CompletableFuture<DatabaseResponse> copyNode(long id) {
+        return shards.get(0).sendAsync(new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.NODE, id))
+            .thenComposeAsync(found -> {
+                if (!found.isSuccess()) {
+                    return CompletableFuture.completedFuture(found);
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) found.getData()).entrySet()) {
+                    row.put(entry.getKey().toString(), entry.getValue());
+                }
+                DatabaseMessage upsert = new DatabaseMessage(DatabaseMessage.UPSERT, DatabaseMessage.NODE, row);
+                return onOtherShards(upsert).thenApply(responses -> {
+                    DatabaseResponse failure = firstFailure(responses);
+                    if (failure != null) {
+                        return DatabaseResponse.error("Nodo " + id + " guardado en el fragmento 0 pero no copiado: " +
+                                                      failure.getErrorMessage());
+                    }
+                    Object nodeId = column(row, "node_id");
+                    if (nodeId != null) {
+                        knownNodes.add(nodeId.toString());
+                    }
+                    return found;
+                });
+            }, continuations);
+    }
+
+    /**
+     * Antes de registrar réplicas, sus nodos deben existir con el mismo id en
+     * todos los fragmentos; si no, el fragmento del archivo los crearía con un id propio
+     */
+    private CompletableFuture<DatabaseResponse> updateFileReplicas(DatabaseMessage message) {
+        Map<?, ?> request = message.getData() instanceof Map ? (Map<?, ?>) message.getData() : Collections.emptyMap();
+        Long fileId = requireLong(request.get("fileId"), "UPDATE_FILE_REPLICAS requiere fileId");
+        return ensureReplicaNodes(message).thenComposeAsync(result -> result.isSuccess()
+            ? onShard(shardOfId(fileId), message)
+            : CompletableFuture.completedFuture(result), continuations);
+    }
+
+    /**
+     * Crea o copia en todos los fragmentos los nodos de un UPDATE_FILE_REPLICAS
+     */
+    private CompletableFuture<DatabaseResponse> ensureReplicaNodes(DatabaseMessage message) {
+        Map<?, ?> request = message.getData() instanceof Map ? (Map<?, ?>) message.getData() : Collections.emptyMap();
+        List<String> nodeIds = new ArrayList<>();
+        if (request.get("replicas") instanceof Map) {
+            for (Object nodeId : ((Map<?, ?>) request.get("replicas")).keySet()) {
+                nodeIds.add(String.valueOf(nodeId));
+            }
+        } else if (request.get("nodeIds") instanceof Collection) {
+            for (Object nodeId : (Collection<?>) request.get("nodeIds")) {
+                nodeIds.add(String.valueOf(nodeId));
+            }
+        }
+
+        CompletableFuture<DatabaseResponse> ensured = CompletableFuture.completedFuture(DatabaseResponse.success(null));
+        for (String nodeId : nodeIds) {
+            if (!knownNodes.contains(nodeId)) {
+                ensured = ensured.thenComposeAsync(previous -> previous.isSuccess()
+                    ? ensureNode(nodeId, true)
+                    : CompletableFuture.completedFuture(previous), continuations);
+            }
+        }
+        return ensured;
+    }
+
+    private CompletableFuture<DatabaseResponse> ensureNode(String nodeId, boolean retry) {
+        DatabaseMessage lookup = new DatabaseMessage(DatabaseMessage.FIND_BY_CRITERIA, DatabaseMessage.NODE);
+        lookup.setQuery(NODE_ID_QUERY);
+        lookup.setParameters(new Object[]{nodeId});
+        return shards.get(0).sendAsync(lookup).thenComposeAsync(found -> {
+            if (!found.isSuccess()) {
+                return CompletableFuture.completedFuture(found);
+            }
+            RowSet rows = (RowSet) found.getData();
+            if (!rows.isEmpty()) {
+                return copyNode(((Number) rows.getValue(0, 0)).longValue());
+            }
+            // Mismos datos mínimos con los que el servidor registra un nodo desconocido
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("node_id", nodeId);
+            node.put("hostname", nodeId);
+            node.put("port", 0);
+            node.put("storage_path", "");
+            node.put("status", "ONLINE");
+            return writeNode(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.NODE, node))
+                // Otro cliente pudo registrarlo a la vez (node_id es único)
+                .thenComposeAsync(saved -> saved.isSuccess() || !retry
+                    ? CompletableFuture.completedFuture(saved)
+                    : ensureNode(nodeId, false), continuations);
+        }, continuations);
+    }
+
+    /**
+     * Divide el lote por fragmento, ejecuta las partes en paralelo y devuelve
+     * los resultados en el orden original
+     */
+    private CompletableFuture<DatabaseResponse> batch(DatabaseMessage message) {
+        if (!(message.getData() instanceof List) || ((List<?>) message.getData()).isEmpty()) {
+            return shards.get(0).sendAsync(message);
+        }
+        List<?> operations = (List<?>) message.getData();
+        List<CompletableFuture<Integer>> targets = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            Object item = operations.get(i);
+            if (!(item instanceof DatabaseMessage)) {
+                throw new IllegalArgumentException("Operación " + i + " del lote inválida");
+            }
+            DatabaseMessage operation = (DatabaseMessage) item;
+            if (DatabaseMessage.NODE.equals(entityOf(operation.getEntity()))) {
+                throw new IllegalArgumentException("Operación " + i + " del lote inválida: " +
+                                                   "los nodos no se admiten en lotes con fragmentos");
+            }
+            if (DatabaseMessage.USER.equals(entityOf(operation.getEntity()))
+                    && !DatabaseMessage.SAVE.equals(operation.getOperation())) {
+                userShards.clear();
+            }
+            targets.add(writeShard(operation));
+        }
+
+        return CompletableFuture.allOf(targets.toArray(new CompletableFuture[0])).thenComposeAsync(ignored -> {
+            List<List<Integer>> positions = new ArrayList<>();
+            List<List<DatabaseMessage>> parts = new ArrayList<>();
+            for (int s = 0; s < shards.size(); s++) {
+                positions.add(new ArrayList<>());
+                parts.add(new ArrayList<>());
+            }
+            for (int i = 0; i < operations.size(); i++) {
+                int shard = targets.get(i).join();
+                positions.get(shard).add(i);
+                parts.get(shard).add((DatabaseMessage) operations.get(i));
+            }
+
+            List<Integer> usedShards = new ArrayList<>();
+            List<CompletableFuture<DatabaseResponse>> futures = new ArrayList<>();
+            for (int s = 0; s < shards.size(); s++) {
+                if (!parts.get(s).isEmpty()) {
+                    usedShards.add(s);
+                    futures.add(shards.get(s).sendAsync(
+                        new DatabaseMessage(DatabaseMessage.BATCH, message.getEntity(), parts.get(s))));
+                }
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+                Object[][] rows = new Object[operations.size()][];
+                RowSet template = null;
+                List<String> failures = new ArrayList<>();
+                int affectedRows = 0;
+                for (int f = 0; f < futures.size(); f++) {
+                    DatabaseResponse response = futures.get(f).join();
+                    int shard = usedShards.get(f);
+                    if (!response.isSuccess()) {
+                        failures.add("fragmento " + shard + ": " + response.getErrorMessage());
+                        continue;
+                    }
+                    RowSet shardRows = (RowSet) response.getData();
+                    template = shardRows;
+                    affectedRows += response.getAffectedRows();
+                    for (int j = 0; j < shardRows.size(); j++) {
+                        rows[positions.get(shard).get(j)] = shardRows.getRowValues(j);
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    return DatabaseResponse.error("Error ejecutando lote en " + failures.size() + " de " +
+                                                  futures.size() + " fragmentos, el resto sí se aplicó: " +
+                                                  String.join("; ", failures));
+                }
+                RowSet results = new RowSet(template.getColumns(), template.getColumnTypes());
+                for (Object[] row : rows) {
+                    results.addRow(row);
+                }
+                DatabaseResponse response = DatabaseResponse.success(results);
+                response.setAffectedRows(affectedRows);
+                return response;
+            });
+        }, continuations);
+    }
+
+    private static DatabaseResponse firstFailure(List<DatabaseResponse> responses) {
+        for (DatabaseResponse response : responses) {
+            if (!response.isSuccess()) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private static int sumAffectedRows(List<DatabaseResponse> responses) {
+        int affectedRows = 0;
+        for (DatabaseResponse response : responses) {
+            affectedRows += response.getAffectedRows();
+        }
+        return affectedRows;
+    }
+
+    /**
+     * Entidad de un mensaje por su nombre (USER) o el de su tabla (users)
+     */
+    private static String entityOf(String entity) {
+        if (entity == null) {
+            return null;
+        }
+        switch (entity.toLowerCase(Locale.ROOT)) {
+            case "user":
+            case "users":
+                return DatabaseMessage.USER;
+            case "directory":
+            case "directories":
+                return DatabaseMessage.DIRECTORY;
+            case "file":
+            case "files":
+                return DatabaseMessage.FILE;
+            case "node":
+            case "nodes":
+                return DatabaseMessage.NODE;
+            case "file_replica":
+            case "file_replicas":
+                return DatabaseMessage.FILE_REPLICA;
+            case "permission":
+            case "permissions":
+                return DatabaseMessage.PERMISSION;
+            default:
+                return entity;
+        }
+    }
+
+    /**
+     * Valor de una columna en los datos de una escritura. En un mapa se busca
+     * sin distinguir mayúsculas (el servidor las normaliza); en un objeto del
+     * modelo, una relación da el id de la entidad referenciada, como al
+     * convertirlo en columnas en el servidor.
+     */
+    private static Object column(Object data, String column) {
+        if (data instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+                if (column.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+        switch (column) {
+            case "id":
+                return idOf(data);
+            case "username":
+                return data instanceof User ? ((User) data).getUsername() : null;
+            case "owner_id":
+                return idOf(ownerOf(data));
+            case "file_id":
+                return data instanceof FileReplica ? idOf(((FileReplica) data).getFile())
+                    : data instanceof Permission ? idOf(((Permission) data).getFile()) : null;
+            case "directory_id":
+                return data instanceof Permission ? idOf(((Permission) data).getDirectory()) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static Long idOf(Object entity) {
+        if (entity instanceof User) {
+            return ((User) entity).getId();
+        }
+        if (entity instanceof File) {
+            return ((File) entity).getId();
+        }
+        if (entity instanceof Directory) {
+            return ((Directory) entity).getId();
+        }
+        if (entity instanceof FileReplica) {
+            return ((FileReplica) entity).getId();
+        }
+        if (entity instanceof Permission) {
+            return ((Permission) entity).getId();
+        }
+        return null;
+    }
+
+    /**
+     * Propietario de un archivo o directorio del modelo
+     */
+    private static User ownerOf(Object entity) {
+        if (entity instanceof File) {
+            return ((File) entity).getOwner();
+        }
+        if (entity instanceof Directory) {
+            return ((Directory) entity).getOwner();
+        }
+        return null;
+    }
+
+    private static long requireId(DatabaseMessage message) {
+        return requireLong(message.getId(), message.getOperation() + " requiere id");
+    }
+
+    private static long requireLong(Object value, String error) {
+        Long number = toLong(value);
+        if (number == null) {
+            throw new IllegalArgumentException(error);
+        }
+        return number;
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        continuations.shutdown();
+        for (DatabasePool shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.distribuidos.shared.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Anillo de hashing consistente con nodos virtuales ponderados por capacidad.
+ *
+ * Cada nodo físico ocupa un número de posiciones en el anillo proporcional a su
+ * peso (normalmente {@code NodeInfo.totalCapacity}). La lista de preferencia de
+ * una clave son los primeros nodos físicos distintos recorriendo el anillo en
+ * sentido horario, de modo que agregar o retirar un nodo solo reasigna las
+ * claves de los arcos afectados.
+ *
+ * Las lecturas no toman locks: cada cambio publica una nueva copia inmutable.
+ */
+public class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+    public static final long DEFAULT_WEIGHT_UNIT = 100L * 1024 * 1024 * 1024; // 100 GB
+    private static final int MAX_VIRTUAL_NODES_PER_NODE = 1024;
+
+    private final int virtualNodesPerUnit;
+    private final long weightUnit;
+
+    private final Object writeLock = new Object();
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+    private volatile Map<String, Long> weights = Collections.emptyMap();
+
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES, DEFAULT_WEIGHT_UNIT);
+    }
+
+    /**
+     * @param virtualNodesPerUnit nodos virtuales asignados por cada unidad de peso
+     * @param weightUnit peso equivalente a una unidad (p.ej. bytes de capacidad)
+     */
+    public ConsistentHashRing(int virtualNodesPerUnit, long weightUnit) {
+        if (virtualNodesPerUnit <= 0 || weightUnit <= 0) {
+            throw new IllegalArgumentException("Parámetros del anillo deben ser positivos");
+        }
+        this.virtualNodesPerUnit = virtualNodesPerUnit;
+        this.weightUnit = weightUnit;
+    }
+
+    /**
+     * Agrega un nodo o actualiza su peso. Sin cambio de peso no hace nada.
+     */
+    public void addNode(String nodeId, long weight) {
+        synchronized (writeLock) {
+            Long current = weights.get(nodeId);
+            if (current != null && current == weight) {
+                return;
+            }
+            Map<String, Long> newWeights = new HashMap<>(weights);
+            newWeights.put(nodeId, weight);
+            publish(newWeights);
+        }
+    }
+
+    /**
+     * Retira un nodo del anillo
+     */
+    public void removeNode(String nodeId) {
+        synchronized (writeLock) {
+            if (!weights.containsKey(nodeId)) {
+                return;
+            }
+            Map<String, Long> newWeights = new HashMap<>(weights);
+            newWeights.remove(nodeId);
+            publish(newWeights);
+        }
+    }
+
+    public boolean containsNode(String nodeId) {
+        return weights.containsKey(nodeId);
+    }
+
+    public List<String> getNodes() {
+        List<String> nodes = new ArrayList<>(weights.keySet());
+        Collections.sort(nodes);
+        return nodes;
+    }
+
+    public int size() {
+        return weights.size();
+    }
+
+    /**
+     * Obtiene los primeros {@code count} nodos físicos distintos responsables de una clave
+     */
+    public List<String> getPreferenceList(String key, int count) {
+        NavigableMap<Long, String> snapshot = ring;
+        int wanted = Math.min(count, weights.size());
+        List<String> result = new ArrayList<>(wanted);
+        if (snapshot.isEmpty() || wanted <= 0) {
+            return result;
+        }
+
+        long hash = hash(key);
+        for (String nodeId : snapshot.tailMap(hash, true).values()) {
+            if (!result.contains(nodeId) && result.add(nodeId) && result.size() == wanted) {
+                return result;
+            }
+        }
+        for (String nodeId : snapshot.headMap(hash, false).values()) {
+            if (!result.contains(nodeId) && result.add(nodeId) && result.size() == wanted) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Número de nodos virtuales que corresponden a un peso
+     */
+    public int virtualNodesFor(long weight) {
+        long vnodes = Math.round((double) weight * virtualNodesPerUnit / weightUnit);
+        return (int) Math.max(1, Math.min(MAX_VIRTUAL_NODES_PER_NODE, vnodes));
+    }
+
+    private void publish(Map<String, Long> newWeights) {
+        TreeMap<Long, String> newRing = new TreeMap<>();
+        for (Map.Entry<String, Long> entry : newWeights.entrySet()) {
+            int vnodes = virtualNodesFor(entry.getValue());
+            for (int i = 0; i < vnodes; i++) {
+                // En colisiones gana el primero de forma determinista por orden de ID
+                newRing.merge(hash(entry.getKey() + "#" + i), entry.getKey(),
+                              (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+        this.weights = Collections.unmodifiableMap(newWeights);
+        this.ring = Collections.unmodifiableNavigableMap(newRing);
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("MD5 algorithm not available", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.distribuidos.shared.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábrica de ejecutores para trabajo bloqueante (JDBC, sockets, archivos).
+ *
+ * Con executor.mode=virtual (propiedad del sistema o variable EXECUTOR_MODE)
+ * y un runtime Java 21+, cada tarea corre en su propio hilo virtual y la
+ * concurrencia deja de estar limitada por el tamaño del pool. En cualquier
+ * otro caso se usa un pool fijo de hilos de plataforma. Los hilos virtuales
+ * se obtienen por reflexión para que el código siga compilando con Java 11.
+ */
+public final class ExecutorFactory {
+
+    public static final String MODE_PROPERTY = "executor.mode";
+    public static final String MODE_ENV = "EXECUTOR_MODE";
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private static final Method VIRTUAL_BUILDER = findMethod(Thread.class, "ofVirtual");
+    private static final Method THREAD_PER_TASK_EXECUTOR =
+        findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+    private static volatile boolean fallbackReported = false;
+
+    private ExecutorFactory() {
+    }
+
+    /**
+     * Ejecutor para tareas bloqueantes según el modo configurado
+     *
+     * @param name prefijo de los nombres de hilo
+     * @param platformThreads tamaño del pool en modo plataforma
+     * @param daemon si los hilos de plataforma son daemon (los virtuales siempre lo son)
+     */
+    public static ExecutorService newBlockingExecutor(String name, int platformThreads, boolean daemon) {
+        if (isVirtualModeEnabled()) {
+            return newVirtualThreadPerTaskExecutor(name);
+        }
+        return Executors.newFixedThreadPool(platformThreads, namedThreadFactory(name, daemon));
+    }
+
+    public static ExecutorService newBlockingExecutor(String name, int platformThreads) {
+        return newBlockingExecutor(name, platformThreads, false);
+    }
+
+    /**
+     * Ejecutor con un hilo virtual por tarea
+     *
+     * @throws UnsupportedOperationException si el runtime no soporta hilos virtuales
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException("Hilos virtuales no disponibles en Java " +
+                                                    System.getProperty("java.specification.version"));
+        }
+        try {
+            // Se usan los métodos de la interfaz Thread.Builder.OfVirtual: la implementación no es pública
+            Class<?> builderType = VIRTUAL_BUILDER.getReturnType();
+            Object builder = VIRTUAL_BUILDER.invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("No se pudo crear el ejecutor de hilos virtuales", e);
+        }
+    }
+
+    /**
+     * Modo solicitado en la configuración
+     */
+    public static String getRequestedMode() {
+        String mode = System.getProperty(MODE_PROPERTY);
+        if (mode == null) {
+            mode = System.getenv(MODE_ENV);
+        }
+        return mode != null ? mode.trim().toLowerCase() : MODE_PLATFORM;
+    }
+
+    /**
+     * Modo efectivo: virtual solo si se solicitó y el runtime lo soporta
+     */
+    public static boolean isVirtualModeEnabled() {
+        if (!MODE_VIRTUAL.equals(getRequestedMode())) {
+            return false;
+        }
+        if (!isVirtualThreadsSupported()) {
+            if (!fallbackReported) {
+                fallbackReported = true;
+                System.err.println("⚠️ executor.mode=virtual requiere Java 21+, usando hilos de plataforma");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_BUILDER != null && THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    public static String getEffectiveMode() {
+        return isVirtualModeEnabled() ? MODE_VIRTUAL : MODE_PLATFORM;
+    }
+
+    /**
+     * Fábrica de hilos de plataforma con nombre numerado
+     */
+    public static ThreadFactory namedThreadFactory(String name, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
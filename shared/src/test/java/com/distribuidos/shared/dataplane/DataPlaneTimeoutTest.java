@@ -0,0 +1,222 @@
+package com.distribuidos.shared.dataplane;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de los tiempos máximos y de la validación de longitudes del plano de datos
+ */
+public class DataPlaneTimeoutTest {
+
+    private static final int READ_TIMEOUT_MS = 300;
+    private static final int IDLE_TIMEOUT_MS = 300;
+
+    @TempDir
+    Path tempDir;
+
+    private DataPlaneServer server;
+
+    /**
+     * Almacén en un directorio temporal
+     */
+    private static final class DirectoryStore implements DataPlaneFileStore {
+        private final Path dir;
+
+        DirectoryStore(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public Path locateFile(Long fileId) throws IOException {
+            Path path = dir.resolve(fileId + ".bin");
+            if (!Files.exists(path)) {
+                throw new IOException("Archivo no encontrado: " + fileId);
+            }
+            return path;
+        }
+
+        @Override
+        public Path createTempFile(Long fileId) throws IOException {
+            return Files.createTempFile(dir, fileId + "_", ".part");
+        }
+
+        @Override
+        public String commitFile(Long fileId, String fileName, Path tempFile, long size, String checksum)
+                throws IOException {
+            return Files.move(tempFile, dir.resolve(fileId + ".bin"), StandardCopyOption.REPLACE_EXISTING).toString();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new DataPlaneServer(0, new DirectoryStore(tempDir), READ_TIMEOUT_MS, IDLE_TIMEOUT_MS);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    private DataPlaneClient client(int port) {
+        return new DataPlaneClient("localhost", port, READ_TIMEOUT_MS, IDLE_TIMEOUT_MS);
+    }
+
+    @Test
+    void testLargeTransfersSurviveNonBlockingSockets() throws Exception {
+        byte[] payload = new byte[8 * 1024 * 1024];
+        new Random(7).nextBytes(payload);
+        Path source = Files.write(tempDir.resolve("source.bin"), payload);
+        Path target = tempDir.resolve("target.bin");
+
+        try (DataPlaneClient client = client(server.getPort())) {
+            client.storeFile(1L, "a.bin", payload, null);
+            assertArrayEquals(payload, client.retrieveFile(1L));
+
+            client.storeFile(2L, "b.bin", source, null);
+            assertEquals(payload.length, client.retrieveFile(2L, target));
+            assertArrayEquals(payload, Files.readAllBytes(target));
+        }
+    }
+
+    @Test
+    void testIdleConnectionsAreClosedAndNotReused() throws Exception {
+        try (DataPlaneClient client = client(server.getPort())) {
+            client.storeFile(1L, "a.bin", new byte[]{1, 2, 3}, null);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getIdleConnectionsClosed() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, server.getIdleConnectionsClosed());
+
+            // La conexión cerrada por el nodo ya no se presta
+            assertArrayEquals(new byte[]{1, 2, 3}, client.retrieveFile(1L));
+        }
+    }
+
+    @Test
+    void testStalledRequestIsAbortedByServer() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            // Cabecera que anuncia diez bytes de los que solo llega uno
+            ByteBuffer header = DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_PUT, 1L, "a.bin", null, 10);
+            DataPlaneProtocol.writeFully(channel, header, ByteBuffer.wrap(new byte[]{1}));
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertEquals(-1, channel.read(ByteBuffer.allocate(1))));
+        }
+        assertEquals(0, server.getRequestsServed());
+    }
+
+    @Test
+    void testNegativePayloadLengthIsRejected() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            DataPlaneProtocol.writeFully(channel,
+                DataPlaneProtocol.encodeRequestHeader(DataPlaneProtocol.OP_PUT, 1L, "a.bin", null, -1));
+
+            ByteBuffer response = DataPlaneProtocol.readFully(channel,
+                ByteBuffer.allocate(DataPlaneProtocol.RESPONSE_HEADER_SIZE));
+            assertEquals(DataPlaneProtocol.STATUS_ERROR, response.get());
+        }
+    }
+
+    /**
+     * Nodo falso que consume la cabecera de la solicitud y responde con los bytes dados
+     */
+    private static ServerSocket fakeNode(byte[] response, CountDownLatch release) throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        Thread thread = new Thread(() -> {
+            try (Socket client = socket.accept()) {
+                DataInputStream in = new DataInputStream(client.getInputStream());
+                in.readInt();
+                in.readByte();
+                in.readLong();
+                in.skipBytes(in.readUnsignedShort());
+                in.skipBytes(in.readUnsignedShort());
+                in.readLong();
+                OutputStream out = client.getOutputStream();
+                out.write(response);
+                out.flush();
+                release.await(10, TimeUnit.SECONDS);
+            } catch (IOException | InterruptedException e) {
+                // Fin de la prueba
+            }
+        }, "fake-dataplane-node");
+        thread.setDaemon(true);
+        thread.start();
+        return socket;
+    }
+
+    private static byte[] responseHeader(byte status, long length) {
+        return DataPlaneProtocol.encodeResponseHeader(status, length).array();
+    }
+
+    @Test
+    void testSilentNodeTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ServerSocket node = fakeNode(new byte[0], release);
+             DataPlaneClient client = client(node.getLocalPort())) {
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(SocketTimeoutException.class, () -> client.retrieveFile(1L)));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testOversizedLengthsAreRejectedBeforeAllocating() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ServerSocket node = fakeNode(responseHeader(DataPlaneProtocol.STATUS_OK, Long.MAX_VALUE), release);
+             DataPlaneClient client = client(node.getLocalPort())) {
+            IOException error = assertThrows(IOException.class, () -> client.retrieveFile(1L));
+            assertFalse(error instanceof DataPlaneClient.DataPlaneException);
+        } finally {
+            release.countDown();
+        }
+
+        CountDownLatch releaseError = new CountDownLatch(1);
+        byte[] hugeError = responseHeader(DataPlaneProtocol.STATUS_ERROR, DataPlaneProtocol.MAX_MESSAGE_LENGTH + 1L);
+        try (ServerSocket node = fakeNode(hugeError, releaseError);
+             DataPlaneClient client = client(node.getLocalPort())) {
+            IOException error = assertThrows(IOException.class,
+                () -> client.storeFile(1L, "a.bin", new byte[]{1}, null));
+            assertFalse(error instanceof DataPlaneClient.DataPlaneException);
+            assertTrue(error.getMessage().contains("mensaje de error"), error.getMessage());
+        } finally {
+            releaseError.countDown();
+        }
+    }
+
+    @Test
+    void testPathResponsesAreBounded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        byte[] header = responseHeader(DataPlaneProtocol.STATUS_OK, DataPlaneProtocol.MAX_MESSAGE_LENGTH + 1L);
+        try (ServerSocket node = fakeNode(header, release);
+             DataPlaneClient client = client(node.getLocalPort())) {
+            assertThrows(IOException.class, () -> client.storeFile(1L, "a.bin", new byte[]{1}, null));
+        } finally {
+            release.countDown();
+        }
+    }
+}
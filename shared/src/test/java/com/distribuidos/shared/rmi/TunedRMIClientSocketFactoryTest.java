@@ -0,0 +1,57 @@
+package com.distribuidos.shared.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de la fábrica de sockets cliente de RMI
+ */
+public class TunedRMIClientSocketFactoryTest {
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(TunedRMIClientSocketFactory.READ_TIMEOUT_PROPERTY);
+    }
+
+    @Test
+    @DisplayName("Una lectura sin respuesta vence en lugar de bloquear el hilo")
+    void testReadTimeoutOnSilentServer() throws Exception {
+        TunedRMIClientSocketFactory factory = new TunedRMIClientSocketFactory(64 * 1024, 1000, 200);
+
+        // Acepta la conexión pero nunca responde, como un nodo colgado
+        try (ServerSocket silent = new ServerSocket(0);
+             Socket socket = factory.createSocket("localhost", silent.getLocalPort())) {
+            assertEquals(200, socket.getSoTimeout());
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, () -> socket.getInputStream().read());
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 5000);
+        }
+    }
+
+    @Test
+    @DisplayName("La propiedad del cliente reemplaza el tiempo del exportador")
+    void testClientPropertyOverridesReadTimeout() {
+        TunedRMIClientSocketFactory factory = new TunedRMIClientSocketFactory();
+        assertEquals(TunedRMIClientSocketFactory.DEFAULT_READ_TIMEOUT_MS, factory.getReadTimeoutMillis());
+
+        System.setProperty(TunedRMIClientSocketFactory.READ_TIMEOUT_PROPERTY, "1500");
+
+        assertEquals(1500, factory.getReadTimeoutMillis());
+    }
+
+    @Test
+    @DisplayName("Fábricas con la misma configuración son iguales para compartir conexiones")
+    void testEqualityIncludesReadTimeout() {
+        assertEquals(new TunedRMIClientSocketFactory(), new TunedRMIClientSocketFactory());
+        assertEquals(new TunedRMIClientSocketFactory().hashCode(), new TunedRMIClientSocketFactory().hashCode());
+        assertNotEquals(new TunedRMIClientSocketFactory(1024, 1000, 100),
+                        new TunedRMIClientSocketFactory(1024, 1000, 200));
+    }
+}
@@ -0,0 +1,229 @@
+package com.distribuidos.shared.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de ida y vuelta del protocolo binario: todas las etiquetas de tipo,
+ * row sets con nulos, versiones anteriores, negociación y el recurso a Java
+ * serialization
+ */
+public class BinaryWireCodecTest {
+
+    private static Object roundTrip(Object data) throws IOException {
+        return BinaryWireCodec.decodeResponse(BinaryWireCodec.encodeResponse(DatabaseResponse.success(data))).getData();
+    }
+
+    @Test
+    void testSimpleValuesRoundTrip() throws IOException {
+        Timestamp timestamp = new Timestamp(1_700_000_000_123L);
+        timestamp.setNanos(123_456_789);
+
+        assertNull(roundTrip(null));
+        assertEquals("texto ñ", roundTrip("texto ñ"));
+        assertEquals(Long.MIN_VALUE, roundTrip(Long.MIN_VALUE));
+        assertEquals(-1L, roundTrip(-1L));
+        assertEquals(Integer.MAX_VALUE, roundTrip(Integer.MAX_VALUE));
+        assertEquals(3.25, roundTrip(3.25));
+        assertEquals(Boolean.TRUE, roundTrip(true));
+        assertEquals(timestamp, roundTrip(timestamp));
+        assertEquals(new Date(86_400_000L), roundTrip(new Date(86_400_000L)));
+        assertEquals(new BigDecimal("12345.6789"), roundTrip(new BigDecimal("12345.6789")));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void testCompositeValuesRoundTrip() throws IOException {
+        assertEquals(Arrays.asList("a", 1L, null), roundTrip(Arrays.asList("a", 1L, null)));
+        assertArrayEquals(new Object[]{"a", 2, null}, (Object[]) roundTrip(new Object[]{"a", 2, null}));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("fileId", 7L);
+        map.put("replicas", new LinkedHashMap<>(Map.of("node-1", "/data/7")));
+        map.put("missing", null);
+        Object decoded = roundTrip(map);
+        assertEquals(map, decoded);
+        assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(((Map<?, ?>) decoded).keySet()));
+    }
+
+    @Test
+    void testRowSetWithNullsRoundTrip() throws IOException {
+        RowSet rows = new RowSet(new String[]{"ID", "NAME", "SIZE", "MIXED"},
+                                 new int[]{Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.OTHER});
+        rows.addRow(new Object[]{1L, "a.txt", null, "x"});
+        rows.addRow(new Object[]{2L, null, 10L, 5});
+        rows.addRow(new Object[]{3L, "c.txt", 30L, null});
+
+        RowSet decoded = (RowSet) roundTrip(rows);
+
+        assertArrayEquals(rows.getColumns(), decoded.getColumns());
+        assertEquals(3, decoded.size());
+        for (int r = 0; r < rows.size(); r++) {
+            assertArrayEquals(rows.getRowValues(r), decoded.getRowValues(r));
+        }
+        assertEquals(Types.BIGINT, decoded.getColumnType(0));
+        assertEquals(Types.VARCHAR, decoded.getColumnType(1));
+        assertEquals(Types.OTHER, decoded.getColumnType(3));
+    }
+
+    @Test
+    void testListOfRowsDecodesAsRowSet() throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long i = 0; i < 3; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("note", i == 1 ? null : "n" + i);
+            rows.add(row);
+        }
+
+        Object decoded = roundTrip(rows);
+
+        assertTrue(decoded instanceof RowSet);
+        assertEquals(rows, decoded);
+    }
+
+    @Test
+    void testUnknownTypesFallBackToJavaSerialization() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        Map<Long, String> numericKeys = new HashMap<>(Map.of(1L, "uno"));
+
+        assertEquals(uuid, roundTrip(uuid));
+        assertEquals(numericKeys, roundTrip(numericKeys));
+
+        RowSet rows = new RowSet(new String[]{"ID", "TOKEN"}, new int[]{Types.BIGINT, Types.OTHER});
+        rows.addRow(new Object[]{1L, uuid});
+        RowSet decoded = (RowSet) roundTrip(rows);
+        assertEquals(uuid, decoded.getValue(0, 1));
+    }
+
+    @Test
+    void testRequestRoundTripWithNestedMessage() throws IOException {
+        DatabaseMessage nested = new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE,
+                                                     new LinkedHashMap<>(Map.of("name", "a.txt")));
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.BATCH, null, List.of(nested));
+        message.setRequestId(42L);
+        message.setId(9L);
+        message.setQuery("SELECT 1");
+        message.setParameters(new Object[]{"p", 1L});
+        message.setPageSize(100);
+        message.setPageToken("token");
+
+        DatabaseMessage decoded = BinaryWireCodec.decodeRequest(BinaryWireCodec.encodeRequest(message));
+
+        assertEquals(42L, decoded.getRequestId());
+        assertEquals(message.getOperation(), decoded.getOperation());
+        assertEquals(9L, decoded.getId());
+        assertEquals("SELECT 1", decoded.getQuery());
+        assertArrayEquals(message.getParameters(), decoded.getParameters());
+        assertEquals(100, decoded.getPageSize());
+        assertEquals("token", decoded.getPageToken());
+        DatabaseMessage decodedNested = (DatabaseMessage) ((List<?>) decoded.getData()).get(0);
+        assertEquals(DatabaseMessage.SAVE, decodedNested.getOperation());
+        assertEquals(nested.getData(), decodedNested.getData());
+        assertEquals(42L, BinaryWireCodec.peekRequestId(BinaryWireCodec.encodeRequest(message)));
+    }
+
+    @Test
+    void testOlderVersionsOmitNewerFields() throws IOException {
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.FIND_PAGE, DatabaseMessage.FILE);
+        message.setRequestId(42L);
+        message.setPageSize(50);
+        message.setPageToken("token");
+
+        byte[] v1 = BinaryWireCodec.encodeRequest(message, 1);
+        assertEquals(1, BinaryWireCodec.versionOf(v1));
+        DatabaseMessage decoded = BinaryWireCodec.decodeRequest(v1);
+        assertEquals(0L, decoded.getRequestId());
+        assertNull(decoded.getPageToken());
+        assertEquals(0L, BinaryWireCodec.peekRequestId(v1));
+
+        DatabaseMessage v2 = BinaryWireCodec.decodeRequest(BinaryWireCodec.encodeRequest(message, 2));
+        assertEquals(42L, v2.getRequestId());
+        assertNull(v2.getPageToken());
+
+        DatabaseResponse response = DatabaseResponse.success("ok");
+        response.setRequestId(7L);
+        response.setNextPageToken("next");
+        DatabaseResponse old = BinaryWireCodec.decodeResponse(BinaryWireCodec.encodeResponse(response, 2));
+        assertEquals(7L, old.getRequestId());
+        assertNull(old.getNextPageToken());
+        assertEquals("next",
+                     BinaryWireCodec.decodeResponse(BinaryWireCodec.encodeResponse(response)).getNextPageToken());
+    }
+
+    @Test
+    void testNestedMessageBeforeVersion4UsesJavaSerialization() throws IOException {
+        DatabaseMessage nested = new DatabaseMessage(DatabaseMessage.DELETE, DatabaseMessage.FILE, 5L);
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.BATCH, null, List.of(nested));
+
+        DatabaseMessage decoded = BinaryWireCodec.decodeRequest(BinaryWireCodec.encodeRequest(message, 3));
+
+        DatabaseMessage decodedNested = (DatabaseMessage) ((List<?>) decoded.getData()).get(0);
+        assertEquals(DatabaseMessage.DELETE, decodedNested.getOperation());
+        assertEquals(5L, decodedNested.getId());
+    }
+
+    @Test
+    void testRejectsNewerVersionWrongKindAndSerializedFrames() throws IOException {
+        byte[] request = BinaryWireCodec.encodeRequest(new DatabaseMessage(DatabaseMessage.PING, null));
+
+        byte[] newer = request.clone();
+        newer[1] = (byte) (BinaryWireCodec.VERSION + 1);
+        assertThrows(IOException.class, () -> BinaryWireCodec.decodeRequest(newer));
+        assertThrows(IOException.class, () -> BinaryWireCodec.decodeResponse(request));
+
+        byte[] serialized = FrameCodec.serialize(new DatabaseMessage(DatabaseMessage.PING, null));
+        assertFalse(BinaryWireCodec.isBinary(serialized));
+        assertThrows(IOException.class, () -> BinaryWireCodec.decodeRequest(serialized));
+        assertThrows(IOException.class,
+                     () -> BinaryWireCodec.decodeRequest(Arrays.copyOf(request, request.length - 1)));
+    }
+
+    @Test
+    void testNegotiationAcceptsServerVersion() throws IOException {
+        assertEquals(3, negotiateAgainst(BinaryWireCodec.encodeHello(3)));
+        assertEquals(BinaryWireCodec.VERSION, negotiateAgainst(BinaryWireCodec.encodeHello(BinaryWireCodec.VERSION + 5)));
+    }
+
+    @Test
+    void testNegotiationFallsBackToJavaSerialization() throws IOException {
+        byte[] legacyReply = FrameCodec.serialize(DatabaseResponse.error("Operación no soportada"));
+
+        assertEquals(0, negotiateAgainst(legacyReply));
+    }
+
+    /**
+     * Negocia contra un servidor que responde con la trama dada y comprueba el saludo enviado
+     */
+    private static int negotiateAgainst(byte[] reply) throws IOException {
+        ByteArrayOutputStream serverBytes = new ByteArrayOutputStream();
+        FrameCodec.writeRawFrame(new DataOutputStream(serverBytes), reply);
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+        int version = BinaryWireCodec.negotiate(new DataOutputStream(sent),
+            new DataInputStream(new ByteArrayInputStream(serverBytes.toByteArray())));
+
+        byte[] hello = FrameCodec.readRawFrame(new DataInputStream(new ByteArrayInputStream(sent.toByteArray())));
+        assertEquals(BinaryWireCodec.KIND_HELLO, BinaryWireCodec.kindOf(hello));
+        assertEquals(BinaryWireCodec.VERSION, BinaryWireCodec.versionOf(hello));
+        return version;
+    }
+}
@@ -0,0 +1,194 @@
+package com.distribuidos.shared.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del pool de conexiones contra un servidor falso con Java serialization
+ */
+public class DatabaseConnectionPoolTest {
+
+    private ServerSocket serverSocket;
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final List<String> received = new ArrayList<>();
+    /** Respuesta a cada mensaje; null cierra la conexión sin responder */
+    private volatile Function<DatabaseMessage, DatabaseResponse> handler = message -> DatabaseResponse.success();
+    private DatabaseConnectionPool pool;
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                accepted.incrementAndGet();
+                Thread thread = new Thread(() -> serve(client), "fake-db-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                DatabaseMessage message = (DatabaseMessage) FrameCodec.readFrame(in);
+                synchronized (received) {
+                    received.add(message.getOperation());
+                }
+                DatabaseResponse response = handler.apply(message);
+                if (response == null) {
+                    return;
+                }
+                response.setRequestId(message.getRequestId());
+                FrameCodec.writeFrame(out, response);
+                out.flush();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // El cliente cerró la conexión
+        }
+    }
+
+    private List<String> received() {
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::acceptLoop, "fake-db-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        serverSocket.close();
+    }
+
+    private DatabaseConnectionPool pool(DatabaseConnectionPool.Config config) {
+        pool = new DatabaseConnectionPool("localhost", serverSocket.getLocalPort(), config.preferBinary(false));
+        return pool;
+    }
+
+    private static DatabaseMessage write() {
+        return new DatabaseMessage(DatabaseMessage.DELETE, DatabaseMessage.FILE, 1L);
+    }
+
+    private static DatabaseMessage read() {
+        return new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, 1L);
+    }
+
+    @Test
+    void testIdleConnectionIsValidatedOnBorrow() throws Exception {
+        pool(new DatabaseConnectionPool.Config().validationIntervalMs(0));
+        assertTrue(pool.send(read()).isSuccess());
+
+        handler = message -> DatabaseMessage.PING.equals(message.getOperation())
+            ? DatabaseResponse.error("sin servicio")
+            : DatabaseResponse.success();
+        assertTrue(pool.send(read()).isSuccess());
+
+        assertEquals(List.of(DatabaseMessage.FIND_BY_ID, DatabaseMessage.PING, DatabaseMessage.FIND_BY_ID), received());
+        assertEquals(2, accepted.get(), "La conexión que no respondió al PING se reemplaza");
+        assertEquals(1, pool.getOpenConnections());
+    }
+
+    @Test
+    void testIdleConnectionsAreEvicted() throws Exception {
+        pool(new DatabaseConnectionPool.Config().minIdle(0).idleTimeoutMs(100));
+        assertTrue(pool.send(read()).isSuccess());
+        assertEquals(1, pool.getIdleConnections());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getOpenConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getOpenConnections());
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    void testExpiredConnectionsAreNotReused() throws Exception {
+        pool(new DatabaseConnectionPool.Config().maxLifetimeMs(1));
+        assertTrue(pool.send(read()).isSuccess());
+        Thread.sleep(5);
+        assertTrue(pool.send(read()).isSuccess());
+
+        assertEquals(2, accepted.get());
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    void testBorrowTimesOutWhenPoolIsExhausted() throws Exception {
+        pool(new DatabaseConnectionPool.Config().maxConnections(1).borrowTimeoutMs(100));
+        try (DatabaseConnectionPool.PooledConnection held = pool.borrow()) {
+            assertNotNull(held);
+            assertThrows(TimeoutException.class, () -> pool.borrow());
+        }
+        pool.borrow().close();
+    }
+
+    @Test
+    void testWriteThatMayHaveReachedServerIsNotRetried() {
+        pool(new DatabaseConnectionPool.Config());
+        handler = message -> null;
+
+        assertThrows(IOException.class, () -> pool.send(write()));
+
+        assertEquals(List.of(DatabaseMessage.DELETE), received());
+    }
+
+    @Test
+    void testReadOnlyMessageIsRetriedOnNewConnection() throws Exception {
+        pool(new DatabaseConnectionPool.Config());
+        AtomicInteger calls = new AtomicInteger();
+        handler = message -> calls.incrementAndGet() == 1 ? null : DatabaseResponse.success();
+
+        assertTrue(pool.send(read()).isSuccess());
+
+        assertEquals(List.of(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FIND_BY_ID), received());
+        assertEquals(2, accepted.get());
+    }
+
+    @Test
+    void testUnencodableMessageKeepsIdleConnections() throws Exception {
+        pool(new DatabaseConnectionPool.Config());
+        assertTrue(pool.send(read()).isSuccess());
+        assertEquals(1, pool.getIdleConnections());
+
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, new Object());
+        assertThrows(IllegalArgumentException.class, () -> pool.send(message));
+
+        assertEquals(1, pool.getIdleConnections());
+        assertThrows(ExecutionException.class, () -> pool.sendAsync(message).get());
+        assertEquals(1, pool.getIdleConnections());
+
+        assertEquals(1, accepted.get());
+        assertEquals(List.of(DatabaseMessage.FIND_BY_ID), received());
+    }
+}
@@ -0,0 +1,97 @@
+package com.distribuidos.shared.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del emparejamiento de respuestas por requestId con un servidor
+ * falso que responde en desorden
+ */
+public class MultiplexedConnectionTest {
+
+    private static final int REQUESTS = 8;
+
+    private ServerSocket serverSocket;
+    private MultiplexedConnection connection;
+
+    /**
+     * Lee todas las peticiones y las responde en orden inverso, con el ID
+     * de cada petición como dato de su respuesta
+     */
+    private void serveInReverse() {
+        try (Socket client = serverSocket.accept()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            List<DatabaseMessage> received = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                received.add((DatabaseMessage) FrameCodec.readFrame(in));
+            }
+            Collections.reverse(received);
+            for (DatabaseMessage message : received) {
+                DatabaseResponse response = DatabaseResponse.success(message.getId());
+                response.setRequestId(message.getRequestId());
+                FrameCodec.writeFrame(out, response);
+            }
+            out.flush();
+            in.read();
+        } catch (IOException | ClassNotFoundException e) {
+            // El cliente cerró la conexión al terminar la prueba
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread server = new Thread(this::serveInReverse, "fake-db-server");
+        server.setDaemon(true);
+        server.start();
+        connection = MultiplexedConnection.open("localhost", serverSocket.getLocalPort(), 2000, false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connection.close();
+        serverSocket.close();
+    }
+
+    @Test
+    void testOutOfOrderResponsesCompleteTheirOwnRequests() throws Exception {
+        List<CompletableFuture<DatabaseResponse>> futures = new ArrayList<>();
+        for (long id = 1; id <= REQUESTS; id++) {
+            futures.add(connection.sendAsync(new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, id)));
+        }
+
+        for (int i = 0; i < REQUESTS; i++) {
+            DatabaseResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals((long) (i + 1), response.getData());
+        }
+        assertEquals(0, connection.getInFlight());
+    }
+
+    @Test
+    void testPendingRequestsFailWhenConnectionCloses() {
+        CompletableFuture<DatabaseResponse> future =
+            connection.sendAsync(new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, 1L));
+
+        connection.close();
+
+        assertTrue(future.isCompletedExceptionally());
+        assertFalse(connection.isOpen());
+    }
+}
@@ -0,0 +1,167 @@
+package com.distribuidos.shared.tcp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del reparto entre primario y réplica con servidores falsos
+ */
+public class ReplicatedDatabasePoolTest {
+
+    /**
+     * Servidor con Java serialization que cuenta los mensajes recibidos
+     */
+    private static final class FakeServer {
+        final ServerSocket serverSocket;
+        final AtomicInteger reads = new AtomicInteger();
+        volatile Function<DatabaseMessage, DatabaseResponse> handler = message -> DatabaseResponse.success();
+
+        FakeServer(String name) throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, name + "-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Thread thread = new Thread(() -> serve(client), "fake-db-connection");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket socket = client) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while (true) {
+                    DatabaseMessage message = (DatabaseMessage) FrameCodec.readFrame(in);
+                    if (message.isReadOnly() && !DatabaseMessage.PING.equals(message.getOperation())) {
+                        reads.incrementAndGet();
+                    }
+                    DatabaseResponse response = handler.apply(message);
+                    response.setRequestId(message.getRequestId());
+                    FrameCodec.writeFrame(out, response);
+                    out.flush();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                // El cliente cerró la conexión
+            }
+        }
+
+        DatabaseConnectionPool pool(DatabaseConnectionPool.Config config) {
+            return new DatabaseConnectionPool("localhost", serverSocket.getLocalPort(), config.preferBinary(false));
+        }
+    }
+
+    private FakeServer primaryServer;
+    private FakeServer replicaServer;
+    private DatabaseConnectionPool primary;
+    private ReplicatedDatabasePool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        primaryServer = new FakeServer("fake-primary");
+        replicaServer = new FakeServer("fake-replica");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        primaryServer.serverSocket.close();
+        replicaServer.serverSocket.close();
+    }
+
+    private void pool(DatabaseConnectionPool.Config primaryConfig, DatabaseConnectionPool.Config replicaConfig) {
+        primary = primaryServer.pool(primaryConfig);
+        pool = new ReplicatedDatabasePool(primary, List.of(replicaServer.pool(replicaConfig)), 60_000);
+    }
+
+    private static DatabaseMessage read(long id) {
+        return new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, id);
+    }
+
+    private static DatabaseMessage write() {
+        return new DatabaseMessage(DatabaseMessage.DELETE, DatabaseMessage.FILE, 1L);
+    }
+
+    @Test
+    void testWritesOnlySendTheirOwnSessionToPrimary() throws Exception {
+        pool(new DatabaseConnectionPool.Config(), new DatabaseConnectionPool.Config());
+
+        try (ReplicatedDatabasePool.Session session = ReplicatedDatabasePool.openSession("ana")) {
+            pool.send(write());
+            pool.send(read(1));
+        }
+        try (ReplicatedDatabasePool.Session session = ReplicatedDatabasePool.openSession("luis")) {
+            pool.send(read(1));
+            pool.sendAsync(read(2)).get(5, TimeUnit.SECONDS);
+        }
+        pool.send(read(3));
+
+        assertEquals(1, primaryServer.reads.get(), "Solo la lectura de ana va al primario");
+        assertEquals(3, replicaServer.reads.get());
+        assertEquals(1, pool.getPrimaryReads());
+    }
+
+    @Test
+    void testTransactionCountsAsWriteOfItsSession() throws Exception {
+        pool(new DatabaseConnectionPool.Config(), new DatabaseConnectionPool.Config());
+
+        try (ReplicatedDatabasePool.Session session = ReplicatedDatabasePool.openSession("ana")) {
+            pool.begin(null).close();
+            pool.send(read(1));
+        }
+        pool.send(read(2));
+
+        assertEquals(1, primaryServer.reads.get());
+        assertEquals(1, replicaServer.reads.get());
+    }
+
+    @Test
+    void testAsyncFallbackDoesNotBlockReplicaReader() throws Exception {
+        pool(new DatabaseConnectionPool.Config().maxConnections(1).borrowTimeoutMs(5000),
+             new DatabaseConnectionPool.Config().maxConnections(1));
+        replicaServer.handler = message -> message.getId() != null && message.getId() == 1L
+            ? DatabaseResponse.replicaUnavailable("desfase")
+            : DatabaseResponse.success(message.getId());
+
+        CompletableFuture<DatabaseResponse> fallback;
+        try (DatabaseConnectionPool.PooledConnection held = primary.borrow()) {
+            assertNotNull(held);
+            // La repetición en el primario espera la conexión retenida
+            fallback = pool.sendAsync(read(1));
+            // Mientras tanto, la conexión de la réplica sigue entregando respuestas
+            assertEquals(2L, pool.sendAsync(read(2)).get(5, TimeUnit.SECONDS).getData());
+            assertFalse(fallback.isDone());
+        }
+
+        assertTrue(fallback.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, primaryServer.reads.get());
+        assertEquals(1, pool.getFallbacks());
+    }
+}
@@ -0,0 +1,371 @@
+package com.distribuidos.shared.tcp;
+
+import com.distribuidos.shared.model.Directory;
+import com.distribuidos.shared.model.File;
+import com.distribuidos.shared.model.FileReplica;
+import com.distribuidos.shared.model.Permission;
+import com.distribuidos.shared.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas del reparto de mensajes entre fragmentos con fragmentos falsos en memoria
+ */
+public class ShardedDatabasePoolTest {
+
+    /**
+     * Fragmento que registra los mensajes recibidos y responde con un manejador
+     */
+    private static final class FakeShard implements DatabasePool {
+        final int index;
+        final List<DatabaseMessage> received = new ArrayList<>();
+        final List<User> begun = new ArrayList<>();
+        final List<String> sendingThreads = new ArrayList<>();
+        Function<DatabaseMessage, DatabaseResponse> handler = message -> DatabaseResponse.success();
+        /** Si no es null, las respuestas se completan en su hilo, como en el lector de una conexión */
+        ExecutorService reader;
+
+        FakeShard(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public DatabaseResponse send(DatabaseMessage message) {
+            return sendAsync(message).join();
+        }
+
+        @Override
+        public synchronized CompletableFuture<DatabaseResponse> sendAsync(DatabaseMessage message) {
+            received.add(message);
+            sendingThreads.add(Thread.currentThread().getName());
+            if (reader != null) {
+                return CompletableFuture.supplyAsync(() -> handler.apply(message), reader);
+            }
+            return CompletableFuture.completedFuture(handler.apply(message));
+        }
+
+        @Override
+        public DatabaseTransaction begin(User owner) throws IOException {
+            begun.add(owner);
+            throw new IOException("Fragmento de prueba sin transacciones");
+        }
+
+        synchronized List<String> operations() {
+            List<String> operations = new ArrayList<>();
+            for (DatabaseMessage message : received) {
+                operations.add(message.getOperation());
+            }
+            return operations;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private List<FakeShard> shards;
+    private ShardedDatabasePool pool;
+
+    @BeforeEach
+    void setUp() {
+        shards = Arrays.asList(new FakeShard(0), new FakeShard(1), new FakeShard(2));
+        pool = new ShardedDatabasePool(shards);
+    }
+
+    private static RowSet idRows(long... ids) {
+        RowSet rows = new RowSet(new String[]{"ID", "NAME"}, new int[]{Types.BIGINT, Types.VARCHAR});
+        for (long id : ids) {
+            rows.addRow(new Object[]{id, "f" + id});
+        }
+        return rows;
+    }
+
+    private static List<Long> ids(RowSet rows) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            ids.add(((Number) rows.getValue(i, 0)).longValue());
+        }
+        return ids;
+    }
+
+    private static DatabaseMessage query(String sql) {
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.EXECUTE_QUERY, null);
+        message.setQuery(sql);
+        return message;
+    }
+
+    @Test
+    void testIdsAreStripedAcrossShards() {
+        assertEquals(0, pool.shardOfId(1));
+        assertEquals(1, pool.shardOfId(2));
+        assertEquals(2, pool.shardOfId(3));
+        assertEquals(0, pool.shardOfId(4));
+        assertEquals(2, pool.shardOfId(300));
+    }
+
+    @Test
+    void testRoutesByIdAndOwner() throws Exception {
+        pool.send(new DatabaseMessage(DatabaseMessage.FIND_BY_ID, DatabaseMessage.FILE, 5L));
+        assertEquals(1, shards.get(1).received.size());
+
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("name", "a.txt");
+        file.put("owner_id", 3L);
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, file));
+        assertEquals(List.of(DatabaseMessage.SAVE), shards.get(2).operations());
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", "ana");
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user));
+        List<String> userShardOperations = shards.get(pool.shardOfNewUser("ana")).operations();
+        assertEquals(DatabaseMessage.SAVE, userShardOperations.get(userShardOperations.size() - 1));
+
+        assertFalse(pool.send(new DatabaseMessage(DatabaseMessage.UPDATE, DatabaseMessage.FILE)).isSuccess());
+    }
+
+    @Test
+    void testTransactionsOpenOnOwnerShard() {
+        User owner = new User();
+        owner.setId(5L);
+
+        assertThrows(IOException.class, () -> pool.begin(owner));
+
+        assertEquals(List.of(owner), shards.get(1).begun);
+        assertTrue(shards.get(0).begun.isEmpty());
+        assertTrue(shards.get(2).begun.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> pool.begin(new User()));
+    }
+
+    @Test
+    void testNodeWritesAreCopiedToEveryShard() throws Exception {
+        Map<String, Object> stored = new LinkedHashMap<>();
+        stored.put("ID", 7L);
+        stored.put("NODE_ID", "node-1");
+        shards.get(0).handler = message -> DatabaseMessage.SAVE.equals(message.getOperation())
+            ? DatabaseResponse.success(7L)
+            : DatabaseResponse.success(stored);
+
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("node_id", "node-1");
+        DatabaseResponse response = pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.NODE, node));
+
+        assertTrue(response.isSuccess());
+        assertEquals(List.of(DatabaseMessage.SAVE, DatabaseMessage.FIND_BY_ID), shards.get(0).operations());
+        for (int s = 1; s < shards.size(); s++) {
+            assertEquals(List.of(DatabaseMessage.UPSERT), shards.get(s).operations());
+            assertEquals(stored, shards.get(s).received.get(0).getData());
+        }
+    }
+
+    @Test
+    void testFindPageMergesShardPagesById() throws Exception {
+        shards.get(0).handler = message -> page(idRows(1, 4, 7), true);
+        shards.get(1).handler = message -> page(idRows(2, 5), false);
+        shards.get(2).handler = message -> page(idRows(3), false);
+
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.FIND_PAGE, DatabaseMessage.FILE);
+        message.setPageSize(4);
+        DatabaseResponse response = pool.send(message);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids((RowSet) response.getData()));
+        assertEquals(4L, PageTokens.decode(response.getNextPageToken()));
+        for (FakeShard shard : shards) {
+            assertEquals(1, shard.received.size());
+        }
+    }
+
+    @Test
+    void testFindPageEndsWhenNoShardHasMore() throws Exception {
+        shards.get(0).handler = message -> page(idRows(1), false);
+        shards.get(1).handler = message -> page(idRows(2), false);
+        shards.get(2).handler = message -> page(idRows(), false);
+
+        DatabaseMessage message = new DatabaseMessage(DatabaseMessage.FIND_PAGE, DatabaseMessage.FILE);
+        message.setPageSize(10);
+        DatabaseResponse response = pool.send(message);
+
+        assertEquals(List.of(1L, 2L), ids((RowSet) response.getData()));
+        assertFalse(response.hasMorePages());
+    }
+
+    @Test
+    void testReadQueriesAreGatheredFromEveryShard() throws Exception {
+        for (FakeShard shard : shards) {
+            shard.handler = message -> DatabaseResponse.success(idRows(shard.index + 1));
+        }
+
+        DatabaseResponse response = pool.send(query("SELECT id, name FROM files"));
+
+        assertEquals(List.of(1L, 2L, 3L), ids((RowSet) response.getData()));
+    }
+
+    @Test
+    void testWriteQueryWithoutRoutingKeyIsRejected() throws Exception {
+        DatabaseResponse response = pool.send(query("UPDATE files SET file_size = 0"));
+
+        assertFalse(response.isSuccess());
+        for (FakeShard shard : shards) {
+            assertTrue(shard.received.isEmpty());
+        }
+    }
+
+    @Test
+    void testWriteQueryWithRoutingKeyGoesToOneShard() throws Exception {
+        DatabaseMessage message = query("UPDATE files SET file_size = 0 WHERE owner_id = 2");
+        message.setId(2L);
+
+        assertTrue(pool.send(message).isSuccess());
+
+        assertEquals(0, shards.get(0).received.size());
+        assertEquals(1, shards.get(1).received.size());
+        assertEquals(0, shards.get(2).received.size());
+    }
+
+    @Test
+    void testAggregatesAreRejectedUnlessRouted() throws Exception {
+        assertFalse(pool.send(query("SELECT COUNT(*) FROM files")).isSuccess());
+        assertFalse(pool.send(query("select owner_id, sum(file_size) from files group by owner_id")).isSuccess());
+        DatabaseMessage criteria = new DatabaseMessage(DatabaseMessage.FIND_BY_CRITERIA, DatabaseMessage.FILE);
+        criteria.setQuery("SELECT DISTINCT name FROM files");
+        assertFalse(pool.send(criteria).isSuccess());
+        for (FakeShard shard : shards) {
+            assertTrue(shard.received.isEmpty());
+        }
+
+        DatabaseMessage routed = query("SELECT COUNT(*) FROM files WHERE owner_id = 3");
+        routed.setId(3L);
+        assertTrue(pool.send(routed).isSuccess());
+        assertEquals(1, shards.get(2).received.size());
+    }
+
+    @Test
+    void testBatchIsSplitByShardAndKeepsOrder() throws Exception {
+        for (FakeShard shard : shards) {
+            shard.handler = message -> {
+                List<?> operations = (List<?>) message.getData();
+                RowSet rows = new RowSet(new String[]{"ID"}, new int[]{Types.BIGINT});
+                for (Object operation : operations) {
+                    rows.addRow(new Object[]{((DatabaseMessage) operation).getId()});
+                }
+                DatabaseResponse response = DatabaseResponse.success(rows);
+                response.setAffectedRows(operations.size());
+                return response;
+            };
+        }
+        List<DatabaseMessage> operations = new ArrayList<>();
+        for (long id : new long[]{3, 1, 2, 4}) {
+            operations.add(new DatabaseMessage(DatabaseMessage.DELETE, DatabaseMessage.FILE, id));
+        }
+
+        DatabaseResponse response = pool.send(new DatabaseMessage(DatabaseMessage.BATCH, null, operations));
+
+        RowSet rows = (RowSet) response.getData();
+        assertEquals(List.of(3L, 1L, 2L, 4L), ids(rows));
+        assertEquals(4, response.getAffectedRows());
+        assertEquals(2, ((List<?>) shards.get(0).received.get(0).getData()).size());
+    }
+
+    private static DatabaseResponse page(RowSet rows, boolean more) {
+        DatabaseResponse response = DatabaseResponse.success(rows);
+        if (more && !rows.isEmpty()) {
+            response.setNextPageToken(PageTokens.encode(((Number) rows.getValue(rows.size() - 1, 0)).longValue()));
+        }
+        return response;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static File file(long id) {
+        File file = new File();
+        file.setId(id);
+        return file;
+    }
+
+    private DatabaseMessage lastReceived(int shard) {
+        List<DatabaseMessage> received = shards.get(shard).received;
+        return received.get(received.size() - 1);
+    }
+
+    @Test
+    void testModelObjectsAreRoutedByTheirKeys() throws Exception {
+        File owned = new File();
+        owned.setOwner(user(3L));
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, owned));
+        assertSame(owned, lastReceived(2).getData());
+
+        Directory directory = new Directory();
+        directory.setOwner(user(2L));
+        pool.send(new DatabaseMessage(DatabaseMessage.UPSERT, DatabaseMessage.DIRECTORY, directory));
+        assertSame(directory, lastReceived(1).getData());
+
+        FileReplica replica = new FileReplica();
+        replica.setFile(file(4L));
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE_REPLICA, replica));
+        assertSame(replica, lastReceived(0).getData());
+
+        Permission permission = new Permission();
+        Directory shared = new Directory();
+        shared.setId(5L);
+        permission.setDirectory(shared);
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.PERMISSION, permission));
+        assertSame(permission, lastReceived(1).getData());
+
+        User user = new User();
+        user.setUsername("ana");
+        pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.USER, user));
+        assertSame(user, lastReceived(pool.shardOfNewUser("ana")).getData());
+
+        // El id de la propia fila manda sobre el del propietario
+        File renamed = file(6L);
+        renamed.setOwner(user(1L));
+        pool.send(new DatabaseMessage(DatabaseMessage.UPDATE, DatabaseMessage.FILE, renamed));
+        assertSame(renamed, lastReceived(2).getData());
+
+        assertFalse(pool.send(new DatabaseMessage(DatabaseMessage.SAVE, DatabaseMessage.FILE, new File())).isSuccess());
+    }
+
+    @Test
+    void testContinuationsLeaveTheCompletingThread() throws Exception {
+        ExecutorService reader = Executors.newSingleThreadExecutor(r -> new Thread(r, "fake-reader"));
+        try {
+            for (FakeShard shard : shards) {
+                shard.reader = reader;
+            }
+            shards.get(2).handler = message -> DatabaseMessage.FIND_BY_CRITERIA.equals(message.getOperation())
+                ? DatabaseResponse.success(idRows(3L))
+                : DatabaseResponse.success();
+            for (int i = 0; i < 2; i++) {
+                shards.get(i).handler = message -> DatabaseResponse.success(idRows());
+            }
+
+            DatabaseMessage list = new DatabaseMessage(DatabaseMessage.LIST_USER_FILES, null, "ana");
+            assertTrue(pool.sendAsync(list).get(5, TimeUnit.SECONDS).isSuccess());
+
+            // La búsqueda del fragmento del usuario se completa en el lector; el envío siguiente no
+            assertEquals(DatabaseMessage.LIST_USER_FILES, lastReceived(2).getOperation());
+            List<String> threads = shards.get(2).sendingThreads;
+            assertNotEquals("fake-reader", threads.get(threads.size() - 1));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+}
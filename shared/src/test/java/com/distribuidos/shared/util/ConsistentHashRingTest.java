@@ -0,0 +1,139 @@
+package com.distribuidos.shared.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas unitarias del anillo de hashing consistente
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 20_000;
+    private static final long UNIT = ConsistentHashRing.DEFAULT_WEIGHT_UNIT;
+
+    @Test
+    @DisplayName("La lista de preferencia tiene nodos físicos distintos y es determinista")
+    void testPreferenceListDistinctAndStable() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3");
+
+        for (int key = 0; key < 1000; key++) {
+            List<String> preference = ring.getPreferenceList(String.valueOf(key), 3);
+            assertEquals(3, preference.size());
+            assertEquals(3, preference.stream().distinct().count());
+            assertEquals(preference, ring.getPreferenceList(String.valueOf(key), 3));
+        }
+        assertEquals(3, ring.getPreferenceList("x", 10).size(), "No más nodos que los del anillo");
+        assertTrue(new ConsistentHashRing().getPreferenceList("x", 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Las claves se reparten en proporción al peso de cada nodo")
+    void testWeightedDistribution() {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        ring.addNode("small", UNIT);
+        ring.addNode("large", 3 * UNIT);
+
+        Map<String, Integer> owners = countOwners(ring);
+
+        double largeShare = owners.get("large") / (double) KEYS;
+        assertEquals(0.75, largeShare, 0.08, "El nodo con triple peso recibe ~3/4 de las claves");
+    }
+
+    @Test
+    @DisplayName("Los nodos virtuales crecen con el peso dentro de los límites")
+    void testVirtualNodesForWeight() {
+        ConsistentHashRing ring = new ConsistentHashRing();
+
+        assertEquals(ConsistentHashRing.DEFAULT_VIRTUAL_NODES, ring.virtualNodesFor(UNIT));
+        assertEquals(2 * ConsistentHashRing.DEFAULT_VIRTUAL_NODES, ring.virtualNodesFor(2 * UNIT));
+        assertEquals(1, ring.virtualNodesFor(1), "Al menos un nodo virtual");
+        assertEquals(1024, ring.virtualNodesFor(1000 * UNIT), "Acotado por nodo");
+    }
+
+    @Test
+    @DisplayName("Agregar un nodo solo mueve las claves que pasan a ese nodo")
+    void testMinimalMovementOnAdd() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3");
+        Map<Integer, String> before = primaries(ring);
+
+        ring.addNode("node-4", UNIT);
+        Map<Integer, String> after = primaries(ring);
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (!before.get(key).equals(after.get(key))) {
+                assertEquals("node-4", after.get(key), "Una clave solo puede moverse al nodo nuevo");
+                moved++;
+            }
+        }
+        assertEquals(0.25, moved / (double) KEYS, 0.08, "Se mueve ~1/4 de las claves");
+    }
+
+    @Test
+    @DisplayName("Retirar un nodo solo mueve las claves que tenía ese nodo")
+    void testMinimalMovementOnRemove() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2", "node-3", "node-4");
+        Map<Integer, String> before = primaries(ring);
+
+        ring.removeNode("node-2");
+        Map<Integer, String> after = primaries(ring);
+
+        for (int key = 0; key < KEYS; key++) {
+            if (!"node-2".equals(before.get(key))) {
+                assertEquals(before.get(key), after.get(key), "Las claves de otros nodos no se mueven");
+            }
+        }
+        assertFalse(ring.containsNode("node-2"));
+        assertFalse(after.containsValue("node-2"));
+    }
+
+    @Test
+    @DisplayName("Actualizar con el mismo peso no cambia el anillo")
+    void testSameWeightIsNoop() {
+        ConsistentHashRing ring = ringOf("node-1", "node-2");
+        Map<Integer, String> before = primaries(ring);
+
+        ring.addNode("node-1", UNIT);
+
+        assertEquals(before, primaries(ring));
+        assertEquals(Arrays.asList("node-1", "node-2"), ring.getNodes());
+    }
+
+    @Test
+    @DisplayName("Rechaza parámetros no positivos")
+    void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0, UNIT));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(64, 0));
+    }
+
+    private static ConsistentHashRing ringOf(String... nodes) {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        for (String node : nodes) {
+            ring.addNode(node, UNIT);
+        }
+        return ring;
+    }
+
+    private static Map<Integer, String> primaries(ConsistentHashRing ring) {
+        Map<Integer, String> primaries = new HashMap<>();
+        for (int key = 0; key < KEYS; key++) {
+            primaries.put(key, ring.getPreferenceList(String.valueOf(key), 1).get(0));
+        }
+        return primaries;
+    }
+
+    private static Map<String, Integer> countOwners(ConsistentHashRing ring) {
+        Map<String, Integer> owners = new HashMap<>();
+        for (String owner : primaries(ring).values()) {
+            owners.merge(owner, 1, Integer::sum);
+        }
+        return owners;
+    }
+}
@@ -1,5 +1,7 @@
 package com.distribuidos.storagenode1;
 
+import com.distribuidos.shared.dataplane.DataPlaneProtocol;
+
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.time.LocalDateTime;
@@ -60,9 +62,16 @@ public class StorageNode1Main {
             System.out.println("📝 " + getCurrentTimestamp() + " - Registrando servicio: " + SERVICE_NAME);
             registry.rebind(SERVICE_NAME, storageNode);
             
+            // Registrarse en el servidor de aplicación y enviar heartbeats
+            storageNode.startHeartbeatMonitoring();
+            
+            // Iniciar el plano de datos NIO (RMI queda para operaciones de control)
+            storageNode.startDataPlane(rmiPort + DataPlaneProtocol.DEFAULT_PORT_OFFSET);
+            
             System.out.println();
             System.out.println("✅ ======= STORAGE NODE 1 INICIADO EXITOSAMENTE =======");
             System.out.println("🌐 Servicio RMI disponible en: rmi://localhost:" + rmiPort + "/" + SERVICE_NAME);
+            System.out.println("🚚 Plano de datos en puerto: " + (rmiPort + DataPlaneProtocol.DEFAULT_PORT_OFFSET));
             System.out.println("📂 Directorio de almacenamiento: " + storagePath);
             System.out.println("🆔 Node ID: " + nodeId);
             System.out.println("⏰ Hora de inicio: " + getCurrentTimestamp());
@@ -74,6 +83,8 @@ public class StorageNode1Main {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println();
                 System.out.println("🛑 " + getCurrentTimestamp() + " - Recibida señal de apagado");
+                storageNode.stopHeartbeatMonitoring();
+                storageNode.stopDataPlane();
                 System.out.println("👋 " + getCurrentTimestamp() + " - Storage Node 1 terminado");
             }));
             
@@ -1,13 +1,22 @@
 package com.distribuidos.storagenode1;
 
+import com.distribuidos.shared.dataplane.DataPlaneClient;
+import com.distribuidos.shared.rmi.BatchItemResult;
+import com.distribuidos.shared.rmi.BatchStoreItem;
 import com.distribuidos.shared.rmi.NodeInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +39,7 @@ class StorageNode1ImplTest {
 
     @AfterEach
     void tearDown() {
+        storageNode.stopDataPlane();
         storageNode = null;
     }
 
@@ -186,6 +196,72 @@ class StorageNode1ImplTest {
         System.out.println("✅ Test storeFileWithInvalidData completado - Validaciones funcionando");
     }
 
+    @Test
+    void testBatchOperations() throws RemoteException {
+        byte[] firstData = "Primer archivo del lote".getBytes();
+        byte[] secondData = "Segundo archivo del lote".getBytes();
+        String firstChecksum = calculateChecksum(firstData);
+        String secondChecksum = calculateChecksum(secondData);
+
+        // Almacenar en un solo lote, con un elemento inválido que no debe abortar el resto
+        List<BatchItemResult<String>> stored = storageNode.storeFiles(Arrays.asList(
+            new BatchStoreItem(30L, "lote1.txt", firstData, firstChecksum),
+            new BatchStoreItem(31L, "lote2.txt", secondData, secondChecksum),
+            new BatchStoreItem(32L, "lote3.txt", null, "checksum")));
+        assertEquals(3, stored.size());
+        assertTrue(stored.get(0).isSuccess());
+        assertTrue(stored.get(1).isSuccess());
+        assertFalse(stored.get(2).isSuccess(), "El elemento inválido debe fallar por separado");
+
+        // Recuperar en lote
+        List<BatchItemResult<byte[]>> retrieved = storageNode.retrieveFiles(Arrays.asList(30L, 31L, 99L));
+        assertArrayEquals(firstData, retrieved.get(0).getValue());
+        assertArrayEquals(secondData, retrieved.get(1).getValue());
+        assertFalse(retrieved.get(2).isSuccess(), "Un archivo inexistente debe fallar por separado");
+
+        // Verificar en lote
+        Map<Long, String> checksums = new HashMap<>();
+        checksums.put(30L, firstChecksum);
+        checksums.put(31L, "checksum-incorrecto");
+        for (BatchItemResult<Boolean> result : storageNode.verifyFiles(checksums)) {
+            assertEquals(result.getFileId() == 30L, result.getValue());
+        }
+
+        // Eliminar en lote
+        List<BatchItemResult<Boolean>> deleted = storageNode.deleteFiles(Arrays.asList(30L, 31L));
+        assertTrue(deleted.stream().allMatch(result -> Boolean.TRUE.equals(result.getValue())));
+
+        System.out.println("✅ Test batchOperations completado - Lote procesado por elemento");
+    }
+
+    @Test
+    void testDataPlaneRoundTrip() throws IOException {
+        // Iniciar el plano de datos en un puerto libre
+        storageNode.startDataPlane(0);
+        int dataPort = storageNode.getNodeInfo().getDataPort();
+        
+        byte[] fileData = "Contenido transferido por el plano de datos".getBytes();
+        String checksum = calculateChecksum(fileData);
+        
+        try (DataPlaneClient client = new DataPlaneClient("localhost", dataPort)) {
+            String localPath = client.storeFile(20L, "dataplane.txt", fileData, checksum);
+            assertTrue(localPath.contains("dataplane.txt"), "El path debe contener el nombre del archivo");
+            assertTrue(Files.exists(tempDir.resolve("node1/data/20_dataplane.txt")),
+                "El archivo debe quedar en el directorio de la prueba");
+            
+            // El archivo queda visible también por RMI
+            assertArrayEquals(fileData, storageNode.retrieveFile(20L, null));
+            assertArrayEquals(fileData, client.retrieveFile(20L));
+            
+            // Un checksum incorrecto se rechaza sin romper la conexión
+            assertThrows(DataPlaneClient.DataPlaneException.class,
+                () -> client.storeFile(21L, "corrupto.txt", fileData, "checksum-invalido"));
+            assertThrows(DataPlaneClient.DataPlaneException.class, () -> client.retrieveFile(21L));
+        }
+        
+        System.out.println("✅ Test dataPlaneRoundTrip completado - puerto " + dataPort);
+    }
+
     /**
      * Calcula checksum SHA-256 para las pruebas
      */
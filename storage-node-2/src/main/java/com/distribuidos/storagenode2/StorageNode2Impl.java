@@ -2,16 +2,23 @@ package com.distribuidos.storagenode2;
 
 import com.distribuidos.shared.rmi.StorageNodeInterface;
 import com.distribuidos.shared.rmi.NodeInfo;
+import com.distribuidos.shared.rmi.BatchItemResult;
+import com.distribuidos.shared.rmi.BatchStoreItem;
+import com.distribuidos.shared.rmi.NodeHeartbeatPublisher;
+import com.distribuidos.shared.rmi.TunedRMIClientSocketFactory;
+import com.distribuidos.shared.rmi.TunedRMIServerSocketFactory;
+import com.distribuidos.shared.dataplane.DataPlaneFileStore;
+import com.distribuidos.shared.dataplane.DataPlaneProtocol;
+import com.distribuidos.shared.dataplane.DataPlaneServer;
 import com.distribuidos.storagenode2.service.FileStorageService;
 import com.distribuidos.storagenode2.service.ReplicationService;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.io.File;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,32 +34,97 @@ public class StorageNode2Impl extends UnicastRemoteObject implements StorageNode
     
     // Configuración del nodo
     private static final String NODE_ID = "storage-node-2";
+    private static final String SERVICE_NAME = "StorageNode2";
     private static final int RMI_PORT = 1100;
-    private static final String STORAGE_PATH = "./storage/node2";
+    // Directorio por defecto; la propiedad storage.path lo reemplaza (p. ej. en pruebas)
+    private static final String DEFAULT_STORAGE_PATH = "./storage/node2";
+    private static final int DATA_PORT = RMI_PORT + DataPlaneProtocol.DEFAULT_PORT_OFFSET;
     
     // Servicios
     private final FileStorageService fileStorageService;
     private final ReplicationService replicationService;
+    private final NodeHeartbeatPublisher heartbeatPublisher;
+    private final String storagePath;
+    private DataPlaneServer dataPlaneServer;
     
     public StorageNode2Impl() throws RemoteException {
-        super();
+        super(0, new TunedRMIClientSocketFactory(), new TunedRMIServerSocketFactory());
         
         String timestamp = dateFormat.format(new Date());
         logger.info("🚀 [{}] Inicializando Storage Node 2...", timestamp);
         
         // Inicializar servicios
-        this.fileStorageService = new FileStorageService(STORAGE_PATH, NODE_ID);
+        this.storagePath = System.getProperty("storage.path", DEFAULT_STORAGE_PATH);
+        this.fileStorageService = new FileStorageService(storagePath, NODE_ID);
         this.replicationService = new ReplicationService(NODE_ID);
         
-        // Registrar en el servidor de aplicación
-        registerWithApplicationServer();
-        
-        // Iniciar monitoreo
-        startHeartbeatMonitoring();
+        // Registro y heartbeats hacia el servidor de aplicación (se inician tras publicar el nodo)
+        this.heartbeatPublisher = new NodeHeartbeatPublisher(SERVICE_NAME, storagePath, this::buildNodeInfo);
         
         logger.info("✅ [{}] Storage Node 2 inicializado correctamente", timestamp);
     }
     
+    /**
+     * Inicia el plano de datos NIO para transferencias de bytes fuera de RMI
+     */
+    public void startDataPlane() throws IOException {
+        startDataPlane(DATA_PORT);
+    }
+    
+    public synchronized void startDataPlane(int port) throws IOException {
+        if (dataPlaneServer == null) {
+            dataPlaneServer = new DataPlaneServer(port, dataPlaneStore());
+            dataPlaneServer.start();
+            logger.info("🚚 Plano de datos de Storage Node 2 activo en puerto {}", dataPlaneServer.getPort());
+        }
+    }
+    
+    /**
+     * Almacén del plano de datos: una escritura confirmada sigue el mismo
+     * camino que storeFile por RMI, incluida la cola de replicación
+     */
+    private DataPlaneFileStore dataPlaneStore() {
+        return new DataPlaneFileStore() {
+            @Override
+            public Path locateFile(Long fileId) throws IOException {
+                return fileStorageService.locateFile(fileId);
+            }
+
+            @Override
+            public Path createTempFile(Long fileId) throws IOException {
+                return fileStorageService.createTempFile(fileId);
+            }
+
+            @Override
+            public String commitFile(Long fileId, String fileName, Path tempFile, long size, String checksum)
+                    throws IOException {
+                String timestamp = dateFormat.format(new Date());
+                logger.info("📥 [{}] Recibiendo archivo por plano de datos: {} (ID: {}, Size: {} bytes, Checksum: {})",
+                           timestamp, fileName, fileId, size, checksum);
+                
+                String localPath = fileStorageService.commitFile(fileId, fileName, tempFile, size, checksum);
+                replicationService.notifyFileStored(fileId.toString(), fileName, localPath);
+                
+                logger.info("✅ [{}] Archivo almacenado exitosamente en: {}", timestamp, localPath);
+                return localPath;
+            }
+        };
+    }
+    
+    /**
+     * Detiene el plano de datos
+     */
+    public synchronized void stopDataPlane() {
+        if (dataPlaneServer != null) {
+            try {
+                dataPlaneServer.close();
+            } catch (IOException e) {
+                logger.warn("Error cerrando plano de datos: {}", e.getMessage());
+            }
+            dataPlaneServer = null;
+        }
+    }
+    
     /**
      * Almacena un archivo en el nodo
      */
@@ -174,26 +246,9 @@ public class StorageNode2Impl extends UnicastRemoteObject implements StorageNode
         logger.info("ℹ️ [{}] Solicitando información del nodo", timestamp);
         
         try {
-            // Crear información del nodo
-            NodeInfo nodeInfo = new NodeInfo();
-            nodeInfo.setNodeId(NODE_ID);
-            nodeInfo.setHostname("localhost");
-            nodeInfo.setPort(RMI_PORT);
-            nodeInfo.setStatus("ACTIVE");
-            nodeInfo.setUptime(System.currentTimeMillis());
-            
-            // Calcular estadísticas de almacenamiento
-            File storageDir = new File(STORAGE_PATH);
-            long totalSpace = storageDir.getTotalSpace();
-            long freeSpace = storageDir.getFreeSpace();
-            long usedSpace = totalSpace - freeSpace;
-            
-            nodeInfo.setTotalCapacity(totalSpace);
-            nodeInfo.setUsedCapacity(usedSpace);
-            nodeInfo.setAvailableCapacity(freeSpace);
-            
+            NodeInfo nodeInfo = buildNodeInfo();
             logger.info("✅ [{}] Información del nodo generada: {} archivos, {} MB libres", 
-                       timestamp, getStoredFilesCount(), freeSpace / 1024 / 1024);
+                       timestamp, nodeInfo.getStoredFiles(), nodeInfo.getAvailableCapacity() / 1024 / 1024);
             
             return nodeInfo;
             
@@ -204,6 +259,34 @@ public class StorageNode2Impl extends UnicastRemoteObject implements StorageNode
         }
     }
     
+    /**
+     * Construye la información y métricas de carga del nodo
+     */
+    private NodeInfo buildNodeInfo() {
+        // Crear información del nodo
+        NodeInfo nodeInfo = new NodeInfo();
+        nodeInfo.setNodeId(NODE_ID);
+        nodeInfo.setServiceName(SERVICE_NAME);
+        nodeInfo.setHostname("localhost");
+        nodeInfo.setPort(RMI_PORT);
+        nodeInfo.setDataPort(dataPlaneServer != null ? dataPlaneServer.getPort() : null);
+        nodeInfo.setStatus("ACTIVE");
+        nodeInfo.setUptime(System.currentTimeMillis());
+        
+        // Calcular estadísticas de almacenamiento
+        File storageDir = new File(storagePath);
+        long totalSpace = storageDir.getTotalSpace();
+        long freeSpace = storageDir.getFreeSpace();
+        long usedSpace = totalSpace - freeSpace;
+        
+        nodeInfo.setTotalCapacity(totalSpace);
+        nodeInfo.setUsedCapacity(usedSpace);
+        nodeInfo.setAvailableCapacity(freeSpace);
+        nodeInfo.setStoredFiles(getStoredFilesCount());
+        
+        return nodeInfo;
+    }
+    
     /**
      * Verifica que el nodo está operativo
      */
@@ -231,12 +314,115 @@ public class StorageNode2Impl extends UnicastRemoteObject implements StorageNode
         }
     }
     
+    /**
+     * Almacena varios archivos en una sola llamada
+     */
+    @Override
+    public List<BatchItemResult<String>> storeFiles(List<BatchStoreItem> items) throws RemoteException {
+        String timestamp = dateFormat.format(new Date());
+        logger.info("📥 [{}] Recibiendo lote de {} archivos", timestamp, items.size());
+        
+        List<BatchItemResult<String>> results = new ArrayList<>(items.size());
+        for (BatchStoreItem item : items) {
+            if (item.getFileId() == null || item.getFileName() == null ||
+                item.getFileData() == null || item.getChecksum() == null) {
+                results.add(BatchItemResult.failure(item.getFileId(), "Datos de entrada inválidos"));
+                continue;
+            }
+            try {
+                String localPath = fileStorageService.storeFile(item.getFileId(), item.getFileName(),
+                                                                item.getFileData(), item.getChecksum());
+                replicationService.addToReplicationQueue(item.getFileId(), item.getFileName(),
+                                                         item.getFileData(), item.getChecksum());
+                results.add(BatchItemResult.success(item.getFileId(), localPath));
+            } catch (Exception e) {
+                results.add(BatchItemResult.failure(item.getFileId(), e.getMessage()));
+            }
+        }
+        
+        logBatchResult("Almacenamiento", timestamp, results);
+        return results;
+    }
+    
+    /**
+     * Recupera varios archivos en una sola llamada
+     */
+    @Override
+    public List<BatchItemResult<byte[]>> retrieveFiles(List<Long> fileIds) throws RemoteException {
+        String timestamp = dateFormat.format(new Date());
+        logger.info("📤 [{}] Recuperando lote de {} archivos", timestamp, fileIds.size());
+        
+        List<BatchItemResult<byte[]>> results = new ArrayList<>(fileIds.size());
+        for (Long fileId : fileIds) {
+            try {
+                results.add(BatchItemResult.success(fileId, fileStorageService.retrieveFile(fileId, null)));
+            } catch (Exception e) {
+                results.add(BatchItemResult.failure(fileId, e.getMessage()));
+            }
+        }
+        
+        logBatchResult("Recuperación", timestamp, results);
+        return results;
+    }
+    
+    /**
+     * Elimina varios archivos en una sola llamada
+     */
+    @Override
+    public List<BatchItemResult<Boolean>> deleteFiles(List<Long> fileIds) throws RemoteException {
+        String timestamp = dateFormat.format(new Date());
+        logger.info("🗑️ [{}] Eliminando lote de {} archivos", timestamp, fileIds.size());
+        
+        List<BatchItemResult<Boolean>> results = new ArrayList<>(fileIds.size());
+        for (Long fileId : fileIds) {
+            try {
+                results.add(BatchItemResult.success(fileId, fileStorageService.deleteFile(fileId, null)));
+            } catch (Exception e) {
+                results.add(BatchItemResult.failure(fileId, e.getMessage()));
+            }
+        }
+        
+        logBatchResult("Eliminación", timestamp, results);
+        return results;
+    }
+    
+    /**
+     * Verifica varios archivos en una sola llamada
+     */
+    @Override
+    public List<BatchItemResult<Boolean>> verifyFiles(Map<Long, String> expectedChecksums) throws RemoteException {
+        String timestamp = dateFormat.format(new Date());
+        logger.info("🔍 [{}] Verificando lote de {} archivos", timestamp, expectedChecksums.size());
+        
+        List<BatchItemResult<Boolean>> results = new ArrayList<>(expectedChecksums.size());
+        for (Map.Entry<Long, String> entry : expectedChecksums.entrySet()) {
+            try {
+                boolean valid = fileStorageService.verifyFile(entry.getKey(), null, entry.getValue());
+                results.add(BatchItemResult.success(entry.getKey(), valid));
+            } catch (Exception e) {
+                results.add(BatchItemResult.failure(entry.getKey(), e.getMessage()));
+            }
+        }
+        
+        logBatchResult("Verificación", timestamp, results);
+        return results;
+    }
+    
+    private void logBatchResult(String operation, String timestamp, List<? extends BatchItemResult<?>> results) {
+        long failed = results.stream().filter(r -> !r.isSuccess()).count();
+        if (failed == 0) {
+            logger.info("✅ [{}] {} por lotes completada: {} elementos", timestamp, operation, results.size());
+        } else {
+            logger.warn("⚠️ [{}] {} por lotes con {} fallos de {}", timestamp, operation, failed, results.size());
+        }
+    }
+    
     /**
      * Obtiene el número de archivos almacenados
      */
     private int getStoredFilesCount() {
         try {
-            File dataDir = new File(STORAGE_PATH + "/data");
+            File dataDir = new File(storagePath + "/data");
             if (!dataDir.exists()) {
                 return 0;
             }
@@ -251,30 +437,20 @@ public class StorageNode2Impl extends UnicastRemoteObject implements StorageNode
     }
     
     /**
-     * Registra el nodo en el servidor de aplicación
+     * Registra el nodo en el servidor de aplicación e inicia los heartbeats
+     * periódicos con sus métricas. Se llama después de publicar el nodo en el
+     * registry, ya que el servidor busca su stub al recibir el registro.
      */
-    private void registerWithApplicationServer() {
-        try {
-            // Aquí se conectaría con el servidor de aplicación para registrarse
-            logger.info("📝 Nodo registrado en el servidor de aplicación");
-        } catch (Exception e) {
-            logger.error("Error al registrar nodo: {}", e.getMessage());
-        }
+    public void startHeartbeatMonitoring() {
+        heartbeatPublisher.start();
+        logger.info("💓 Heartbeats hacia el servidor de aplicación {} cada {}s",
+                   heartbeatPublisher.getServerAddress(), heartbeatPublisher.getIntervalSeconds());
     }
     
     /**
-     * Inicia el monitoreo de heartbeat
+     * Detiene los heartbeats y desregistra el nodo del servidor de aplicación
      */
-    private void startHeartbeatMonitoring() {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                // Enviar heartbeat al servidor de aplicación
-                logger.debug("💓 Enviando heartbeat al servidor de aplicación");
-            } catch (Exception e) {
-                logger.error("Error en heartbeat: {}", e.getMessage());
-            }
-        }, 30, 30, TimeUnit.SECONDS);
+    public void stopHeartbeatMonitoring() {
+        heartbeatPublisher.stop();
     }
 }
\ No newline at end of file
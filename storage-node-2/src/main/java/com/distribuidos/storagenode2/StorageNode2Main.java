@@ -1,5 +1,7 @@
 package com.distribuidos.storagenode2;
 
+import com.distribuidos.shared.dataplane.DataPlaneProtocol;
+
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.text.SimpleDateFormat;
@@ -39,9 +41,16 @@ public class StorageNode2Main {
             System.out.println("📝 " + getCurrentTimestamp() + " - Registrando servicio: " + SERVICE_NAME);
             registry.rebind(SERVICE_NAME, storageNode);
             
+            // Registrarse en el servidor de aplicación y enviar heartbeats
+            storageNode.startHeartbeatMonitoring();
+            
+            // Iniciar el plano de datos NIO (RMI queda para operaciones de control)
+            storageNode.startDataPlane(RMI_PORT + DataPlaneProtocol.DEFAULT_PORT_OFFSET);
+            
             System.out.println();
             System.out.println("✅ ======= STORAGE NODE 2 INICIADO EXITOSAMENTE =======");
             System.out.println("🌐 Servicio RMI disponible en: rmi://localhost:" + RMI_PORT + "/" + SERVICE_NAME);
+            System.out.println("🚚 Plano de datos en puerto: " + (RMI_PORT + DataPlaneProtocol.DEFAULT_PORT_OFFSET));
             System.out.println("📂 Directorio de almacenamiento: " + STORAGE_PATH);
             System.out.println("🆔 Node ID: " + NODE_ID);
             System.out.println("⏰ Hora de inicio: " + getCurrentTimestamp());
@@ -53,6 +62,8 @@ public class StorageNode2Main {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println();
                 System.out.println("🛑 " + getCurrentTimestamp() + " - Recibida señal de apagado");
+                storageNode.stopHeartbeatMonitoring();
+                storageNode.stopDataPlane();
                 System.out.println("👋 " + getCurrentTimestamp() + " - Storage Node 2 terminado");
             }));
             
@@ -1,9 +1,12 @@
 package com.distribuidos.storagenode2.service;
 
+import com.distribuidos.shared.dataplane.DataPlaneFileStore;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -14,7 +17,7 @@ import java.util.Map;
  * Servicio para gestión de almacenamiento de archivos en el sistema local.
  * Maneja la escritura, lectura y organización de archivos.
  */
-public class FileStorageService {
+public class FileStorageService implements DataPlaneFileStore {
     
     private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
@@ -70,13 +73,53 @@ public class FileStorageService {
         // Escribir archivo
         Files.write(filePath, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         
-        // Guardar metadatos
+        // Guardar metadatos y actualizar índice
+        writeMetadata(fileId, fileName, uniqueFileName, content.length, checksum);
+        fileIndex.put(fileId.toString(), filePath.toString());
+        
+        System.out.println("✅ Archivo almacenado en: " + filePath);
+        return filePath.toString();
+    }
+    
+    private void writeMetadata(Long fileId, String fileName, String uniqueFileName, long size, String checksum) throws IOException {
         String metadata = String.format("id:%s,name:%s,size:%d,checksum:%s,stored:%s", 
-                                       fileId, fileName, content.length, checksum, getCurrentTimestamp());
+                                       fileId, fileName, size, checksum, getCurrentTimestamp());
         Path metadataPath = Paths.get(basePath, "metadata", uniqueFileName + ".meta");
         Files.write(metadataPath, metadata.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    /**
+     * Ubica el archivo físico de un ID (usado por el plano de datos).
+     */
+    @Override
+    public Path locateFile(Long fileId) throws IOException {
+        String filePath = fileIndex.get(fileId.toString());
+        if (filePath == null || !Files.exists(Paths.get(filePath))) {
+            throw new IOException("Archivo no encontrado: " + fileId);
+        }
+        return Paths.get(filePath);
+    }
+    
+    /**
+     * Crea un archivo temporal para recibir datos del plano de datos.
+     */
+    @Override
+    public Path createTempFile(Long fileId) throws IOException {
+        return Files.createTempFile(Paths.get(basePath, "temp"), fileId + "_", ".part");
+    }
+    
+    /**
+     * Mueve un archivo recibido por el plano de datos a su ubicación definitiva.
+     */
+    @Override
+    public String commitFile(Long fileId, String fileName, Path tempFile, long size, String checksum) throws IOException {
+        System.out.println("💾 " + getCurrentTimestamp() + " - Almacenando archivo (plano de datos): " + fileName);
+        
+        String uniqueFileName = fileId + "_" + fileName;
+        Path filePath = Paths.get(basePath, "data", uniqueFileName);
+        Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         
-        // Actualizar índice
+        writeMetadata(fileId, fileName, uniqueFileName, size, checksum);
         fileIndex.put(fileId.toString(), filePath.toString());
         
         System.out.println("✅ Archivo almacenado en: " + filePath);